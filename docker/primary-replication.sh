@@ -0,0 +1,4 @@
+#!/bin/bash
+# Lets the replica stream WAL from the primary; runs once when the primary's data directory is initialized.
+set -e
+echo "host replication $POSTGRES_USER all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -0,0 +1,76 @@
+package com.danielpyld.lhv.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Options of a load test run, given as {@code --name=value} arguments.
+ */
+final class LoadTestOptions {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    LoadTestOptions(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+    }
+
+    /** "embedded" for an in-memory H2 database in PostgreSQL mode, "postgres" for the database in application.properties. */
+    String target() {
+        return values.getOrDefault("target", "embedded");
+    }
+
+    long portfolioId() {
+        return Long.parseLong(values.getOrDefault("portfolioId", "1"));
+    }
+
+    int transactions() {
+        return Integer.parseInt(values.getOrDefault("transactions", "10000"));
+    }
+
+    List<String> endpoints() {
+        return Arrays.asList(values.getOrDefault("endpoints", "calculate,transactions,transactionsInDateRange,transaction,addTransaction").split(","));
+    }
+
+    /**
+     * Requests per second for an endpoint: {@code --rate.<endpoint>} if given, else {@code --rate}.
+     */
+    double rate(String endpoint) {
+        return Double.parseDouble(values.getOrDefault("rate." + endpoint, values.getOrDefault("rate", "20")));
+    }
+
+    Duration warmup() {
+        return Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmupSeconds", "10")));
+    }
+
+    Duration duration() {
+        return Duration.ofSeconds(Long.parseLong(values.getOrDefault("durationSeconds", "60")));
+    }
+
+    int clientThreads() {
+        return Integer.parseInt(values.getOrDefault("clientThreads", "32"));
+    }
+
+    String reportDirectory() {
+        return values.getOrDefault("reportDirectory", "build/reports/loadtest");
+    }
+
+    /** Properties of the application under test, given as {@code --app.<property>=value}, e.g. to enable group commit. */
+    Map<String, String> applicationProperties() {
+        Map<String, String> properties = new HashMap<>();
+        values.forEach((name, value) -> {
+            if (name.startsWith("app.")) {
+                properties.put(name.substring("app.".length()), value);
+            }
+        });
+        return properties;
+    }
+}
@@ -0,0 +1,229 @@
+package com.danielpyld.lhv.loadtest;
+
+import com.danielpyld.lhv.LhvApplication;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.service.transaction.TransactionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * End-to-end HTTP load test. Starts the application in-process against an embedded H2 database in PostgreSQL
+ * mode or the local Postgres from docker-compose, seeds transactions, drives each endpoint at a fixed open-loop
+ * rate and reports coordinated-omission-corrected latency percentiles and throughput per endpoint.
+ *
+ * <p>Run with {@code gradle loadTest -Ploadtest.rate=50 -Ploadtest.transactions=100000}; see
+ * {@link LoadTestOptions} for all options.</p>
+ */
+public class LoadTestRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestRunner.class);
+    private static final int SEED_BATCH_SIZE = 10_000;
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions(args);
+        try (ConfigurableApplicationContext context = startApplication(options)) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            List<Transaction> seeded = seed(context.getBean(TransactionService.class), options);
+            Path export = export(seeded);
+            run(options, baseUrl, seeded, export);
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(LoadTestOptions options) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("valuation.batch.cron", "-");
+        if ("embedded".equals(options.target())) {
+            properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+            properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            properties.put("spring.datasource.username", "sa");
+            properties.put("spring.datasource.password", "");
+            properties.put("spring.jpa.database-platform", "org.hibernate.dialect.H2Dialect");
+            // The migrations are PostgreSQL-specific (partitioning), so H2 gets its schema from Hibernate instead.
+            properties.put("spring.flyway.enabled", "false");
+            properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+            properties.put("transactions.partitions.cron", "-");
+            // H2 has no ON CONFLICT DO UPDATE for the rollup upserts.
+            properties.put("transactions.rollups.enabled", "false");
+        } else if (!"postgres".equals(options.target())) {
+            throw new IllegalArgumentException("Unknown target: " + options.target());
+        }
+        properties.putAll(options.applicationProperties());
+
+        // Passed as command line arguments so they take precedence over application.properties.
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        SpringApplication application = new SpringApplication(LhvApplication.class);
+        application.setAdditionalProfiles("loadtest");
+        return application.run(args);
+    }
+
+    private static List<Transaction> seed(TransactionService transactionService, LoadTestOptions options) {
+        List<Transaction> seeded = new ArrayList<>(options.transactions());
+        while (seeded.size() < options.transactions()) {
+            int batch = Math.min(SEED_BATCH_SIZE, options.transactions() - seeded.size());
+            seeded.addAll(transactionService.generateTransactions(options.portfolioId(), batch));
+        }
+        logger.info("Seeded {} transactions into portfolio {}.", seeded.size(), options.portfolioId());
+        return seeded;
+    }
+
+    static Path export(List<Transaction> transactions) throws IOException {
+        Path file = Files.createTempFile("loadtest-transactions-", ".json");
+        file.toFile().deleteOnExit();
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.writeValue(file.toFile(), transactions);
+        return file;
+    }
+
+    private static void run(LoadTestOptions options, String baseUrl, List<Transaction> seeded, Path export) throws Exception {
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(options.clientThreads());
+        HttpClient client = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        List<OpenLoopDriver> drivers = new ArrayList<>();
+        for (String endpoint : options.endpoints()) {
+            drivers.add(new OpenLoopDriver(endpoint, client, requests(endpoint, baseUrl, options, seeded, export), options.rate(endpoint)));
+        }
+
+        long stopAt = System.nanoTime() + options.warmup().toNanos() + options.duration().toNanos();
+        List<Thread> threads = new ArrayList<>();
+        for (OpenLoopDriver driver : drivers) {
+            driver.stopAt(stopAt);
+            Thread thread = new Thread(driver, "load-" + driver.name());
+            thread.start();
+            threads.add(thread);
+        }
+
+        logger.info("Warming up for {} s.", options.warmup().toSeconds());
+        Thread.sleep(options.warmup().toMillis());
+        drivers.forEach(OpenLoopDriver::reset);
+        long measureStart = System.nanoTime();
+        logger.info("Measuring for {} s.", options.duration().toSeconds());
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (OpenLoopDriver driver : drivers) {
+            if (!driver.awaitInFlight(1, TimeUnit.MINUTES)) {
+                logger.warn("Requests to {} still in flight after one minute.", driver.name());
+            }
+        }
+        double seconds = (System.nanoTime() - measureStart) / 1e9;
+        clientExecutor.shutdownNow();
+
+        report(drivers, seconds, options);
+    }
+
+    private static Supplier<HttpRequest> requests(String endpoint, String baseUrl, LoadTestOptions options,
+                                                  List<Transaction> seeded, Path export) {
+        long portfolioId = options.portfolioId();
+        switch (endpoint) {
+            case "calculate": {
+                URI uri = URI.create(baseUrl + "/api/portfolio/calculate?fileName=" + encode(export.toAbsolutePath().toString()));
+                return () -> HttpRequest.newBuilder(uri).GET().build();
+            }
+            case "transactions": {
+                URI uri = URI.create(baseUrl + "/api/transaction/transactions?portfolioId=" + portfolioId);
+                return () -> HttpRequest.newBuilder(uri).GET().build();
+            }
+            case "transactionsInDateRange": {
+                LocalDateTime first = LocalDateTime.ofInstant(seeded.get(0).getTimestamp(), ZoneOffset.UTC);
+                LocalDateTime last = LocalDateTime.ofInstant(seeded.get(seeded.size() - 1).getTimestamp(), ZoneOffset.UTC);
+                long days = Math.max(1, Duration.between(first, last).toDays());
+                return () -> {
+                    LocalDateTime start = first.plusDays(ThreadLocalRandom.current().nextLong(days));
+                    URI uri = URI.create(baseUrl + "/api/transaction/transactionsInDateRange?portfolioId=" + portfolioId
+                            + "&start=" + start + "&end=" + start.plusDays(30));
+                    return HttpRequest.newBuilder(uri).GET().build();
+                };
+            }
+            case "transaction":
+                return () -> {
+                    Long id = seeded.get(ThreadLocalRandom.current().nextInt(seeded.size())).getId();
+                    return HttpRequest.newBuilder(URI.create(baseUrl + "/api/transaction/transaction/" + id)).GET().build();
+                };
+            case "addTransaction": {
+                URI uri = URI.create(baseUrl + "/api/transaction/addTransaction");
+                return () -> {
+                    String body = "{\"portfolioId\":" + portfolioId + ",\"type\":\"BUY\",\"quantity\":"
+                            + (1 + ThreadLocalRandom.current().nextInt(100)) + ",\"price\":100.00,\"fee\":1.00,\"timestamp\":\""
+                            + LocalDateTime.now(ZoneOffset.UTC) + "\"}";
+                    return HttpRequest.newBuilder(uri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build();
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown endpoint: " + endpoint);
+        }
+    }
+
+    private static void report(List<OpenLoopDriver> drivers, double seconds, LoadTestOptions options) throws IOException {
+        File directory = new File(options.reportDirectory());
+        Files.createDirectories(directory.toPath());
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-24s %9s %7s %9s %10s %10s %10s %10s %12s%n", "endpoint", "requests", "errors",
+                "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99 ms"));
+
+        for (OpenLoopDriver driver : drivers) {
+            Histogram latency = driver.latency();
+            Histogram serviceTime = driver.serviceTime();
+            summary.append(String.format("%-24s %9d %7d %9.1f %10.2f %10.2f %10.2f %10.2f %12.2f%n", driver.name(),
+                    latency.getTotalCount(), driver.errors(), latency.getTotalCount() / seconds,
+                    millis(latency, 50), millis(latency, 99), millis(latency, 99.9),
+                    latency.getMaxValue() / MICROS_PER_MILLI, millis(serviceTime, 99)));
+
+            try (PrintStream out = new PrintStream(new File(directory, driver.name() + ".hgrm"), StandardCharsets.UTF_8)) {
+                latency.outputPercentileDistribution(out, MICROS_PER_MILLI);
+            }
+        }
+
+        Files.writeString(directory.toPath().resolve("summary.txt"), summary);
+        logger.info("Load test results ({} s, latency corrected for coordinated omission):{}{}", String.format("%.1f", seconds),
+                System.lineSeparator(), summary);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+    }
+
+    static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+package com.danielpyld.lhv.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Sends requests to one endpoint at a fixed rate regardless of how fast responses come back (open loop).
+ * Every request has an intended start time on the schedule; latency is measured from that time rather than from
+ * when the request was actually sent, so stalls in the server or the client are charged to every request that
+ * should have been sent during them instead of being hidden (coordinated omission). The plain service time
+ * from send to response is recorded separately for comparison.
+ */
+final class OpenLoopDriver implements Runnable {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final String name;
+    private final HttpClient client;
+    private final Supplier<HttpRequest> requests;
+    private final long intervalNanos;
+    private final Recorder latency = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    private final Recorder serviceTime = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private volatile long stopAtNanos;
+
+    OpenLoopDriver(String name, HttpClient client, Supplier<HttpRequest> requests, double requestsPerSecond) {
+        this.name = name;
+        this.client = client;
+        this.requests = requests;
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond));
+    }
+
+    String name() {
+        return name;
+    }
+
+    void stopAt(long nanoTime) {
+        this.stopAtNanos = nanoTime;
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        for (long i = 0; ; i++) {
+            long intendedStart = start + i * intervalNanos;
+            if (intendedStart >= stopAtNanos) {
+                return;
+            }
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long sentAt = System.nanoTime();
+            inFlight.incrementAndGet();
+            client.sendAsync(requests.get(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        long completedAt = System.nanoTime();
+                        if (failure != null || response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                        latency.recordValue(toMicros(completedAt - intendedStart));
+                        serviceTime.recordValue(toMicros(completedAt - sentAt));
+                        inFlight.decrementAndGet();
+                    });
+        }
+    }
+
+    /**
+     * Waits until all sent requests have completed or the timeout has passed.
+     *
+     * @return Whether all requests completed.
+     */
+    boolean awaitInFlight(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (inFlight.get() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Drops everything recorded so far, e.g. at the end of the warm-up.
+     */
+    void reset() {
+        latency.reset();
+        serviceTime.reset();
+        errors.set(0);
+    }
+
+    Histogram latency() {
+        return latency.getIntervalHistogram();
+    }
+
+    Histogram serviceTime() {
+        return serviceTime.getIntervalHistogram();
+    }
+
+    long errors() {
+        return errors.get();
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.min(HIGHEST_TRACKABLE_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+}
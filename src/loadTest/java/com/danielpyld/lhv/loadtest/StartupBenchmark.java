@@ -0,0 +1,244 @@
+package com.danielpyld.lhv.loadtest;
+
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.service.transaction.TransactionGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compares the startup of the plain jar with the production build: Spring AOT, AOT with the AppCDS archive and
+ * optionally the native image. Each mode is launched as a process of its own and measured for the time until its
+ * health endpoint answers, then for the time until its throughput of profit calculations reaches 90% of the
+ * plateau it settles at, both counted from launch. The database in application.properties must be running, or
+ * another one given as {@code --app.spring.datasource.url=...}.
+ *
+ * <p>Run with {@code gradle startupBenchmark -Pproduction -Pstartup.runs=5}; see {@link StartupBenchmarkOptions}
+ * for all options.</p>
+ */
+public class StartupBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupBenchmark.class);
+    private static final long SEED = 42L;
+    private static final double PEAK_FRACTION = 0.9;
+    private static final int MOVING_AVERAGE_SECONDS = 3;
+    private static final Duration HEALTH_POLL_INTERVAL = Duration.ofMillis(10);
+
+    public static void main(String[] args) throws Exception {
+        StartupBenchmarkOptions options = new StartupBenchmarkOptions(args);
+        List<Transaction> transactions = new TransactionGenerator()
+                .generate(Transaction.DEFAULT_PORTFOLIO_ID, options.transactions(), new Random(SEED), Instant.now());
+        Path export = LoadTestRunner.export(transactions);
+        Path reports = Files.createDirectories(Path.of(options.reportDirectory()));
+
+        Map<String, List<Result>> results = new LinkedHashMap<>();
+        for (int run = 1; run <= options.runs(); run++) {
+            for (String mode : options.modes()) {
+                Result result = measure(options, mode, export, reports.resolve(mode + "-" + run + ".log").toFile());
+                logger.info("Run {} of {}: {}", run, mode, result);
+                results.computeIfAbsent(mode, m -> new ArrayList<>()).add(result);
+            }
+        }
+        report(results, options, reports);
+    }
+
+    private static Result measure(StartupBenchmarkOptions options, String mode, Path export, File log) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(command(options, mode));
+        command.add("--server.port=" + port);
+        command.add("--spring.jpa.show-sql=false");
+        command.add("--valuation.batch.cron=-");
+        command.add("--transactions.partitions.cron=-");
+        options.applicationProperties().forEach((name, value) -> command.add("--" + name + "=" + value));
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        String baseUrl = "http://localhost:" + port;
+        long launchedAt = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+        try {
+            awaitHealthy(client, URI.create(baseUrl + "/actuator/health"), process, options.startupTimeout(), log);
+            long healthyAt = System.nanoTime();
+            long[] perSecond = drive(client, URI.create(baseUrl + "/api/portfolio/calculate?fileName="
+                    + LoadTestRunner.encode(export.toAbsolutePath().toString())), options);
+            return Result.of(TimeUnit.NANOSECONDS.toMillis(healthyAt - launchedAt), perSecond);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static List<String> command(StartupBenchmarkOptions options, String mode) throws IOException {
+        switch (mode) {
+            case "plain":
+                return List.of("java", "-jar", options.plainJar().getPath());
+            case "aot":
+                return List.of("java", "-Dspring.aot.enabled=true", "-jar", productionJar(options).getPath());
+            case "aot-cds":
+                File archive = new File(options.productionDirectory(), "lhv.jsa");
+                if (!archive.exists()) {
+                    throw new IllegalStateException("No CDS archive at " + archive + "; run the cdsArchive task first");
+                }
+                return List.of("java", "-XX:SharedArchiveFile=" + archive.getPath(), "-Xlog:cds=off",
+                        "-Dspring.aot.enabled=true", "-jar", productionJar(options).getPath());
+            case "native":
+                if (options.nativeImage() == null) {
+                    throw new IllegalArgumentException("The native mode needs --nativeImage");
+                }
+                return List.of(options.nativeImage());
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+
+    private static File productionJar(StartupBenchmarkOptions options) {
+        File[] jars = options.productionDirectory().listFiles((directory, name) -> name.endsWith(".jar"));
+        if (jars == null || jars.length != 1) {
+            throw new IllegalStateException("Expected one extracted jar in " + options.productionDirectory());
+        }
+        return jars[0];
+    }
+
+    private static void awaitHealthy(HttpClient client, URI health, Process process, Duration timeout, File log)
+            throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        HttpRequest request = HttpRequest.newBuilder(health).GET().build();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with " + process.exitValue() + ", see " + log);
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (ConnectException e) {
+                // Not listening yet.
+            }
+            Thread.sleep(HEALTH_POLL_INTERVAL.toMillis());
+        }
+        throw new IllegalStateException("Application not healthy after " + timeout + ", see " + log);
+    }
+
+    /**
+     * Sends calculations closed-loop from the configured number of clients and counts the successful ones per second.
+     */
+    private static long[] drive(HttpClient client, URI uri, StartupBenchmarkOptions options) throws InterruptedException {
+        int seconds = (int) options.duration().toSeconds();
+        AtomicLongArray completed = new AtomicLongArray(seconds);
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        long stopAt = start + options.duration().toNanos();
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < options.clients(); i++) {
+            Thread thread = new Thread(() -> {
+                while (System.nanoTime() < stopAt) {
+                    try {
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        int second = (int) TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+                        if (status == 200 && second < seconds) {
+                            completed.incrementAndGet(second);
+                        } else if (status != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }, "startup-client-" + i);
+            thread.start();
+            clients.add(thread);
+        }
+        for (Thread thread : clients) {
+            thread.join();
+        }
+        if (errors.get() > 0) {
+            logger.warn("{} calculations failed.", errors.get());
+        }
+
+        long[] perSecond = new long[seconds];
+        for (int i = 0; i < seconds; i++) {
+            perSecond[i] = completed.get(i);
+        }
+        return perSecond;
+    }
+
+    private static void report(Map<String, List<Result>> results, StartupBenchmarkOptions options, Path reports)
+            throws IOException {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-10s %14s %18s %14s%n", "mode", "startup ms", "time to peak ms", "peak req/s"));
+        results.forEach((mode, runs) -> summary.append(String.format("%-10s %14d %18d %14.1f%n", mode,
+                median(runs.stream().mapToDouble(Result::startupMillis).toArray()).longValue(),
+                median(runs.stream().mapToDouble(Result::timeToPeakMillis).toArray()).longValue(),
+                median(runs.stream().mapToDouble(Result::peakPerSecond).toArray()))));
+
+        Files.writeString(reports.resolve("summary.txt"), summary);
+        logger.info("Startup benchmark (median of {} runs, {} clients, {} transactions):{}{}", options.runs(),
+                options.clients(), options.transactions(), System.lineSeparator(), summary);
+    }
+
+    private static Double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Startup and warm-up of one launch. The plateau is the mean throughput of the last third of the measurement;
+     * the peak is reached at the end of the first second whose moving average gets to 90% of it.
+     */
+    private record Result(long startupMillis, long timeToPeakMillis, double peakPerSecond) {
+
+        static Result of(long startupMillis, long[] perSecond) {
+            int tail = Math.max(1, perSecond.length / 3);
+            double plateau = Arrays.stream(perSecond, perSecond.length - tail, perSecond.length).average().orElse(0);
+            int window = Math.min(MOVING_AVERAGE_SECONDS, perSecond.length);
+            int peakSecond = perSecond.length;
+            for (int end = window; end <= perSecond.length; end++) {
+                if (Arrays.stream(perSecond, end - window, end).average().orElse(0) >= PEAK_FRACTION * plateau) {
+                    peakSecond = end;
+                    break;
+                }
+            }
+            return new Result(startupMillis, startupMillis + TimeUnit.SECONDS.toMillis(peakSecond), plateau);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("startup %d ms, peak %.1f req/s after %d ms", startupMillis, peakPerSecond, timeToPeakMillis);
+        }
+    }
+}
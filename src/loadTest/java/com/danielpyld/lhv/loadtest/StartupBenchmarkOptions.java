@@ -0,0 +1,92 @@
+package com.danielpyld.lhv.loadtest;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Options of a startup benchmark, given as {@code --name=value} arguments.
+ */
+final class StartupBenchmarkOptions {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    StartupBenchmarkOptions(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+    }
+
+    /** The boot jar, started with {@code java -jar} as it is without the production build. */
+    File plainJar() {
+        return new File(required("plainJar"));
+    }
+
+    /** The extracted production jar and its CDS archive, as created by the cdsArchive task. */
+    File productionDirectory() {
+        return new File(required("productionDirectory"));
+    }
+
+    /** Path of a native image from nativeCompile; the native mode is only run when given. */
+    String nativeImage() {
+        return values.get("nativeImage");
+    }
+
+    /** Modes to compare, of plain, aot, aot-cds and native. */
+    List<String> modes() {
+        String defaults = nativeImage() != null ? "plain,aot,aot-cds,native" : "plain,aot,aot-cds";
+        return Arrays.asList(values.getOrDefault("modes", defaults).split(","));
+    }
+
+    /** Launches per mode; the modes take turns so drift of the machine affects all of them alike. */
+    int runs() {
+        return Integer.parseInt(values.getOrDefault("runs", "3"));
+    }
+
+    /** Closed-loop clients calculating the profit of the transaction file after startup. */
+    int clients() {
+        return Integer.parseInt(values.getOrDefault("clients", "4"));
+    }
+
+    int transactions() {
+        return Integer.parseInt(values.getOrDefault("transactions", "10000"));
+    }
+
+    Duration duration() {
+        return Duration.ofSeconds(Long.parseLong(values.getOrDefault("durationSeconds", "60")));
+    }
+
+    Duration startupTimeout() {
+        return Duration.ofSeconds(Long.parseLong(values.getOrDefault("startupTimeoutSeconds", "120")));
+    }
+
+    String reportDirectory() {
+        return values.getOrDefault("reportDirectory", "build/reports/startup");
+    }
+
+    /** Properties of the application under test, given as {@code --app.<property>=value}, e.g. its datasource. */
+    Map<String, String> applicationProperties() {
+        Map<String, String> properties = new HashMap<>();
+        values.forEach((name, value) -> {
+            if (name.startsWith("app.")) {
+                properties.put(name.substring("app.".length()), value);
+            }
+        });
+        return properties;
+    }
+
+    private String required(String name) {
+        String value = values.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing option --" + name);
+        }
+        return value;
+    }
+}
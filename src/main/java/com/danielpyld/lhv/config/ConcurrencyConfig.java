@@ -0,0 +1,23 @@
+package com.danielpyld.lhv.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class ConcurrencyConfig {
+
+    /**
+     * Work-stealing pool used to calculate many portfolios in parallel. Defaults to one worker per available core.
+     *
+     * @param parallelism Configured number of workers, or 0 to use the core count.
+     * @return The calculation pool.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool portfolioCalculationPool(@Value("${portfolio.calculation.parallelism:0}") int parallelism) {
+        int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(workers);
+    }
+}
@@ -0,0 +1,85 @@
+package com.danielpyld.lhv.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Routes read-only transactions to a replica pool and everything else to the primary pool, so full-history
+ * analytics reads don't compete with trade capture for connections or primary CPU.
+ * <p>
+ * The routing relies on the transaction manager marking the connection of a read-only transaction read-only before
+ * the first statement. A lazy connection proxy defers fetching the physical connection until then and picks the
+ * replica pool for read-only connections. Reads outside a transaction, and read-only transactions nested in a
+ * read-write one, use the primary, so a writer always sees its own rows. A replica applies writes asynchronously,
+ * so read-only calls may briefly miss rows that were just committed. Reads whose results go into the Hibernate query
+ * cache must therefore not be read-only: the cache would keep such a stale result until the next write to the table.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    static final String PRIMARY_PREFIX = "spring.datasource.hikari";
+    static final String REPLICA_PREFIX = "spring.datasource.replica";
+
+    /**
+     * Pool of the primary database, configured like Spring Boot's default pool from {@code spring.datasource.*}
+     * and {@code spring.datasource.hikari.*}.
+     *
+     * @param properties Connection settings of the primary.
+     * @return The primary pool.
+     */
+    @Bean(destroyMethod = "close")
+    @ConfigurationProperties(PRIMARY_PREFIX)
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    /**
+     * Pool of the read replica. It starts from the primary's connection and {@code spring.datasource.hikari.*}
+     * settings and is then configured from {@code spring.datasource.replica.*} with Hikari's property names, e.g.
+     * {@code jdbc-url} and {@code maximum-pool-size}. Without a replica URL it connects to the primary database
+     * through a pool of its own, which still keeps analytics from starving writes of connections.
+     *
+     * @param properties  Connection settings of the primary.
+     * @param environment Source of the replica settings.
+     * @return The replica pool.
+     */
+    @Bean(destroyMethod = "close")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties, Environment environment) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder binder = Binder.get(environment);
+        binder.bind(PRIMARY_PREFIX, Bindable.ofInstance(dataSource));
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        binder.bind(REPLICA_PREFIX, Bindable.ofInstance(dataSource));
+        return dataSource;
+    }
+
+    /**
+     * The data source used by JPA and JDBC templates, routing read-only connections to the replica.
+     *
+     * @param primaryDataSource Pool for writes and non-transactional reads.
+     * @param replicaDataSource Pool for read-only transactions.
+     * @return The routing data source.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+}
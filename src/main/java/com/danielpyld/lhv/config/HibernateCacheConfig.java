@@ -0,0 +1,54 @@
+package com.danielpyld.lhv.config;
+
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.repository.TransactionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Function;
+
+@Configuration
+public class HibernateCacheConfig {
+
+    /**
+     * Publishes the hit ratio of the second-level cache regions as {@code hibernate.cache.hit.ratio}, tagged with the
+     * region and whether it caches entities or query results. The raw hit and miss counts are published by Spring
+     * Boot's Hibernate metrics. A region without lookups yet reports NaN.
+     *
+     * @param entityManagerFactory Factory whose statistics are read; they must be enabled with
+     *                             {@code hibernate.generate_statistics}.
+     * @return The binder of the gauges.
+     */
+    @Bean
+    public MeterBinder hibernateCacheHitRatios(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return registry -> {
+            hitRatio(statistics, Transaction.CACHE_REGION, "entity", statistics::getDomainDataRegionStatistics)
+                    .register(registry);
+            hitRatio(statistics, TransactionRepository.QUERY_CACHE_REGION, "query", statistics::getQueryRegionStatistics)
+                    .register(registry);
+        };
+    }
+
+    private static Gauge.Builder<Statistics> hitRatio(Statistics statistics, String region, String kind,
+                                                      Function<String, CacheRegionStatistics> regionStatistics) {
+        // The gauge holds the statistics weakly; they live as long as the session factory.
+        return Gauge.builder("hibernate.cache.hit.ratio", statistics, ignored -> {
+                    CacheRegionStatistics stats = regionStatistics.apply(region);
+                    if (stats == null) {
+                        return Double.NaN;
+                    }
+                    long lookups = stats.getHitCount() + stats.getMissCount();
+                    return lookups == 0 ? Double.NaN : (double) stats.getHitCount() / lookups;
+                })
+                .tag("region", region)
+                .tag("kind", kind)
+                .description("Share of second-level cache lookups answered from the cache");
+    }
+}
@@ -0,0 +1,31 @@
+package com.danielpyld.lhv.config;
+
+import com.danielpyld.lhv.entity.Dividend;
+import com.danielpyld.lhv.entity.Profit;
+import com.danielpyld.lhv.entity.Transaction;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+@Configuration
+@ImportRuntimeHints(RuntimeHintsConfig.ApplicationRuntimeHints.class)
+public class RuntimeHintsConfig {
+
+    /**
+     * Hints for what Spring AOT can't infer from the bean definitions. Transactions, dividends and profits are read
+     * and written by ObjectMappers the services create themselves, e.g. when a transaction file is uploaded, so
+     * Jackson's reflective access to them and the types they reference is registered explicitly. The JCache
+     * configuration of the Hibernate cache is loaded as a classpath resource.
+     */
+    static class ApplicationRuntimeHints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                    Transaction.class, Dividend.class, Profit.class);
+            hints.resources().registerPattern("hibernate-cache.conf");
+        }
+    }
+}
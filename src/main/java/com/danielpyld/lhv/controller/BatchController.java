@@ -0,0 +1,40 @@
+package com.danielpyld.lhv.controller;
+
+import com.danielpyld.lhv.dto.BatchReportDTO;
+import com.danielpyld.lhv.service.batch.ValuationBatchService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * REST controller for triggering batch jobs.
+ */
+@RestController
+@RequestMapping("/api/batch")
+public class BatchController {
+
+    private final ValuationBatchService valuationBatchService;
+
+    public BatchController(ValuationBatchService valuationBatchService) {
+        this.valuationBatchService = valuationBatchService;
+    }
+
+    /**
+     * Runs the end-of-day valuation of all portfolios, resuming from the last checkpoint of that date.
+     *
+     * @param date The valuation date (ISO-8601 format), or today (UTC) if omitted.
+     * @return A ResponseEntity containing the batch report and HTTP status OK, or HTTP status CONFLICT if a run is already in progress.
+     */
+    @PostMapping("/valuation")
+    public ResponseEntity<BatchReportDTO> runValuation(@RequestParam(required = false) String date) {
+        LocalDate valuationDate = date != null ? LocalDate.parse(date) : LocalDate.now(ZoneOffset.UTC);
+        try {
+            return new ResponseEntity<>(valuationBatchService.runEndOfDayValuation(valuationDate), HttpStatus.OK);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.danielpyld.lhv.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Strong entity tags for conditional GETs. JSON and CBOR responses of the same data are different representations,
+ * so they get different tags, and responses carry {@code Vary: Accept}.
+ */
+final class EntityTags {
+
+    private static final List<MediaType> REPRESENTATIONS = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR);
+
+    private EntityTags() {
+    }
+
+    /**
+     * @param version Opaque version of the data the response is made of.
+     * @param request The request, whose Accept header selects the representation.
+     * @return The quoted entity tag of the representation the request will be answered with.
+     */
+    static String of(String version, WebRequest request) {
+        return "\"" + version + (prefersCbor(request.getHeader(HttpHeaders.ACCEPT)) ? "-cbor" : "") + "\"";
+    }
+
+    /**
+     * @param version       Opaque version of the data the response is made of.
+     * @param valuationDate Day the data is valued as of, when the response depends on it as well.
+     * @param request       The request, whose Accept header selects the representation.
+     * @return The quoted entity tag of the representation the request will be answered with.
+     */
+    static String of(String version, LocalDate valuationDate, WebRequest request) {
+        return of(version + "-" + valuationDate.format(DateTimeFormatter.BASIC_ISO_DATE), request);
+    }
+
+    private static boolean prefersCbor(String accept) {
+        if (accept == null) {
+            return false;
+        }
+        try {
+            return MediaType.parseMediaTypes(accept).stream()
+                    .sorted(Comparator.comparingDouble(MediaType::getQualityValue).reversed())
+                    .filter(mediaType -> REPRESENTATIONS.stream().anyMatch(mediaType::includes))
+                    .findFirst()
+                    .map(MediaType.APPLICATION_CBOR::equalsTypeAndSubtype)
+                    .orElse(false);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+}
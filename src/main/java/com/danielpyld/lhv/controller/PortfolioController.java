@@ -2,22 +2,44 @@ package com.danielpyld.lhv.controller;
 
 import com.danielpyld.lhv.entity.Dividend;
 import com.danielpyld.lhv.entity.Profit;
+import com.danielpyld.lhv.entity.Returns;
+import com.danielpyld.lhv.entity.SellScenario;
+import com.danielpyld.lhv.entity.SellSimulation;
+import com.danielpyld.lhv.entity.StockSplit;
 import com.danielpyld.lhv.entity.Transaction;
 import com.danielpyld.lhv.service.dividend.DividendService;
+import com.danielpyld.lhv.service.portfolio.FileProfitService;
 import com.danielpyld.lhv.service.portfolio.PortfolioService;
 import com.danielpyld.lhv.service.portfolio.PortfolioServiceImpl;
+import com.danielpyld.lhv.service.portfolio.ValuationDay;
 import com.danielpyld.lhv.service.dividend.DividendServiceImpl;
+import com.danielpyld.lhv.service.report.LotMatchFormat;
+import com.danielpyld.lhv.service.report.LotMatchReportService;
+import com.danielpyld.lhv.service.split.StockSplitService;
+import com.danielpyld.lhv.service.transaction.DatasetVersions;
+import com.danielpyld.lhv.service.transaction.EphemeralTransactionService;
 import com.danielpyld.lhv.service.transaction.TransactionService;
 import com.danielpyld.lhv.service.transaction.TransactionServiceImpl;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * REST controller for managing calculator-related operations.
@@ -26,73 +48,267 @@ import java.util.List;
 @RequestMapping("/api/portfolio")
 public class PortfolioController {
 
+   private static final Logger logger = LoggerFactory.getLogger(PortfolioController.class);
+
    private final PortfolioService portfolioService;
    private final DividendService dividendService;
    private final ObjectMapper objectMapper;
    private final TransactionService transactionService;
+   private final LotMatchReportService lotMatchReportService;
+   private final FileProfitService fileProfitService;
+   private final EphemeralTransactionService ephemeralTransactionService;
+   private final StockSplitService stockSplitService;
+   private final DatasetVersions datasetVersions;
 
    public PortfolioController(DividendServiceImpl dividendService,
                               PortfolioServiceImpl portfolioService,
-                              TransactionServiceImpl transactionService) {
+                              TransactionServiceImpl transactionService,
+                              LotMatchReportService lotMatchReportService,
+                              FileProfitService fileProfitService,
+                              EphemeralTransactionService ephemeralTransactionService,
+                              StockSplitService stockSplitService,
+                              DatasetVersions datasetVersions) {
       this.dividendService = dividendService;
       this.portfolioService = portfolioService;
       this.objectMapper = new ObjectMapper();
       objectMapper.registerModule(new JavaTimeModule());
       this.transactionService = transactionService;
+      this.lotMatchReportService = lotMatchReportService;
+      this.fileProfitService = fileProfitService;
+      this.ephemeralTransactionService = ephemeralTransactionService;
+      this.stockSplitService = stockSplitService;
+      this.datasetVersions = datasetVersions;
    }
 
    /**
     * Generate transactions and write them to a JSON file.
     *
+    * @param portfolioId The portfolio to generate transactions for, or the default portfolio if omitted.
+    * @param ephemeral   Whether to keep the generated transactions in memory only instead of saving them.
+    * @param seed        Seed of an in-memory dataset, making it reproducible; random if omitted.
+    * @param size        Number of transactions to generate.
     * @return ResponseEntity with the status of the operation.
     */
    @GetMapping("/generate")
-   public ResponseEntity<String> generateTransactions() {
+   public ResponseEntity<String> generateTransactions(@RequestParam(required = false) Long portfolioId,
+                                                      @RequestParam(defaultValue = "false") boolean ephemeral,
+                                                      @RequestParam(required = false) Long seed,
+                                                      @RequestParam(defaultValue = "1000") int size) {
       try {
-         List<Transaction> transactions = transactionService.generateTransactions(1000);
+         List<Transaction> transactions;
+         if (ephemeral) {
+            transactions = ephemeralTransactionService.generateTransactions(
+                  portfolioId != null ? portfolioId : Transaction.DEFAULT_PORTFOLIO_ID, size, seed);
+         } else {
+            transactions = portfolioId != null
+                  ? transactionService.generateTransactions(portfolioId, size)
+                  : transactionService.generateTransactions(size);
+         }
          objectMapper.writeValue(new File("transactions.json"), transactions);
          return new ResponseEntity<>("Transactions have been written to transactions.json", HttpStatus.OK);
+      } catch (IllegalArgumentException e) {
+         return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
       } catch (Exception e) {
-         e.printStackTrace();
+         logger.error("Failed to generate transactions", e);
          return new ResponseEntity<>("Failed to generate transactions", HttpStatus.INTERNAL_SERVER_ERROR);
       }
    }
 
    /**
-    * Calculate profit from a given JSON file containing transactions.
+    * Calculate profit from a given JSON file containing transactions as of the end of today. Identical concurrent
+    * requests share one calculation. The response is tagged with the file's size and modification time and the
+    * date, so a conditional request for an unchanged file on the same day is answered without reading it.
     *
     * @param fileName The name of the JSON file containing the transactions.
-    * @return ResponseEntity containing ProfitResult with detailed profit calculations.
+    * @param request  The request, checked for If-None-Match and If-Modified-Since.
+    * @return ResponseEntity containing ProfitResult with detailed profit calculations, or null once the response has
+    * been completed as HTTP status NOT_MODIFIED.
     */
    @GetMapping("/calculate")
-   public ResponseEntity<?> calculateProfitFromFile(@RequestParam String fileName) {
+   public ResponseEntity<?> calculateProfitFromFile(@RequestParam String fileName, WebRequest request) {
       try {
          File file = new File(fileName);
          if (!file.exists()) {
             return new ResponseEntity<>("File not found: " + fileName, HttpStatus.NOT_FOUND);
          }
+         LocalDate valuationDate = ValuationDay.today();
+         long lastModified = lastModified(file.lastModified(), valuationDate);
+         String eTag = EntityTags.of(Long.toString(file.length(), Character.MAX_RADIX) + "-"
+               + Long.toString(file.lastModified(), Character.MAX_RADIX), valuationDate, request);
+         if (request.checkNotModified(eTag, lastModified)) {
+            return null;
+         }
 
-         List<Transaction> transactions = objectMapper.readValue(file, objectMapper.getTypeFactory().constructCollectionType(List.class, Transaction.class));
-         List<Dividend> dividends = dividendService.generateDividends(transactions);
-         Profit profit = portfolioService.calculateProfit(transactions, dividends);
+         Profit profit = fileProfitService.calculateProfit(file, valuationDate);
 
-         return new ResponseEntity<>(profit, HttpStatus.OK);
+         return ResponseEntity.ok().eTag(eTag).lastModified(lastModified).varyBy(HttpHeaders.ACCEPT).body(profit);
       } catch (IOException e) {
-         e.printStackTrace();
+         logger.error("Error reading file {}", fileName, e);
          return new ResponseEntity<>("Error reading file", HttpStatus.INTERNAL_SERVER_ERROR);
       }
    }
 
    /**
-    * Generate transactions internally and calculate Profit/Loss without reading from a file.
+    * Generate transactions internally and calculate Profit/Loss without reading from a file. By default the
+    * transactions are kept in memory only, so the endpoint does not write to the database.
     *
-    * @return ResponseEntity containing ProfitResult.
+    * @param ephemeral Whether to keep the generated transactions in memory only; false saves them as before.
+    * @param seed      Seed of the in-memory dataset and its dividends, making the result reproducible; random if omitted.
+    * @param size      Number of transactions to generate.
+    * @return ResponseEntity containing ProfitResult, or HTTP status BAD_REQUEST for an invalid size.
     */
    @GetMapping("/calculate/default")
-   public ResponseEntity<Profit> calculateDefaultProfit() {
-      List<Transaction> transactions = transactionService.generateTransactions(1000);
-      List<Dividend> dividends = dividendService.generateDividends(transactions);
+   public ResponseEntity<Profit> calculateDefaultProfit(@RequestParam(defaultValue = "true") boolean ephemeral,
+                                                        @RequestParam(required = false) Long seed,
+                                                        @RequestParam(defaultValue = "1000") int size) {
+      List<Transaction> transactions;
+      List<Dividend> dividends;
+      try {
+         transactions = ephemeral
+               ? ephemeralTransactionService.generateTransactions(Transaction.DEFAULT_PORTFOLIO_ID, size, seed)
+               : transactionService.generateTransactions(size);
+      } catch (IllegalArgumentException e) {
+         return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+      }
+      if (ephemeral && seed != null) {
+         dividends = dividendService.generateDividends(transactions, seed);
+      } else {
+         dividends = dividendService.generateDividends(transactions);
+      }
       Profit profit = portfolioService.calculateProfit(transactions, dividends);
       return new ResponseEntity<>(profit, HttpStatus.OK);
    }
+
+   /**
+    * Calculate Profit/Loss of a single portfolio from its stored transactions as of the end of today.
+    *
+    * The response is tagged with the version of the portfolio's transactions and splits and the date, so a
+    * conditional request for an unchanged portfolio on the same day is answered without calculating it.
+    *
+    * @param portfolioId The portfolio to calculate.
+    * @param request     The request, checked for If-None-Match and If-Modified-Since.
+    * @return ResponseEntity containing ProfitResult, or null once the response has been completed as HTTP status
+    * NOT_MODIFIED.
+    */
+   @GetMapping("/calculate/portfolio/{portfolioId}")
+   public ResponseEntity<Profit> calculatePortfolioProfit(@PathVariable("portfolioId") Long portfolioId, WebRequest request) {
+      DatasetVersions.Version version = datasetVersions.current(portfolioId);
+      LocalDate valuationDate = ValuationDay.today();
+      long lastModified = lastModified(version.lastModified().toEpochMilli(), valuationDate);
+      String eTag = EntityTags.of(version.tag(), valuationDate, request);
+      if (request.checkNotModified(eTag, lastModified)) {
+         return null;
+      }
+      return ResponseEntity.ok()
+            .eTag(eTag)
+            .lastModified(lastModified)
+            .varyBy(HttpHeaders.ACCEPT)
+            .body(portfolioService.calculateProfit(portfolioId, valuationDate));
+   }
+
+   /**
+    * A result valued as of a day changes when its data does and again when the day starts.
+    */
+   private static long lastModified(long dataLastModified, LocalDate valuationDate) {
+      return Math.max(dataLastModified, valuationDate.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli());
+   }
+
+   /**
+    * Calculate Profit/Loss of many portfolios in parallel.
+    *
+    * @param portfolioIds The portfolios to calculate.
+    * @return ResponseEntity containing ProfitResult per portfolio.
+    */
+   @PostMapping("/calculate/bulk")
+   public ResponseEntity<Map<Long, Profit>> calculateBulkProfit(@RequestBody List<Long> portfolioIds) {
+      return new ResponseEntity<>(portfolioService.calculateProfits(portfolioIds), HttpStatus.OK);
+   }
+
+   /**
+    * Calculate the annualized money-weighted (XIRR) and time-weighted returns of a portfolio.
+    *
+    * @param portfolioId The portfolio to calculate.
+    * @return ResponseEntity containing the portfolio returns.
+    */
+   @GetMapping("/returns/portfolio/{portfolioId}")
+   public ResponseEntity<Returns> calculatePortfolioReturns(@PathVariable("portfolioId") Long portfolioId) {
+      return new ResponseEntity<>(portfolioService.calculateReturns(portfolioId), HttpStatus.OK);
+   }
+
+   /**
+    * Simulate hypothetical sells of a portfolio's current position: the realized profit and remaining cost basis
+    * if the given quantity were sold at the given price now. Each scenario is simulated on its own against the
+    * current lots.
+    *
+    * @param portfolioId The portfolio to simulate.
+    * @param scenarios   The sells to simulate, with prices and fees in the base currency.
+    * @return ResponseEntity containing the outcome of each scenario in the order given, or HTTP status BAD_REQUEST
+    * for a scenario without a positive quantity and a price.
+    */
+   @PostMapping("/simulate/portfolio/{portfolioId}")
+   public ResponseEntity<List<SellSimulation>> simulateSells(@PathVariable("portfolioId") Long portfolioId,
+                                                             @RequestBody List<SellScenario> scenarios) {
+      try {
+         return new ResponseEntity<>(portfolioService.simulateSells(portfolioId, scenarios), HttpStatus.OK);
+      } catch (IllegalArgumentException e) {
+         return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+      }
+   }
+
+   /**
+    * Stream the lot-level realized gain report of a portfolio: one record per part of a buy lot consumed by a sell.
+    *
+    * @param portfolioId The portfolio to report.
+    * @param format      The output format, csv, ndjson or cbor; if omitted, the one named by the Accept header
+    *                    (text/csv, application/x-ndjson or application/cbor-seq), else csv.
+    * @param accept      The Accept header.
+    * @return ResponseEntity streaming the lot matches, or HTTP status BAD_REQUEST for an unknown format.
+    */
+   @GetMapping("/lot-matches/portfolio/{portfolioId}")
+   public ResponseEntity<StreamingResponseBody> streamLotMatches(@PathVariable("portfolioId") Long portfolioId,
+                                                                 @RequestParam(required = false) String format,
+                                                                 @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+      LotMatchFormat lotMatchFormat;
+      try {
+         lotMatchFormat = format != null
+               ? LotMatchFormat.valueOf(format.toUpperCase(Locale.ROOT))
+               : LotMatchFormat.fromAccepted(MediaType.parseMediaTypes(accept)).orElse(LotMatchFormat.CSV);
+      } catch (IllegalArgumentException e) {
+         return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+      }
+      StreamingResponseBody body = outputStream -> lotMatchReportService.writeLotMatches(portfolioId, lotMatchFormat, outputStream);
+      return ResponseEntity.ok().contentType(lotMatchFormat.getMediaType()).body(body);
+   }
+
+   /**
+    * List the stock splits and consolidations of a portfolio.
+    *
+    * @param portfolioId The portfolio to look up.
+    * @return ResponseEntity containing the splits, oldest first.
+    */
+   @GetMapping("/splits/portfolio/{portfolioId}")
+   public ResponseEntity<List<StockSplit>> getSplits(@PathVariable("portfolioId") Long portfolioId) {
+      return new ResponseEntity<>(stockSplitService.getSplits(portfolioId), HttpStatus.OK);
+   }
+
+   /**
+    * Record a stock split or consolidation of a portfolio: every oldShares held become newShares.
+    *
+    * @param portfolioId   The portfolio whose shares are split.
+    * @param newShares     Shares after the split.
+    * @param oldShares     Shares before the split.
+    * @param effectiveDate ISO instant from which the split applies.
+    * @return ResponseEntity containing the saved split, or HTTP status BAD_REQUEST for an invalid ratio.
+    */
+   @PostMapping("/splits/portfolio/{portfolioId}")
+   public ResponseEntity<StockSplit> addSplit(@PathVariable("portfolioId") Long portfolioId,
+                                              @RequestParam int newShares,
+                                              @RequestParam int oldShares,
+                                              @RequestParam Instant effectiveDate) {
+      try {
+         return new ResponseEntity<>(stockSplitService.addSplit(portfolioId, newShares, oldShares, effectiveDate), HttpStatus.CREATED);
+      } catch (IllegalArgumentException e) {
+         return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+      }
+   }
 }
@@ -0,0 +1,111 @@
+package com.danielpyld.lhv.controller;
+
+import com.danielpyld.lhv.dto.PositionSummaryDTO;
+import com.danielpyld.lhv.dto.TradingActivityDTO;
+import com.danielpyld.lhv.entity.DailyRealizedProfit;
+import com.danielpyld.lhv.entity.OpenLot;
+import com.danielpyld.lhv.entity.TradingActivity;
+import com.danielpyld.lhv.service.activity.TradingActivityService;
+import com.danielpyld.lhv.service.readmodel.ReadModelService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * REST controller serving the materialized position read model and trading activity rollups.
+ */
+@RestController
+@RequestMapping("/api/position")
+public class PositionController {
+
+    private final ReadModelService readModelService;
+    private final TradingActivityService tradingActivityService;
+
+    public PositionController(ReadModelService readModelService, TradingActivityService tradingActivityService) {
+        this.readModelService = readModelService;
+        this.tradingActivityService = tradingActivityService;
+    }
+
+    /**
+     * Retrieves the current position summary of a portfolio.
+     *
+     * @param portfolioId The portfolio to summarize.
+     * @return A ResponseEntity containing the position summary and HTTP status OK.
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<PositionSummaryDTO> getPositionSummary(@RequestParam Long portfolioId) {
+        return new ResponseEntity<>(readModelService.getPositionSummary(portfolioId), HttpStatus.OK);
+    }
+
+    /**
+     * Retrieves the open buy lots of a portfolio in FIFO order.
+     *
+     * @param portfolioId The portfolio to list.
+     * @return A ResponseEntity containing the open lots and HTTP status OK.
+     */
+    @GetMapping("/lots")
+    public ResponseEntity<List<OpenLot>> getOpenLots(@RequestParam Long portfolioId) {
+        return new ResponseEntity<>(readModelService.getOpenLots(portfolioId), HttpStatus.OK);
+    }
+
+    /**
+     * Retrieves the realized profit of a portfolio per trade date within a date range.
+     *
+     * @param portfolioId The portfolio to list.
+     * @param from        The first trade date (ISO-8601 format).
+     * @param to          The last trade date (ISO-8601 format).
+     * @return A ResponseEntity containing the daily realized profits and HTTP status OK.
+     */
+    @GetMapping("/realized")
+    public ResponseEntity<List<DailyRealizedProfit>> getDailyRealizedProfits(@RequestParam Long portfolioId,
+                                                                             @RequestParam String from, @RequestParam String to) {
+        List<DailyRealizedProfit> days = readModelService.getDailyRealizedProfits(portfolioId, LocalDate.parse(from), LocalDate.parse(to));
+        return new ResponseEntity<>(days, HttpStatus.OK);
+    }
+
+    /**
+     * Retrieves the trading activity of a portfolio per day, week or month: buy and sell volume, notional, VWAP,
+     * fees and trade count, read from rollups that are kept up to date on every write.
+     *
+     * @param portfolioId The portfolio to list.
+     * @param granularity The bucket length, day, week or month.
+     * @param from        A date in the first bucket (ISO-8601 format).
+     * @param to          A date in the last bucket (ISO-8601 format).
+     * @return A ResponseEntity containing the buckets per currency and HTTP status OK, or HTTP status BAD_REQUEST
+     * for an unknown granularity.
+     */
+    @GetMapping("/activity")
+    public ResponseEntity<List<TradingActivityDTO>> getTradingActivity(@RequestParam Long portfolioId,
+                                                                       @RequestParam(defaultValue = "day") String granularity,
+                                                                       @RequestParam String from, @RequestParam String to) {
+        TradingActivity.Granularity bucketGranularity;
+        try {
+            bucketGranularity = TradingActivity.Granularity.valueOf(granularity.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<TradingActivityDTO> buckets = tradingActivityService.getActivity(portfolioId, bucketGranularity,
+                LocalDate.parse(from), LocalDate.parse(to));
+        return new ResponseEntity<>(buckets, HttpStatus.OK);
+    }
+
+    /**
+     * Regenerates the read model tables from the transaction history.
+     *
+     * @param portfolioId The portfolio to rebuild, or all portfolios if omitted.
+     * @return A ResponseEntity with HTTP status NO_CONTENT once the rebuild has committed.
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<Void> rebuild(@RequestParam(required = false) Long portfolioId) {
+        if (portfolioId != null) {
+            readModelService.rebuild(portfolioId);
+        } else {
+            readModelService.rebuild();
+        }
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+}
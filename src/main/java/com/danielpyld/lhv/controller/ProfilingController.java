@@ -0,0 +1,78 @@
+package com.danielpyld.lhv.controller;
+
+import com.danielpyld.lhv.dto.RecordingDTO;
+import com.danielpyld.lhv.service.profiling.RecordingService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * REST controller for on-demand Java Flight Recorder recordings.
+ */
+@RestController
+@RequestMapping("/api/profiling")
+public class ProfilingController {
+
+    private final RecordingService recordingService;
+
+    public ProfilingController(RecordingService recordingService) {
+        this.recordingService = recordingService;
+    }
+
+    /**
+     * Starts a bounded recording.
+     *
+     * @param durationSeconds How long to record, capped by configuration.
+     * @param maxSizeMb       Maximum size of the recording in megabytes, capped by configuration.
+     * @return A ResponseEntity containing the recording and HTTP status CREATED, or HTTP status CONFLICT if a recording is already running.
+     */
+    @PostMapping("/recordings")
+    public ResponseEntity<RecordingDTO> startRecording(@RequestParam(defaultValue = "60") long durationSeconds,
+                                                       @RequestParam(defaultValue = "64") long maxSizeMb) {
+        try {
+            RecordingDTO recording = recordingService.startRecording(Duration.ofSeconds(durationSeconds), maxSizeMb * 1024 * 1024);
+            return new ResponseEntity<>(recording, HttpStatus.CREATED);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+    }
+
+    /**
+     * Retrieves the state of a recording.
+     *
+     * @param id The recording ID.
+     * @return A ResponseEntity containing the recording and HTTP status OK, or HTTP status NOT_FOUND if it does not exist.
+     */
+    @GetMapping("/recordings/{id}")
+    public ResponseEntity<RecordingDTO> getRecording(@PathVariable("id") long id) {
+        return recordingService.getRecording(id)
+                .map(recording -> new ResponseEntity<>(recording, HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * Downloads a finished recording as a .jfr file.
+     *
+     * @param id The recording ID.
+     * @return A ResponseEntity containing the file, or HTTP status NOT_FOUND if the recording does not exist or has not finished.
+     */
+    @GetMapping("/recordings/{id}/file")
+    public ResponseEntity<Resource> downloadRecording(@PathVariable("id") long id) {
+        Optional<Path> file = recordingService.getRecordingFile(id);
+        if (file.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.get().getFileName() + "\"")
+                .body(new FileSystemResource(file.get()));
+    }
+}
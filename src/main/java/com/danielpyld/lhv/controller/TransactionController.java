@@ -1,10 +1,13 @@
 package com.danielpyld.lhv.controller;
 
 import com.danielpyld.lhv.dto.TransactionDTO;
+import com.danielpyld.lhv.service.transaction.DatasetVersions;
 import com.danielpyld.lhv.service.transaction.TransactionServiceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -17,20 +20,40 @@ import java.util.List;
 public class TransactionController {
 
     private final TransactionServiceImpl transactionServiceImpl;
+    private final DatasetVersions datasetVersions;
 
-    public TransactionController(TransactionServiceImpl transactionServiceImpl) {
+    public TransactionController(TransactionServiceImpl transactionServiceImpl, DatasetVersions datasetVersions) {
         this.transactionServiceImpl = transactionServiceImpl;
+        this.datasetVersions = datasetVersions;
     }
 
     /**
-     * Retrieves all transactions in the portfolio.
+     * Retrieves all transactions, optionally restricted to one portfolio. The response is tagged with the dataset
+     * version, so a conditional request for unchanged data is answered without querying the transactions.
      *
-     * @return A ResponseEntity containing the list of all transactions and HTTP status OK.
+     * @param portfolioId The portfolio to list, or all portfolios if omitted.
+     * @param request     The request, checked for If-None-Match and If-Modified-Since.
+     * @return A ResponseEntity containing the list of all transactions and HTTP status OK, or null once the response
+     * has been completed as HTTP status NOT_MODIFIED.
      */
     @GetMapping("/transactions")
-    public ResponseEntity<List<TransactionDTO>> getAllTransactions() {
-        List<TransactionDTO> transactions = transactionServiceImpl.getAllTransactions();
-        return new ResponseEntity<>(transactions, HttpStatus.OK);
+    public ResponseEntity<List<TransactionDTO>> getAllTransactions(@RequestParam(required = false) Long portfolioId,
+                                                                   WebRequest request) {
+        DatasetVersions.Version version = portfolioId != null
+                ? datasetVersions.current(portfolioId)
+                : datasetVersions.current();
+        String eTag = EntityTags.of(version.tag(), request);
+        if (request.checkNotModified(eTag, version.lastModified().toEpochMilli())) {
+            return null;
+        }
+        List<TransactionDTO> transactions = portfolioId != null
+                ? transactionServiceImpl.getAllTransactions(portfolioId)
+                : transactionServiceImpl.getAllTransactions();
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .lastModified(version.lastModified())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(transactions);
     }
 
     /**
@@ -73,15 +96,19 @@ public class TransactionController {
     /**
      * Retrieves transactions within a specific date range.
      *
-     * @param start The start date (ISO-8601 format).
-     * @param end   The end date (ISO-8601 format).
+     * @param start       The start date (ISO-8601 format).
+     * @param end         The end date (ISO-8601 format).
+     * @param portfolioId The portfolio to search, or all portfolios if omitted.
      * @return A ResponseEntity containing the list of transactions within the date range and HTTP status OK.
      */
     @GetMapping("/transactionsInDateRange")
-    public ResponseEntity<List<TransactionDTO>> getTransactionsInDateRange(@RequestParam String start, @RequestParam String end) {
+    public ResponseEntity<List<TransactionDTO>> getTransactionsInDateRange(@RequestParam String start, @RequestParam String end,
+                                                                           @RequestParam(required = false) Long portfolioId) {
         LocalDateTime startDate = LocalDateTime.parse(start);
         LocalDateTime endDate = LocalDateTime.parse(end);
-        List<TransactionDTO> transactions = transactionServiceImpl.getTransactionsInDateRange(startDate, endDate);
+        List<TransactionDTO> transactions = portfolioId != null
+                ? transactionServiceImpl.getTransactionsInDateRange(portfolioId, startDate, endDate)
+                : transactionServiceImpl.getTransactionsInDateRange(startDate, endDate);
         return new ResponseEntity<>(transactions, HttpStatus.OK);
     }
 
@@ -0,0 +1,79 @@
+package com.danielpyld.lhv.dto;
+
+import java.time.LocalDate;
+
+public class BatchReportDTO {
+
+    private LocalDate valuationDate;
+    private Long resumedAfterPortfolioId;
+    private long portfolios;
+    private long failedPortfolios;
+    private long transactions;
+    private long elapsedMillis;
+    private double portfoliosPerSecond;
+    private boolean completed;
+
+    public LocalDate getValuationDate() {
+        return valuationDate;
+    }
+
+    public void setValuationDate(LocalDate valuationDate) {
+        this.valuationDate = valuationDate;
+    }
+
+    public Long getResumedAfterPortfolioId() {
+        return resumedAfterPortfolioId;
+    }
+
+    public void setResumedAfterPortfolioId(Long resumedAfterPortfolioId) {
+        this.resumedAfterPortfolioId = resumedAfterPortfolioId;
+    }
+
+    public long getPortfolios() {
+        return portfolios;
+    }
+
+    public void setPortfolios(long portfolios) {
+        this.portfolios = portfolios;
+    }
+
+    public long getFailedPortfolios() {
+        return failedPortfolios;
+    }
+
+    public void setFailedPortfolios(long failedPortfolios) {
+        this.failedPortfolios = failedPortfolios;
+    }
+
+    public long getTransactions() {
+        return transactions;
+    }
+
+    public void setTransactions(long transactions) {
+        this.transactions = transactions;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getPortfoliosPerSecond() {
+        return portfoliosPerSecond;
+    }
+
+    public void setPortfoliosPerSecond(double portfoliosPerSecond) {
+        this.portfoliosPerSecond = portfoliosPerSecond;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+}
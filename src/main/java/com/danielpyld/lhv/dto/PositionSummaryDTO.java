@@ -0,0 +1,80 @@
+package com.danielpyld.lhv.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public class PositionSummaryDTO {
+
+    private Long portfolioId;
+    private int quantity;
+    private BigDecimal costBasis;
+    private BigDecimal lastPrice;
+    private BigDecimal marketValue;
+    private BigDecimal realizedProfit;
+    private BigDecimal unrealizedGains;
+    private Instant lastTransactionAt;
+
+    public Long getPortfolioId() {
+        return portfolioId;
+    }
+
+    public void setPortfolioId(Long portfolioId) {
+        this.portfolioId = portfolioId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public BigDecimal getCostBasis() {
+        return costBasis;
+    }
+
+    public void setCostBasis(BigDecimal costBasis) {
+        this.costBasis = costBasis;
+    }
+
+    public BigDecimal getLastPrice() {
+        return lastPrice;
+    }
+
+    public void setLastPrice(BigDecimal lastPrice) {
+        this.lastPrice = lastPrice;
+    }
+
+    public BigDecimal getMarketValue() {
+        return marketValue;
+    }
+
+    public void setMarketValue(BigDecimal marketValue) {
+        this.marketValue = marketValue;
+    }
+
+    public BigDecimal getRealizedProfit() {
+        return realizedProfit;
+    }
+
+    public void setRealizedProfit(BigDecimal realizedProfit) {
+        this.realizedProfit = realizedProfit;
+    }
+
+    public BigDecimal getUnrealizedGains() {
+        return unrealizedGains;
+    }
+
+    public void setUnrealizedGains(BigDecimal unrealizedGains) {
+        this.unrealizedGains = unrealizedGains;
+    }
+
+    public Instant getLastTransactionAt() {
+        return lastTransactionAt;
+    }
+
+    public void setLastTransactionAt(Instant lastTransactionAt) {
+        this.lastTransactionAt = lastTransactionAt;
+    }
+}
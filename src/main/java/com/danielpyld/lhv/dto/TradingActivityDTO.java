@@ -0,0 +1,136 @@
+package com.danielpyld.lhv.dto;
+
+import com.danielpyld.lhv.entity.TradingActivity;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public class TradingActivityDTO {
+
+    private Long portfolioId;
+    private TradingActivity.Granularity granularity;
+    private LocalDate bucketStart;
+    private String currency;
+    private int tradeCount;
+    private int buyCount;
+    private int sellCount;
+    private long buyQuantity;
+    private long sellQuantity;
+    private BigDecimal buyNotional;
+    private BigDecimal sellNotional;
+    private BigDecimal fees;
+    private BigDecimal buyVwap;
+    private BigDecimal sellVwap;
+
+    public Long getPortfolioId() {
+        return portfolioId;
+    }
+
+    public void setPortfolioId(Long portfolioId) {
+        this.portfolioId = portfolioId;
+    }
+
+    public TradingActivity.Granularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(TradingActivity.Granularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public LocalDate getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDate bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public int getTradeCount() {
+        return tradeCount;
+    }
+
+    public void setTradeCount(int tradeCount) {
+        this.tradeCount = tradeCount;
+    }
+
+    public int getBuyCount() {
+        return buyCount;
+    }
+
+    public void setBuyCount(int buyCount) {
+        this.buyCount = buyCount;
+    }
+
+    public int getSellCount() {
+        return sellCount;
+    }
+
+    public void setSellCount(int sellCount) {
+        this.sellCount = sellCount;
+    }
+
+    public long getBuyQuantity() {
+        return buyQuantity;
+    }
+
+    public void setBuyQuantity(long buyQuantity) {
+        this.buyQuantity = buyQuantity;
+    }
+
+    public long getSellQuantity() {
+        return sellQuantity;
+    }
+
+    public void setSellQuantity(long sellQuantity) {
+        this.sellQuantity = sellQuantity;
+    }
+
+    public BigDecimal getBuyNotional() {
+        return buyNotional;
+    }
+
+    public void setBuyNotional(BigDecimal buyNotional) {
+        this.buyNotional = buyNotional;
+    }
+
+    public BigDecimal getSellNotional() {
+        return sellNotional;
+    }
+
+    public void setSellNotional(BigDecimal sellNotional) {
+        this.sellNotional = sellNotional;
+    }
+
+    public BigDecimal getFees() {
+        return fees;
+    }
+
+    public void setFees(BigDecimal fees) {
+        this.fees = fees;
+    }
+
+    public BigDecimal getBuyVwap() {
+        return buyVwap;
+    }
+
+    public void setBuyVwap(BigDecimal buyVwap) {
+        this.buyVwap = buyVwap;
+    }
+
+    public BigDecimal getSellVwap() {
+        return sellVwap;
+    }
+
+    public void setSellVwap(BigDecimal sellVwap) {
+        this.sellVwap = sellVwap;
+    }
+}
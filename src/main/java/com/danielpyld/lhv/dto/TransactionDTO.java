@@ -3,16 +3,38 @@ package com.danielpyld.lhv.dto;
 import com.danielpyld.lhv.entity.Type;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 public class TransactionDTO {
 
   private Long id;
+  private Long portfolioId;
   private Type type;
   private int quantity;
   private BigDecimal price;
   private BigDecimal fee;
   private LocalDateTime timestamp;
+  private String currency;
+
+  public TransactionDTO() {
+  }
+
+  /**
+   * Creates a DTO straight from the columns of a query row; the timestamp is shown in the system time zone.
+   */
+  public TransactionDTO(Long id, Long portfolioId, Type type, int quantity, BigDecimal price, BigDecimal fee,
+                        Instant timestamp, String currency) {
+    this.id = id;
+    this.portfolioId = portfolioId;
+    this.type = type;
+    this.quantity = quantity;
+    this.price = price;
+    this.fee = fee;
+    this.timestamp = timestamp.atZone(ZoneId.systemDefault()).toLocalDateTime();
+    this.currency = currency;
+  }
 
   public Long getId() {
     return id;
@@ -22,6 +44,14 @@ public class TransactionDTO {
     this.id = id;
   }
 
+  public Long getPortfolioId() {
+    return portfolioId;
+  }
+
+  public void setPortfolioId(Long portfolioId) {
+    this.portfolioId = portfolioId;
+  }
+
   public Type getType() {
     return type;
   }
@@ -61,4 +91,12 @@ public class TransactionDTO {
   public void setTimestamp(LocalDateTime timestamp) {
     this.timestamp = timestamp;
   }
+
+  public String getCurrency() {
+    return currency;
+  }
+
+  public void setCurrency(String currency) {
+    this.currency = currency;
+  }
 }
@@ -0,0 +1,93 @@
+package com.danielpyld.lhv.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Restart point of a batch job run: the last portfolio whose results have been committed.
+ */
+@Entity
+@Table(name = "batch_checkpoints")
+public class BatchCheckpoint {
+
+    @Id
+    private String jobKey;
+
+    private LocalDate runDate;
+
+    private Long lastPortfolioId;
+
+    private long processedPortfolios;
+
+    private long processedTransactions;
+
+    private boolean completed;
+
+    private Instant updatedAt;
+
+    public BatchCheckpoint() {
+    }
+
+    public BatchCheckpoint(String jobKey, LocalDate runDate) {
+        this.jobKey = jobKey;
+        this.runDate = runDate;
+    }
+
+    public String getJobKey() {
+        return jobKey;
+    }
+
+    public void setJobKey(String jobKey) {
+        this.jobKey = jobKey;
+    }
+
+    public LocalDate getRunDate() {
+        return runDate;
+    }
+
+    public void setRunDate(LocalDate runDate) {
+        this.runDate = runDate;
+    }
+
+    public Long getLastPortfolioId() {
+        return lastPortfolioId;
+    }
+
+    public void setLastPortfolioId(Long lastPortfolioId) {
+        this.lastPortfolioId = lastPortfolioId;
+    }
+
+    public long getProcessedPortfolios() {
+        return processedPortfolios;
+    }
+
+    public void setProcessedPortfolios(long processedPortfolios) {
+        this.processedPortfolios = processedPortfolios;
+    }
+
+    public long getProcessedTransactions() {
+        return processedTransactions;
+    }
+
+    public void setProcessedTransactions(long processedTransactions) {
+        this.processedTransactions = processedTransactions;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,90 @@
+package com.danielpyld.lhv.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Read-model row with the realized profit booked on a trade date and the running total up to that date.
+ */
+@Entity
+@Table(name = "daily_realized_profits", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_daily_realized_profits_portfolio_date", columnNames = {"portfolioId", "tradeDate"})
+})
+public class DailyRealizedProfit {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long portfolioId;
+
+    private LocalDate tradeDate;
+
+    @Column(precision = 38, scale = 8)
+    private BigDecimal realizedProfit;
+
+    @Column(precision = 38, scale = 8)
+    private BigDecimal cumulativeRealizedProfit;
+
+    private int sellCount;
+
+    public DailyRealizedProfit() {
+    }
+
+    public DailyRealizedProfit(Long portfolioId, LocalDate tradeDate) {
+        this.portfolioId = portfolioId;
+        this.tradeDate = tradeDate;
+        this.realizedProfit = BigDecimal.ZERO;
+        this.cumulativeRealizedProfit = BigDecimal.ZERO;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getPortfolioId() {
+        return portfolioId;
+    }
+
+    public void setPortfolioId(Long portfolioId) {
+        this.portfolioId = portfolioId;
+    }
+
+    public LocalDate getTradeDate() {
+        return tradeDate;
+    }
+
+    public void setTradeDate(LocalDate tradeDate) {
+        this.tradeDate = tradeDate;
+    }
+
+    public BigDecimal getRealizedProfit() {
+        return realizedProfit;
+    }
+
+    public void setRealizedProfit(BigDecimal realizedProfit) {
+        this.realizedProfit = realizedProfit;
+    }
+
+    public BigDecimal getCumulativeRealizedProfit() {
+        return cumulativeRealizedProfit;
+    }
+
+    public void setCumulativeRealizedProfit(BigDecimal cumulativeRealizedProfit) {
+        this.cumulativeRealizedProfit = cumulativeRealizedProfit;
+    }
+
+    public int getSellCount() {
+        return sellCount;
+    }
+
+    public void setSellCount(int sellCount) {
+        this.sellCount = sellCount;
+    }
+}
@@ -18,6 +18,10 @@ public class Dividend {
 
     private Instant paymentDate;
 
+    /** ISO code of the currency of the amount; null means the base currency. */
+    @Column(length = 3)
+    private String currency;
+
     public Dividend() {
     }
 
@@ -58,4 +62,12 @@ public class Dividend {
     public void setPaymentDate(Instant paymentDate) {
         this.paymentDate = paymentDate;
     }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
 }
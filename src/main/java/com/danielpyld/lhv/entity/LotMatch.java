@@ -0,0 +1,94 @@
+package com.danielpyld.lhv.entity;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * The part of a buy lot consumed by a sell, with the proportional fees of both sides and the realized gain.
+ * Prices and amounts are in the base currency.
+ */
+public class LotMatch {
+
+    private final Long portfolioId;
+    private final Long sellTransactionId;
+    private final Long buyTransactionId;
+    private final Instant acquiredAt;
+    private final Instant disposedAt;
+    private final int quantity;
+    private final BigDecimal buyPrice;
+    private final BigDecimal sellPrice;
+    private final BigDecimal buyFee;
+    private final BigDecimal sellFee;
+    private final BigDecimal costBasis;
+    private final BigDecimal proceeds;
+    private final BigDecimal realizedGain;
+
+    public LotMatch(Transaction buy, Transaction sell, int quantity, BigDecimal buyPrice, BigDecimal sellPrice,
+                    BigDecimal buyFee, BigDecimal sellFee, BigDecimal costBasis, BigDecimal proceeds) {
+        this.portfolioId = sell.getPortfolioId();
+        this.sellTransactionId = sell.getId();
+        this.buyTransactionId = buy.getId();
+        this.acquiredAt = buy.getTimestamp();
+        this.disposedAt = sell.getTimestamp();
+        this.quantity = quantity;
+        this.buyPrice = buyPrice;
+        this.sellPrice = sellPrice;
+        this.buyFee = buyFee;
+        this.sellFee = sellFee;
+        this.costBasis = costBasis;
+        this.proceeds = proceeds;
+        this.realizedGain = proceeds.subtract(costBasis);
+    }
+
+    public Long getPortfolioId() {
+        return portfolioId;
+    }
+
+    public Long getSellTransactionId() {
+        return sellTransactionId;
+    }
+
+    public Long getBuyTransactionId() {
+        return buyTransactionId;
+    }
+
+    public Instant getAcquiredAt() {
+        return acquiredAt;
+    }
+
+    public Instant getDisposedAt() {
+        return disposedAt;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getBuyPrice() {
+        return buyPrice;
+    }
+
+    public BigDecimal getSellPrice() {
+        return sellPrice;
+    }
+
+    public BigDecimal getBuyFee() {
+        return buyFee;
+    }
+
+    public BigDecimal getSellFee() {
+        return sellFee;
+    }
+
+    public BigDecimal getCostBasis() {
+        return costBasis;
+    }
+
+    public BigDecimal getProceeds() {
+        return proceeds;
+    }
+
+    public BigDecimal getRealizedGain() {
+        return realizedGain;
+    }
+}
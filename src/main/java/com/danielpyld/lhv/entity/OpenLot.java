@@ -0,0 +1,102 @@
+package com.danielpyld.lhv.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Read-model row for a buy lot that has not been fully consumed by sells yet.
+ */
+@Entity
+@Table(name = "open_lots", indexes = {
+        @Index(name = "idx_open_lots_portfolio_opened_at", columnList = "portfolioId, openedAt, id")
+})
+public class OpenLot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long portfolioId;
+
+    private Long transactionId;
+
+    private Instant openedAt;
+
+    private int remainingQuantity;
+
+    @Column(precision = 38, scale = 8)
+    private BigDecimal price;
+
+    @Column(precision = 38, scale = 8)
+    private BigDecimal remainingFee;
+
+    public OpenLot() {
+    }
+
+    public OpenLot(Long portfolioId, Long transactionId, Instant openedAt, int remainingQuantity, BigDecimal price, BigDecimal remainingFee) {
+        this.portfolioId = portfolioId;
+        this.transactionId = transactionId;
+        this.openedAt = openedAt;
+        this.remainingQuantity = remainingQuantity;
+        this.price = price;
+        this.remainingFee = remainingFee;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getPortfolioId() {
+        return portfolioId;
+    }
+
+    public void setPortfolioId(Long portfolioId) {
+        this.portfolioId = portfolioId;
+    }
+
+    public Long getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(Long transactionId) {
+        this.transactionId = transactionId;
+    }
+
+    public Instant getOpenedAt() {
+        return openedAt;
+    }
+
+    public void setOpenedAt(Instant openedAt) {
+        this.openedAt = openedAt;
+    }
+
+    public int getRemainingQuantity() {
+        return remainingQuantity;
+    }
+
+    public void setRemainingQuantity(int remainingQuantity) {
+        this.remainingQuantity = remainingQuantity;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public BigDecimal getRemainingFee() {
+        return remainingFee;
+    }
+
+    public void setRemainingFee(BigDecimal remainingFee) {
+        this.remainingFee = remainingFee;
+    }
+}
@@ -0,0 +1,88 @@
+package com.danielpyld.lhv.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Read-model row holding the current position of a portfolio, maintained on every transaction write.
+ */
+@Entity
+@Table(name = "positions")
+public class Position {
+
+    @Id
+    private Long portfolioId;
+
+    private int quantity;
+
+    @Column(precision = 38, scale = 8)
+    private BigDecimal costBasis;
+
+    @Column(precision = 38, scale = 8)
+    private BigDecimal realizedProfit;
+
+    @Column(precision = 38, scale = 8)
+    private BigDecimal lastPrice;
+
+    private Instant lastTransactionAt;
+
+    public Position() {
+    }
+
+    public Position(Long portfolioId) {
+        this.portfolioId = portfolioId;
+        this.costBasis = BigDecimal.ZERO;
+        this.realizedProfit = BigDecimal.ZERO;
+        this.lastPrice = BigDecimal.ZERO;
+    }
+
+    public Long getPortfolioId() {
+        return portfolioId;
+    }
+
+    public void setPortfolioId(Long portfolioId) {
+        this.portfolioId = portfolioId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public BigDecimal getCostBasis() {
+        return costBasis;
+    }
+
+    public void setCostBasis(BigDecimal costBasis) {
+        this.costBasis = costBasis;
+    }
+
+    public BigDecimal getRealizedProfit() {
+        return realizedProfit;
+    }
+
+    public void setRealizedProfit(BigDecimal realizedProfit) {
+        this.realizedProfit = realizedProfit;
+    }
+
+    public BigDecimal getLastPrice() {
+        return lastPrice;
+    }
+
+    public void setLastPrice(BigDecimal lastPrice) {
+        this.lastPrice = lastPrice;
+    }
+
+    public Instant getLastTransactionAt() {
+        return lastTransactionAt;
+    }
+
+    public void setLastTransactionAt(Instant lastTransactionAt) {
+        this.lastTransactionAt = lastTransactionAt;
+    }
+}
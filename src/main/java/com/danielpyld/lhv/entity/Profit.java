@@ -8,6 +8,7 @@ public class Profit {
     private BigDecimal realizedStockProfit;
     private BigDecimal dividendProfit;
     private BigDecimal unrealizedGains;
+    private RiskMetrics riskMetrics;
 
     public Profit() {
     }
@@ -50,4 +51,12 @@ public class Profit {
     public void setUnrealizedGains(BigDecimal unrealizedGains) {
         this.unrealizedGains = unrealizedGains;
     }
+
+    public RiskMetrics getRiskMetrics() {
+        return riskMetrics;
+    }
+
+    public void setRiskMetrics(RiskMetrics riskMetrics) {
+        this.riskMetrics = riskMetrics;
+    }
 }
@@ -0,0 +1,63 @@
+package com.danielpyld.lhv.entity;
+
+import java.time.Instant;
+
+public class Returns {
+
+    private Double xirr;
+    private Double timeWeightedReturn;
+    private Double annualizedTimeWeightedReturn;
+    private Instant periodStart;
+    private Instant periodEnd;
+
+    public Returns() {
+    }
+
+    public Returns(Double xirr, Double timeWeightedReturn, Double annualizedTimeWeightedReturn, Instant periodStart, Instant periodEnd) {
+        this.xirr = xirr;
+        this.timeWeightedReturn = timeWeightedReturn;
+        this.annualizedTimeWeightedReturn = annualizedTimeWeightedReturn;
+        this.periodStart = periodStart;
+        this.periodEnd = periodEnd;
+    }
+
+    public Double getXirr() {
+        return xirr;
+    }
+
+    public void setXirr(Double xirr) {
+        this.xirr = xirr;
+    }
+
+    public Double getTimeWeightedReturn() {
+        return timeWeightedReturn;
+    }
+
+    public void setTimeWeightedReturn(Double timeWeightedReturn) {
+        this.timeWeightedReturn = timeWeightedReturn;
+    }
+
+    public Double getAnnualizedTimeWeightedReturn() {
+        return annualizedTimeWeightedReturn;
+    }
+
+    public void setAnnualizedTimeWeightedReturn(Double annualizedTimeWeightedReturn) {
+        this.annualizedTimeWeightedReturn = annualizedTimeWeightedReturn;
+    }
+
+    public Instant getPeriodStart() {
+        return periodStart;
+    }
+
+    public void setPeriodStart(Instant periodStart) {
+        this.periodStart = periodStart;
+    }
+
+    public Instant getPeriodEnd() {
+        return periodEnd;
+    }
+
+    public void setPeriodEnd(Instant periodEnd) {
+        this.periodEnd = periodEnd;
+    }
+}
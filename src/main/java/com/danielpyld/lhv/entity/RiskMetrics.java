@@ -0,0 +1,104 @@
+package com.danielpyld.lhv.entity;
+
+public class RiskMetrics {
+
+    private long observations;
+    private Double meanReturn;
+    private Double volatility;
+    private Double maxDrawdown;
+    private Double sharpeRatio;
+    private Double sortinoRatio;
+    private int rollingWindow;
+    private Double rollingVolatility;
+    private Double rollingSharpeRatio;
+    private Double rollingSortinoRatio;
+    private Double rollingMaxDrawdown;
+
+    public long getObservations() {
+        return observations;
+    }
+
+    public void setObservations(long observations) {
+        this.observations = observations;
+    }
+
+    public Double getMeanReturn() {
+        return meanReturn;
+    }
+
+    public void setMeanReturn(Double meanReturn) {
+        this.meanReturn = meanReturn;
+    }
+
+    public Double getVolatility() {
+        return volatility;
+    }
+
+    public void setVolatility(Double volatility) {
+        this.volatility = volatility;
+    }
+
+    public Double getMaxDrawdown() {
+        return maxDrawdown;
+    }
+
+    public void setMaxDrawdown(Double maxDrawdown) {
+        this.maxDrawdown = maxDrawdown;
+    }
+
+    public Double getSharpeRatio() {
+        return sharpeRatio;
+    }
+
+    public void setSharpeRatio(Double sharpeRatio) {
+        this.sharpeRatio = sharpeRatio;
+    }
+
+    public Double getSortinoRatio() {
+        return sortinoRatio;
+    }
+
+    public void setSortinoRatio(Double sortinoRatio) {
+        this.sortinoRatio = sortinoRatio;
+    }
+
+    public int getRollingWindow() {
+        return rollingWindow;
+    }
+
+    public void setRollingWindow(int rollingWindow) {
+        this.rollingWindow = rollingWindow;
+    }
+
+    public Double getRollingVolatility() {
+        return rollingVolatility;
+    }
+
+    public void setRollingVolatility(Double rollingVolatility) {
+        this.rollingVolatility = rollingVolatility;
+    }
+
+    public Double getRollingSharpeRatio() {
+        return rollingSharpeRatio;
+    }
+
+    public void setRollingSharpeRatio(Double rollingSharpeRatio) {
+        this.rollingSharpeRatio = rollingSharpeRatio;
+    }
+
+    public Double getRollingSortinoRatio() {
+        return rollingSortinoRatio;
+    }
+
+    public void setRollingSortinoRatio(Double rollingSortinoRatio) {
+        this.rollingSortinoRatio = rollingSortinoRatio;
+    }
+
+    public Double getRollingMaxDrawdown() {
+        return rollingMaxDrawdown;
+    }
+
+    public void setRollingMaxDrawdown(Double rollingMaxDrawdown) {
+        this.rollingMaxDrawdown = rollingMaxDrawdown;
+    }
+}
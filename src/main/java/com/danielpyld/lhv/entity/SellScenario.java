@@ -0,0 +1,46 @@
+package com.danielpyld.lhv.entity;
+
+import java.math.BigDecimal;
+
+/**
+ * A hypothetical sell of a quantity at a price, with an optional fee, in the base currency.
+ */
+public class SellScenario {
+
+    private int quantity;
+    private BigDecimal price;
+    private BigDecimal fee;
+
+    public SellScenario() {
+    }
+
+    public SellScenario(int quantity, BigDecimal price, BigDecimal fee) {
+        this.quantity = quantity;
+        this.price = price;
+        this.fee = fee;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public BigDecimal getFee() {
+        return fee;
+    }
+
+    public void setFee(BigDecimal fee) {
+        this.fee = fee;
+    }
+}
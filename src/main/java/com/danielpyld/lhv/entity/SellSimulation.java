@@ -0,0 +1,87 @@
+package com.danielpyld.lhv.entity;
+
+import java.math.BigDecimal;
+
+/**
+ * Outcome of a hypothetical sell against the current open lots. Only as much as the lots hold is sold; the realized
+ * profit is that of the sell alone, the total adds the profit realized so far.
+ */
+public class SellSimulation {
+
+    private int quantity;
+    private BigDecimal price;
+    private int quantitySold;
+    private BigDecimal realizedProfit;
+    private BigDecimal totalRealizedProfit;
+    private int remainingQuantity;
+    private BigDecimal remainingCostBasis;
+
+    public SellSimulation() {
+    }
+
+    public SellSimulation(int quantity, BigDecimal price, int quantitySold, BigDecimal realizedProfit, BigDecimal totalRealizedProfit, int remainingQuantity, BigDecimal remainingCostBasis) {
+        this.quantity = quantity;
+        this.price = price;
+        this.quantitySold = quantitySold;
+        this.realizedProfit = realizedProfit;
+        this.totalRealizedProfit = totalRealizedProfit;
+        this.remainingQuantity = remainingQuantity;
+        this.remainingCostBasis = remainingCostBasis;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public int getQuantitySold() {
+        return quantitySold;
+    }
+
+    public void setQuantitySold(int quantitySold) {
+        this.quantitySold = quantitySold;
+    }
+
+    public BigDecimal getRealizedProfit() {
+        return realizedProfit;
+    }
+
+    public void setRealizedProfit(BigDecimal realizedProfit) {
+        this.realizedProfit = realizedProfit;
+    }
+
+    public BigDecimal getTotalRealizedProfit() {
+        return totalRealizedProfit;
+    }
+
+    public void setTotalRealizedProfit(BigDecimal totalRealizedProfit) {
+        this.totalRealizedProfit = totalRealizedProfit;
+    }
+
+    public int getRemainingQuantity() {
+        return remainingQuantity;
+    }
+
+    public void setRemainingQuantity(int remainingQuantity) {
+        this.remainingQuantity = remainingQuantity;
+    }
+
+    public BigDecimal getRemainingCostBasis() {
+        return remainingCostBasis;
+    }
+
+    public void setRemainingCostBasis(BigDecimal remainingCostBasis) {
+        this.remainingCostBasis = remainingCostBasis;
+    }
+}
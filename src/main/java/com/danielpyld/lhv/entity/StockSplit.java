@@ -0,0 +1,77 @@
+package com.danielpyld.lhv.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * A split of the shares of a portfolio's stock: every {@code oldShares} held before the effective date become
+ * {@code newShares}. A consolidation (reverse split) has fewer new than old shares.
+ */
+@Entity
+@Table(name = "stock_splits", indexes = {
+        @Index(name = "idx_stock_splits_portfolio_effective_date", columnList = "portfolioId, effectiveDate")
+})
+public class StockSplit {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long portfolioId;
+
+    private int newShares;
+
+    private int oldShares;
+
+    private Instant effectiveDate;
+
+    public StockSplit() {
+    }
+
+    public StockSplit(Long portfolioId, int newShares, int oldShares, Instant effectiveDate) {
+        this.portfolioId = portfolioId;
+        this.newShares = newShares;
+        this.oldShares = oldShares;
+        this.effectiveDate = effectiveDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getPortfolioId() {
+        return portfolioId;
+    }
+
+    public void setPortfolioId(Long portfolioId) {
+        this.portfolioId = portfolioId;
+    }
+
+    public int getNewShares() {
+        return newShares;
+    }
+
+    public void setNewShares(int newShares) {
+        this.newShares = newShares;
+    }
+
+    public int getOldShares() {
+        return oldShares;
+    }
+
+    public void setOldShares(int oldShares) {
+        this.oldShares = oldShares;
+    }
+
+    public Instant getEffectiveDate() {
+        return effectiveDate;
+    }
+
+    public void setEffectiveDate(Instant effectiveDate) {
+        this.effectiveDate = effectiveDate;
+    }
+}
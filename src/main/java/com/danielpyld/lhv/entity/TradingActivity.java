@@ -0,0 +1,156 @@
+package com.danielpyld.lhv.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Rollup row with the trading activity of a portfolio in one currency during a day, week or month. Maintained
+ * incrementally by the trading activity service; an empty currency stands for the base currency.
+ */
+@Entity
+@Table(name = "trading_activity", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_trading_activity_bucket", columnNames = {"portfolioId", "granularity", "bucketStart", "currency"})
+})
+public class TradingActivity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long portfolioId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 5)
+    private Granularity granularity;
+
+    @Column(nullable = false)
+    private LocalDate bucketStart;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    private int buyCount;
+
+    private int sellCount;
+
+    private long buyQuantity;
+
+    private long sellQuantity;
+
+    @Column(nullable = false)
+    private BigDecimal buyNotional;
+
+    @Column(nullable = false)
+    private BigDecimal sellNotional;
+
+    @Column(nullable = false)
+    private BigDecimal fees;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getPortfolioId() {
+        return portfolioId;
+    }
+
+    public void setPortfolioId(Long portfolioId) {
+        this.portfolioId = portfolioId;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(Granularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public LocalDate getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDate bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public int getBuyCount() {
+        return buyCount;
+    }
+
+    public void setBuyCount(int buyCount) {
+        this.buyCount = buyCount;
+    }
+
+    public int getSellCount() {
+        return sellCount;
+    }
+
+    public void setSellCount(int sellCount) {
+        this.sellCount = sellCount;
+    }
+
+    public long getBuyQuantity() {
+        return buyQuantity;
+    }
+
+    public void setBuyQuantity(long buyQuantity) {
+        this.buyQuantity = buyQuantity;
+    }
+
+    public long getSellQuantity() {
+        return sellQuantity;
+    }
+
+    public void setSellQuantity(long sellQuantity) {
+        this.sellQuantity = sellQuantity;
+    }
+
+    public BigDecimal getBuyNotional() {
+        return buyNotional;
+    }
+
+    public void setBuyNotional(BigDecimal buyNotional) {
+        this.buyNotional = buyNotional;
+    }
+
+    public BigDecimal getSellNotional() {
+        return sellNotional;
+    }
+
+    public void setSellNotional(BigDecimal sellNotional) {
+        this.sellNotional = sellNotional;
+    }
+
+    public BigDecimal getFees() {
+        return fees;
+    }
+
+    public void setFees(BigDecimal fees) {
+        this.fees = fees;
+    }
+
+    /**
+     * Length of a rollup bucket. Buckets start at UTC midnight; weeks start on Monday.
+     */
+    public enum Granularity {
+        DAY,
+        WEEK,
+        MONTH
+    }
+}
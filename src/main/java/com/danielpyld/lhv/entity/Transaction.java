@@ -1,18 +1,31 @@
 package com.danielpyld.lhv.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 
 @Entity
-@Table(name = "transactions")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Transaction.CACHE_REGION)
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_portfolio_timestamp", columnList = "portfolioId, timestamp")
+})
 public class Transaction {
 
+  public static final long DEFAULT_PORTFOLIO_ID = 1L;
+
+  /** Second-level cache region of the entity. */
+  public static final String CACHE_REGION = "transactions";
+
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id;
 
+  private Long portfolioId;
+
   @Enumerated(EnumType.STRING)
   private Type type;
 
@@ -24,6 +37,10 @@ public class Transaction {
 
   private Instant timestamp;
 
+  /** ISO code of the currency of the price and fee; null means the base currency. */
+  @Column(length = 3)
+  private String currency;
+
   public Transaction() {
   }
 
@@ -35,6 +52,11 @@ public class Transaction {
     this.timestamp = timestamp;
   }
 
+  public Transaction(Long portfolioId, Type type, int quantity, BigDecimal price, BigDecimal fee, Instant timestamp) {
+    this(type, quantity, price, fee, timestamp);
+    this.portfolioId = portfolioId;
+  }
+
   public Long getId() {
     return id;
   }
@@ -43,6 +65,14 @@ public class Transaction {
     this.id = id;
   }
 
+  public Long getPortfolioId() {
+    return portfolioId;
+  }
+
+  public void setPortfolioId(Long portfolioId) {
+    this.portfolioId = portfolioId;
+  }
+
   public Type getType() {
     return type;
   }
@@ -82,4 +112,12 @@ public class Transaction {
   public void setTimestamp(Instant timestamp) {
     this.timestamp = timestamp;
   }
+
+  public String getCurrency() {
+    return currency;
+  }
+
+  public void setCurrency(String currency) {
+    this.currency = currency;
+  }
 }
@@ -0,0 +1,134 @@
+package com.danielpyld.lhv.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * End-of-day profit of a portfolio. Rows are written in JDBC batches by the valuation job.
+ */
+@Entity
+@Table(name = "valuation_results", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_valuation_results_portfolio_date", columnNames = {"portfolioId", "valuationDate"})
+})
+public class ValuationResult {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long portfolioId;
+
+    private LocalDate valuationDate;
+
+    private BigDecimal totalProfit;
+
+    private BigDecimal realizedStockProfit;
+
+    private BigDecimal dividendProfit;
+
+    private BigDecimal unrealizedGains;
+
+    private Double xirr;
+
+    private Double timeWeightedReturn;
+
+    private Instant calculatedAt;
+
+    public ValuationResult() {
+    }
+
+    public ValuationResult(Long portfolioId, LocalDate valuationDate, Profit profit, Returns returns, Instant calculatedAt) {
+        this.portfolioId = portfolioId;
+        this.valuationDate = valuationDate;
+        this.totalProfit = profit.getTotalProfit();
+        this.realizedStockProfit = profit.getRealizedStockProfit();
+        this.dividendProfit = profit.getDividendProfit();
+        this.unrealizedGains = profit.getUnrealizedGains();
+        this.xirr = returns.getXirr();
+        this.timeWeightedReturn = returns.getTimeWeightedReturn();
+        this.calculatedAt = calculatedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getPortfolioId() {
+        return portfolioId;
+    }
+
+    public void setPortfolioId(Long portfolioId) {
+        this.portfolioId = portfolioId;
+    }
+
+    public LocalDate getValuationDate() {
+        return valuationDate;
+    }
+
+    public void setValuationDate(LocalDate valuationDate) {
+        this.valuationDate = valuationDate;
+    }
+
+    public BigDecimal getTotalProfit() {
+        return totalProfit;
+    }
+
+    public void setTotalProfit(BigDecimal totalProfit) {
+        this.totalProfit = totalProfit;
+    }
+
+    public BigDecimal getRealizedStockProfit() {
+        return realizedStockProfit;
+    }
+
+    public void setRealizedStockProfit(BigDecimal realizedStockProfit) {
+        this.realizedStockProfit = realizedStockProfit;
+    }
+
+    public BigDecimal getDividendProfit() {
+        return dividendProfit;
+    }
+
+    public void setDividendProfit(BigDecimal dividendProfit) {
+        this.dividendProfit = dividendProfit;
+    }
+
+    public BigDecimal getUnrealizedGains() {
+        return unrealizedGains;
+    }
+
+    public void setUnrealizedGains(BigDecimal unrealizedGains) {
+        this.unrealizedGains = unrealizedGains;
+    }
+
+    public Double getXirr() {
+        return xirr;
+    }
+
+    public void setXirr(Double xirr) {
+        this.xirr = xirr;
+    }
+
+    public Double getTimeWeightedReturn() {
+        return timeWeightedReturn;
+    }
+
+    public void setTimeWeightedReturn(Double timeWeightedReturn) {
+        this.timeWeightedReturn = timeWeightedReturn;
+    }
+
+    public Instant getCalculatedAt() {
+        return calculatedAt;
+    }
+
+    public void setCalculatedAt(Instant calculatedAt) {
+        this.calculatedAt = calculatedAt;
+    }
+}
@@ -0,0 +1,28 @@
+package com.danielpyld.lhv.repository;
+
+import com.danielpyld.lhv.entity.DailyRealizedProfit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DailyRealizedProfitRepository extends JpaRepository<DailyRealizedProfit, Long> {
+
+    Optional<DailyRealizedProfit> findByPortfolioIdAndTradeDate(Long portfolioId, LocalDate tradeDate);
+
+    List<DailyRealizedProfit> findByPortfolioIdAndTradeDateBetweenOrderByTradeDateAsc(Long portfolioId, LocalDate from, LocalDate to);
+
+    @Modifying
+    @Query("delete from DailyRealizedProfit d where d.portfolioId = :portfolioId")
+    void deleteByPortfolioIdInBatch(@Param("portfolioId") Long portfolioId);
+
+    @Modifying
+    @Query("delete from DailyRealizedProfit d where d.portfolioId = :portfolioId and d.tradeDate >= :from")
+    void deleteByPortfolioIdFromInBatch(@Param("portfolioId") Long portfolioId, @Param("from") LocalDate from);
+}
@@ -0,0 +1,20 @@
+package com.danielpyld.lhv.repository;
+
+import com.danielpyld.lhv.entity.OpenLot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OpenLotRepository extends JpaRepository<OpenLot, Long> {
+
+    List<OpenLot> findByPortfolioIdOrderByOpenedAtAscIdAsc(Long portfolioId);
+
+    @Modifying
+    @Query("delete from OpenLot l where l.portfolioId = :portfolioId")
+    void deleteByPortfolioIdInBatch(@Param("portfolioId") Long portfolioId);
+}
@@ -0,0 +1,35 @@
+package com.danielpyld.lhv.repository;
+
+import com.danielpyld.lhv.entity.Position;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface PositionRepository extends JpaRepository<Position, Long> {
+
+    /**
+     * Creates an empty position row unless one already exists, so that there is always a row to lock.
+     */
+    @Modifying
+    @Query(value = """
+            insert into positions (portfolio_id, quantity, cost_basis, realized_profit, last_price)
+            values (:portfolioId, 0, 0, 0, 0)
+            on conflict do nothing
+            """, nativeQuery = true)
+    void insertIfAbsent(@Param("portfolioId") Long portfolioId);
+
+    /**
+     * Loads the position with a row lock held until the end of the transaction, serializing read model writes
+     * of one portfolio.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Position p where p.portfolioId = :portfolioId")
+    Optional<Position> findForUpdate(@Param("portfolioId") Long portfolioId);
+}
@@ -0,0 +1,20 @@
+package com.danielpyld.lhv.repository;
+
+import com.danielpyld.lhv.entity.StockSplit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface StockSplitRepository extends JpaRepository<StockSplit, Long> {
+
+    List<StockSplit> findByPortfolioIdOrderByEffectiveDateAscIdAsc(Long portfolioId);
+
+    List<StockSplit> findByEffectiveDateBeforeOrderByPortfolioIdAscEffectiveDateAscIdAsc(Instant before);
+
+    List<StockSplit> findAllByOrderByPortfolioIdAscEffectiveDateAscIdAsc();
+
+    boolean existsByPortfolioIdAndEffectiveDateAfter(Long portfolioId, Instant after);
+}
@@ -0,0 +1,15 @@
+package com.danielpyld.lhv.repository;
+
+import com.danielpyld.lhv.entity.TradingActivity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface TradingActivityRepository extends JpaRepository<TradingActivity, Long> {
+
+    List<TradingActivity> findByPortfolioIdAndGranularityAndBucketStartBetweenOrderByBucketStartAscCurrencyAsc(
+            Long portfolioId, TradingActivity.Granularity granularity, LocalDate from, LocalDate to);
+}
@@ -1,12 +1,89 @@
 package com.danielpyld.lhv.repository;
 
+import com.danielpyld.lhv.dto.TransactionDTO;
 import com.danielpyld.lhv.entity.Transaction;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-}
 
+    /** Builds DTOs straight from the selected columns, so reads skip entity hydration and the persistence context. */
+    String SELECT_DTO = "select new com.danielpyld.lhv.dto.TransactionDTO(t.id, t.portfolioId, t.type, t.quantity, " +
+            "t.price, t.fee, t.timestamp, t.currency) from Transaction t ";
+
+    /**
+     * Query cache region of the DTO reads. Hibernate drops their results whenever the transactions table is
+     * written, so cached listings are never stale.
+     */
+    String QUERY_CACHE_REGION = "transaction-queries";
+
+    /** Hint for full-history scans, which would only evict hot rows from the entity cache. */
+    String BYPASS_CACHE = "IGNORE";
+
+    /** Loads the history of a calculation; read-only so it is served by the replica unless a writer calls it. */
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = BYPASS_CACHE))
+    List<Transaction> findByPortfolioIdOrderByTimestampAscIdAsc(Long portfolioId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = BYPASS_CACHE))
+    Stream<Transaction> streamByPortfolioIdOrderByTimestampAscIdAsc(Long portfolioId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = BYPASS_CACHE))
+    Stream<Transaction> streamAllByOrderByPortfolioIdAscTimestampAscIdAsc();
 
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = BYPASS_CACHE)})
+    @Query("select t from Transaction t where t.portfolioId > :afterPortfolioId and t.timestamp < :cutoff " +
+            "order by t.portfolioId, t.timestamp, t.id")
+    Stream<Transaction> streamForValuation(@Param("afterPortfolioId") Long afterPortfolioId, @Param("cutoff") Instant cutoff);
 
+    @Query("select distinct t.portfolioId from Transaction t where t.portfolioId is not null order by t.portfolioId")
+    List<Long> findPortfolioIds();
+
+    /**
+     * Not query-cacheable: the result of a full scan holds every transaction of every portfolio, and any write
+     * invalidates it anyway, so caching it would only pin the whole table in the heap.
+     */
+    @Query(SELECT_DTO)
+    List<TransactionDTO> findAllDTOs();
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION)})
+    @Query(SELECT_DTO + "where t.id = :id")
+    Optional<TransactionDTO> findDTOById(@Param("id") Long id);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION)})
+    @Query(SELECT_DTO + "where t.portfolioId = :portfolioId order by t.timestamp, t.id")
+    List<TransactionDTO> findDTOsByPortfolioId(@Param("portfolioId") Long portfolioId);
+
+    /*
+     * The transactions table is partitioned by month of its timestamp. Window queries compare the bare column with
+     * bound parameters, so Postgres prunes the partitions outside the window at execution time; wrapping the column
+     * in a function or cast would make them scan every month.
+     */
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION)})
+    @Query(SELECT_DTO + "where t.timestamp > :start and t.timestamp < :end order by t.timestamp, t.id")
+    List<TransactionDTO> findDTOsInRange(@Param("start") Instant start, @Param("end") Instant end);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION)})
+    @Query(SELECT_DTO + "where t.portfolioId = :portfolioId and t.timestamp > :start and t.timestamp < :end " +
+            "order by t.timestamp, t.id")
+    List<TransactionDTO> findDTOsInRange(@Param("portfolioId") Long portfolioId, @Param("start") Instant start,
+                                         @Param("end") Instant end);
+}
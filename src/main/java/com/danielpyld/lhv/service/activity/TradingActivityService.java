@@ -0,0 +1,19 @@
+package com.danielpyld.lhv.service.activity;
+
+import com.danielpyld.lhv.dto.TradingActivityDTO;
+import com.danielpyld.lhv.entity.TradingActivity;
+import com.danielpyld.lhv.entity.Transaction;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface TradingActivityService {
+
+    void onTransactionsAdded(List<Transaction> transactions);
+
+    void onTransactionUpdated(Transaction before, Transaction after);
+
+    void onTransactionDeleted(Transaction transaction);
+
+    List<TradingActivityDTO> getActivity(Long portfolioId, TradingActivity.Granularity granularity, LocalDate from, LocalDate to);
+}
@@ -0,0 +1,239 @@
+package com.danielpyld.lhv.service.activity;
+
+import com.danielpyld.lhv.dto.TradingActivityDTO;
+import com.danielpyld.lhv.entity.TradingActivity;
+import com.danielpyld.lhv.entity.TradingActivity.Granularity;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import com.danielpyld.lhv.repository.TradingActivityRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintains the daily, weekly and monthly trading activity rollups. Every figure is a sum, so a write only adds the
+ * difference it makes to the buckets of its transactions: an insert adds the transaction, a delete subtracts it and
+ * an update does both. Queries read one row per bucket and currency, however many transactions it holds.
+ */
+@Service
+public class TradingActivityServiceImpl implements TradingActivityService {
+
+    private static final String UPSERT_SQL = """
+            insert into trading_activity (portfolio_id, granularity, bucket_start, currency, buy_count, sell_count,
+                                          buy_quantity, sell_quantity, buy_notional, sell_notional, fees)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            on conflict (portfolio_id, granularity, bucket_start, currency) do update set
+                buy_count = trading_activity.buy_count + excluded.buy_count,
+                sell_count = trading_activity.sell_count + excluded.sell_count,
+                buy_quantity = trading_activity.buy_quantity + excluded.buy_quantity,
+                sell_quantity = trading_activity.sell_quantity + excluded.sell_quantity,
+                buy_notional = trading_activity.buy_notional + excluded.buy_notional,
+                sell_notional = trading_activity.sell_notional + excluded.sell_notional,
+                fees = trading_activity.fees + excluded.fees
+            """;
+    private static final String DELETE_EMPTY_SQL = """
+            delete from trading_activity
+            where portfolio_id = ? and granularity = ? and bucket_start = ? and currency = ?
+              and buy_count = 0 and sell_count = 0
+            """;
+    private static final String BASE_CURRENCY = "";
+    private static final Comparator<BucketKey> LOCK_ORDER = Comparator.comparing(BucketKey::portfolioId)
+            .thenComparing(BucketKey::granularity)
+            .thenComparing(BucketKey::bucketStart)
+            .thenComparing(BucketKey::currency);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TradingActivityRepository tradingActivityRepository;
+    private final boolean enabled;
+    private final int scale;
+
+    public TradingActivityServiceImpl(JdbcTemplate jdbcTemplate,
+                                      TradingActivityRepository tradingActivityRepository,
+                                      @Value("${transactions.rollups.enabled:true}") boolean enabled,
+                                      @Value("${scale}") int scale) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tradingActivityRepository = tradingActivityRepository;
+        this.enabled = enabled;
+        this.scale = scale;
+    }
+
+    /**
+     * Adds newly inserted transactions to their buckets. Must run inside the transaction that inserted the rows.
+     *
+     * @param transactions Saved transactions.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onTransactionsAdded(List<Transaction> transactions) {
+        Map<BucketKey, Delta> deltas = new TreeMap<>(LOCK_ORDER);
+        transactions.forEach(transaction -> accumulate(deltas, transaction, 1));
+        apply(deltas);
+    }
+
+    /**
+     * Moves an updated transaction from the buckets of its previous values to those of its new ones. Must run
+     * inside the transaction that updated the row.
+     *
+     * @param before The transaction as it was before the update.
+     * @param after  The updated transaction.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onTransactionUpdated(Transaction before, Transaction after) {
+        Map<BucketKey, Delta> deltas = new TreeMap<>(LOCK_ORDER);
+        accumulate(deltas, before, -1);
+        accumulate(deltas, after, 1);
+        apply(deltas);
+    }
+
+    /**
+     * Removes a deleted transaction from its buckets. Must run inside the transaction that deleted the row.
+     *
+     * @param transaction The deleted transaction.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onTransactionDeleted(Transaction transaction) {
+        Map<BucketKey, Delta> deltas = new TreeMap<>(LOCK_ORDER);
+        accumulate(deltas, transaction, -1);
+        apply(deltas);
+    }
+
+    /**
+     * Retrieves the trading activity of a portfolio per bucket and currency.
+     *
+     * @param portfolioId The portfolio to list.
+     * @param granularity The length of the buckets.
+     * @param from        A date in the first bucket.
+     * @param to          A date in the last bucket.
+     * @return The non-empty buckets in time order, with their VWAPs.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<TradingActivityDTO> getActivity(Long portfolioId, Granularity granularity, LocalDate from, LocalDate to) {
+        List<TradingActivityDTO> buckets = new ArrayList<>();
+        for (TradingActivity activity : tradingActivityRepository
+                .findByPortfolioIdAndGranularityAndBucketStartBetweenOrderByBucketStartAscCurrencyAsc(
+                        portfolioId, granularity, bucketStart(granularity, from), to)) {
+            buckets.add(convertToDTO(activity));
+        }
+        return buckets;
+    }
+
+    private void accumulate(Map<BucketKey, Delta> deltas, Transaction transaction, int sign) {
+        if (!enabled || transaction.getPortfolioId() == null || transaction.getType() == null
+                || transaction.getTimestamp() == null) {
+            return;
+        }
+        LocalDate date = LocalDate.ofInstant(transaction.getTimestamp(), ZoneOffset.UTC);
+        String currency = transaction.getCurrency() != null ? transaction.getCurrency() : BASE_CURRENCY;
+        // Rounded like the stored price and fee, so the sums equal those recomputed from the table.
+        BigDecimal price = transaction.getPrice() != null ? transaction.getPrice().setScale(2, RoundingMode.HALF_UP) : BigDecimal.ZERO;
+        BigDecimal fee = transaction.getFee() != null ? transaction.getFee().setScale(2, RoundingMode.HALF_UP) : BigDecimal.ZERO;
+        BigDecimal notional = price.multiply(BigDecimal.valueOf((long) sign * transaction.getQuantity()));
+        for (Granularity granularity : Granularity.values()) {
+            Delta delta = deltas.computeIfAbsent(
+                    new BucketKey(transaction.getPortfolioId(), granularity, bucketStart(granularity, date), currency),
+                    key -> new Delta());
+            if (transaction.getType() == Type.BUY) {
+                delta.buyCount += sign;
+                delta.buyQuantity += (long) sign * transaction.getQuantity();
+                delta.buyNotional = delta.buyNotional.add(notional);
+            } else {
+                delta.sellCount += sign;
+                delta.sellQuantity += (long) sign * transaction.getQuantity();
+                delta.sellNotional = delta.sellNotional.add(notional);
+            }
+            delta.fees = sign > 0 ? delta.fees.add(fee) : delta.fees.subtract(fee);
+        }
+    }
+
+    /**
+     * Adds the deltas to their rows in key order, so concurrent writes lock shared buckets in the same order and
+     * can't deadlock, then deletes the rows that no transaction is left in.
+     */
+    private void apply(Map<BucketKey, Delta> deltas) {
+        deltas.values().removeIf(Delta::isZero);
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> upserts = new ArrayList<>(deltas.size());
+        List<Object[]> emptied = new ArrayList<>();
+        deltas.forEach((key, delta) -> {
+            Object[] bucket = {key.portfolioId(), key.granularity().name(), Date.valueOf(key.bucketStart()), key.currency()};
+            upserts.add(new Object[]{bucket[0], bucket[1], bucket[2], bucket[3], delta.buyCount, delta.sellCount,
+                    delta.buyQuantity, delta.sellQuantity, delta.buyNotional, delta.sellNotional, delta.fees});
+            if (delta.buyCount < 0 || delta.sellCount < 0) {
+                emptied.add(bucket);
+            }
+        });
+        jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+        if (!emptied.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_EMPTY_SQL, emptied);
+        }
+    }
+
+    static LocalDate bucketStart(Granularity granularity, LocalDate date) {
+        return switch (granularity) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+
+    private TradingActivityDTO convertToDTO(TradingActivity activity) {
+        TradingActivityDTO dto = new TradingActivityDTO();
+        dto.setPortfolioId(activity.getPortfolioId());
+        dto.setGranularity(activity.getGranularity());
+        dto.setBucketStart(activity.getBucketStart());
+        dto.setCurrency(BASE_CURRENCY.equals(activity.getCurrency()) ? null : activity.getCurrency());
+        dto.setTradeCount(activity.getBuyCount() + activity.getSellCount());
+        dto.setBuyCount(activity.getBuyCount());
+        dto.setSellCount(activity.getSellCount());
+        dto.setBuyQuantity(activity.getBuyQuantity());
+        dto.setSellQuantity(activity.getSellQuantity());
+        dto.setBuyNotional(activity.getBuyNotional());
+        dto.setSellNotional(activity.getSellNotional());
+        dto.setFees(activity.getFees());
+        dto.setBuyVwap(vwap(activity.getBuyNotional(), activity.getBuyQuantity()));
+        dto.setSellVwap(vwap(activity.getSellNotional(), activity.getSellQuantity()));
+        return dto;
+    }
+
+    private BigDecimal vwap(BigDecimal notional, long quantity) {
+        return quantity != 0 ? notional.divide(BigDecimal.valueOf(quantity), scale, RoundingMode.HALF_UP) : null;
+    }
+
+    private record BucketKey(Long portfolioId, Granularity granularity, LocalDate bucketStart, String currency) {
+    }
+
+    private static final class Delta {
+        int buyCount;
+        int sellCount;
+        long buyQuantity;
+        long sellQuantity;
+        BigDecimal buyNotional = BigDecimal.ZERO;
+        BigDecimal sellNotional = BigDecimal.ZERO;
+        BigDecimal fees = BigDecimal.ZERO;
+
+        boolean isZero() {
+            return buyCount == 0 && sellCount == 0 && buyQuantity == 0 && sellQuantity == 0
+                    && buyNotional.signum() == 0 && sellNotional.signum() == 0 && fees.signum() == 0;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.danielpyld.lhv.service.analytics;
+
+import com.danielpyld.lhv.entity.RiskMetrics;
+
+/**
+ * Online risk statistics over a series of period returns. Each return is folded in as it arrives, so the full
+ * series is never materialized: mean and variance use Welford's algorithm, drawdown tracks the running peak of the
+ * wealth index and the downside deviation keeps a running sum of squared negative returns.
+ * The rolling window keeps only the last {@code rollingWindow} returns in a fixed-size ring buffer.
+ */
+public class RiskStatistics {
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double downsideSquares;
+
+    private double wealth = 1;
+    private double peak = 1;
+    private double maxDrawdown;
+
+    private final double[] window;
+    private int windowNext;
+    private int windowSize;
+    private double windowMean;
+    private double windowM2;
+    private double windowDownsideSquares;
+
+    /**
+     * @param rollingWindow Number of most recent returns used for the rolling statistics; 0 disables them.
+     */
+    public RiskStatistics(int rollingWindow) {
+        this.window = new double[Math.max(rollingWindow, 0)];
+    }
+
+    /**
+     * Folds the next period return into the statistics.
+     *
+     * @param periodReturn Simple return of the period, e.g. 0.01 for +1%.
+     */
+    public void addReturn(double periodReturn) {
+        if (Double.isNaN(periodReturn) || Double.isInfinite(periodReturn)) {
+            return;
+        }
+
+        count++;
+        double delta = periodReturn - mean;
+        mean += delta / count;
+        m2 += delta * (periodReturn - mean);
+        downsideSquares += downside(periodReturn);
+
+        wealth *= 1 + periodReturn;
+        if (wealth > peak) {
+            peak = wealth;
+        } else if (peak > 0) {
+            maxDrawdown = Math.max(maxDrawdown, 1 - wealth / peak);
+        }
+
+        if (window.length > 0) {
+            addToWindow(periodReturn);
+        }
+    }
+
+    /**
+     * Returns the statistics over all returns seen so far. Ratios are per period and use a zero risk-free rate.
+     *
+     * @return Risk metrics; values are null while they are undefined for the number of observations.
+     */
+    public RiskMetrics toMetrics() {
+        RiskMetrics metrics = new RiskMetrics();
+        metrics.setObservations(count);
+        metrics.setRollingWindow(window.length);
+        if (count == 0) {
+            return metrics;
+        }
+
+        Double volatility = count > 1 ? Math.sqrt(m2 / (count - 1)) : null;
+        metrics.setMeanReturn(mean);
+        metrics.setVolatility(volatility);
+        metrics.setMaxDrawdown(maxDrawdown);
+        metrics.setSharpeRatio(ratio(mean, volatility));
+        metrics.setSortinoRatio(ratio(mean, Math.sqrt(downsideSquares / count)));
+
+        if (window.length > 0 && windowSize == window.length) {
+            Double rollingVolatility = windowSize > 1 ? Math.sqrt(Math.max(windowM2, 0) / (windowSize - 1)) : null;
+            metrics.setRollingVolatility(rollingVolatility);
+            metrics.setRollingSharpeRatio(ratio(windowMean, rollingVolatility));
+            metrics.setRollingSortinoRatio(ratio(windowMean, Math.sqrt(Math.max(windowDownsideSquares, 0) / windowSize)));
+            metrics.setRollingMaxDrawdown(windowMaxDrawdown());
+        }
+        return metrics;
+    }
+
+    /**
+     * Adds a return to the ring buffer. Once the window is full the oldest return is replaced and the window mean
+     * and sum of squared deviations are updated in place instead of being recomputed.
+     */
+    private void addToWindow(double periodReturn) {
+        if (windowSize < window.length) {
+            windowSize++;
+            double delta = periodReturn - windowMean;
+            windowMean += delta / windowSize;
+            windowM2 += delta * (periodReturn - windowMean);
+        } else {
+            double oldest = window[windowNext];
+            double previousMean = windowMean;
+            windowMean += (periodReturn - oldest) / windowSize;
+            windowM2 += (periodReturn - oldest) * (periodReturn - windowMean + oldest - previousMean);
+            windowDownsideSquares -= downside(oldest);
+        }
+        windowDownsideSquares += downside(periodReturn);
+        window[windowNext] = periodReturn;
+        windowNext = (windowNext + 1) % window.length;
+    }
+
+    /**
+     * Calculates the maximum drawdown inside the current window, walking the ring buffer from its oldest entry.
+     */
+    private double windowMaxDrawdown() {
+        double windowWealth = 1;
+        double windowPeak = 1;
+        double drawdown = 0;
+        int start = windowSize < window.length ? 0 : windowNext;
+        for (int i = 0; i < windowSize; i++) {
+            windowWealth *= 1 + window[(start + i) % window.length];
+            if (windowWealth > windowPeak) {
+                windowPeak = windowWealth;
+            } else if (windowPeak > 0) {
+                drawdown = Math.max(drawdown, 1 - windowWealth / windowPeak);
+            }
+        }
+        return drawdown;
+    }
+
+    private static double downside(double periodReturn) {
+        return periodReturn < 0 ? periodReturn * periodReturn : 0;
+    }
+
+    private static Double ratio(double numerator, Double denominator) {
+        return denominator == null || denominator == 0 ? null : numerator / denominator;
+    }
+}
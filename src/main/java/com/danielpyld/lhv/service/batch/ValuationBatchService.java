@@ -0,0 +1,10 @@
+package com.danielpyld.lhv.service.batch;
+
+import com.danielpyld.lhv.dto.BatchReportDTO;
+
+import java.time.LocalDate;
+
+public interface ValuationBatchService {
+
+    BatchReportDTO runEndOfDayValuation(LocalDate valuationDate);
+}
@@ -0,0 +1,310 @@
+package com.danielpyld.lhv.service.batch;
+
+import com.danielpyld.lhv.dto.BatchReportDTO;
+import com.danielpyld.lhv.entity.BatchCheckpoint;
+import com.danielpyld.lhv.entity.Dividend;
+import com.danielpyld.lhv.entity.Profit;
+import com.danielpyld.lhv.entity.Returns;
+import com.danielpyld.lhv.entity.StockSplit;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.ValuationResult;
+import com.danielpyld.lhv.repository.BatchCheckpointRepository;
+import com.danielpyld.lhv.repository.TransactionRepository;
+import com.danielpyld.lhv.service.dividend.DividendService;
+import com.danielpyld.lhv.service.portfolio.LotMatchListener;
+import com.danielpyld.lhv.service.portfolio.PortfolioService;
+import com.danielpyld.lhv.service.portfolio.ReturnsCalculator;
+import com.danielpyld.lhv.service.portfolio.ValuationDay;
+import com.danielpyld.lhv.service.split.StockSplitService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Nightly valuation of every portfolio. Transactions are streamed once, ordered by portfolio and time; each completed
+ * portfolio is valued on the calculation pool and results are written in JDBC batches, one chunk of portfolios per
+ * database transaction together with the checkpoint, so an interrupted run resumes after the last committed chunk.
+ * A portfolio that cannot be valued is logged and counted as failed; it gets no result row and the run goes on.
+ */
+@Service
+public class ValuationBatchServiceImpl implements ValuationBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValuationBatchServiceImpl.class);
+
+    static final String JOB_NAME = "eod-valuation";
+
+    private static final String UPSERT_RESULT_SQL = """
+            insert into valuation_results
+                (portfolio_id, valuation_date, total_profit, realized_stock_profit, dividend_profit, unrealized_gains,
+                 xirr, time_weighted_return, calculated_at)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            on conflict (portfolio_id, valuation_date) do update set
+                total_profit = excluded.total_profit,
+                realized_stock_profit = excluded.realized_stock_profit,
+                dividend_profit = excluded.dividend_profit,
+                unrealized_gains = excluded.unrealized_gains,
+                xirr = excluded.xirr,
+                time_weighted_return = excluded.time_weighted_return,
+                calculated_at = excluded.calculated_at
+            """;
+
+    private final TransactionRepository transactionRepository;
+    private final BatchCheckpointRepository checkpointRepository;
+    private final PortfolioService portfolioService;
+    private final DividendService dividendService;
+    private final ReturnsCalculator returnsCalculator;
+    private final StockSplitService stockSplitService;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final ForkJoinPool calculationPool;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final int chunkSize;
+
+    private final Counter portfolioCounter;
+    private final Counter transactionCounter;
+    private final Counter failureCounter;
+    private final Timer chunkTimer;
+    private final AtomicLong portfoliosInRun = new AtomicLong();
+    private final AtomicLong failuresInRun = new AtomicLong();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ValuationBatchServiceImpl(TransactionRepository transactionRepository,
+                                     BatchCheckpointRepository checkpointRepository,
+                                     PortfolioService portfolioService,
+                                     DividendService dividendService,
+                                     ReturnsCalculator returnsCalculator,
+                                     StockSplitService stockSplitService,
+                                     JdbcTemplate jdbcTemplate,
+                                     EntityManager entityManager,
+                                     ForkJoinPool portfolioCalculationPool,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${valuation.batch.chunk-size:500}") int chunkSize) {
+        this.transactionRepository = transactionRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.portfolioService = portfolioService;
+        this.dividendService = dividendService;
+        this.returnsCalculator = returnsCalculator;
+        this.stockSplitService = stockSplitService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.calculationPool = portfolioCalculationPool;
+        this.chunkSize = chunkSize;
+
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.portfolioCounter = meterRegistry.counter("valuation.batch.portfolios");
+        this.transactionCounter = meterRegistry.counter("valuation.batch.transactions");
+        this.failureCounter = meterRegistry.counter("valuation.batch.failures");
+        this.chunkTimer = meterRegistry.timer("valuation.batch.chunk");
+        meterRegistry.gauge("valuation.batch.portfolios.in.run", portfoliosInRun);
+    }
+
+    /**
+     * Runs the nightly valuation for the current UTC date.
+     */
+    @Scheduled(cron = "${valuation.batch.cron:-}", zone = "UTC")
+    public void runNightly() {
+        runEndOfDayValuation(ValuationDay.today());
+    }
+
+    /**
+     * Values every portfolio as of the end of the given date, resuming from the last checkpoint of that date if a
+     * previous run was interrupted.
+     *
+     * @param valuationDate Date to value; transactions after the end of this date (UTC) are ignored.
+     * @return Report with the number of portfolios and transactions processed and the throughput.
+     */
+    @Override
+    public BatchReportDTO runEndOfDayValuation(LocalDate valuationDate) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("End-of-day valuation is already running");
+        }
+        try {
+            return run(valuationDate);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private BatchReportDTO run(LocalDate valuationDate) {
+        failuresInRun.set(0);
+        String jobKey = JOB_NAME + ":" + valuationDate;
+        BatchCheckpoint checkpoint = checkpointRepository.findById(jobKey)
+                .orElseGet(() -> new BatchCheckpoint(jobKey, valuationDate));
+        Long resumedAfter = checkpoint.getLastPortfolioId();
+        long portfoliosBefore = checkpoint.getProcessedPortfolios();
+        long transactionsBefore = checkpoint.getProcessedTransactions();
+
+        if (checkpoint.isCompleted()) {
+            logger.info("Valuation for {} already completed with {} portfolios.", valuationDate, portfoliosBefore);
+            return report(checkpoint, resumedAfter, 0, 0, 0);
+        }
+
+        logger.info("Starting valuation for {}{}.", valuationDate,
+                resumedAfter != null ? " after portfolio " + resumedAfter : "");
+        portfoliosInRun.set(0);
+        long started = System.nanoTime();
+        Instant cutoff = ValuationDay.endOf(valuationDate);
+        Map<Long, List<StockSplit>> splits = stockSplitService.getSplitsBefore(cutoff);
+
+        readTransaction.executeWithoutResult(status -> {
+            try (Stream<Transaction> transactions = transactionRepository.streamForValuation(
+                    resumedAfter != null ? resumedAfter : Long.MIN_VALUE, cutoff)) {
+                processStream(transactions.iterator(), splits, checkpoint, started);
+            }
+        });
+
+        checkpoint.setCompleted(true);
+        checkpoint.setUpdatedAt(Instant.now());
+        writeTransaction.executeWithoutResult(status -> checkpointRepository.save(checkpoint));
+
+        long elapsedNanos = System.nanoTime() - started;
+        BatchReportDTO report = report(checkpoint, resumedAfter, checkpoint.getProcessedPortfolios() - portfoliosBefore,
+                checkpoint.getProcessedTransactions() - transactionsBefore, elapsedNanos);
+        logger.info("Valuation for {} completed: {} portfolios ({} failed), {} transactions in {} ms ({} portfolios/s).",
+                valuationDate, report.getPortfolios(), report.getFailedPortfolios(), report.getTransactions(),
+                report.getElapsedMillis(), String.format("%.1f", report.getPortfoliosPerSecond()));
+        return report;
+    }
+
+    private void processStream(Iterator<Transaction> transactions, Map<Long, List<StockSplit>> splits,
+                               BatchCheckpoint checkpoint, long started) {
+        List<ForkJoinTask<ValuationResult>> chunk = new ArrayList<>(chunkSize);
+        List<Transaction> portfolioTransactions = new ArrayList<>();
+        Long portfolioId = null;
+        long chunkTransactions = 0;
+
+        while (transactions.hasNext()) {
+            Transaction transaction = transactions.next();
+            entityManager.detach(transaction);
+
+            if (portfolioId != null && !portfolioId.equals(transaction.getPortfolioId())) {
+                chunk.add(submit(portfolioId, portfolioTransactions, splits.getOrDefault(portfolioId, List.of()),
+                        checkpoint.getRunDate()));
+                portfolioTransactions = new ArrayList<>();
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(chunk, portfolioId, chunkTransactions, checkpoint, started);
+                    chunk.clear();
+                    chunkTransactions = 0;
+                }
+            }
+            portfolioId = transaction.getPortfolioId();
+            portfolioTransactions.add(transaction);
+            chunkTransactions++;
+        }
+
+        if (portfolioId != null) {
+            chunk.add(submit(portfolioId, portfolioTransactions, splits.getOrDefault(portfolioId, List.of()),
+                    checkpoint.getRunDate()));
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, portfolioId, chunkTransactions, checkpoint, started);
+        }
+    }
+
+    /**
+     * Values one portfolio on the calculation pool as of the end of the valuation date, with the splits that took
+     * effect by then.
+     *
+     * @return The result, or null when the portfolio could not be valued.
+     */
+    private ForkJoinTask<ValuationResult> submit(Long portfolioId, List<Transaction> transactions, List<StockSplit> splits,
+                                                 LocalDate valuationDate) {
+        return calculationPool.submit(() -> {
+            try {
+                Instant asOf = ValuationDay.endOf(valuationDate);
+                List<Dividend> dividends = dividendService.generateDividends(transactions, portfolioId);
+                Profit profit = portfolioService.calculateProfit(transactions, dividends, splits, LotMatchListener.NONE, asOf);
+                Returns returns = returnsCalculator.calculateReturns(transactions, dividends, splits, asOf);
+                return new ValuationResult(portfolioId, valuationDate, profit, returns, Instant.now());
+            } catch (RuntimeException e) {
+                failureCounter.increment();
+                failuresInRun.incrementAndGet();
+                logger.error("Valuation of portfolio {} for {} failed, skipping it.", portfolioId, valuationDate, e);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Waits for a chunk of valuations and commits their results together with the advanced checkpoint. The checkpoint
+     * moves past failed portfolios too, so a resumed run does not retry them.
+     */
+    private void writeChunk(List<ForkJoinTask<ValuationResult>> chunk, Long lastPortfolioId, long chunkTransactions,
+                            BatchCheckpoint checkpoint, long started) {
+        chunkTimer.record(() -> {
+            List<ValuationResult> results = chunk.stream().map(ForkJoinTask::join).filter(Objects::nonNull).toList();
+            writeTransaction.executeWithoutResult(status -> {
+                if (!results.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPSERT_RESULT_SQL, results, results.size(), (ps, result) -> {
+                        ps.setLong(1, result.getPortfolioId());
+                        ps.setDate(2, Date.valueOf(result.getValuationDate()));
+                        ps.setBigDecimal(3, result.getTotalProfit());
+                        ps.setBigDecimal(4, result.getRealizedStockProfit());
+                        ps.setBigDecimal(5, result.getDividendProfit());
+                        ps.setBigDecimal(6, result.getUnrealizedGains());
+                        ps.setObject(7, result.getXirr(), Types.DOUBLE);
+                        ps.setObject(8, result.getTimeWeightedReturn(), Types.DOUBLE);
+                        ps.setTimestamp(9, Timestamp.from(result.getCalculatedAt()));
+                    });
+                }
+                checkpoint.setLastPortfolioId(lastPortfolioId);
+                checkpoint.setProcessedPortfolios(checkpoint.getProcessedPortfolios() + chunk.size());
+                checkpoint.setProcessedTransactions(checkpoint.getProcessedTransactions() + chunkTransactions);
+                checkpoint.setUpdatedAt(Instant.now());
+                checkpointRepository.save(checkpoint);
+            });
+        });
+
+        portfolioCounter.increment(chunk.size());
+        transactionCounter.increment(chunkTransactions);
+        long done = portfoliosInRun.addAndGet(chunk.size());
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+        logger.info("Valuation progress: {} portfolios in this run, checkpoint at portfolio {} ({} portfolios/s).",
+                done, checkpoint.getLastPortfolioId(), String.format("%.1f", done / Math.max(seconds, 1e-9)));
+    }
+
+    private BatchReportDTO report(BatchCheckpoint checkpoint, Long resumedAfter, long portfolios, long transactions, long elapsedNanos) {
+        BatchReportDTO report = new BatchReportDTO();
+        report.setValuationDate(checkpoint.getRunDate());
+        report.setResumedAfterPortfolioId(resumedAfter);
+        report.setPortfolios(portfolios);
+        report.setFailedPortfolios(failuresInRun.get());
+        report.setTransactions(transactions);
+        report.setElapsedMillis(elapsedNanos / 1_000_000);
+        report.setPortfoliosPerSecond(elapsedNanos > 0 ? portfolios / (elapsedNanos / 1_000_000_000.0) : 0);
+        report.setCompleted(checkpoint.isCompleted());
+        return report;
+    }
+}
@@ -0,0 +1,77 @@
+package com.danielpyld.lhv.service.concurrency;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent calls with the same key: the first caller runs the work and every caller that arrives
+ * while it is in flight waits for and receives the same result, or the same exception. Nothing is cached; once
+ * the work completes the next call with the key runs it again.
+ *
+ * @param <K> Key identifying identical work.
+ * @param <V> Result of the work.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Work that may throw a checked exception.
+     */
+    @FunctionalInterface
+    public interface Work<V, E extends Exception> {
+        V run() throws E;
+    }
+
+    /**
+     * Runs the work, or joins the run already in flight for the key.
+     *
+     * @param key  Key identifying identical work.
+     * @param work Work to run if no call with the key is in flight.
+     * @return The result of the work.
+     * @throws E The exception thrown by the work.
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends Exception> V execute(K key, Work<V, E> work) throws E {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException | CancellationException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw (E) cause;
+            }
+        }
+
+        try {
+            V result = work.run();
+            flight.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Returns how many calls joined a run already in flight instead of running the work themselves.
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+}
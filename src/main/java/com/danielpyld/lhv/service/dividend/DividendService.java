@@ -7,4 +7,6 @@ import java.util.List;
 
 public interface DividendService {
     List<Dividend> generateDividends(List<Transaction> transactions);
+
+    List<Dividend> generateDividends(List<Transaction> transactions, long seed);
 }
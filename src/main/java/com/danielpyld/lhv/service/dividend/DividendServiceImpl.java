@@ -2,6 +2,7 @@ package com.danielpyld.lhv.service.dividend;
 
 import com.danielpyld.lhv.entity.Dividend;
 import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.service.profiling.DividendGenerationEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -27,17 +28,36 @@ public class DividendServiceImpl implements DividendService {
      */
     @Override
     public List<Dividend> generateDividends(List<Transaction> transactions) {
+        return generateDividends(transactions, new Random());
+    }
+
+    /**
+     * Generates dividend payments based on the given transactions with reproducible amounts.
+     *
+     * @param transactions List of transactions for which dividends should be generated.
+     * @param seed         Seed of the dividend amounts.
+     * @return List of generated dividends.
+     */
+    @Override
+    public List<Dividend> generateDividends(List<Transaction> transactions, long seed) {
+        return generateDividends(transactions, new Random(seed));
+    }
+
+    private List<Dividend> generateDividends(List<Transaction> transactions, Random rand) {
+        DividendGenerationEvent event = new DividendGenerationEvent();
+        event.begin();
         List<Dividend> dividends = new ArrayList<>();
-        Random rand = new Random();
 
         if (transactions.isEmpty()) {
             logger.warn("No transactions provided for dividend generation.");
+            commit(event, transactions, dividends);
             return dividends;
         }
 
         Instant startDate = transactions.get(0).getTimestamp();
         Instant endDate = transactions.get(transactions.size() - 1).getTimestamp();
         Instant exDividendDate = startDate.plus(90, ChronoUnit.DAYS);
+        String currency = transactions.get(0).getCurrency();
 
         logger.info("Generating dividends from {} to {}", startDate, endDate);
 
@@ -45,13 +65,25 @@ public class DividendServiceImpl implements DividendService {
             BigDecimal amountPerUnit = BigDecimal.valueOf(0.5 + (2.0 - 0.5) * rand.nextDouble()).setScale(2, RoundingMode.HALF_UP);
             Instant paymentDate = exDividendDate.plus(10, ChronoUnit.DAYS);
 
-            dividends.add(new Dividend(amountPerUnit, exDividendDate, paymentDate));
+            Dividend dividend = new Dividend(amountPerUnit, exDividendDate, paymentDate);
+            dividend.setCurrency(currency);
+            dividends.add(dividend);
             logger.info("Generated dividend: {} on ex-dividend date: {} with payment date: {}", amountPerUnit, exDividendDate, paymentDate);
 
             exDividendDate = exDividendDate.plus(90, ChronoUnit.DAYS);
         }
 
         logger.info("Dividend generation complete. Total dividends generated: {}", dividends.size());
+        commit(event, transactions, dividends);
         return dividends;
     }
+
+    private void commit(DividendGenerationEvent event, List<Transaction> transactions, List<Dividend> dividends) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.transactions = transactions.size();
+            event.dividends = dividends.size();
+            event.commit();
+        }
+    }
 }
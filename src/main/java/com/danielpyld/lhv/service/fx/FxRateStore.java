@@ -0,0 +1,302 @@
+package com.danielpyld.lhv.service.fx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Time-indexed exchange rates into the base currency, loaded once from a local CSV file with the columns
+ * {@code currency,effectiveFrom,rate}, where the rate is the amount of base currency one unit of the currency buys
+ * and {@code effectiveFrom} is an ISO instant or date (midnight UTC). Every currency is a series of two sorted
+ * primitive arrays, effective times in epoch nanoseconds and fixed-point rates, so a lookup is a binary search
+ * without boxing. The rate in effect at an instant is the latest one effective at or before it.
+ */
+@Component
+public class FxRateStore {
+
+    /** Number of decimal places of the fixed-point rates. */
+    public static final int RATE_SCALE = 10;
+    /** Series index of the base currency, which converts at a rate of one. */
+    public static final int BASE = -1;
+
+    private static final Logger logger = LoggerFactory.getLogger(FxRateStore.class);
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final String baseCurrency;
+    private final Map<String, Integer> seriesByCurrency = new HashMap<>();
+    private final long[][] times;
+    private final long[][] rates;
+
+    @Autowired
+    public FxRateStore(@Value("${fx.base-currency:EUR}") String baseCurrency,
+                       @Value("${fx.rates.file:}") String ratesFile) throws IOException {
+        this(baseCurrency, ratesFile.isBlank() ? Reader.nullReader() : Files.newBufferedReader(Path.of(ratesFile), StandardCharsets.UTF_8));
+        logger.info("Loaded FX rates of {} currencies into {} from {}", times.length, this.baseCurrency,
+                ratesFile.isBlank() ? "no file" : ratesFile);
+    }
+
+    /**
+     * Loads the rates from a reader, which is closed afterwards. Blank lines, lines starting with '#' and a header
+     * line starting with "currency" are skipped.
+     *
+     * @param baseCurrency ISO code of the currency profits are reported in.
+     * @param ratesCsv     CSV rates.
+     * @throws IOException              If the rates can't be read.
+     * @throws IllegalArgumentException If a line is malformed or a rate is not positive.
+     */
+    public FxRateStore(String baseCurrency, Reader ratesCsv) throws IOException {
+        this.baseCurrency = normalize(baseCurrency);
+        Map<String, SeriesBuilder> builders = new LinkedHashMap<>();
+        try (BufferedReader reader = ratesCsv instanceof BufferedReader buffered ? buffered : new BufferedReader(ratesCsv)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#") || line.regionMatches(true, 0, "currency", 0, 8)) {
+                    continue;
+                }
+                String[] columns = line.split(",");
+                if (columns.length != 3) {
+                    throw new IllegalArgumentException("Malformed FX rate on line " + lineNumber + ": " + line);
+                }
+                String currency = normalize(columns[0]);
+                long effectiveFrom = toEpochNanos(parseInstant(columns[1].strip()));
+                BigDecimal rate = new BigDecimal(columns[2].strip());
+                if (rate.signum() <= 0) {
+                    throw new IllegalArgumentException("FX rate must be positive on line " + lineNumber + ": " + line);
+                }
+                if (!currency.equals(this.baseCurrency)) {
+                    builders.computeIfAbsent(currency, c -> new SeriesBuilder())
+                            .add(effectiveFrom, rate.setScale(RATE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+                }
+            }
+        }
+
+        this.times = new long[builders.size()][];
+        this.rates = new long[builders.size()][];
+        int series = 0;
+        for (Map.Entry<String, SeriesBuilder> entry : builders.entrySet()) {
+            entry.getValue().build(this, series);
+            seriesByCurrency.put(entry.getKey(), series++);
+        }
+    }
+
+    /**
+     * Creates a store without rates, which only accepts amounts in the base currency.
+     */
+    public static FxRateStore empty(String baseCurrency) {
+        try {
+            return new FxRateStore(baseCurrency, Reader.nullReader());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    /**
+     * Resolves a currency to its series. Callers converting many amounts resolve the series once per currency and
+     * then look rates up by index.
+     *
+     * @param currency ISO currency code; null stands for the base currency.
+     * @return The series index, or {@link #BASE} for the base currency.
+     * @throws IllegalArgumentException If there are no rates for the currency.
+     */
+    public int series(String currency) {
+        if (currency == null || currency.equalsIgnoreCase(baseCurrency)) {
+            return BASE;
+        }
+        Integer series = seriesByCurrency.get(normalize(currency));
+        if (series == null) {
+            throw new IllegalArgumentException("No FX rates for " + currency + " to " + baseCurrency);
+        }
+        return series;
+    }
+
+    /**
+     * Looks up the rate of a series in effect at an instant with a binary search.
+     *
+     * @param series     Series index.
+     * @param epochNanos Instant in epoch nanoseconds.
+     * @return The rate, fixed-point at {@link #RATE_SCALE}.
+     * @throws IllegalArgumentException If the instant is before the first rate of the series.
+     */
+    public long rateAt(int series, long epochNanos) {
+        if (series == BASE) {
+            return unit();
+        }
+        return rates[series][indexAt(series, epochNanos)];
+    }
+
+    /**
+     * Converts an amount into the base currency at the rate in effect at an instant.
+     *
+     * @param amount   Amount in the given currency; null is returned as null.
+     * @param currency ISO currency code; null stands for the base currency.
+     * @param at       Instant of the conversion.
+     * @return The amount in the base currency.
+     */
+    public BigDecimal toBase(BigDecimal amount, String currency, Instant at) {
+        int series = series(currency);
+        return series == BASE || amount == null ? amount : convert(amount, rateAt(series, toEpochNanos(at)));
+    }
+
+    /**
+     * Creates a cursor for converting a batch of time-ordered amounts.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Multiplies an amount by a fixed-point rate.
+     */
+    public static BigDecimal convert(BigDecimal amount, long rate) {
+        return amount.multiply(BigDecimal.valueOf(rate, RATE_SCALE));
+    }
+
+    private int indexAt(int series, long epochNanos) {
+        int index = Arrays.binarySearch(times[series], epochNanos);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        if (index < 0) {
+            throw new IllegalArgumentException("No FX rate in effect at " + epochNanos + " ns for series " + series);
+        }
+        return index;
+    }
+
+    private static long unit() {
+        return BigDecimal.ONE.setScale(RATE_SCALE).unscaledValue().longValue();
+    }
+
+    private static String normalize(String currency) {
+        return currency.strip().toUpperCase(Locale.ROOT);
+    }
+
+    private static Instant parseInstant(String value) {
+        return value.length() == 10 ? LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant() : Instant.parse(value);
+    }
+
+    private static long toEpochNanos(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+    }
+
+    /**
+     * Rate lookups for a batch of amounts that mostly arrive in time order, such as the rows of a timeline. The
+     * cursor remembers its position in every series and walks forward from it, so converting a time-ordered batch
+     * costs one pass over each series; an instant before the remembered position falls back to a binary search.
+     * A cursor is not thread-safe.
+     */
+    public final class Cursor {
+
+        private final int[] positions = new int[times.length];
+
+        private Cursor() {
+            Arrays.fill(positions, -1);
+        }
+
+        /**
+         * Returns the rate of a series in effect at an instant.
+         *
+         * @param series     Series index from {@link #series(String)}.
+         * @param epochNanos Instant in epoch nanoseconds.
+         * @return The rate, fixed-point at {@link #RATE_SCALE}.
+         * @throws IllegalArgumentException If the instant is before the first rate of the series.
+         */
+        public long rateAt(int series, long epochNanos) {
+            if (series == BASE) {
+                return unit();
+            }
+            long[] seriesTimes = times[series];
+            int position = positions[series];
+            if (position < 0 || seriesTimes[position] > epochNanos) {
+                position = indexAt(series, epochNanos);
+            } else {
+                while (position + 1 < seriesTimes.length && seriesTimes[position + 1] <= epochNanos) {
+                    position++;
+                }
+            }
+            positions[series] = position;
+            return rates[series][position];
+        }
+    }
+
+    /**
+     * Growable primitive columns of one currency while the file is read.
+     */
+    private static final class SeriesBuilder {
+
+        private long[] times = new long[16];
+        private long[] rates = new long[16];
+        private int size;
+        private boolean sorted = true;
+
+        void add(long time, long rate) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                rates = Arrays.copyOf(rates, size * 2);
+            }
+            if (size > 0 && time < times[size - 1]) {
+                sorted = false;
+            }
+            times[size] = time;
+            rates[size++] = rate;
+        }
+
+        /**
+         * Sorts the series by time if the file was not, keeps the last rate of equal times and stores the trimmed
+         * arrays in the store.
+         */
+        void build(FxRateStore store, int series) {
+            if (!sorted) {
+                Integer[] order = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+                long[] sortedTimes = new long[size];
+                long[] sortedRates = new long[size];
+                for (int i = 0; i < size; i++) {
+                    sortedTimes[i] = times[order[i]];
+                    sortedRates[i] = rates[order[i]];
+                }
+                times = sortedTimes;
+                rates = sortedRates;
+            }
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (distinct > 0 && times[distinct - 1] == times[i]) {
+                    distinct--;
+                }
+                times[distinct] = times[i];
+                rates[distinct++] = rates[i];
+            }
+            store.times[series] = Arrays.copyOf(times, distinct);
+            store.rates[series] = Arrays.copyOf(rates, distinct);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.danielpyld.lhv.service.partition;
+
+public interface TransactionPartitionService {
+
+    int ensurePartitions();
+}
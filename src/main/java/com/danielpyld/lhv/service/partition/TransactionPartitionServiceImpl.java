@@ -0,0 +1,65 @@
+package com.danielpyld.lhv.service.partition;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Keeps the monthly partitions of the transactions table ahead of time. The partitioning itself lives in the
+ * database migrations; this job calls their {@code ensure_transaction_partitions} function, which creates the
+ * partitions of the coming months and moves rows that landed in the default partition into partitions of their own.
+ */
+@Service
+public class TransactionPartitionServiceImpl implements TransactionPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionPartitionServiceImpl.class);
+
+    private static final String ENSURE_PARTITIONS_SQL = "select ensure_transaction_partitions(current_date, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+    private final Counter createdCounter;
+
+    public TransactionPartitionServiceImpl(JdbcTemplate jdbcTemplate,
+                                           MeterRegistry meterRegistry,
+                                           @Value("${transactions.partitions.months-ahead:3}") int monthsAhead) {
+        if (monthsAhead < 0) {
+            throw new IllegalArgumentException("Months of partitions to create ahead must not be negative");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = monthsAhead;
+        this.createdCounter = meterRegistry.counter("transactions.partitions.created");
+    }
+
+    /**
+     * Runs the partition maintenance on the configured schedule.
+     */
+    @Scheduled(cron = "${transactions.partitions.cron:-}", zone = "UTC")
+    public void runScheduled() {
+        ensurePartitions();
+    }
+
+    /**
+     * Creates the partitions from the current month through the configured number of months ahead, and for every
+     * month with rows in the default partition.
+     *
+     * @return The number of partitions created.
+     */
+    @Override
+    @Transactional
+    public int ensurePartitions() {
+        Integer created = jdbcTemplate.queryForObject(ENSURE_PARTITIONS_SQL, Integer.class, monthsAhead);
+        int count = created != null ? created : 0;
+        createdCounter.increment(count);
+        if (count > 0) {
+            logger.info("Created {} transaction partitions, {} months ahead.", count, monthsAhead);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,165 @@
+package com.danielpyld.lhv.service.portfolio;
+
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transactions stored column by column in primitive arrays: about 55 bytes per transaction instead of the 250 or
+ * so of the entity objects with their boxed ids, decimals, instants and strings. Decimals are kept as unscaled
+ * long and scale, with the rare ones that don't fit kept as they are. Read back with {@link #toTransactions()},
+ * which creates new entities on every call, so callers can't affect each other.
+ */
+final class CompactTransactions {
+
+    private static final byte NULL_TYPE = -1;
+    private static final short NULL_CURRENCY = -1;
+    private static final Type[] TYPES = Type.values();
+
+    private final int size;
+    private final long[] ids;
+    private final long[] portfolioIds;
+    private final BitSet nullIds = new BitSet();
+    private final BitSet nullPortfolioIds = new BitSet();
+    private final byte[] types;
+    private final int[] quantities;
+    private final DecimalColumn prices;
+    private final DecimalColumn fees;
+    private final long[] epochSeconds;
+    private final int[] nanos;
+    private final BitSet nullTimestamps = new BitSet();
+    private final short[] currencies;
+    private final List<String> currencyCodes = new ArrayList<>();
+
+    CompactTransactions(List<Transaction> transactions) {
+        size = transactions.size();
+        ids = new long[size];
+        portfolioIds = new long[size];
+        types = new byte[size];
+        quantities = new int[size];
+        prices = new DecimalColumn(size);
+        fees = new DecimalColumn(size);
+        epochSeconds = new long[size];
+        nanos = new int[size];
+        currencies = new short[size];
+        Map<String, Short> currencyIndex = new HashMap<>();
+
+        for (int row = 0; row < size; row++) {
+            Transaction transaction = transactions.get(row);
+            if (transaction.getId() != null) {
+                ids[row] = transaction.getId();
+            } else {
+                nullIds.set(row);
+            }
+            if (transaction.getPortfolioId() != null) {
+                portfolioIds[row] = transaction.getPortfolioId();
+            } else {
+                nullPortfolioIds.set(row);
+            }
+            types[row] = transaction.getType() != null ? (byte) transaction.getType().ordinal() : NULL_TYPE;
+            quantities[row] = transaction.getQuantity();
+            prices.set(row, transaction.getPrice());
+            fees.set(row, transaction.getFee());
+            if (transaction.getTimestamp() != null) {
+                epochSeconds[row] = transaction.getTimestamp().getEpochSecond();
+                nanos[row] = transaction.getTimestamp().getNano();
+            } else {
+                nullTimestamps.set(row);
+            }
+            String currency = transaction.getCurrency();
+            if (currency == null) {
+                currencies[row] = NULL_CURRENCY;
+            } else {
+                currencies[row] = currencyIndex.computeIfAbsent(currency, code -> {
+                    if (currencyCodes.size() == Short.MAX_VALUE) {
+                        throw new IllegalArgumentException("More than " + Short.MAX_VALUE + " distinct currencies");
+                    }
+                    currencyCodes.add(code);
+                    return (short) (currencyCodes.size() - 1);
+                });
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return New entities equal to the ones this was created from, in the same order.
+     */
+    List<Transaction> toTransactions() {
+        List<Transaction> transactions = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            Transaction transaction = new Transaction(
+                    nullPortfolioIds.get(row) ? null : portfolioIds[row],
+                    types[row] != NULL_TYPE ? TYPES[types[row]] : null,
+                    quantities[row],
+                    prices.get(row),
+                    fees.get(row),
+                    nullTimestamps.get(row) ? null : Instant.ofEpochSecond(epochSeconds[row], nanos[row]));
+            transaction.setId(nullIds.get(row) ? null : ids[row]);
+            transaction.setCurrency(currencies[row] != NULL_CURRENCY ? currencyCodes.get(currencies[row]) : null);
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    /**
+     * @return Approximate heap size in bytes, for weighing cache entries.
+     */
+    long estimatedBytes() {
+        return 256L + size * (8L + 8 + 1 + 4 + 8 + 4 + 2)
+                + prices.estimatedBytes() + fees.estimatedBytes()
+                + (nullIds.size() + nullPortfolioIds.size() + nullTimestamps.size()) / 8
+                + currencyCodes.size() * 48L;
+    }
+
+    private static final class DecimalColumn {
+        private static final byte NULL_SCALE = Byte.MIN_VALUE;
+        private static final byte WIDE_SCALE = Byte.MAX_VALUE;
+
+        private final long[] unscaled;
+        private final byte[] scales;
+        private final Map<Integer, BigDecimal> wide = new HashMap<>();
+
+        DecimalColumn(int size) {
+            unscaled = new long[size];
+            scales = new byte[size];
+        }
+
+        void set(int row, BigDecimal value) {
+            if (value == null) {
+                scales[row] = NULL_SCALE;
+            } else if (value.scale() > NULL_SCALE && value.scale() < WIDE_SCALE && value.unscaledValue().bitLength() < Long.SIZE) {
+                unscaled[row] = value.unscaledValue().longValue();
+                scales[row] = (byte) value.scale();
+            } else {
+                scales[row] = WIDE_SCALE;
+                wide.put(row, value);
+            }
+        }
+
+        BigDecimal get(int row) {
+            byte scale = scales[row];
+            if (scale == NULL_SCALE) {
+                return null;
+            }
+            if (scale == WIDE_SCALE) {
+                return wide.get(row);
+            }
+            return BigDecimal.valueOf(unscaled[row], scale);
+        }
+
+        long estimatedBytes() {
+            return unscaled.length * 9L + wide.size() * 96L;
+        }
+    }
+}
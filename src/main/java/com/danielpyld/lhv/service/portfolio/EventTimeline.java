@@ -0,0 +1,291 @@
+package com.danielpyld.lhv.service.portfolio;
+
+import com.danielpyld.lhv.entity.Dividend;
+import com.danielpyld.lhv.entity.StockSplit;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import com.danielpyld.lhv.service.fx.FxRateStore;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Time-ordered, columnar view of the transactions and dividends of a portfolio. Every event is a row across
+ * parallel primitive arrays, so the profit engine walks contiguous memory without a wrapper object per event.
+ * Prices, fees and dividend amounts are fixed-point longs at the calculation scale. Each dividend contributes
+ * two rows: the ex-dividend date, where holdings are recorded, and the payment date, where the income is booked.
+ * Events at the same instant are ordered splits first, then transactions, ex-dividend dates and payments.
+ * Amounts in other currencies are converted into the base currency while the columns are filled, so the
+ * calculation itself never sees a currency.
+ * <p>
+ * Quantities and prices stay in the shares of their own split epoch, the number of splits effective before the
+ * row. The cumulative split factor of every epoch is kept as a reduced fraction, so converting a lot from its
+ * epoch to the current one is a constant-time multiplication however many splits lie in between.
+ */
+final class EventTimeline {
+
+    static final byte BUY = 0;
+    static final byte SELL = 1;
+    static final byte EX_DIVIDEND = 2;
+    static final byte DIVIDEND_PAYMENT = 3;
+    static final byte SPLIT = 4;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    final int size;
+    final int scale;
+    /** Epoch nanoseconds of each event. */
+    final long[] timestamps;
+    final byte[] kinds;
+    /** Transaction quantity, the new shares of a split's ratio; 0 for dividend rows. */
+    final int[] quantities;
+    /** Transaction price or dividend amount per unit in the base currency, scaled. */
+    final long[] prices;
+    /** Transaction fee in the base currency, scaled, the old shares of a split's ratio; 0 for dividend rows. */
+    final long[] fees;
+    /** Index of the source row in {@link #transactions} or, for dividend and split rows, in their lists. */
+    final int[] sources;
+    /** Number of BUY rows, an upper bound for the number of open lots. */
+    final int buyCount;
+    /** Number of SPLIT rows. */
+    final int splitCount;
+
+    private final List<Transaction> transactions;
+    private final double unit;
+    /** Row of each split, ascending. */
+    private final int[] splitRows;
+    /** Cumulative split factor after the first k splits as a reduced fraction; epoch 0 is 1/1. */
+    private final long[] splitNumerators;
+    private final long[] splitDenominators;
+
+    private EventTimeline(int size, int scale, List<Transaction> transactions, int buyCount, int splitCount) {
+        this.size = size;
+        this.scale = scale;
+        this.timestamps = new long[size];
+        this.kinds = new byte[size];
+        this.quantities = new int[size];
+        this.prices = new long[size];
+        this.fees = new long[size];
+        this.sources = new int[size];
+        this.transactions = transactions;
+        this.buyCount = buyCount;
+        this.splitCount = splitCount;
+        this.unit = Math.pow(10, scale);
+        this.splitRows = new int[splitCount];
+        this.splitNumerators = new long[splitCount + 1];
+        this.splitDenominators = new long[splitCount + 1];
+        this.splitNumerators[0] = 1;
+        this.splitDenominators[0] = 1;
+    }
+
+    /**
+     * Builds the timeline in a single merge of splits, transactions, ex-dividend dates and payment dates. Rows arrive in
+     * time order, so the FX rates are looked up through one cursor for the whole batch, and the currency is only
+     * resolved to its rate series when it changes from the previous row of the same kind.
+     *
+     * @param transactions List of transactions; already ordered lists are used as they are.
+     * @param dividends    List of dividends.
+     * @param splits       List of stock splits.
+     * @param scale        Number of decimal places kept in the fixed-point columns.
+     * @param fxRates      Rates converting amounts into the base currency.
+     * @return The timeline.
+     * @throws ArithmeticException      If an amount does not fit into a long at the given scale, or the cumulative
+     *                                  split factor into a long fraction.
+     * @throws IllegalArgumentException If an amount has no FX rate at its time.
+     */
+    static EventTimeline of(List<Transaction> transactions, List<Dividend> dividends, List<StockSplit> splits, int scale,
+                            FxRateStore fxRates) {
+        List<Transaction> ordered = sortedIfNeeded(transactions);
+        List<StockSplit> orderedSplits = new ArrayList<>(splits);
+        orderedSplits.sort(Comparator.comparing(StockSplit::getEffectiveDate));
+        int splitCount = orderedSplits.size();
+        int dividendCount = dividends.size();
+        Integer[] byExDate = new Integer[dividendCount];
+        Integer[] byPaymentDate = new Integer[dividendCount];
+        for (int i = 0; i < dividendCount; i++) {
+            byExDate[i] = i;
+            byPaymentDate[i] = i;
+        }
+        Arrays.sort(byExDate, Comparator.comparing(i -> dividends.get(i).getExDividendDate()));
+        Arrays.sort(byPaymentDate, Comparator.comparing(i -> dividends.get(i).getPaymentDate()));
+
+        int transactionCount = ordered.size();
+        int buyCount = 0;
+        for (Transaction transaction : ordered) {
+            if (transaction.getType() == Type.BUY) {
+                buyCount++;
+            }
+        }
+        EventTimeline timeline = new EventTimeline(transactionCount + 2 * dividendCount + splitCount, scale, ordered,
+                buyCount, splitCount);
+        FxRateStore.Cursor rates = fxRates.cursor();
+        String transactionCurrency = null;
+        int transactionSeries = FxRateStore.BASE;
+        String dividendCurrency = null;
+        int dividendSeries = FxRateStore.BASE;
+        int si = 0;
+        int ti = 0;
+        int ei = 0;
+        int pi = 0;
+        for (int row = 0; row < timeline.size; row++) {
+            long nextSplit = si < splitCount ? toEpochNanos(orderedSplits.get(si).getEffectiveDate()) : Long.MAX_VALUE;
+            long nextTransaction = ti < transactionCount ? toEpochNanos(ordered.get(ti).getTimestamp()) : Long.MAX_VALUE;
+            long nextExDate = ei < dividendCount ? toEpochNanos(dividends.get(byExDate[ei]).getExDividendDate()) : Long.MAX_VALUE;
+            long nextPayment = pi < dividendCount ? toEpochNanos(dividends.get(byPaymentDate[pi]).getPaymentDate()) : Long.MAX_VALUE;
+
+            if (si < splitCount && nextSplit <= nextTransaction && nextSplit <= nextExDate && nextSplit <= nextPayment) {
+                StockSplit split = orderedSplits.get(si);
+                timeline.timestamps[row] = nextSplit;
+                timeline.kinds[row] = SPLIT;
+                timeline.quantities[row] = split.getNewShares();
+                timeline.fees[row] = split.getOldShares();
+                timeline.sources[row] = si;
+                timeline.addSplit(si++, row, split.getNewShares(), split.getOldShares());
+            } else if (ti < transactionCount && nextTransaction <= nextExDate && nextTransaction <= nextPayment) {
+                Transaction transaction = ordered.get(ti);
+                if (!Objects.equals(transaction.getCurrency(), transactionCurrency)) {
+                    transactionCurrency = transaction.getCurrency();
+                    transactionSeries = fxRates.series(transactionCurrency);
+                }
+                long rate = transactionSeries == FxRateStore.BASE ? 0 : rates.rateAt(transactionSeries, nextTransaction);
+                timeline.timestamps[row] = nextTransaction;
+                timeline.kinds[row] = transaction.getType() == Type.BUY ? BUY : SELL;
+                timeline.quantities[row] = transaction.getQuantity();
+                timeline.prices[row] = toScaled(transaction.getPrice(), rate, scale);
+                timeline.fees[row] = toScaled(transaction.getFee(), rate, scale);
+                timeline.sources[row] = ti++;
+            } else {
+                boolean exDate = ei < dividendCount && nextExDate <= nextPayment;
+                int dividend = exDate ? byExDate[ei++] : byPaymentDate[pi++];
+                long time = exDate ? nextExDate : nextPayment;
+                Dividend source = dividends.get(dividend);
+                if (!Objects.equals(source.getCurrency(), dividendCurrency)) {
+                    dividendCurrency = source.getCurrency();
+                    dividendSeries = fxRates.series(dividendCurrency);
+                }
+                long rate = dividendSeries == FxRateStore.BASE ? 0 : rates.rateAt(dividendSeries, time);
+                timeline.timestamps[row] = time;
+                timeline.kinds[row] = exDate ? EX_DIVIDEND : DIVIDEND_PAYMENT;
+                timeline.prices[row] = toScaled(source.getAmountPerUnit(), rate, scale);
+                timeline.sources[row] = dividend;
+            }
+        }
+        return timeline;
+    }
+
+    /**
+     * Returns the split epoch of a row: the number of splits effective before it, and so the shares its quantity
+     * and price are counted in. A split row's own epoch is the one before it applies.
+     */
+    int splitEpoch(int row) {
+        if (splitCount == 0) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(splitRows, row);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Converts a quantity from the shares of one split epoch into those of a later one. Fractional shares left
+     * by a consolidation are dropped.
+     */
+    int adjustQuantity(int quantity, int fromEpoch, int toEpoch) {
+        if (fromEpoch == toEpoch) {
+            return quantity;
+        }
+        long numeratorGcd = gcd(splitNumerators[toEpoch], splitNumerators[fromEpoch]);
+        long denominatorGcd = gcd(splitDenominators[fromEpoch], splitDenominators[toEpoch]);
+        long numerator = Math.multiplyExact(splitNumerators[toEpoch] / numeratorGcd, splitDenominators[fromEpoch] / denominatorGcd);
+        long denominator = Math.multiplyExact(splitDenominators[toEpoch] / denominatorGcd, splitNumerators[fromEpoch] / numeratorGcd);
+        return Math.toIntExact(Math.multiplyExact(quantity, numerator) / denominator);
+    }
+
+    /**
+     * Converts a scaled per-share amount from one split epoch into a later one, rounding half up.
+     */
+    long adjustPrice(long price, int fromEpoch, int toEpoch) {
+        if (fromEpoch == toEpoch) {
+            return price;
+        }
+        long numeratorGcd = gcd(splitNumerators[fromEpoch], splitNumerators[toEpoch]);
+        long denominatorGcd = gcd(splitDenominators[toEpoch], splitDenominators[fromEpoch]);
+        long numerator = Math.multiplyExact(splitNumerators[fromEpoch] / numeratorGcd, splitDenominators[toEpoch] / denominatorGcd);
+        long denominator = Math.multiplyExact(splitDenominators[fromEpoch] / denominatorGcd, splitNumerators[toEpoch] / numeratorGcd);
+        long product = Math.multiplyExact(price, numerator);
+        long quotient = product / denominator;
+        if (Math.abs(product % denominator) * 2 >= denominator) {
+            quotient += Long.signum(product);
+        }
+        return quotient;
+    }
+
+    /**
+     * Returns the transaction a BUY or SELL row was built from.
+     */
+    Transaction transaction(int row) {
+        return transactions.get(sources[row]);
+    }
+
+    BigDecimal toDecimal(long scaled) {
+        return BigDecimal.valueOf(scaled, scale);
+    }
+
+    double toDouble(long scaled) {
+        return scaled / unit;
+    }
+
+    private void addSplit(int split, int row, int newShares, int oldShares) {
+        if (newShares <= 0 || oldShares <= 0) {
+            throw new IllegalArgumentException("Split ratio must be positive: " + newShares + ":" + oldShares);
+        }
+        long numerator = Math.multiplyExact(splitNumerators[split], newShares);
+        long denominator = Math.multiplyExact(splitDenominators[split], oldShares);
+        long divisor = gcd(numerator, denominator);
+        splitRows[split] = row;
+        splitNumerators[split + 1] = numerator / divisor;
+        splitDenominators[split + 1] = denominator / divisor;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+
+    static long toEpochNanos(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+    }
+
+    static long toScaled(BigDecimal value, int scale) {
+        return value == null ? 0 : value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Scales an amount, converting it first when a rate is given.
+     *
+     * @param rate Fixed-point FX rate, or 0 for an amount already in the base currency.
+     */
+    private static long toScaled(BigDecimal value, long rate, int scale) {
+        return toScaled(rate == 0 || value == null ? value : FxRateStore.convert(value, rate), scale);
+    }
+
+    private static List<Transaction> sortedIfNeeded(List<Transaction> transactions) {
+        for (int i = 1; i < transactions.size(); i++) {
+            if (transactions.get(i).getTimestamp().isBefore(transactions.get(i - 1).getTimestamp())) {
+                List<Transaction> sorted = new ArrayList<>(transactions);
+                sorted.sort(Comparator.comparing(Transaction::getTimestamp));
+                return sorted;
+            }
+        }
+        return transactions;
+    }
+}
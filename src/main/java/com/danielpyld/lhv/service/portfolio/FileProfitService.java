@@ -0,0 +1,11 @@
+package com.danielpyld.lhv.service.portfolio;
+
+import com.danielpyld.lhv.entity.Profit;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+
+public interface FileProfitService {
+    Profit calculateProfit(File file, LocalDate valuationDate) throws IOException;
+}
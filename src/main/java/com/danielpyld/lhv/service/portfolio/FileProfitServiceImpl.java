@@ -0,0 +1,67 @@
+package com.danielpyld.lhv.service.portfolio;
+
+import com.danielpyld.lhv.entity.Dividend;
+import com.danielpyld.lhv.entity.Profit;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.service.concurrency.SingleFlight;
+import com.danielpyld.lhv.service.dividend.DividendService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+@Service
+public class FileProfitServiceImpl implements FileProfitService {
+
+    private final PortfolioService portfolioService;
+    private final DividendService dividendService;
+    private final TransactionFileCache transactionFileCache;
+    private final SingleFlight<String, Profit> calculations = new SingleFlight<>();
+
+    public FileProfitServiceImpl(PortfolioService portfolioService, DividendService dividendService,
+                                 TransactionFileCache transactionFileCache, MeterRegistry meterRegistry) {
+        this.portfolioService = portfolioService;
+        this.dividendService = dividendService;
+        this.transactionFileCache = transactionFileCache;
+        FunctionCounter.builder("portfolio.calculate.coalesced", calculations, SingleFlight::coalescedCount)
+                .description("File profit calculations that joined an identical calculation already in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Calculates the profit of the transactions in a JSON file as of the end of the given day. Concurrent requests
+     * for the same file and day share one parse and calculation; the file is identified by its canonical path, size
+     * and modification time, so a changed file is never answered with the result for its previous content. The
+     * parsed transactions of the file come from the {@link TransactionFileCache} while its content is unchanged, and
+     * the dividends are seeded with their portfolio id, so the same file on the same day always gives the same result.
+     *
+     * @param file          JSON file containing the transactions.
+     * @param valuationDate Day whose dividend payments are the last ones booked.
+     * @return ProfitResult containing calculated profit and loss details.
+     * @throws IOException If the file cannot be read or parsed.
+     */
+    @Override
+    public Profit calculateProfit(File file, LocalDate valuationDate) throws IOException {
+        File canonicalFile = file.getCanonicalFile();
+        String key = canonicalFile.getPath() + '|' + canonicalFile.length() + '|' + canonicalFile.lastModified()
+                + '|' + valuationDate;
+        return calculations.execute(key, () -> calculate(canonicalFile, valuationDate));
+    }
+
+    private Profit calculate(File file, LocalDate valuationDate) throws IOException {
+        List<Transaction> transactions = transactionFileCache.transactions(file);
+        List<Dividend> dividends = dividendService.generateDividends(transactions, seed(transactions));
+        return portfolioService.calculateProfit(transactions, dividends, List.of(), LotMatchListener.NONE,
+                ValuationDay.endOf(valuationDate));
+    }
+
+    private static long seed(List<Transaction> transactions) {
+        return transactions.isEmpty() || transactions.get(0).getPortfolioId() == null
+                ? Transaction.DEFAULT_PORTFOLIO_ID
+                : transactions.get(0).getPortfolioId();
+    }
+}
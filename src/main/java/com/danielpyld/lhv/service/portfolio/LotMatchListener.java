@@ -0,0 +1,15 @@
+package com.danielpyld.lhv.service.portfolio;
+
+import com.danielpyld.lhv.entity.LotMatch;
+
+/**
+ * Receives each lot match as the profit calculation produces it.
+ */
+@FunctionalInterface
+public interface LotMatchListener {
+
+    LotMatchListener NONE = match -> {
+    };
+
+    void onMatch(LotMatch match);
+}
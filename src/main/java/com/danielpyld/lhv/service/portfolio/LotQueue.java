@@ -0,0 +1,94 @@
+package com.danielpyld.lhv.service.portfolio;
+
+/**
+ * FIFO queue of open buy lots kept in parallel primitive arrays used as a growable ring buffer. A lot refers to
+ * its buy row in the {@link EventTimeline} and carries the quantity and scaled fee that are still open. Positions
+ * are relative to the head, 0 being the oldest open lot. Quantities are counted in whatever shares the caller added
+ * or resized them in; the queue does not know about splits.
+ */
+final class LotQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] rows = new int[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private long[] fees = new long[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+    private long totalQuantity;
+
+    void add(int row, int quantity, long fee) {
+        if (size == rows.length) {
+            grow();
+        }
+        int tail = (head + size) % rows.length;
+        rows[tail] = row;
+        quantities[tail] = quantity;
+        fees[tail] = fee;
+        size++;
+        totalQuantity += quantity;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long totalQuantity() {
+        return totalQuantity;
+    }
+
+    int row(int index) {
+        return rows[(head + index) % rows.length];
+    }
+
+    int quantity(int index) {
+        return quantities[(head + index) % rows.length];
+    }
+
+    long fee(int index) {
+        return fees[(head + index) % rows.length];
+    }
+
+    /**
+     * Takes quantity and fee from the oldest lot and removes it once it is fully consumed.
+     */
+    void consumeHead(int quantity, long fee) {
+        quantities[head] -= quantity;
+        fees[head] -= fee;
+        totalQuantity -= quantity;
+        if (quantities[head] == 0) {
+            head = (head + 1) % rows.length;
+            size--;
+        }
+    }
+
+    /**
+     * Replaces the open quantity of the oldest lot, keeping its fee; used when a split is applied to the lot.
+     * The quantity must be positive.
+     */
+    void resizeHead(int quantity) {
+        totalQuantity += quantity - quantities[head];
+        quantities[head] = quantity;
+    }
+
+    private void grow() {
+        int capacity = rows.length * 2;
+        int[] newRows = new int[capacity];
+        int[] newQuantities = new int[capacity];
+        long[] newFees = new long[capacity];
+        for (int i = 0; i < size; i++) {
+            int from = (head + i) % rows.length;
+            newRows[i] = rows[from];
+            newQuantities[i] = quantities[from];
+            newFees[i] = fees[from];
+        }
+        rows = newRows;
+        quantities = newQuantities;
+        fees = newFees;
+        head = 0;
+    }
+}
@@ -0,0 +1,146 @@
+package com.danielpyld.lhv.service.portfolio;
+
+/**
+ * Immutable FIFO open lots of a portfolio after all of its transactions and splits, in the shares of the latest
+ * split, with the profit realized up to then. Amounts are scaled longs like in the {@link EventTimeline}.
+ * <p>
+ * Any number of threads can sell against one snapshot through their own {@link View}. A sell only ever consumes
+ * the oldest lots, so a view is a cursor into the shared arrays plus its own copy of the one lot it has partly
+ * consumed; the arrays are never written after construction.
+ */
+final class LotSnapshot {
+
+    final int scale;
+    private final int[] quantities;
+    private final long[] prices;
+    private final long[] fees;
+    private final long totalQuantity;
+    private final long costBasis;
+    private final long realizedProfit;
+
+    /**
+     * @param scale          Number of decimal places of the amounts.
+     * @param quantities     Open quantity of each lot, oldest first; a lot emptied by a consolidation has 0.
+     * @param prices         Scaled buy price of each lot.
+     * @param fees           Scaled open buy fee of each lot.
+     * @param realizedProfit Scaled profit realized by the sells so far.
+     */
+    LotSnapshot(int scale, int[] quantities, long[] prices, long[] fees, long realizedProfit) {
+        this.scale = scale;
+        this.quantities = quantities;
+        this.prices = prices;
+        this.fees = fees;
+        this.realizedProfit = realizedProfit;
+        long quantity = 0;
+        long cost = 0;
+        for (int i = 0; i < quantities.length; i++) {
+            quantity += quantities[i];
+            cost = Math.addExact(cost, Math.addExact(Math.multiplyExact(prices[i], quantities[i]), fees[i]));
+        }
+        this.totalQuantity = quantity;
+        this.costBasis = cost;
+    }
+
+    int size() {
+        return quantities.length;
+    }
+
+    long totalQuantity() {
+        return totalQuantity;
+    }
+
+    long costBasis() {
+        return costBasis;
+    }
+
+    long realizedProfit() {
+        return realizedProfit;
+    }
+
+    /**
+     * @return A new view of the lots as they are in this snapshot.
+     */
+    View view() {
+        return new View();
+    }
+
+    /**
+     * The lots of the snapshot as changed by the sells made through this view. Not thread-safe; use one per thread.
+     */
+    final class View {
+        private int head;
+        private boolean headCopied;
+        private int headQuantity;
+        private long headFee;
+        private long soldQuantity;
+        private long consumedCost;
+        private long realizedProfit;
+
+        private View() {
+        }
+
+        /**
+         * Sells against the open lots, oldest first, with the same proportional fee split and rounding as the
+         * profit calculation. Sells more than the lots hold only as much as they hold.
+         *
+         * @param quantity Quantity to sell; must be positive.
+         * @param price    Scaled sell price.
+         * @param fee      Scaled sell fee.
+         * @return Scaled profit realized by this sell.
+         */
+        long sell(int quantity, long price, long fee) {
+            int quantityToSell = quantity;
+            long realized = 0;
+            while (quantityToSell > 0 && head < quantities.length) {
+                int quantityAvailable = headCopied ? headQuantity : quantities[head];
+                long lotFee = headCopied ? headFee : fees[head];
+                if (quantityAvailable == 0) {
+                    // Left without whole shares by a consolidation; the calculation drops such a lot with its fee.
+                    consumedCost = Math.addExact(consumedCost, lotFee);
+                    advance();
+                    continue;
+                }
+                int quantitySold = Math.min(quantityAvailable, quantityToSell);
+
+                long sellFeeProportion = PortfolioServiceImpl.proportionalAmount(fee, quantitySold, quantity);
+                long buyFeeProportion = PortfolioServiceImpl.proportionalAmount(lotFee, quantitySold, quantityAvailable);
+                long totalBuyAmount = Math.addExact(Math.multiplyExact(prices[head], quantitySold), buyFeeProportion);
+                long totalSellAmount = Math.subtractExact(Math.multiplyExact(price, quantitySold), sellFeeProportion);
+
+                realized = Math.addExact(realized, Math.subtractExact(totalSellAmount, totalBuyAmount));
+                consumedCost = Math.addExact(consumedCost, totalBuyAmount);
+                soldQuantity += quantitySold;
+                quantityToSell -= quantitySold;
+                if (quantitySold == quantityAvailable) {
+                    advance();
+                } else {
+                    headCopied = true;
+                    headQuantity = quantityAvailable - quantitySold;
+                    headFee = lotFee - buyFeeProportion;
+                }
+            }
+            realizedProfit = Math.addExact(realizedProfit, realized);
+            return realized;
+        }
+
+        private void advance() {
+            head++;
+            headCopied = false;
+        }
+
+        long remainingQuantity() {
+            return totalQuantity - soldQuantity;
+        }
+
+        long remainingCostBasis() {
+            return costBasis - consumedCost;
+        }
+
+        /**
+         * @return Scaled profit realized so far, including the sells of this view.
+         */
+        long totalRealizedProfit() {
+            return Math.addExact(LotSnapshot.this.realizedProfit, realizedProfit);
+        }
+    }
+}
@@ -2,10 +2,40 @@ package com.danielpyld.lhv.service.portfolio;
 
 import com.danielpyld.lhv.entity.Dividend;
 import com.danielpyld.lhv.entity.Profit;
+import com.danielpyld.lhv.entity.Returns;
+import com.danielpyld.lhv.entity.SellScenario;
+import com.danielpyld.lhv.entity.SellSimulation;
+import com.danielpyld.lhv.entity.StockSplit;
 import com.danielpyld.lhv.entity.Transaction;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface PortfolioService {
     Profit calculateProfit(List<Transaction> transactions, List<Dividend> dividends);
+
+    Profit calculateProfit(List<Transaction> transactions, List<Dividend> dividends, LotMatchListener lotMatchListener);
+
+    Profit calculateProfit(List<Transaction> transactions, List<Dividend> dividends, List<StockSplit> splits,
+                           LotMatchListener lotMatchListener);
+
+    Profit calculateProfit(List<Transaction> transactions, List<Dividend> dividends, List<StockSplit> splits,
+                           LotMatchListener lotMatchListener, Instant asOf);
+
+    Profit calculateProfit(Long portfolioId);
+
+    Profit calculateProfit(Long portfolioId, LocalDate valuationDate);
+
+    Profit calculateProfit(Long portfolioId, LotMatchListener lotMatchListener);
+
+    Map<Long, Profit> calculateProfits(Collection<Long> portfolioIds);
+
+    Returns calculateReturns(Long portfolioId);
+
+    List<SellSimulation> simulateSells(Long portfolioId, List<SellScenario> scenarios);
+
+    List<SellSimulation> simulateSells(List<Transaction> transactions, List<StockSplit> splits, List<SellScenario> scenarios);
 }
@@ -1,6 +1,14 @@
 package com.danielpyld.lhv.service.portfolio;
 
 import com.danielpyld.lhv.entity.*;
+import com.danielpyld.lhv.repository.TransactionRepository;
+import com.danielpyld.lhv.service.analytics.RiskStatistics;
+import com.danielpyld.lhv.service.dividend.DividendService;
+import com.danielpyld.lhv.service.fx.FxRateStore;
+import com.danielpyld.lhv.service.profiling.LotMatchingEvent;
+import com.danielpyld.lhv.service.profiling.ProfitCalculationEvent;
+import com.danielpyld.lhv.service.profiling.TimelineBuildEvent;
+import com.danielpyld.lhv.service.split.StockSplitService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,16 +17,105 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 @Service
 public class PortfolioServiceImpl implements PortfolioService {
 
     @Value("${scale}")
     private int SCALE;
-    private BigDecimal realizedStockProfit = BigDecimal.ZERO;
+    @Value("${analytics.rolling-window:20}")
+    private int rollingWindow;
     private static final Logger logger = LoggerFactory.getLogger(PortfolioServiceImpl.class);
 
+    private final TransactionRepository transactionRepository;
+    private final DividendService dividendService;
+    private final ForkJoinPool calculationPool;
+    private final ReturnsCalculator returnsCalculator;
+    private final FxRateStore fxRateStore;
+    private final StockSplitService stockSplitService;
+
+    public PortfolioServiceImpl(TransactionRepository transactionRepository,
+                                DividendService dividendService,
+                                ForkJoinPool portfolioCalculationPool,
+                                ReturnsCalculator returnsCalculator,
+                                FxRateStore fxRateStore,
+                                StockSplitService stockSplitService) {
+        this.transactionRepository = transactionRepository;
+        this.dividendService = dividendService;
+        this.calculationPool = portfolioCalculationPool;
+        this.returnsCalculator = returnsCalculator;
+        this.fxRateStore = fxRateStore;
+        this.stockSplitService = stockSplitService;
+    }
+
+    /**
+     * Calculates the profit of a single portfolio from its stored transactions as of the end of today.
+     *
+     * @param portfolioId Portfolio to calculate.
+     * @return ProfitResult containing calculated profit and loss details.
+     */
+    @Override
+    public Profit calculateProfit(Long portfolioId) {
+        return calculateProfit(portfolioId, ValuationDay.today());
+    }
+
+    /**
+     * Calculates the profit of a single portfolio from its stored transactions as of the end of the given day. The
+     * dividends are seeded with the portfolio id, so the same transactions on the same day always give the same
+     * result.
+     *
+     * @param portfolioId   Portfolio to calculate.
+     * @param valuationDate Day whose dividend payments are the last ones booked.
+     * @return ProfitResult containing calculated profit and loss details.
+     */
+    @Override
+    public Profit calculateProfit(Long portfolioId, LocalDate valuationDate) {
+        return calculateProfit(portfolioId, LotMatchListener.NONE, valuationDate);
+    }
+
+    /**
+     * Calculates the profit of a single portfolio from its stored transactions as of the end of today, reporting
+     * every lot match.
+     *
+     * @param portfolioId      Portfolio to calculate.
+     * @param lotMatchListener Receives each lot match as it is produced.
+     * @return ProfitResult containing calculated profit and loss details.
+     */
+    @Override
+    public Profit calculateProfit(Long portfolioId, LotMatchListener lotMatchListener) {
+        return calculateProfit(portfolioId, lotMatchListener, ValuationDay.today());
+    }
+
+    private Profit calculateProfit(Long portfolioId, LotMatchListener lotMatchListener, LocalDate valuationDate) {
+        List<Transaction> transactions = transactionRepository.findByPortfolioIdOrderByTimestampAscIdAsc(portfolioId);
+        List<Dividend> dividends = dividendService.generateDividends(transactions, portfolioId);
+        return calculateProfit(transactions, dividends, stockSplitService.getSplits(portfolioId), lotMatchListener,
+                ValuationDay.endOf(valuationDate));
+    }
+
+    /**
+     * Calculates the profit of many portfolios in parallel on the work-stealing calculation pool.
+     *
+     * @param portfolioIds Portfolios to calculate.
+     * @return Profit per portfolio, in the order the portfolios were requested.
+     */
+    @Override
+    public Map<Long, Profit> calculateProfits(Collection<Long> portfolioIds) {
+        Map<Long, ForkJoinTask<Profit>> tasks = new LinkedHashMap<>();
+        for (Long portfolioId : portfolioIds) {
+            tasks.computeIfAbsent(portfolioId, id -> calculationPool.submit(() -> calculateProfit(id)));
+        }
+
+        Map<Long, Profit> profits = new LinkedHashMap<>();
+        tasks.forEach((portfolioId, task) -> profits.put(portfolioId, task.join()));
+        logger.info("Calculated profit for {} portfolios on {} workers.", profits.size(), calculationPool.getParallelism());
+        return profits;
+    }
+
     /**
      * Calculates the profit based on a list of transactions and dividends.
      *
@@ -28,179 +125,365 @@ public class PortfolioServiceImpl implements PortfolioService {
      */
     @Override
     public Profit calculateProfit(List<Transaction> transactions, List<Dividend> dividends) {
+        return calculateProfit(transactions, dividends, LotMatchListener.NONE);
+    }
+
+    /**
+     * Calculates the profit based on a list of transactions and dividends. Each part of a buy lot consumed by a
+     * sell is passed to the listener as soon as it is matched, so callers can stream the matches without the
+     * calculation keeping them.
+     *
+     * @param transactions     List of transaction events (buy/sell).
+     * @param dividends        List of dividend events.
+     * @param lotMatchListener Receives each lot match as it is produced.
+     * @return ProfitResult containing calculated profit and loss details.
+     */
+    @Override
+    public Profit calculateProfit(List<Transaction> transactions, List<Dividend> dividends, LotMatchListener lotMatchListener) {
+        return calculateProfit(transactions, dividends, List.of(), lotMatchListener);
+    }
+
+    /**
+     * Calculates the profit based on a list of transactions, dividends and stock splits. A split does not touch
+     * the open lots; each lot is brought into post-split shares only when a sell or the final valuation reads it.
+     *
+     * @param transactions     List of transaction events (buy/sell).
+     * @param dividends        List of dividend events.
+     * @param splits           List of stock splits and consolidations.
+     * @param lotMatchListener Receives each lot match as it is produced.
+     * @return ProfitResult containing calculated profit and loss details.
+     */
+    @Override
+    public Profit calculateProfit(List<Transaction> transactions, List<Dividend> dividends, List<StockSplit> splits,
+                                  LotMatchListener lotMatchListener) {
+        return calculateProfit(transactions, dividends, splits, lotMatchListener, Instant.now());
+    }
+
+    /**
+     * Calculates the profit based on a list of transactions, dividends and stock splits as of the given instant.
+     * Dividend payments after it are not booked, so a past date can be valued without the income paid since.
+     *
+     * @param transactions     List of transaction events (buy/sell).
+     * @param dividends        List of dividend events.
+     * @param splits           List of stock splits and consolidations.
+     * @param lotMatchListener Receives each lot match as it is produced.
+     * @param asOf             Instant up to which dividend payments are booked.
+     * @return ProfitResult containing calculated profit and loss details.
+     */
+    @Override
+    public Profit calculateProfit(List<Transaction> transactions, List<Dividend> dividends, List<StockSplit> splits,
+                                  LotMatchListener lotMatchListener, Instant asOf) {
         logger.info("Calculating profit for transactions and dividends.");
-        List<Event> events = prepareEvents(transactions, dividends);
-        Collections.sort(events);
-
-        Queue<Transaction> buys = new LinkedList<>();
-        BigDecimal dividendProfit = BigDecimal.ZERO;
-        Instant currentDateTime = Instant.now();
-        BigDecimal lastPrice = BigDecimal.ZERO;
-
-        for (Event event : events) {
-            if (event instanceof TransactionEvent) {
-                lastPrice = handleTransactionEvent((TransactionEvent) event, buys);
-            } else if (event instanceof DividendEvent) {
-                dividendProfit = handleDividendEvent((DividendEvent) event, currentDateTime, transactions);
+        ProfitCalculationEvent calculationEvent = new ProfitCalculationEvent();
+        calculationEvent.begin();
+
+        TimelineBuildEvent timelineEvent = new TimelineBuildEvent();
+        timelineEvent.begin();
+        EventTimeline timeline = EventTimeline.of(transactions, dividends, splits, SCALE, fxRateStore);
+        timelineEvent.end();
+        if (timelineEvent.shouldCommit()) {
+            timelineEvent.transactions = transactions.size();
+            timelineEvent.dividends = dividends.size();
+            timelineEvent.rows = timeline.size;
+            timelineEvent.commit();
+        }
+
+        LotQueue lots = new LotQueue();
+        ProfitAccumulator accumulator = new ProfitAccumulator(rollingWindow, lotMatchListener);
+        long[] holdingsAtExDate = new long[dividends.size()];
+        long asOfNanos = EventTimeline.toEpochNanos(asOf);
+        long lastPrice = 0;
+
+        LotMatchingEvent matchingEvent = new LotMatchingEvent();
+        matchingEvent.begin();
+        byte[] kinds = timeline.kinds;
+        for (int row = 0; row < timeline.size; row++) {
+            switch (kinds[row]) {
+                case EventTimeline.BUY, EventTimeline.SELL -> lastPrice = handleTransactionEvent(timeline, row, lots, accumulator);
+                case EventTimeline.EX_DIVIDEND -> holdingsAtExDate[timeline.sources[row]] = accumulator.signedHoldings;
+                case EventTimeline.SPLIT -> lastPrice = handleSplitEvent(timeline, row, lastPrice, accumulator);
+                default -> handleDividendEvent(timeline, row, asOfNanos, holdingsAtExDate, accumulator);
             }
         }
+        matchingEvent.end();
+        if (matchingEvent.shouldCommit()) {
+            matchingEvent.rows = timeline.size;
+            matchingEvent.sells = timeline.size - 2 * dividends.size() - timeline.buyCount - timeline.splitCount;
+            matchingEvent.lotsTouched = accumulator.lotMatches;
+            matchingEvent.openLots = lots.size();
+            matchingEvent.commit();
+        }
 
-        int remainingHoldings = calculateRemainingHoldings(buys);
-        realizedStockProfit = calculateRealizedProfit(transactions, buys);
+        long unrealizedGains = findUnrealizedGains(timeline, lots, lastPrice, accumulator);
+        long totalProfit = Math.addExact(accumulator.realizedStockProfit, accumulator.dividendProfit);
+        accumulator.closePeriod(timeline.toDouble(lastPrice));
+
+        logger.info("Total profit calculated: {}", timeline.toDecimal(totalProfit));
+        Profit profit = createProfitResult(timeline.toDecimal(totalProfit), timeline.toDecimal(accumulator.realizedStockProfit),
+                timeline.toDecimal(accumulator.dividendProfit), timeline.toDecimal(unrealizedGains));
+        profit.setRiskMetrics(accumulator.risk.toMetrics());
+
+        calculationEvent.end();
+        if (calculationEvent.shouldCommit()) {
+            Long portfolioId = transactions.isEmpty() ? null : transactions.get(0).getPortfolioId();
+            calculationEvent.portfolioId = portfolioId != null ? portfolioId : 0;
+            calculationEvent.transactions = transactions.size();
+            calculationEvent.dividends = dividends.size();
+            calculationEvent.lotMatches = accumulator.lotMatches;
+            calculationEvent.commit();
+        }
+        return profit;
+    }
+
+    /**
+     * Calculates the money-weighted (XIRR) and time-weighted returns of a portfolio up to the end of today, with
+     * the same dividends as its profit.
+     *
+     * @param portfolioId Portfolio to calculate.
+     * @return Returns of the portfolio.
+     */
+    @Override
+    public Returns calculateReturns(Long portfolioId) {
+        List<Transaction> transactions = transactionRepository.findByPortfolioIdOrderByTimestampAscIdAsc(portfolioId);
+        List<Dividend> dividends = dividendService.generateDividends(transactions, portfolioId);
+        return returnsCalculator.calculateReturns(transactions, dividends, stockSplitService.getSplits(portfolioId),
+                ValuationDay.endOf(ValuationDay.today()));
+    }
+
+    /**
+     * Simulates hypothetical sells of a portfolio's current position, each on its own, from its stored transactions.
+     *
+     * @param portfolioId Portfolio to simulate.
+     * @param scenarios   Sells to simulate, each against the current lots.
+     * @return The outcome of each scenario, in the order given.
+     */
+    @Override
+    public List<SellSimulation> simulateSells(Long portfolioId, List<SellScenario> scenarios) {
+        List<Transaction> transactions = transactionRepository.findByPortfolioIdOrderByTimestampAscIdAsc(portfolioId);
+        return simulateSells(transactions, stockSplitService.getSplits(portfolioId), scenarios);
+    }
 
-        BigDecimal unrealizedGains = findUnrealizedGains(remainingHoldings, buys, lastPrice);
-        BigDecimal totalProfit = realizedStockProfit.add(dividendProfit);
+    /**
+     * Simulates hypothetical sells after the given transactions, each on its own. The open lots are built once
+     * into an immutable snapshot; every scenario sells against a view of it in parallel on the calculation pool,
+     * so a scenario costs only the lots its sell consumes instead of a calculation over the whole history. The
+     * results equal those of calculating the profit with the sell appended to the transactions.
+     *
+     * @param transactions List of transaction events (buy/sell).
+     * @param splits       List of stock splits and consolidations.
+     * @param scenarios    Sells to simulate, each against the lots after all transactions.
+     * @return The outcome of each scenario, in the order given.
+     * @throws IllegalArgumentException If a scenario has no price or a quantity that isn't positive.
+     */
+    @Override
+    public List<SellSimulation> simulateSells(List<Transaction> transactions, List<StockSplit> splits,
+                                              List<SellScenario> scenarios) {
+        for (SellScenario scenario : scenarios) {
+            if (scenario.getQuantity() <= 0 || scenario.getPrice() == null) {
+                throw new IllegalArgumentException("A sell scenario needs a positive quantity and a price");
+            }
+        }
+        LotSnapshot snapshot = snapshotLots(transactions, splits);
 
-        logger.info("Total profit calculated: {}", totalProfit);
-        return createProfitResult(totalProfit, realizedStockProfit, dividendProfit, unrealizedGains);
+        List<ForkJoinTask<SellSimulation>> tasks = new ArrayList<>(scenarios.size());
+        for (SellScenario scenario : scenarios) {
+            tasks.add(calculationPool.submit(() -> simulateSell(snapshot, scenario)));
+        }
+        List<SellSimulation> simulations = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<SellSimulation> task : tasks) {
+            simulations.add(task.join());
+        }
+        logger.info("Simulated {} sells against {} open lots.", simulations.size(), snapshot.size());
+        return simulations;
+    }
+
+    private SellSimulation simulateSell(LotSnapshot snapshot, SellScenario scenario) {
+        LotSnapshot.View lots = snapshot.view();
+        long realizedProfit = lots.sell(scenario.getQuantity(), EventTimeline.toScaled(scenario.getPrice(), snapshot.scale),
+                EventTimeline.toScaled(scenario.getFee(), snapshot.scale));
+        return new SellSimulation(scenario.getQuantity(), scenario.getPrice(),
+                (int) (snapshot.totalQuantity() - lots.remainingQuantity()),
+                toDecimal(realizedProfit, snapshot.scale), toDecimal(lots.totalRealizedProfit(), snapshot.scale),
+                (int) lots.remainingQuantity(), toDecimal(lots.remainingCostBasis(), snapshot.scale));
+    }
+
+    private BigDecimal toDecimal(long scaled, int scale) {
+        return BigDecimal.valueOf(scaled, scale).setScale(SCALE, RoundingMode.HALF_UP);
     }
 
     /**
-     * Prepares a list of events from transactions and dividends.
+     * Replays the buys, sells and splits of the transactions through the same lot matching as the profit
+     * calculation and freezes the open lots that remain, in the shares of the latest split.
      *
-     * @param transactions List of transactions.
-     * @param dividends    List of dividends.
-     * @return List of prepared events.
+     * @param transactions List of transaction events (buy/sell).
+     * @param splits       List of stock splits and consolidations.
+     * @return The open lots and the profit realized by the sells.
      */
-    private List<Event> prepareEvents(List<Transaction> transactions, List<Dividend> dividends) {
-        List<Event> events = new ArrayList<>();
-        for (Transaction tx : transactions) {
-            events.add(new TransactionEvent(tx));
+    LotSnapshot snapshotLots(List<Transaction> transactions, List<StockSplit> splits) {
+        EventTimeline timeline = EventTimeline.of(transactions, List.of(), splits, SCALE, fxRateStore);
+        LotQueue lots = new LotQueue();
+        ProfitAccumulator accumulator = new ProfitAccumulator();
+        for (int row = 0; row < timeline.size; row++) {
+            if (timeline.kinds[row] == EventTimeline.SPLIT) {
+                handleSplitEvent(timeline, row, 0, accumulator);
+            } else {
+                handleTransactionEvent(timeline, row, lots, accumulator);
+            }
         }
-        for (Dividend div : dividends) {
-            events.add(new DividendEvent(div));
+
+        int[] quantities = new int[lots.size()];
+        long[] prices = new long[lots.size()];
+        long[] fees = new long[lots.size()];
+        for (int i = 0; i < lots.size(); i++) {
+            int buyRow = lots.row(i);
+            quantities[i] = lots.quantity(i);
+            prices[i] = timeline.prices[buyRow];
+            fees[i] = lots.fee(i);
+            if (timeline.splitCount > 0) {
+                int buyEpoch = timeline.splitEpoch(buyRow);
+                int epoch = i == 0 && buyRow == accumulator.headRow ? accumulator.headEpoch : buyEpoch;
+                quantities[i] = timeline.adjustQuantity(quantities[i], epoch, accumulator.splitEpoch);
+                prices[i] = timeline.adjustPrice(prices[i], buyEpoch, accumulator.splitEpoch);
+            }
         }
-        return events;
+        return new LotSnapshot(timeline.scale, quantities, prices, fees, accumulator.realizedStockProfit);
     }
 
     /**
-     * Handles transaction events and updates the queue of buy transactions.
+     * Handles a buy or sell row of the timeline. Buys are queued as open lots; sells are matched against them.
      *
-     * @param event Transaction event to handle.
-     * @param buys  Queue of buy transactions.
-     * @return The last price of the transaction.
+     * @param timeline    Event timeline of the calculation.
+     * @param row         Row of the transaction.
+     * @param lots        Queue of open buy lots.
+     * @param accumulator Running totals of the current calculation.
+     * @return The scaled price of the transaction.
      */
-    BigDecimal handleTransactionEvent(TransactionEvent event, Queue<Transaction> buys) {
-        Transaction transaction = event.getTransaction();
-        BigDecimal lastPrice = transaction.getPrice();
+    long handleTransactionEvent(EventTimeline timeline, int row, LotQueue lots, ProfitAccumulator accumulator) {
+        accumulator.onTransaction(timeline, row);
 
-        if (transaction.getType() == Type.BUY) {
-            buys.offer(transaction);
-            logger.info("Buy transaction added: {}", transaction);
+        if (timeline.kinds[row] == EventTimeline.BUY) {
+            lots.add(row, timeline.quantities[row], timeline.fees[row]);
         } else {
-            processSellTransaction(transaction, buys);
+            long realizedProfit = processSellTransaction(timeline, row, lots, accumulator);
+            accumulator.realizedStockProfit = Math.addExact(accumulator.realizedStockProfit, realizedProfit);
         }
 
-        return lastPrice;
+        return timeline.prices[row];
     }
 
     /**
-     * Processes sell transactions and updates the realized profit.
+     * Processes a sell row against the open buy lots, oldest first. Fees are split in proportion to the matched
+     * quantity and all amounts stay scaled longs; an overflow fails the calculation instead of wrapping.
      *
-     * @param transaction Sell transaction to process.
-     * @param buys        Queue of buy transactions.
+     * @param timeline         Event timeline of the calculation.
+     * @param row              Row of the sell transaction.
+     * @param lots             Queue of open buy lots.
+     * @param accumulator      Running totals of the current calculation; its listener receives the part of each
+     *                         buy lot the sell consumed.
+     * @return Scaled realized profit of the sell.
      */
-    private void processSellTransaction(Transaction transaction, Queue<Transaction> buys) {
-        int quantityToSell = transaction.getQuantity();
-        BigDecimal totalSellFee = transaction.getFee();
-        BigDecimal realizedProfit = BigDecimal.ZERO;
-
-        while (quantityToSell > 0 && !buys.isEmpty()) {
-            Transaction buy = buys.peek();
-            int quantityAvailable = buy.getQuantity();
+    private long processSellTransaction(EventTimeline timeline, int row, LotQueue lots, ProfitAccumulator accumulator) {
+        LotMatchListener lotMatchListener = accumulator.lotMatchListener;
+        int sellQuantity = timeline.quantities[row];
+        long sellPrice = timeline.prices[row];
+        long totalSellFee = timeline.fees[row];
+        int quantityToSell = sellQuantity;
+        long realizedProfit = 0;
+
+        while (quantityToSell > 0 && !lots.isEmpty()) {
+            if (timeline.splitCount > 0 && !normalizeHead(timeline, lots, accumulator)) {
+                continue;
+            }
+            int buyRow = lots.row(0);
+            int quantityAvailable = lots.quantity(0);
             int quantitySold = Math.min(quantityAvailable, quantityToSell);
+            long buyPrice = timeline.splitCount == 0 ? timeline.prices[buyRow]
+                    : timeline.adjustPrice(timeline.prices[buyRow], timeline.splitEpoch(buyRow), accumulator.splitEpoch);
 
-            BigDecimal sellFeeProportion = calculateProportionalAmount(totalSellFee, quantitySold, transaction.getQuantity());
-            BigDecimal buyFeeProportion = calculateProportionalAmount(buy.getFee(), quantitySold, buy.getQuantity());
+            long sellFeeProportion = proportionalAmount(totalSellFee, quantitySold, sellQuantity);
+            long buyFeeProportion = proportionalAmount(lots.fee(0), quantitySold, quantityAvailable);
 
-            buy.setFee(buy.getFee().subtract(buyFeeProportion));
-            BigDecimal totalBuyAmount = buy.getPrice().multiply(BigDecimal.valueOf(quantitySold)).add(buyFeeProportion);
-            BigDecimal totalSellAmount = transaction.getPrice().multiply(BigDecimal.valueOf(quantitySold)).subtract(sellFeeProportion);
+            long totalBuyAmount = Math.addExact(Math.multiplyExact(buyPrice, quantitySold), buyFeeProportion);
+            long totalSellAmount = Math.subtractExact(Math.multiplyExact(sellPrice, quantitySold), sellFeeProportion);
 
-            realizedProfit = realizedProfit.add(totalSellAmount.subtract(totalBuyAmount));
+            realizedProfit = Math.addExact(realizedProfit, Math.subtractExact(totalSellAmount, totalBuyAmount));
+            if (lotMatchListener != LotMatchListener.NONE) {
+                lotMatchListener.onMatch(new LotMatch(timeline.transaction(buyRow), timeline.transaction(row), quantitySold,
+                        timeline.toDecimal(buyPrice), timeline.toDecimal(sellPrice),
+                        timeline.toDecimal(buyFeeProportion), timeline.toDecimal(sellFeeProportion),
+                        timeline.toDecimal(totalBuyAmount), timeline.toDecimal(totalSellAmount)));
+            }
 
-            buy.setQuantity(quantityAvailable - quantitySold);
+            lots.consumeHead(quantitySold, buyFeeProportion);
+            accumulator.lotMatches++;
             quantityToSell -= quantitySold;
-
-            if (buy.getQuantity() == 0) {
-                buys.poll();
-            }
         }
 
-        realizedStockProfit = realizedStockProfit.add(realizedProfit);
-        logger.info("Sell transaction processed: {} - Realized profit: {}", transaction, realizedProfit);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Sell transaction processed: {} - Realized profit: {}", timeline.transaction(row), timeline.toDecimal(realizedProfit));
+        }
+        return realizedProfit;
     }
 
     /**
-     * Calculates the total realized profit from sell transactions.
+     * Brings the oldest open lot into the shares of the current split epoch before a sell consumes it. Sells only
+     * ever consume the head, so every other lot still holds the quantity of its own buy row's epoch and only the
+     * head's epoch has to be remembered. A lot left without whole shares by a consolidation is dropped; cash paid
+     * in lieu of fractional shares is not modelled.
      *
-     * @param transactions List of transactions.
-     * @param buys        Queue of buy transactions.
-     * @return Total realized profit.
+     * @param timeline    Event timeline of the calculation.
+     * @param lots        Queue of open buy lots; must not be empty.
+     * @param accumulator Running totals of the current calculation.
+     * @return Whether the head lot was kept.
      */
-    BigDecimal calculateRealizedProfit(List<Transaction> transactions, Queue<Transaction> buys) {
-        BigDecimal realizedProfit = BigDecimal.ZERO;
-
-        for (Transaction transaction : transactions) {
-            if (transaction.getType() == Type.SELL) {
-                BigDecimal totalSellAmount = transaction.getPrice().multiply(BigDecimal.valueOf(transaction.getQuantity()));
-                BigDecimal totalSellFee = transaction.getFee();
-                BigDecimal netSellAmount = totalSellAmount.subtract(totalSellFee);
-
-                int quantityToSell = transaction.getQuantity();
-                while (quantityToSell > 0 && !buys.isEmpty()) {
-                    Transaction buy = buys.peek();
-                    int quantityAvailable = buy.getQuantity();
-                    int quantitySold = Math.min(quantityAvailable, quantityToSell);
-
-                    BigDecimal buyCost = buy.getPrice().multiply(BigDecimal.valueOf(quantitySold));
-                    BigDecimal buyFee = calculateProportionalAmount(buy.getFee(), quantitySold, buy.getQuantity());
-                    BigDecimal totalBuyAmount = buyCost.add(buyFee);
-
-                    realizedProfit = realizedProfit.add(netSellAmount.subtract(totalBuyAmount));
-
-                    buy.setQuantity(quantityAvailable - quantitySold);
-                    quantityToSell -= quantitySold;
-
-                    if (buy.getQuantity() == 0) {
-                        buys.poll();
-                    }
-                }
+    private boolean normalizeHead(EventTimeline timeline, LotQueue lots, ProfitAccumulator accumulator) {
+        int buyRow = lots.row(0);
+        int epoch = buyRow == accumulator.headRow ? accumulator.headEpoch : timeline.splitEpoch(buyRow);
+        if (epoch != accumulator.splitEpoch) {
+            int quantity = timeline.adjustQuantity(lots.quantity(0), epoch, accumulator.splitEpoch);
+            if (quantity == 0) {
+                lots.consumeHead(lots.quantity(0), lots.fee(0));
+                return false;
             }
+            lots.resizeHead(quantity);
         }
-
-        return realizedProfit;
+        accumulator.headRow = buyRow;
+        accumulator.headEpoch = accumulator.splitEpoch;
+        return true;
     }
 
     /**
-     * Handles dividend payment events and calculates the dividend amount.
+     * Handles a split row of the timeline by advancing the split epoch in constant time. The position totals are
+     * split at once; open lots are left as they are and adjusted when they are next read.
      *
-     * @param event          Dividend payment event to handle.
-     * @param currentDateTime Current date and time for comparison.
-     * @param transactions    List of transactions.
-     * @return Dividend amount for the event.
+     * @param timeline    Event timeline of the calculation.
+     * @param row         Row of the split.
+     * @param lastPrice   Scaled last price, in the shares before the split.
+     * @param accumulator Running totals of the current calculation.
+     * @return The scaled last price in the shares after the split.
      */
-    private BigDecimal handleDividendEvent(DividendEvent event, Instant currentDateTime, List<Transaction> transactions) {
-        Dividend dividend = event.getDividend();
-        if (!dividend.getPaymentDate().isAfter(currentDateTime)) {
-            int holdingsAtExDate = calculateHoldingsAtDate(transactions, dividend.getExDividendDate());
-            return dividend.getAmountPerUnit().multiply(BigDecimal.valueOf(holdingsAtExDate));
-        }
-        return BigDecimal.ZERO;
+    private long handleSplitEvent(EventTimeline timeline, int row, long lastPrice, ProfitAccumulator accumulator) {
+        accumulator.onSplit(timeline, row);
+        return timeline.adjustPrice(lastPrice, accumulator.splitEpoch - 1, accumulator.splitEpoch);
     }
 
     /**
-     * Calculates the remaining holdings based on buy transactions in the queue.
+     * Handles a dividend payment row and books the income on the holdings recorded at its ex-dividend date.
+     * Payments after the valuation instant are not booked.
      *
-     * @param buys Queue of buy transactions.
-     * @return Total remaining holdings.
+     * @param timeline         Event timeline of the calculation.
+     * @param row              Row of the dividend payment.
+     * @param asOfNanos        Valuation instant in epoch nanoseconds.
+     * @param holdingsAtExDate Holdings recorded at the ex-dividend date, per dividend.
+     * @param accumulator      Running totals of the current calculation.
      */
-    private int calculateRemainingHoldings(Queue<Transaction> buys) {
-        int remainingHoldings = 0;
-        for (Transaction buy : buys) {
-            remainingHoldings += buy.getQuantity();
+    private void handleDividendEvent(EventTimeline timeline, int row, long asOfNanos, long[] holdingsAtExDate,
+                                     ProfitAccumulator accumulator) {
+        if (timeline.timestamps[row] <= asOfNanos) {
+            long dividendAmount = Math.multiplyExact(timeline.prices[row], holdingsAtExDate[timeline.sources[row]]);
+            accumulator.dividendProfit = Math.addExact(accumulator.dividendProfit, dividendAmount);
+            accumulator.periodIncome += timeline.toDouble(dividendAmount);
         }
-        return remainingHoldings;
     }
 
     /**
@@ -222,56 +505,127 @@ public class PortfolioServiceImpl implements PortfolioService {
     }
 
     /**
-     * Calculates the proportional amount based on a part of the total.
+     * Calculates the scaled proportional amount of a part of the total, rounding half up.
      *
-     * @param totalAmount Total amount to divide.
-     * @param part       Part of the total amount.
-     * @param total      Total for proportional calculation.
-     * @return Proportional amount.
+     * @param totalAmount Scaled total amount to divide.
+     * @param part        Part of the total amount.
+     * @param total       Total for proportional calculation.
+     * @return Scaled proportional amount.
      */
-    private BigDecimal calculateProportionalAmount(BigDecimal totalAmount, int part, int total) {
-        return totalAmount.multiply(BigDecimal.valueOf(part))
-                .divide(BigDecimal.valueOf(total), SCALE, RoundingMode.HALF_UP);
+    static long proportionalAmount(long totalAmount, int part, int total) {
+        long product = Math.multiplyExact(totalAmount, part);
+        long quotient = product / total;
+        long remainder = product % total;
+        if (Math.abs(remainder) * 2 >= total) {
+            quotient += Long.signum(product);
+        }
+        return quotient;
     }
 
     /**
-     * Calculates the total holdings at a specific date based on transactions.
+     * Calculates unrealized gains of the open lots at the last price. After splits, each lot's quantity and price
+     * are read in the shares of the current epoch without writing them back.
      *
-     * @param transactions List of transactions.
-     * @param date        Date to check holdings.
-     * @return Total holdings at the specified date.
+     * @param timeline    Event timeline of the calculation.
+     * @param lots        Queue of open buy lots.
+     * @param lastPrice   Scaled last price of the stock.
+     * @param accumulator Running totals of the calculation, holding the current split epoch.
+     * @return Scaled total unrealized gains.
      */
-    private int calculateHoldingsAtDate(List<Transaction> transactions, Instant date) {
-        int holdings = 0;
-        for (Transaction tx : transactions) {
-            if (!tx.getTimestamp().isAfter(date)) {
-                holdings += tx.getType() == Type.BUY ? tx.getQuantity() : -tx.getQuantity();
-            } else {
-                break;
+    long findUnrealizedGains(EventTimeline timeline, LotQueue lots, long lastPrice, ProfitAccumulator accumulator) {
+        long remainingHoldings = timeline.splitCount == 0 ? lots.totalQuantity() : 0;
+        long totalCost = 0;
+        for (int i = 0; i < lots.size(); i++) {
+            int buyRow = lots.row(i);
+            int quantity = lots.quantity(i);
+            long price = timeline.prices[buyRow];
+            if (timeline.splitCount > 0) {
+                int buyEpoch = timeline.splitEpoch(buyRow);
+                int epoch = i == 0 && buyRow == accumulator.headRow ? accumulator.headEpoch : buyEpoch;
+                quantity = timeline.adjustQuantity(quantity, epoch, accumulator.splitEpoch);
+                price = timeline.adjustPrice(price, buyEpoch, accumulator.splitEpoch);
+                remainingHoldings += quantity;
             }
+            long buyCost = Math.multiplyExact(price, quantity);
+            totalCost = Math.addExact(totalCost, Math.addExact(buyCost, lots.fee(i)));
+        }
+        if (remainingHoldings <= 0) {
+            return 0;
         }
-        return holdings;
+        return Math.subtractExact(Math.multiplyExact(lastPrice, remainingHoldings), totalCost);
     }
 
     /**
-     * Calculates unrealized gains based on remaining holdings and buy transactions.
-     *
-     * @param remainingHoldings Remaining holdings.
-     * @param buys             Queue of buy transactions.
-     * @param lastPrice        Last price of the stock.
-     * @return Total unrealized gains.
+     * Running totals of a single calculation, kept per call so the service can be used concurrently.
+     * Besides the profit totals it tracks the market value of the holdings between transactions, so each
+     * transaction closes a flow-adjusted sub-period whose return is fed to the risk statistics.
      */
-    BigDecimal findUnrealizedGains(int remainingHoldings, Queue<Transaction> buys, BigDecimal lastPrice) {
-        BigDecimal unrealizedGains = BigDecimal.ZERO;
-        if (remainingHoldings > 0) {
-            BigDecimal totalCost = BigDecimal.ZERO;
-            for (Transaction buy : buys) {
-                BigDecimal buyCost = buy.getPrice().multiply(BigDecimal.valueOf(buy.getQuantity()));
-                totalCost = totalCost.add(buyCost).add(buy.getFee());
+    static final class ProfitAccumulator {
+        private long realizedStockProfit;
+        private long dividendProfit;
+        private long signedHoldings;
+        private long lotMatches;
+        /** Number of splits applied so far. */
+        private int splitEpoch;
+        /** Buy row of the lot last brought into the shares of {@link #headEpoch}, or -1. */
+        private int headRow = -1;
+        private int headEpoch;
+        private final RiskStatistics risk;
+        private final LotMatchListener lotMatchListener;
+        private long holdings;
+        private double periodStartValue;
+        private double periodIncome;
+
+        ProfitAccumulator() {
+            this(0, LotMatchListener.NONE);
+        }
+
+        ProfitAccumulator(int rollingWindow, LotMatchListener lotMatchListener) {
+            this.risk = new RiskStatistics(rollingWindow);
+            this.lotMatchListener = lotMatchListener;
+        }
+
+        /**
+         * Closes the current sub-period at the transaction price and opens the next one after the trade.
+         */
+        private void onTransaction(EventTimeline timeline, int row) {
+            double price = timeline.toDouble(timeline.prices[row]);
+            int quantity = timeline.quantities[row];
+            if (periodStartValue > 0) {
+                double fee = timeline.toDouble(timeline.fees[row]);
+                risk.addReturn((holdings * price + periodIncome - fee) / periodStartValue - 1);
+            }
+            if (timeline.kinds[row] == EventTimeline.BUY) {
+                holdings += quantity;
+                signedHoldings += quantity;
+            } else {
+                holdings -= Math.min(quantity, holdings);
+                signedHoldings -= quantity;
+            }
+            periodStartValue = holdings * price;
+            periodIncome = 0;
+        }
+
+        /**
+         * Applies a split to the position totals. The market value of the sub-period is unchanged by a split.
+         */
+        private void onSplit(EventTimeline timeline, int row) {
+            long newShares = timeline.quantities[row];
+            long oldShares = timeline.fees[row];
+            holdings = Math.multiplyExact(holdings, newShares) / oldShares;
+            signedHoldings = Math.multiplyExact(signedHoldings, newShares) / oldShares;
+            splitEpoch++;
+        }
+
+        /**
+         * Closes the last open sub-period at the last known price.
+         */
+        private void closePeriod(double lastPrice) {
+            if (periodStartValue > 0) {
+                risk.addReturn((holdings * lastPrice + periodIncome) / periodStartValue - 1);
             }
-            BigDecimal marketValue = lastPrice.multiply(BigDecimal.valueOf(remainingHoldings));
-            unrealizedGains = marketValue.subtract(totalCost);
+            periodStartValue = 0;
+            periodIncome = 0;
         }
-        return unrealizedGains;
     }
 }
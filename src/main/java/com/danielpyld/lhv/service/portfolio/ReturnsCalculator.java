@@ -0,0 +1,280 @@
+package com.danielpyld.lhv.service.portfolio;
+
+import com.danielpyld.lhv.entity.Dividend;
+import com.danielpyld.lhv.entity.Returns;
+import com.danielpyld.lhv.entity.StockSplit;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import com.danielpyld.lhv.service.fx.FxRateStore;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Calculates the annualized money-weighted return (XIRR) and the time-weighted return of a portfolio.
+ * Cash flows are collected in a single time-ordered pass over transactions and dividends into primitive arrays.
+ * Flows are seen from the investor: buys are negative, sells, dividend payments and the closing market value positive.
+ * Amounts are converted into the base currency at the rate in effect at their own time, as in the profit calculation.
+ */
+@Component
+public class ReturnsCalculator {
+
+    private static final double MILLIS_PER_YEAR = 365.0 * 24 * 60 * 60 * 1000;
+    private static final double MIN_RATE = -0.999999;
+    private static final double MAX_RATE = 1e6;
+    private static final double TOLERANCE = 1e-10;
+    private static final int MAX_ITERATIONS = 200;
+
+    private final FxRateStore fxRateStore;
+
+    public ReturnsCalculator(FxRateStore fxRateStore) {
+        this.fxRateStore = fxRateStore;
+    }
+
+    /**
+     * Calculates returns up to the given instant. Transactions and dividend payments after it are ignored.
+     *
+     * @param transactions List of transactions.
+     * @param dividends    List of dividends.
+     * @param asOf         End of the measurement period.
+     * @return Returns of the period; rates are null when they are undefined for the given flows.
+     * @throws IllegalArgumentException If an amount has no FX rate at its time.
+     */
+    public Returns calculateReturns(List<Transaction> transactions, List<Dividend> dividends, Instant asOf) {
+        return calculateReturns(transactions, dividends, List.of(), asOf);
+    }
+
+    /**
+     * Calculates returns up to the given instant with the shares held adjusted by stock splits. A split changes the
+     * number of shares and the price per share but not the value held, so it is not a cash flow. As in the profit
+     * calculation, a split applies before trades at the same instant.
+     *
+     * @param transactions List of transactions.
+     * @param dividends    List of dividends.
+     * @param splits       List of stock splits and consolidations.
+     * @param asOf         End of the measurement period.
+     * @return Returns of the period; rates are null when they are undefined for the given flows.
+     * @throws IllegalArgumentException If an amount has no FX rate at its time.
+     */
+    public Returns calculateReturns(List<Transaction> transactions, List<Dividend> dividends, List<StockSplit> splits,
+                                    Instant asOf) {
+        List<Transaction> orderedTransactions = sortedIfNeeded(transactions);
+        List<StockSplit> orderedSplits = new ArrayList<>(splits);
+        orderedSplits.sort(Comparator.comparing(StockSplit::getEffectiveDate));
+        List<Dividend> byExDate = new ArrayList<>(dividends);
+        byExDate.sort(Comparator.comparing(Dividend::getExDividendDate));
+        List<Integer> byPaymentDate = new ArrayList<>(byExDate.size());
+        for (int i = 0; i < byExDate.size(); i++) {
+            byPaymentDate.add(i);
+        }
+        byPaymentDate.sort(Comparator.comparing(i -> byExDate.get(i).getPaymentDate()));
+
+        long asOfMillis = asOf.toEpochMilli();
+        int transactionCount = orderedTransactions.size();
+        int dividendCount = byExDate.size();
+        int splitCount = orderedSplits.size();
+
+        double[] flowAmounts = new double[transactionCount + dividendCount + 1];
+        long[] flowTimes = new long[flowAmounts.length];
+        long[] holdingsAtExDate = new long[dividendCount];
+        FxRateStore.Cursor rates = fxRateStore.cursor();
+        int flows = 0;
+
+        long holdings = 0;
+        double lastPrice = 0;
+        double twrFactor = 1;
+        double periodStartValue = 0;
+        double periodIncome = 0;
+        int ti = 0;
+        int ei = 0;
+        int pi = 0;
+        int si = 0;
+
+        while (true) {
+            long nextSplit = si < splitCount ? orderedSplits.get(si).getEffectiveDate().toEpochMilli() : Long.MAX_VALUE;
+            long nextTransaction = ti < transactionCount ? orderedTransactions.get(ti).getTimestamp().toEpochMilli() : Long.MAX_VALUE;
+            long nextExDate = ei < dividendCount ? byExDate.get(ei).getExDividendDate().toEpochMilli() : Long.MAX_VALUE;
+            long nextPayment = pi < dividendCount ? byExDate.get(byPaymentDate.get(pi)).getPaymentDate().toEpochMilli() : Long.MAX_VALUE;
+            long next = Math.min(Math.min(nextSplit, nextTransaction), Math.min(nextExDate, nextPayment));
+            if (next == Long.MAX_VALUE || next > asOfMillis) {
+                break;
+            }
+
+            if (nextSplit == next) {
+                StockSplit split = orderedSplits.get(si++);
+                holdings = Math.multiplyExact(holdings, split.getNewShares()) / split.getOldShares();
+                lastPrice = lastPrice * split.getOldShares() / split.getNewShares();
+            } else if (nextTransaction == next) {
+                Transaction transaction = orderedTransactions.get(ti++);
+                double price = toBase(transaction.getPrice(), transaction.getCurrency(), transaction.getTimestamp(), rates);
+                double fee = toBase(transaction.getFee(), transaction.getCurrency(), transaction.getTimestamp(), rates);
+                int quantity = transaction.getQuantity();
+
+                if (periodStartValue > 0) {
+                    twrFactor *= (holdings * price + periodIncome - fee) / periodStartValue;
+                }
+                if (transaction.getType() == Type.BUY) {
+                    holdings += quantity;
+                    flowAmounts[flows] = -(price * quantity + fee);
+                } else {
+                    holdings -= Math.min(quantity, holdings);
+                    flowAmounts[flows] = price * quantity - fee;
+                }
+                flowTimes[flows++] = next;
+                lastPrice = price;
+                periodStartValue = holdings * price;
+                periodIncome = 0;
+            } else if (nextExDate == next) {
+                holdingsAtExDate[ei++] = holdings;
+            } else {
+                int dividend = byPaymentDate.get(pi++);
+                Dividend source = byExDate.get(dividend);
+                double income = toBase(source.getAmountPerUnit(), source.getCurrency(), source.getPaymentDate(), rates) * holdingsAtExDate[dividend];
+                if (income != 0) {
+                    flowAmounts[flows] = income;
+                    flowTimes[flows++] = next;
+                    periodIncome += income;
+                }
+            }
+        }
+
+        if (flows == 0) {
+            return new Returns(null, null, null, null, asOf);
+        }
+
+        double closingValue = holdings * lastPrice;
+        if (periodStartValue > 0) {
+            twrFactor *= (closingValue + periodIncome) / periodStartValue;
+        }
+        if (closingValue > 0) {
+            flowAmounts[flows] = closingValue;
+            flowTimes[flows++] = asOfMillis;
+        }
+
+        long start = flowTimes[0];
+        double[] flowYears = new double[flows];
+        for (int i = 0; i < flows; i++) {
+            flowYears[i] = (flowTimes[i] - start) / MILLIS_PER_YEAR;
+        }
+
+        double years = (asOfMillis - start) / MILLIS_PER_YEAR;
+        double twr = twrFactor - 1;
+        Double annualizedTwr = years > 0 && twrFactor > 0 ? Math.pow(twrFactor, 1 / years) - 1 : null;
+        return new Returns(toNullable(xirr(flowAmounts, flowYears, flows)), twr, annualizedTwr, Instant.ofEpochMilli(start), asOf);
+    }
+
+    /**
+     * Converts an amount into the base currency at the rate in effect at the given time.
+     */
+    private double toBase(BigDecimal amount, String currency, Instant at, FxRateStore.Cursor rates) {
+        int series = fxRateStore.series(currency);
+        if (series == FxRateStore.BASE) {
+            return amount.doubleValue();
+        }
+        return FxRateStore.convert(amount, rates.rateAt(series, EventTimeline.toEpochNanos(at))).doubleValue();
+    }
+
+    /**
+     * Solves the XIRR equation sum(a_i * (1 + r)^-t_i) = 0 with Newton steps safeguarded by bisection inside a
+     * bracketing interval, so the solver always converges once a sign change has been found.
+     *
+     * @param amounts Flow amounts.
+     * @param years   Flow times in years from the first flow.
+     * @param count   Number of flows to use.
+     * @return The annual rate, or NaN when the flows have no root (for example all of the same sign).
+     */
+    static double xirr(double[] amounts, double[] years, int count) {
+        double low = MIN_RATE;
+        double high = 1.0;
+        double fLow = npv(amounts, years, count, low);
+        double fHigh = npv(amounts, years, count, high);
+        while (fLow * fHigh > 0 && high < MAX_RATE) {
+            high = high * 10;
+            fHigh = npv(amounts, years, count, high);
+        }
+        if (Double.isNaN(fLow) || Double.isNaN(fHigh) || fLow * fHigh > 0) {
+            return Double.NaN;
+        }
+        if (fLow == 0) {
+            return low;
+        }
+        if (fHigh == 0) {
+            return high;
+        }
+
+        double negative = fLow < 0 ? low : high;
+        double positive = fLow < 0 ? high : low;
+        double rate = 0.1 > low && 0.1 < high ? 0.1 : 0.5 * (low + high);
+        double previousStep = Math.abs(high - low);
+        double step = previousStep;
+        double[] valueAndDerivative = new double[2];
+        npvWithDerivative(amounts, years, count, rate, valueAndDerivative);
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            double value = valueAndDerivative[0];
+            double derivative = valueAndDerivative[1];
+            boolean newtonLeavesBracket = ((rate - positive) * derivative - value) * ((rate - negative) * derivative - value) > 0;
+            boolean newtonTooSlow = Math.abs(2 * value) > Math.abs(previousStep * derivative);
+            if (newtonLeavesBracket || newtonTooSlow) {
+                previousStep = step;
+                step = 0.5 * (positive - negative);
+                rate = negative + step;
+            } else {
+                previousStep = step;
+                step = value / derivative;
+                rate -= step;
+            }
+            if (Math.abs(step) < TOLERANCE) {
+                return rate;
+            }
+            npvWithDerivative(amounts, years, count, rate, valueAndDerivative);
+            if (valueAndDerivative[0] < 0) {
+                negative = rate;
+            } else {
+                positive = rate;
+            }
+        }
+        return rate;
+    }
+
+    private static double npv(double[] amounts, double[] years, int count, double rate) {
+        double logBase = Math.log1p(rate);
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += amounts[i] * Math.exp(-years[i] * logBase);
+        }
+        return sum;
+    }
+
+    private static void npvWithDerivative(double[] amounts, double[] years, int count, double rate, double[] result) {
+        double logBase = Math.log1p(rate);
+        double value = 0;
+        double derivative = 0;
+        for (int i = 0; i < count; i++) {
+            double discounted = amounts[i] * Math.exp(-years[i] * logBase);
+            value += discounted;
+            derivative -= years[i] * discounted;
+        }
+        result[0] = value;
+        result[1] = derivative / (1 + rate);
+    }
+
+    private static Double toNullable(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? null : value;
+    }
+
+    private static List<Transaction> sortedIfNeeded(List<Transaction> transactions) {
+        for (int i = 1; i < transactions.size(); i++) {
+            if (transactions.get(i).getTimestamp().isBefore(transactions.get(i - 1).getTimestamp())) {
+                List<Transaction> sorted = new ArrayList<>(transactions);
+                sorted.sort(Comparator.comparing(Transaction::getTimestamp));
+                return sorted;
+            }
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,252 @@
+package com.danielpyld.lhv.service.portfolio;
+
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.service.profiling.JsonParseEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsed transaction files, kept as {@link CompactTransactions} in a cache bounded by their total estimated size.
+ * Entries are keyed by canonical path, size and modification time, so a changed file is never answered from the
+ * entry of its previous content, even if a change is missed by the watcher.
+ * <p>
+ * The directories of cached files are watched: once a cached file has changed and then seen no further events for
+ * a quiet period, it is parsed again in the background so the next request finds it ready; a deleted file's entry
+ * is dropped. A file that still fails to parse, e.g. because it is being written slowly, is left to the next request.
+ */
+@Component
+public class TransactionFileCache implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionFileCache.class);
+    /** Time without events after which a changed file is taken to be completely written. */
+    private static final Duration QUIET_PERIOD = Duration.ofMillis(500);
+
+    private final ObjectMapper objectMapper;
+    private final Cache<FileKey, CompactTransactions> files;
+    private final Map<Path, WatchKey> watchedDirectories = new ConcurrentHashMap<>();
+    private final WatchService watchService;
+    private final Thread watcher;
+
+    public TransactionFileCache(MeterRegistry meterRegistry,
+                                @Value("${portfolio.file-cache.max-bytes:268435456}") long maxBytes,
+                                @Value("${portfolio.file-cache.watch:true}") boolean watch) throws IOException {
+        this.objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        if (maxBytes > 0) {
+            this.files = Caffeine.newBuilder()
+                    .maximumWeight(maxBytes)
+                    .weigher((FileKey key, CompactTransactions transactions) ->
+                            (int) Math.min(Integer.MAX_VALUE, transactions.estimatedBytes()))
+                    .executor(Runnable::run)
+                    .removalListener((FileKey key, CompactTransactions transactions, RemovalCause cause) -> {
+                        if (key != null && cause != RemovalCause.REPLACED) {
+                            unwatchIfUnused(key.path().getParent());
+                        }
+                    })
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, files, "portfolio.files");
+        } else {
+            this.files = null;
+        }
+
+        if (files != null && watch) {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            this.watcher = new Thread(this::run, "transaction-file-watcher");
+            this.watcher.setDaemon(true);
+            watcher.start();
+        } else {
+            this.watchService = null;
+            this.watcher = null;
+        }
+    }
+
+    /**
+     * Returns the transactions of a file, parsing it only if its current content isn't cached.
+     *
+     * @param canonicalFile JSON file containing the transactions, as a canonical path.
+     * @return New transaction entities of the file, which the caller may modify.
+     * @throws IOException If the file cannot be read or parsed.
+     */
+    public List<Transaction> transactions(File canonicalFile) throws IOException {
+        if (files == null) {
+            return parse(canonicalFile);
+        }
+        FileKey key = FileKey.of(canonicalFile);
+        watch(key.path().getParent());
+        try {
+            return files.get(key, k -> load(canonicalFile)).toTransactions();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private CompactTransactions load(File canonicalFile) {
+        try {
+            return new CompactTransactions(parse(canonicalFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Transaction> parse(File file) throws IOException {
+        JsonParseEvent parseEvent = new JsonParseEvent();
+        parseEvent.begin();
+        List<Transaction> transactions = objectMapper.readValue(file, objectMapper.getTypeFactory().constructCollectionType(List.class, Transaction.class));
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.fileName = file.getPath();
+            parseEvent.fileBytes = file.length();
+            parseEvent.transactions = transactions.size();
+            parseEvent.commit();
+        }
+        logger.info("Parsed {} transactions from {}.", transactions.size(), file);
+        return transactions;
+    }
+
+    private void watch(Path directory) {
+        if (watchService == null || directory == null) {
+            return;
+        }
+        watchedDirectories.computeIfAbsent(directory, d -> {
+            try {
+                return d.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            } catch (IOException | ClosedWatchServiceException e) {
+                logger.warn("Could not watch {} for changes of cached transaction files: {}", d, e.getMessage());
+                return null;
+            }
+        });
+    }
+
+    private void unwatchIfUnused(Path directory) {
+        if (directory == null || files.asMap().keySet().stream().anyMatch(key -> directory.equals(key.path().getParent()))) {
+            return;
+        }
+        WatchKey watchKey = watchedDirectories.remove(directory);
+        if (watchKey != null) {
+            watchKey.cancel();
+        }
+    }
+
+    private void run() {
+        Map<Path, PendingChange> pending = new LinkedHashMap<>();
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = pending.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(QUIET_PERIOD.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            if (watchKey != null) {
+                Path directory = (Path) watchKey.watchable();
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        files.asMap().keySet().removeIf(key -> directory.equals(key.path().getParent()));
+                    } else {
+                        Path path = directory.resolve((Path) event.context());
+                        if (files.asMap().keySet().stream().anyMatch(key -> key.path().equals(path))) {
+                            pending.put(path, new PendingChange(event.kind() != StandardWatchEventKinds.ENTRY_DELETE, System.nanoTime()));
+                        }
+                    }
+                }
+                if (!watchKey.reset()) {
+                    watchedDirectories.remove(directory, watchKey);
+                }
+            }
+            long now = System.nanoTime();
+            pending.entrySet().removeIf(change -> {
+                if (now - change.getValue().at() < QUIET_PERIOD.toNanos()) {
+                    return false;
+                }
+                onChange(change.getKey(), change.getValue().exists());
+                return true;
+            });
+        }
+    }
+
+    private void onChange(Path path, boolean exists) {
+        List<FileKey> stale = files.asMap().keySet().stream().filter(key -> key.path().equals(path)).toList();
+        if (stale.isEmpty()) {
+            return;
+        }
+        Set<FileKey> evicted = new HashSet<>(stale);
+        if (exists) {
+            File file = path.toFile();
+            try {
+                FileKey current = FileKey.of(file);
+                files.get(current, key -> load(file));
+                evicted.remove(current);
+                logger.info("Refreshed cached transactions of changed file {}.", path);
+            } catch (RuntimeException e) {
+                logger.debug("Could not refresh cached transactions of {}; the next request reads it.", path, e);
+            }
+        }
+        // Removed after the refresh, so the directory stays watched while it still has cached files.
+        files.invalidateAll(evicted);
+    }
+
+    /**
+     * Stops watching for file changes.
+     */
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watcher.interrupt();
+            try {
+                watcher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    long cachedFiles() {
+        return files != null ? files.asMap().size() : 0;
+    }
+
+    boolean isCached(File canonicalFile) {
+        return files != null && files.asMap().containsKey(FileKey.of(canonicalFile));
+    }
+
+    private record PendingChange(boolean exists, long at) {
+    }
+
+    private record FileKey(Path path, long size, long lastModified) {
+
+        static FileKey of(File canonicalFile) {
+            return new FileKey(canonicalFile.toPath(), canonicalFile.length(), canonicalFile.lastModified());
+        }
+    }
+}
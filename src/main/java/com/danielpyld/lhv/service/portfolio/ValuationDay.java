@@ -0,0 +1,30 @@
+package com.danielpyld.lhv.service.portfolio;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Valuation dates in UTC. A calculation values a portfolio as of the end of a day, so its result stays the same
+ * for the whole day and a response can be tagged with the date instead of the time it was made.
+ */
+public final class ValuationDay {
+
+    private ValuationDay() {
+    }
+
+    /**
+     * @return The current date in UTC.
+     */
+    public static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+
+    /**
+     * @param date Valuation date.
+     * @return The first instant after the date, up to which events are booked.
+     */
+    public static Instant endOf(LocalDate date) {
+        return date.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+}
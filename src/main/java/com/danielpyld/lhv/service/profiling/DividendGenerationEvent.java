@@ -0,0 +1,19 @@
+package com.danielpyld.lhv.service.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.danielpyld.lhv.DividendGeneration")
+@Label("Dividend Generation")
+@Description("Generating the dividends of a set of transactions")
+@Category({"LHV", "Portfolio Calculation"})
+public class DividendGenerationEvent extends jdk.jfr.Event {
+
+    @Label("Transactions")
+    public int transactions;
+
+    @Label("Dividends")
+    public int dividends;
+}
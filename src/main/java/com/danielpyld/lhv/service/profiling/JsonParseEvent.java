@@ -0,0 +1,24 @@
+package com.danielpyld.lhv.service.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.danielpyld.lhv.JsonParse")
+@Label("Transaction File Parsing")
+@Description("Reading and parsing a transaction file for a profit calculation")
+@Category({"LHV", "Portfolio Calculation"})
+public class JsonParseEvent extends jdk.jfr.Event {
+
+    @Label("File Name")
+    public String fileName;
+
+    @Label("File Size")
+    @DataAmount
+    public long fileBytes;
+
+    @Label("Transactions")
+    public int transactions;
+}
@@ -0,0 +1,27 @@
+package com.danielpyld.lhv.service.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.danielpyld.lhv.LotMatching")
+@Label("Lot Matching")
+@Description("The sweep over the event timeline that matches sells against open lots and books dividends")
+@Category({"LHV", "Portfolio Calculation"})
+public class LotMatchingEvent extends jdk.jfr.Event {
+
+    @Label("Timeline Rows")
+    public int rows;
+
+    @Label("Sells")
+    public int sells;
+
+    @Label("Lots Touched")
+    @Description("Number of sell-to-lot matches")
+    public long lotsTouched;
+
+    @Label("Open Lots")
+    @Description("Open lots left after the sweep")
+    public int openLots;
+}
@@ -0,0 +1,26 @@
+package com.danielpyld.lhv.service.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.danielpyld.lhv.ProfitCalculation")
+@Label("Profit Calculation")
+@Description("A complete profit calculation; the phases are recorded as separate nested events")
+@Category({"LHV", "Portfolio Calculation"})
+public class ProfitCalculationEvent extends jdk.jfr.Event {
+
+    @Label("Portfolio Id")
+    @Description("Portfolio of a stored calculation, or 0 for a calculation over given transactions")
+    public long portfolioId;
+
+    @Label("Transactions")
+    public int transactions;
+
+    @Label("Dividends")
+    public int dividends;
+
+    @Label("Lot Matches")
+    public long lotMatches;
+}
@@ -0,0 +1,15 @@
+package com.danielpyld.lhv.service.profiling;
+
+import com.danielpyld.lhv.dto.RecordingDTO;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+public interface RecordingService {
+    RecordingDTO startRecording(Duration duration, long maxSizeBytes);
+
+    Optional<RecordingDTO> getRecording(long id);
+
+    Optional<Path> getRecordingFile(long id);
+}
@@ -0,0 +1,147 @@
+package com.danielpyld.lhv.service.profiling;
+
+import com.danielpyld.lhv.dto.RecordingDTO;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Starts bounded Java Flight Recorder recordings on demand. A recording always stops after its duration and
+ * never keeps more than its maximum size, both capped by configuration, and only one runs at a time.
+ * When it stops it is written to the recording directory and can then be downloaded. Only the most recent
+ * recordings are kept, so the directory holds at most that many files of the maximum size.
+ */
+@Service
+public class RecordingServiceImpl implements RecordingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordingServiceImpl.class);
+    private static final int RETAINED_RECORDINGS = 5;
+
+    private final Path directory;
+    private final Duration maxDuration;
+    private final long maxSizeBytes;
+    private final String settings;
+    private final Map<Long, Recording> recordings = new ConcurrentHashMap<>();
+    private Recording running;
+
+    public RecordingServiceImpl(@Value("${profiling.recording.directory:${java.io.tmpdir}}") String directory,
+                                @Value("${profiling.recording.max-duration:PT10M}") Duration maxDuration,
+                                @Value("${profiling.recording.max-size-mb:256}") long maxSizeMb,
+                                @Value("${profiling.recording.settings:default}") String settings) {
+        this.directory = Path.of(directory);
+        this.maxDuration = maxDuration;
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+        this.settings = settings;
+    }
+
+    /**
+     * Starts a recording of the JVM and the application's calculation events.
+     *
+     * @param duration     How long to record; capped at the configured maximum.
+     * @param maxSizeBytes Maximum size of the recording; capped at the configured maximum.
+     * @return The started recording.
+     * @throws IllegalStateException If a recording is already running.
+     */
+    @Override
+    public synchronized RecordingDTO startRecording(Duration duration, long maxSizeBytes) {
+        if (running != null && running.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("Recording " + running.getId() + " is still running");
+        }
+
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration(settings));
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Could not load JFR settings " + settings, e);
+        }
+        Duration boundedDuration = duration.compareTo(maxDuration) > 0 || duration.isNegative() || duration.isZero() ? maxDuration : duration;
+        long boundedSize = maxSizeBytes <= 0 ? this.maxSizeBytes : Math.min(maxSizeBytes, this.maxSizeBytes);
+        recording.setName("lhv-on-demand-" + recording.getId());
+        recording.setDuration(boundedDuration);
+        recording.setMaxSize(boundedSize);
+        recording.setToDisk(true);
+        try {
+            Files.createDirectories(directory);
+            recording.setDestination(directory.resolve(recording.getName() + ".jfr"));
+        } catch (IOException e) {
+            recording.close();
+            throw new UncheckedIOException("Could not prepare recording destination in " + directory, e);
+        }
+
+        recording.start();
+        running = recording;
+        recordings.put(recording.getId(), recording);
+        forgetOldRecordings();
+        logger.info("Started JFR recording {} for {} with at most {} bytes.", recording.getId(), boundedDuration, boundedSize);
+        return toDTO(recording);
+    }
+
+    @Override
+    public Optional<RecordingDTO> getRecording(long id) {
+        return Optional.ofNullable(recordings.get(id)).map(this::toDTO);
+    }
+
+    /**
+     * Returns the file of a recording once it has stopped and been written completely.
+     */
+    @Override
+    public Optional<Path> getRecordingFile(long id) {
+        Recording recording = recordings.get(id);
+        // The recording is written to its destination before it is closed.
+        if (recording == null || recording.getState() != RecordingState.CLOSED) {
+            return Optional.empty();
+        }
+        Path destination = recording.getDestination();
+        return destination != null && Files.exists(destination) ? Optional.of(destination) : Optional.empty();
+    }
+
+    /**
+     * Releases all but the most recent recordings and deletes their files.
+     */
+    private void forgetOldRecordings() {
+        recordings.keySet().stream()
+                .sorted(Comparator.reverseOrder())
+                .skip(RETAINED_RECORDINGS)
+                .toList()
+                .forEach(id -> forget(recordings.remove(id)));
+    }
+
+    private void forget(Recording recording) {
+        Path destination = recording.getDestination();
+        recording.close();
+        if (destination == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(destination);
+        } catch (IOException e) {
+            logger.warn("Could not delete JFR recording file {}.", destination, e);
+        }
+    }
+
+    private RecordingDTO toDTO(Recording recording) {
+        RecordingDTO dto = new RecordingDTO();
+        dto.setId(recording.getId());
+        dto.setState(recording.getState().name());
+        dto.setStartTime(recording.getStartTime());
+        dto.setDuration(recording.getDuration());
+        dto.setMaxSizeBytes(recording.getMaxSize());
+        dto.setSizeBytes(recording.getSize());
+        return dto;
+    }
+}
@@ -0,0 +1,22 @@
+package com.danielpyld.lhv.service.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.danielpyld.lhv.TimelineBuild")
+@Label("Event Timeline Build")
+@Description("Sorting and merging transactions and dividends into the columnar event timeline")
+@Category({"LHV", "Portfolio Calculation"})
+public class TimelineBuildEvent extends jdk.jfr.Event {
+
+    @Label("Transactions")
+    public int transactions;
+
+    @Label("Dividends")
+    public int dividends;
+
+    @Label("Timeline Rows")
+    public int rows;
+}
@@ -0,0 +1,202 @@
+package com.danielpyld.lhv.service.readmodel;
+
+import com.danielpyld.lhv.entity.DailyRealizedProfit;
+import com.danielpyld.lhv.entity.OpenLot;
+import com.danielpyld.lhv.entity.Position;
+import com.danielpyld.lhv.entity.StockSplit;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import com.danielpyld.lhv.service.fx.FxRateStore;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Applies the transactions of one portfolio in time order to its position, FIFO open lots and daily realized profit rows.
+ * Uses the same lot matching and proportional fee rules as the profit calculation. Prices and fees are converted into
+ * the base currency at the rate in effect at the transaction time and rounded to the calculation scale, as in the
+ * profit calculation, so the lots of a portfolio traded in several currencies can be matched against each other.
+ * <p>
+ * Stock splits are applied between the transactions in time order, before the transactions at their effective
+ * instant, as in the profit calculation. A split rewrites the open lots into post-split shares: quantities are
+ * rounded down, dropping fractional shares left by a consolidation, and prices are rounded half up to the scale.
+ * The profit calculation rounds a lot once across all the splits since its buy, so after several splits of one
+ * lot the read model can differ from it by the rounding of each step.
+ */
+class PositionLedger {
+
+    private final int scale;
+    private final FxRateStore fxRateStore;
+    private final Position position;
+    private final Deque<OpenLot> openLots;
+    private final Function<LocalDate, DailyRealizedProfit> dayLoader;
+    private final Deque<StockSplit> pendingSplits;
+    private final List<OpenLot> closedLots = new ArrayList<>();
+    private final Map<LocalDate, DailyRealizedProfit> touchedDays = new LinkedHashMap<>();
+
+    /**
+     * @param splits Splits not yet applied to the open lots, in effective date order. Each is applied before the
+     *               first transaction at or after its effective date, the rest by {@link #applyRemainingSplits()}.
+     */
+    PositionLedger(int scale, FxRateStore fxRateStore, Position position, Deque<OpenLot> openLots,
+                   Function<LocalDate, DailyRealizedProfit> dayLoader, List<StockSplit> splits) {
+        this.scale = scale;
+        this.fxRateStore = fxRateStore;
+        this.position = position;
+        this.openLots = openLots;
+        this.dayLoader = dayLoader;
+        this.pendingSplits = new ArrayDeque<>(splits);
+    }
+
+    /**
+     * Applies a single transaction, after the splits effective by its time. Transactions must be applied in
+     * (timestamp, id) order.
+     *
+     * @param transaction Transaction to apply.
+     * @throws IllegalArgumentException If the transaction currency has no FX rate at its time.
+     */
+    void apply(Transaction transaction) {
+        applySplitsUntil(transaction.getTimestamp());
+        BigDecimal price = toBase(transaction.getPrice(), transaction);
+        BigDecimal fee = toBase(transaction.getFee(), transaction);
+        if (transaction.getType() == Type.BUY) {
+            applyBuy(transaction, price, fee);
+        } else {
+            applySell(transaction, price, fee);
+        }
+        position.setLastPrice(price);
+        position.setLastTransactionAt(transaction.getTimestamp());
+    }
+
+    /**
+     * Applies the splits effective after the last transaction, once all transactions have been applied.
+     */
+    void applyRemainingSplits() {
+        while (!pendingSplits.isEmpty()) {
+            applySplit(pendingSplits.pollFirst());
+        }
+    }
+
+    private void applySplitsUntil(Instant timestamp) {
+        while (!pendingSplits.isEmpty() && !pendingSplits.peekFirst().getEffectiveDate().isAfter(timestamp)) {
+            applySplit(pendingSplits.pollFirst());
+        }
+    }
+
+    private void applySplit(StockSplit split) {
+        BigDecimal newShares = BigDecimal.valueOf(split.getNewShares());
+        BigDecimal oldShares = BigDecimal.valueOf(split.getOldShares());
+        int quantity = 0;
+        BigDecimal costBasis = BigDecimal.ZERO;
+        for (OpenLot lot : openLots) {
+            lot.setRemainingQuantity(Math.toIntExact((long) lot.getRemainingQuantity() * split.getNewShares() / split.getOldShares()));
+            lot.setPrice(lot.getPrice().multiply(oldShares).divide(newShares, scale, RoundingMode.HALF_UP));
+            quantity += lot.getRemainingQuantity();
+            costBasis = costBasis.add(lot.getPrice().multiply(BigDecimal.valueOf(lot.getRemainingQuantity()))
+                    .add(lot.getRemainingFee()));
+        }
+        position.setQuantity(quantity);
+        position.setCostBasis(costBasis);
+        position.setLastPrice(position.getLastPrice().multiply(oldShares).divide(newShares, scale, RoundingMode.HALF_UP));
+    }
+
+    private BigDecimal toBase(BigDecimal amount, Transaction transaction) {
+        if (fxRateStore.series(transaction.getCurrency()) == FxRateStore.BASE) {
+            return amount;
+        }
+        return fxRateStore.toBase(amount, transaction.getCurrency(), transaction.getTimestamp())
+                .setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    private void applyBuy(Transaction transaction, BigDecimal price, BigDecimal fee) {
+        openLots.addLast(new OpenLot(position.getPortfolioId(), transaction.getId(), transaction.getTimestamp(), transaction.getQuantity(),
+                price, fee));
+        BigDecimal cost = price.multiply(BigDecimal.valueOf(transaction.getQuantity())).add(fee);
+        position.setQuantity(position.getQuantity() + transaction.getQuantity());
+        position.setCostBasis(position.getCostBasis().add(cost));
+    }
+
+    private void applySell(Transaction transaction, BigDecimal price, BigDecimal fee) {
+        int quantityToSell = transaction.getQuantity();
+        BigDecimal realizedProfit = BigDecimal.ZERO;
+        BigDecimal consumedCost = BigDecimal.ZERO;
+        int quantitySoldTotal = 0;
+
+        while (quantityToSell > 0 && !openLots.isEmpty()) {
+            OpenLot lot = openLots.peekFirst();
+            int quantityAvailable = lot.getRemainingQuantity();
+            if (quantityAvailable == 0) {
+                // Left without whole shares by a consolidation; the calculation drops such a lot with its fee.
+                consumedCost = consumedCost.add(lot.getRemainingFee());
+                close(openLots.pollFirst());
+                continue;
+            }
+            int quantitySold = Math.min(quantityAvailable, quantityToSell);
+
+            BigDecimal sellFeeProportion = proportionalAmount(fee, quantitySold, transaction.getQuantity());
+            BigDecimal buyFeeProportion = proportionalAmount(lot.getRemainingFee(), quantitySold, quantityAvailable);
+
+            BigDecimal totalBuyAmount = lot.getPrice().multiply(BigDecimal.valueOf(quantitySold)).add(buyFeeProportion);
+            BigDecimal totalSellAmount = price.multiply(BigDecimal.valueOf(quantitySold)).subtract(sellFeeProportion);
+
+            realizedProfit = realizedProfit.add(totalSellAmount.subtract(totalBuyAmount));
+            consumedCost = consumedCost.add(totalBuyAmount);
+
+            lot.setRemainingFee(lot.getRemainingFee().subtract(buyFeeProportion));
+            lot.setRemainingQuantity(quantityAvailable - quantitySold);
+            quantityToSell -= quantitySold;
+            quantitySoldTotal += quantitySold;
+
+            if (lot.getRemainingQuantity() == 0) {
+                close(openLots.pollFirst());
+            }
+        }
+
+        position.setQuantity(position.getQuantity() - quantitySoldTotal);
+        position.setCostBasis(position.getCostBasis().subtract(consumedCost));
+        position.setRealizedProfit(position.getRealizedProfit().add(realizedProfit));
+
+        LocalDate tradeDate = LocalDate.ofInstant(transaction.getTimestamp(), ZoneOffset.UTC);
+        DailyRealizedProfit day = touchedDays.computeIfAbsent(tradeDate, dayLoader);
+        day.setRealizedProfit(day.getRealizedProfit().add(realizedProfit));
+        day.setCumulativeRealizedProfit(position.getRealizedProfit());
+        day.setSellCount(day.getSellCount() + 1);
+    }
+
+    private void close(OpenLot lot) {
+        if (lot.getId() != null) {
+            closedLots.add(lot);
+        }
+    }
+
+    private BigDecimal proportionalAmount(BigDecimal totalAmount, int part, int total) {
+        return totalAmount.multiply(BigDecimal.valueOf(part))
+                .divide(BigDecimal.valueOf(total), scale, RoundingMode.HALF_UP);
+    }
+
+    Position getPosition() {
+        return position;
+    }
+
+    Deque<OpenLot> getOpenLots() {
+        return openLots;
+    }
+
+    List<OpenLot> getClosedLots() {
+        return closedLots;
+    }
+
+    Map<LocalDate, DailyRealizedProfit> getTouchedDays() {
+        return touchedDays;
+    }
+}
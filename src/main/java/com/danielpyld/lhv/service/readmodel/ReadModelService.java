@@ -0,0 +1,27 @@
+package com.danielpyld.lhv.service.readmodel;
+
+import com.danielpyld.lhv.dto.PositionSummaryDTO;
+import com.danielpyld.lhv.entity.DailyRealizedProfit;
+import com.danielpyld.lhv.entity.OpenLot;
+import com.danielpyld.lhv.entity.Transaction;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ReadModelService {
+
+    void onTransactionsAdded(List<Transaction> transactions);
+
+    void onTransactionChanged(Long portfolioId, Instant changedFrom);
+
+    void rebuild();
+
+    void rebuild(Long portfolioId);
+
+    PositionSummaryDTO getPositionSummary(Long portfolioId);
+
+    List<OpenLot> getOpenLots(Long portfolioId);
+
+    List<DailyRealizedProfit> getDailyRealizedProfits(Long portfolioId, LocalDate from, LocalDate to);
+}
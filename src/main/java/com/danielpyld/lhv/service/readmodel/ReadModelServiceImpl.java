@@ -0,0 +1,267 @@
+package com.danielpyld.lhv.service.readmodel;
+
+import com.danielpyld.lhv.dto.PositionSummaryDTO;
+import com.danielpyld.lhv.entity.DailyRealizedProfit;
+import com.danielpyld.lhv.entity.OpenLot;
+import com.danielpyld.lhv.entity.Position;
+import com.danielpyld.lhv.entity.StockSplit;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.repository.DailyRealizedProfitRepository;
+import com.danielpyld.lhv.repository.OpenLotRepository;
+import com.danielpyld.lhv.repository.PositionRepository;
+import com.danielpyld.lhv.repository.StockSplitRepository;
+import com.danielpyld.lhv.repository.TransactionRepository;
+import com.danielpyld.lhv.service.fx.FxRateStore;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+public class ReadModelServiceImpl implements ReadModelService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadModelServiceImpl.class);
+
+    private final PositionRepository positionRepository;
+    private final OpenLotRepository openLotRepository;
+    private final DailyRealizedProfitRepository dailyRealizedProfitRepository;
+    private final TransactionRepository transactionRepository;
+    private final StockSplitRepository stockSplitRepository;
+    private final EntityManager entityManager;
+    private final FxRateStore fxRateStore;
+    private final int scale;
+
+    public ReadModelServiceImpl(PositionRepository positionRepository,
+                                OpenLotRepository openLotRepository,
+                                DailyRealizedProfitRepository dailyRealizedProfitRepository,
+                                TransactionRepository transactionRepository,
+                                StockSplitRepository stockSplitRepository,
+                                EntityManager entityManager,
+                                FxRateStore fxRateStore,
+                                @Value("${scale}") int scale) {
+        this.positionRepository = positionRepository;
+        this.openLotRepository = openLotRepository;
+        this.dailyRealizedProfitRepository = dailyRealizedProfitRepository;
+        this.transactionRepository = transactionRepository;
+        this.stockSplitRepository = stockSplitRepository;
+        this.entityManager = entityManager;
+        this.fxRateStore = fxRateStore;
+        this.scale = scale;
+    }
+
+    /**
+     * Applies newly inserted transactions to the read model of their portfolios. Transactions at or after the last
+     * applied one are applied incrementally; a backdated insert changes the FIFO matching of everything after it, so
+     * that portfolio falls back to a full rebuild. So does an insert before a split that is already applied to the
+     * open lots, as the split has to come after it. The position row is locked first, so concurrent inserts into one
+     * portfolio apply one after another instead of racing on the same lots and daily rows. Must run inside the
+     * transaction that inserted the rows.
+     *
+     * @param transactions Saved transactions.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onTransactionsAdded(List<Transaction> transactions) {
+        Map<Long, List<Transaction>> byPortfolio = transactions.stream()
+                .sorted(Comparator.comparing(Transaction::getTimestamp).thenComparing(Transaction::getId))
+                .collect(Collectors.groupingBy(Transaction::getPortfolioId, LinkedHashMap::new, Collectors.toList()));
+        byPortfolio.forEach(this::applyIncrementally);
+    }
+
+    private void applyIncrementally(Long portfolioId, List<Transaction> ordered) {
+        Position position = lockPosition(portfolioId);
+        Instant first = ordered.get(0).getTimestamp();
+        if (position.getLastTransactionAt() != null && first.isBefore(position.getLastTransactionAt())) {
+            logger.info("Backdated transaction inserted into portfolio {}, rebuilding read model.", portfolioId);
+            rebuild(portfolioId);
+            return;
+        }
+        if (stockSplitRepository.existsByPortfolioIdAndEffectiveDateAfter(portfolioId, first)) {
+            logger.info("Transaction inserted into portfolio {} before a split, rebuilding read model.", portfolioId);
+            rebuild(portfolioId);
+            return;
+        }
+
+        PositionLedger ledger = new PositionLedger(scale, fxRateStore, position,
+                new ArrayDeque<>(openLotRepository.findByPortfolioIdOrderByOpenedAtAscIdAsc(portfolioId)),
+                date -> dailyRealizedProfitRepository.findByPortfolioIdAndTradeDate(portfolioId, date)
+                        .orElseGet(() -> new DailyRealizedProfit(portfolioId, date)),
+                List.of());
+        ordered.forEach(ledger::apply);
+        save(ledger);
+    }
+
+    /**
+     * Updates or deletes of historical rows, and splits, change the FIFO matching of every later sell. Rows before the change are
+     * unaffected, so only the open lots, the position and the daily rows from the day of the change on are rewritten.
+     * The open lots at the time of the change depend on every earlier sell, so the whole history of the portfolio is
+     * still read: the cost is one ordered scan of the portfolio's transactions plus writes proportional to the days
+     * since the change. Must run inside the transaction that changed the rows.
+     *
+     * @param portfolioId Portfolio whose transactions or splits changed.
+     * @param changedFrom Earliest timestamp of the changed rows, before and after the change.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onTransactionChanged(Long portfolioId, Instant changedFrom) {
+        LocalDate fromDate = LocalDate.ofInstant(changedFrom, ZoneOffset.UTC);
+        entityManager.flush();
+        entityManager.clear();
+        lockPosition(portfolioId);
+        openLotRepository.deleteByPortfolioIdInBatch(portfolioId);
+        dailyRealizedProfitRepository.deleteByPortfolioIdFromInBatch(portfolioId, fromDate);
+
+        PositionLedger ledger = replay(portfolioId);
+        ledger.getTouchedDays().keySet().removeIf(date -> date.isBefore(fromDate));
+        save(ledger);
+        logger.info("Read model of portfolio {} replayed, {} days rewritten from {}.",
+                portfolioId, ledger.getTouchedDays().size(), fromDate);
+    }
+
+    /**
+     * Regenerates the position, open lot and daily realized profit tables of every portfolio from history.
+     */
+    @Override
+    @Transactional
+    public void rebuild() {
+        entityManager.flush();
+        entityManager.clear();
+        openLotRepository.deleteAllInBatch();
+        dailyRealizedProfitRepository.deleteAllInBatch();
+        positionRepository.deleteAllInBatch();
+
+        Map<Long, List<StockSplit>> splits = stockSplitRepository.findAllByOrderByPortfolioIdAscEffectiveDateAscIdAsc().stream()
+                .collect(Collectors.groupingBy(StockSplit::getPortfolioId));
+        PositionLedger ledger = null;
+        int portfolios = 0;
+        try (Stream<Transaction> transactions = transactionRepository.streamAllByOrderByPortfolioIdAscTimestampAscIdAsc()) {
+            for (Transaction transaction : (Iterable<Transaction>) transactions::iterator) {
+                if (ledger == null || !Objects.equals(ledger.getPosition().getPortfolioId(), transaction.getPortfolioId())) {
+                    if (ledger != null) {
+                        ledger.applyRemainingSplits();
+                        save(ledger);
+                    }
+                    ledger = newLedger(transaction.getPortfolioId(), splits.getOrDefault(transaction.getPortfolioId(), List.of()));
+                    portfolios++;
+                }
+                ledger.apply(transaction);
+                entityManager.detach(transaction);
+            }
+        }
+        if (ledger != null) {
+            ledger.applyRemainingSplits();
+            save(ledger);
+        }
+        logger.info("Read model rebuilt for {} portfolios.", portfolios);
+    }
+
+    /**
+     * Regenerates the read model of a single portfolio from its transaction history. The position row is locked and
+     * reset rather than deleted, so concurrent writers of the portfolio wait for the rebuild to commit.
+     *
+     * @param portfolioId Portfolio to rebuild.
+     */
+    @Override
+    @Transactional
+    public void rebuild(Long portfolioId) {
+        entityManager.flush();
+        entityManager.clear();
+        lockPosition(portfolioId);
+        openLotRepository.deleteByPortfolioIdInBatch(portfolioId);
+        dailyRealizedProfitRepository.deleteByPortfolioIdInBatch(portfolioId);
+
+        PositionLedger ledger = replay(portfolioId);
+        save(ledger);
+        logger.info("Read model of portfolio {} rebuilt, {} open lots.", portfolioId, ledger.getOpenLots().size());
+    }
+
+    /**
+     * Applies the whole history of a portfolio, with its splits, to an empty ledger.
+     */
+    private PositionLedger replay(Long portfolioId) {
+        PositionLedger ledger = newLedger(portfolioId, stockSplitRepository.findByPortfolioIdOrderByEffectiveDateAscIdAsc(portfolioId));
+        try (Stream<Transaction> transactions = transactionRepository.streamByPortfolioIdOrderByTimestampAscIdAsc(portfolioId)) {
+            for (Transaction transaction : (Iterable<Transaction>) transactions::iterator) {
+                ledger.apply(transaction);
+                entityManager.detach(transaction);
+            }
+        }
+        ledger.applyRemainingSplits();
+        return ledger;
+    }
+
+    /**
+     * Locks the position row of a portfolio, creating it first if the portfolio has none yet.
+     */
+    private Position lockPosition(Long portfolioId) {
+        positionRepository.insertIfAbsent(portfolioId);
+        return positionRepository.findForUpdate(portfolioId)
+                .orElseThrow(() -> new IllegalStateException("Position row of portfolio " + portfolioId + " is missing"));
+    }
+
+    private PositionLedger newLedger(Long portfolioId, List<StockSplit> splits) {
+        return new PositionLedger(scale, fxRateStore, new Position(portfolioId), new ArrayDeque<>(),
+                date -> new DailyRealizedProfit(portfolioId, date), splits);
+    }
+
+    private void save(PositionLedger ledger) {
+        openLotRepository.deleteAll(ledger.getClosedLots());
+        openLotRepository.saveAll(ledger.getOpenLots());
+        dailyRealizedProfitRepository.saveAll(ledger.getTouchedDays().values());
+        positionRepository.save(ledger.getPosition());
+    }
+
+    /**
+     * Returns the current position summary of a portfolio as a single-row lookup.
+     *
+     * @param portfolioId Portfolio to summarize.
+     * @return Position summary, empty when the portfolio has no transactions.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public PositionSummaryDTO getPositionSummary(Long portfolioId) {
+        Position position = positionRepository.findById(portfolioId)
+                .orElseGet(() -> new Position(portfolioId));
+
+        BigDecimal marketValue = position.getLastPrice().multiply(BigDecimal.valueOf(position.getQuantity()));
+        PositionSummaryDTO summary = new PositionSummaryDTO();
+        summary.setPortfolioId(portfolioId);
+        summary.setQuantity(position.getQuantity());
+        summary.setCostBasis(position.getCostBasis().setScale(scale, RoundingMode.HALF_UP));
+        summary.setLastPrice(position.getLastPrice());
+        summary.setMarketValue(marketValue.setScale(scale, RoundingMode.HALF_UP));
+        summary.setRealizedProfit(position.getRealizedProfit().setScale(scale, RoundingMode.HALF_UP));
+        summary.setUnrealizedGains(marketValue.subtract(position.getCostBasis()).setScale(scale, RoundingMode.HALF_UP));
+        summary.setLastTransactionAt(position.getLastTransactionAt());
+        return summary;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<OpenLot> getOpenLots(Long portfolioId) {
+        return openLotRepository.findByPortfolioIdOrderByOpenedAtAscIdAsc(portfolioId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<DailyRealizedProfit> getDailyRealizedProfits(Long portfolioId, LocalDate from, LocalDate to) {
+        return dailyRealizedProfitRepository.findByPortfolioIdAndTradeDateBetweenOrderByTradeDateAsc(portfolioId, from, to);
+    }
+}
@@ -0,0 +1,42 @@
+package com.danielpyld.lhv.service.report;
+
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Output formats of the lot match report.
+ */
+public enum LotMatchFormat {
+    CSV(new MediaType("text", "csv")),
+    NDJSON(new MediaType("application", "x-ndjson")),
+    /** A CBOR sequence (RFC 8742): one CBOR item per match, with the fields of the NDJSON format. */
+    CBOR(new MediaType("application", "cbor-seq"));
+
+    private final MediaType mediaType;
+
+    LotMatchFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Picks the format a client asks for in its Accept header. Wildcards select no format, so clients that
+     * accept anything get the caller's default.
+     *
+     * @param accepted The media types of the Accept header, in the client's order of preference.
+     * @return The first format accepted by name, if any.
+     */
+    public static Optional<LotMatchFormat> fromAccepted(List<MediaType> accepted) {
+        return accepted.stream()
+                .sorted(Comparator.comparingDouble(MediaType::getQualityValue).reversed())
+                .flatMap(mediaType -> Arrays.stream(values()).filter(format -> format.mediaType.equalsTypeAndSubtype(mediaType)))
+                .findFirst();
+    }
+}
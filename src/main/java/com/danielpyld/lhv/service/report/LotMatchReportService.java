@@ -0,0 +1,8 @@
+package com.danielpyld.lhv.service.report;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface LotMatchReportService {
+    void writeLotMatches(Long portfolioId, LotMatchFormat format, OutputStream outputStream) throws IOException;
+}
@@ -0,0 +1,204 @@
+package com.danielpyld.lhv.service.report;
+
+import com.danielpyld.lhv.entity.LotMatch;
+import com.danielpyld.lhv.service.portfolio.LotMatchListener;
+import com.danielpyld.lhv.service.portfolio.PortfolioService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+@Service
+public class LotMatchReportServiceImpl implements LotMatchReportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LotMatchReportServiceImpl.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    static final String CSV_HEADER = "portfolioId,sellTransactionId,buyTransactionId,acquiredAt,disposedAt,quantity,"
+            + "buyPrice,sellPrice,buyFee,sellFee,costBasis,proceeds,realizedGain";
+
+    private final PortfolioService portfolioService;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper cborMapper;
+
+    public LotMatchReportServiceImpl(PortfolioService portfolioService) {
+        this.portfolioService = portfolioService;
+        this.objectMapper = configure(new ObjectMapper());
+        this.cborMapper = configure(new CBORMapper());
+    }
+
+    private static ObjectMapper configure(ObjectMapper mapper) {
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return mapper;
+    }
+
+    /**
+     * Writes every lot match of a portfolio while the profit calculation produces them. Matches are written
+     * straight to a buffered writer and are never collected, so memory use does not grow with the report size.
+     *
+     * @param portfolioId  Portfolio to report.
+     * @param format       Output format.
+     * @param outputStream Stream to write to; it is flushed but not closed.
+     * @throws IOException If writing to the stream fails.
+     */
+    @Override
+    public void writeLotMatches(Long portfolioId, LotMatchFormat format, OutputStream outputStream) throws IOException {
+        CountingListener listener = listener(format, outputStream);
+        try {
+            portfolioService.calculateProfit(portfolioId, listener);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        listener.flush();
+        logger.info("Wrote {} lot matches of portfolio {} as {}.", listener.count, portfolioId, format);
+    }
+
+    private CountingListener listener(LotMatchFormat format, OutputStream outputStream) throws IOException {
+        switch (format) {
+            case CSV:
+                return new CsvListener(writer(outputStream));
+            case NDJSON:
+                return new NdjsonListener(objectMapper.getFactory().createGenerator(writer(outputStream)));
+            case CBOR:
+                return new CborListener(cborMapper.getFactory()
+                        .createGenerator(new BufferedOutputStream(outputStream, BUFFER_SIZE)));
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    private static Writer writer(OutputStream outputStream) {
+        return new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private abstract static class CountingListener implements LotMatchListener {
+        private long count;
+
+        @Override
+        public void onMatch(LotMatch match) {
+            try {
+                write(match);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            count++;
+        }
+
+        abstract void write(LotMatch match) throws IOException;
+
+        abstract void flush() throws IOException;
+    }
+
+    private static final class CsvListener extends CountingListener {
+        private final Writer writer;
+
+        CsvListener(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        void write(LotMatch match) throws IOException {
+            writeValue(match.getPortfolioId());
+            writer.write(',');
+            writeValue(match.getSellTransactionId());
+            writer.write(',');
+            writeValue(match.getBuyTransactionId());
+            writer.write(',');
+            writeValue(match.getAcquiredAt());
+            writer.write(',');
+            writeValue(match.getDisposedAt());
+            writer.write(',');
+            writer.write(Integer.toString(match.getQuantity()));
+            writer.write(',');
+            writeDecimal(match.getBuyPrice());
+            writer.write(',');
+            writeDecimal(match.getSellPrice());
+            writer.write(',');
+            writeDecimal(match.getBuyFee());
+            writer.write(',');
+            writeDecimal(match.getSellFee());
+            writer.write(',');
+            writeDecimal(match.getCostBasis());
+            writer.write(',');
+            writeDecimal(match.getProceeds());
+            writer.write(',');
+            writeDecimal(match.getRealizedGain());
+            writer.write('\n');
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value != null) {
+                writer.write(value.toString());
+            }
+        }
+
+        private void writeDecimal(BigDecimal value) throws IOException {
+            if (value != null) {
+                writer.write(value.toPlainString());
+            }
+        }
+
+        @Override
+        void flush() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static final class NdjsonListener extends CountingListener {
+        private final JsonGenerator generator;
+
+        NdjsonListener(JsonGenerator generator) {
+            this.generator = generator;
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        void write(LotMatch match) throws IOException {
+            generator.writeObject(match);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    /**
+     * Writes the matches back to back, which makes a CBOR sequence; unlike NDJSON it needs no separator.
+     */
+    private static final class CborListener extends CountingListener {
+        private final JsonGenerator generator;
+
+        CborListener(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        void write(LotMatch match) throws IOException {
+            generator.writeObject(match);
+        }
+
+        @Override
+        void flush() throws IOException {
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.danielpyld.lhv.service.split;
+
+import com.danielpyld.lhv.entity.StockSplit;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+public interface StockSplitService {
+    StockSplit addSplit(Long portfolioId, int newShares, int oldShares, Instant effectiveDate);
+
+    List<StockSplit> getSplits(Long portfolioId);
+
+    Map<Long, List<StockSplit>> getSplitsBefore(Instant before);
+}
@@ -0,0 +1,86 @@
+package com.danielpyld.lhv.service.split;
+
+import com.danielpyld.lhv.entity.StockSplit;
+import com.danielpyld.lhv.repository.StockSplitRepository;
+import com.danielpyld.lhv.service.readmodel.ReadModelService;
+import com.danielpyld.lhv.service.transaction.DatasetVersions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Service
+public class StockSplitServiceImpl implements StockSplitService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockSplitServiceImpl.class);
+
+    private final StockSplitRepository stockSplitRepository;
+    private final ReadModelService readModelService;
+    private final DatasetVersions datasetVersions;
+
+    public StockSplitServiceImpl(StockSplitRepository stockSplitRepository, ReadModelService readModelService,
+                                 DatasetVersions datasetVersions) {
+        this.stockSplitRepository = stockSplitRepository;
+        this.readModelService = readModelService;
+        this.datasetVersions = datasetVersions;
+    }
+
+    /**
+     * Records a split or consolidation of a portfolio's shares and replays the portfolio's read model from the
+     * effective date, so its open lots and position are in post-split shares.
+     *
+     * @param portfolioId   Portfolio whose shares are split.
+     * @param newShares     Shares held after the split for every {@code oldShares} held before it.
+     * @param oldShares     Shares held before the split.
+     * @param effectiveDate Instant from which the split applies; trades at that instant are in post-split shares.
+     * @return The saved split.
+     * @throws IllegalArgumentException If a share count is not positive or the date is missing.
+     */
+    @Override
+    @Transactional
+    public StockSplit addSplit(Long portfolioId, int newShares, int oldShares, Instant effectiveDate) {
+        if (newShares <= 0 || oldShares <= 0) {
+            throw new IllegalArgumentException("Split ratio must be positive: " + newShares + ":" + oldShares);
+        }
+        if (effectiveDate == null) {
+            throw new IllegalArgumentException("Split effective date is required");
+        }
+        StockSplit split = stockSplitRepository.save(new StockSplit(portfolioId, newShares, oldShares, effectiveDate));
+        readModelService.onTransactionChanged(portfolioId, effectiveDate);
+        datasetVersions.markChanged(List.of(portfolioId));
+        logger.info("Added {}:{} split of portfolio {} effective {}", newShares, oldShares, portfolioId, effectiveDate);
+        return split;
+    }
+
+    /**
+     * Returns the splits of a portfolio in effective date order.
+     *
+     * @param portfolioId Portfolio to look up.
+     * @return The splits, oldest first.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<StockSplit> getSplits(Long portfolioId) {
+        return stockSplitRepository.findByPortfolioIdOrderByEffectiveDateAscIdAsc(portfolioId);
+    }
+
+    /**
+     * Returns the splits of every portfolio that took effect before the given instant, for jobs that value many
+     * portfolios at once. Splits are rare, so they are loaded in one query instead of one per portfolio.
+     *
+     * @param before Exclusive upper bound of the effective dates.
+     * @return The splits per portfolio, oldest first.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long, List<StockSplit>> getSplitsBefore(Instant before) {
+        return stockSplitRepository.findByEffectiveDateBeforeOrderByPortfolioIdAscEffectiveDateAscIdAsc(before).stream()
+                .collect(Collectors.groupingBy(StockSplit::getPortfolioId, LinkedHashMap::new, Collectors.toList()));
+    }
+}
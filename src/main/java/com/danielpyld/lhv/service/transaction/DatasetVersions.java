@@ -0,0 +1,116 @@
+package com.danielpyld.lhv.service.transaction;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Versions of the stored dataset, of all transactions and of each portfolio, so a request can tell whether its data
+ * changed without querying it. Writes through the services mark the portfolios they change; the versions are kept in
+ * the {@code dataset_versions} table and move in the same database transaction as the write, so every instance sees
+ * them move exactly when the data does. A version is a single key lookup, and the version of all transactions a sum
+ * over one row per portfolio.
+ *
+ * <p>Rows changed directly in the database don't move the versions; bump the portfolio's row when doing so. With the
+ * replica profile, reads on the replica can lag the version by the replication delay.</p>
+ */
+@Component
+public class DatasetVersions {
+
+    /** Portfolio under which writes of transactions without a portfolio are counted. */
+    static final long UNASSIGNED = 0L;
+
+    private static final String ADVANCE_SQL = """
+            insert into dataset_versions (portfolio_id, version, updated_at)
+            values (?, 1, clock_timestamp())
+            on conflict (portfolio_id) do update set
+                version = dataset_versions.version + 1,
+                updated_at = greatest(dataset_versions.updated_at, excluded.updated_at)
+            """;
+    private static final String PORTFOLIO_SQL = "select version, updated_at from dataset_versions where portfolio_id = ?";
+    // Every write raises the version of a row, so the sum moves with each commit.
+    private static final String ALL_SQL = "select coalesce(sum(version), 0) as version, max(updated_at) as updated_at from dataset_versions";
+    private static final Version INITIAL = new Version(0, Instant.EPOCH);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DatasetVersions(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return The version of all transactions.
+     */
+    public Version current() {
+        return jdbcTemplate.queryForObject(ALL_SQL, DatasetVersions::version);
+    }
+
+    /**
+     * @param portfolioId The portfolio to look up.
+     * @return The version of the portfolio's transactions and splits.
+     */
+    public Version current(Long portfolioId) {
+        return jdbcTemplate.query(PORTFOLIO_SQL, DatasetVersions::version, portfolioId).stream()
+                .findFirst()
+                .orElse(INITIAL);
+    }
+
+    /**
+     * Moves the versions of the given portfolios and of all transactions, just before the current database
+     * transaction commits if there is one, else immediately. Deferring the update to the commit keeps the rows
+     * locked for as short as possible; they are locked in portfolio order, so concurrent writers can't deadlock.
+     *
+     * @param portfolioIds The portfolios whose data changed; null ids stand for transactions without a portfolio.
+     */
+    public void markChanged(Collection<Long> portfolioIds) {
+        List<Long> ids = portfolioIds.stream()
+                .map(portfolioId -> Objects.requireNonNullElse(portfolioId, UNASSIGNED))
+                .distinct()
+                .sorted()
+                .toList();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    advance(ids);
+                }
+            });
+        } else {
+            advance(ids);
+        }
+    }
+
+    private void advance(List<Long> portfolioIds) {
+        jdbcTemplate.batchUpdate(ADVANCE_SQL, portfolioIds.stream().map(id -> new Object[]{id}).toList());
+    }
+
+    private static Version version(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        return new Version(rs.getLong("version"), updatedAt != null ? updatedAt.toInstant() : Instant.EPOCH);
+    }
+
+    /**
+     * A dataset version and when it was reached.
+     *
+     * @param number       Increases with every committed write.
+     * @param lastModified When the version was reached, for Last-Modified.
+     */
+    public record Version(long number, Instant lastModified) {
+
+        /**
+         * @return The version as an opaque tag.
+         */
+        public String tag() {
+            return Long.toString(number, Character.MAX_RADIX);
+        }
+    }
+}
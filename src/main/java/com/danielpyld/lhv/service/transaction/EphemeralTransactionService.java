@@ -0,0 +1,9 @@
+package com.danielpyld.lhv.service.transaction;
+
+import com.danielpyld.lhv.entity.Transaction;
+
+import java.util.List;
+
+public interface EphemeralTransactionService {
+    List<Transaction> generateTransactions(Long portfolioId, int numTransactions, Long seed);
+}
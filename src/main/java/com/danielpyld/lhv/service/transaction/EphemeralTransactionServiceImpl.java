@@ -0,0 +1,83 @@
+package com.danielpyld.lhv.service.transaction;
+
+import com.danielpyld.lhv.entity.Transaction;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates transactions in memory only, for demo and benchmark traffic that must not write to the database.
+ * A seeded dataset is reproducible for the current UTC day and is kept in a cache bounded by the total number
+ * of transactions and a time to live, so repeated requests do not regenerate it.
+ */
+@Service
+public class EphemeralTransactionServiceImpl implements EphemeralTransactionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EphemeralTransactionServiceImpl.class);
+
+    private final TransactionGenerator transactionGenerator;
+    private final int maxTransactions;
+    private final Cache<String, List<Transaction>> datasets;
+
+    public EphemeralTransactionServiceImpl(TransactionGenerator transactionGenerator,
+                                           MeterRegistry meterRegistry,
+                                           @Value("${portfolio.ephemeral.max-transactions:1000}") int maxTransactions,
+                                           @Value("${portfolio.ephemeral.cache.max-transactions:100000}") long cacheMaxTransactions,
+                                           @Value("${portfolio.ephemeral.cache.ttl:PT10M}") Duration cacheTtl) {
+        this.transactionGenerator = transactionGenerator;
+        this.maxTransactions = maxTransactions;
+        if (cacheMaxTransactions > 0) {
+            this.datasets = Caffeine.newBuilder()
+                    .maximumWeight(cacheMaxTransactions)
+                    .weigher((String key, List<Transaction> dataset) -> dataset.size())
+                    .expireAfterWrite(cacheTtl)
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, datasets, "ephemeral.datasets");
+        } else {
+            this.datasets = null;
+        }
+    }
+
+    /**
+     * Generates transactions without saving them.
+     *
+     * @param portfolioId     The portfolio the transactions belong to.
+     * @param numTransactions The number of transactions to generate.
+     * @param seed            Seed of the random sequence, or null for a random one. Only seeded datasets are cached.
+     * @return The generated transactions; the list is shared between callers and cannot be modified.
+     * @throws IllegalArgumentException If the number of transactions is not positive or exceeds the configured maximum.
+     */
+    @Override
+    public List<Transaction> generateTransactions(Long portfolioId, int numTransactions, Long seed) {
+        if (numTransactions <= 0 || numTransactions > maxTransactions) {
+            throw new IllegalArgumentException("Number of transactions must be between 1 and " + maxTransactions);
+        }
+
+        Instant today = Instant.now().truncatedTo(ChronoUnit.DAYS);
+        if (seed == null || datasets == null) {
+            long effectiveSeed = seed != null ? seed : ThreadLocalRandom.current().nextLong();
+            return generate(portfolioId, numTransactions, effectiveSeed, today);
+        }
+        String key = portfolioId + "|" + numTransactions + "|" + seed + "|" + today;
+        return datasets.get(key, k -> generate(portfolioId, numTransactions, seed, today));
+    }
+
+    private List<Transaction> generate(Long portfolioId, int numTransactions, long seed, Instant today) {
+        List<Transaction> transactions = transactionGenerator.generate(portfolioId, numTransactions, new Random(seed), today);
+        logger.info("Generated {} in-memory transactions with seed {}", transactions.size(), seed);
+        return List.copyOf(transactions);
+    }
+}
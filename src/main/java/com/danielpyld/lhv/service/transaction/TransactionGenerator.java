@@ -0,0 +1,95 @@
+package com.danielpyld.lhv.service.transaction;
+
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random but plausible transactions: normally distributed prices, fees of 0.5% between 1 and 10,
+ * and sells that never exceed the holdings, spread over the two years before the last 30 days.
+ */
+@Component
+public class TransactionGenerator {
+
+    private static final BigDecimal MEAN_PRICE = new BigDecimal("100.00");
+    private static final BigDecimal STDDEV_PRICE = new BigDecimal("20.00");
+    private static final int MAX_QUANTITY = 100;
+
+    /**
+     * Generates transactions. The same random sequence and reference time always give the same transactions.
+     *
+     * @param portfolioId     The portfolio the transactions belong to.
+     * @param numTransactions The number of transactions to generate.
+     * @param rand            Source of randomness.
+     * @param now             Reference time the generated period ends 30 days before.
+     * @return The generated transactions in time order, not saved.
+     */
+    public List<Transaction> generate(Long portfolioId, int numTransactions, Random rand, Instant now) {
+        List<Transaction> transactions = new ArrayList<>(numTransactions);
+
+        Instant startTime = now.minus(365 * 2, ChronoUnit.DAYS);
+        Instant endTime = now.minus(30, ChronoUnit.DAYS);
+        long totalMinutes = ChronoUnit.MINUTES.between(startTime, endTime);
+
+        int totalHoldings = 0;
+        Instant currentTimestamp = startTime;
+
+        for (int i = 0; i < numTransactions; i++) {
+            Type type;
+
+            if (totalHoldings == 0) {
+                type = Type.BUY;
+            } else {
+                type = rand.nextBoolean() ? Type.BUY : Type.SELL;
+            }
+
+            int quantity;
+            if (type == Type.BUY) {
+                quantity = rand.nextInt(MAX_QUANTITY) + 1;
+                totalHoldings += quantity;
+            } else {
+                quantity = rand.nextInt(totalHoldings) + 1;
+                totalHoldings -= quantity;
+            }
+
+            BigDecimal price = generateNormalDistributedPrice(MEAN_PRICE, STDDEV_PRICE, rand);
+            BigDecimal fee = calculateCost(price.multiply(BigDecimal.valueOf(quantity)));
+
+            long remainingMinutes = totalMinutes - ChronoUnit.MINUTES.between(startTime, currentTimestamp);
+            long randomMinutes = rand.nextInt(Math.max(1, (int) remainingMinutes / (numTransactions - i)));
+            currentTimestamp = currentTimestamp.plus(randomMinutes, ChronoUnit.MINUTES);
+
+            transactions.add(new Transaction(portfolioId, type, quantity, price, fee, currentTimestamp));
+        }
+        return transactions;
+    }
+
+    private BigDecimal calculateCost(BigDecimal orderCost) {
+        BigDecimal fee = orderCost.multiply(new BigDecimal("0.005"));
+        BigDecimal MIN_FEE = new BigDecimal("1.00");
+        BigDecimal MAX_FEE = new BigDecimal("10.00");
+        if (fee.compareTo(MIN_FEE) < 0) {
+            fee = MIN_FEE;
+        } else if (fee.compareTo(MAX_FEE) > 0) {
+            fee = MAX_FEE;
+        }
+        return fee.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private BigDecimal generateNormalDistributedPrice(BigDecimal mean, BigDecimal stddev, Random rand) {
+        double gaussianValue = rand.nextGaussian();
+        BigDecimal price = mean.add(stddev.multiply(BigDecimal.valueOf(gaussianValue)));
+        if (price.compareTo(BigDecimal.ONE) < 0) {
+            price = BigDecimal.ONE;
+        }
+        return price.setScale(2, RoundingMode.HALF_UP);
+    }
+}
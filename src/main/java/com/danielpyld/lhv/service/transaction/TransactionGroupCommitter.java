@@ -0,0 +1,252 @@
+package com.danielpyld.lhv.service.transaction;
+
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.service.activity.TradingActivityService;
+import com.danielpyld.lhv.service.readmodel.ReadModelService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind group commit for single transaction inserts. Callers put their row on a bounded queue and block;
+ * one writer thread takes the first waiting row, gathers more until the batch is full or the maximum delay has
+ * passed, and inserts them with one JDBC batch and one commit, updating the read model in the same database
+ * transaction. A caller gets its saved row back only after that commit, so it is as durable as a direct save.
+ * <p>
+ * A batch that fails is retried row by row, so a bad row only fails its own caller. Because all group-committed
+ * rows are written by one thread, concurrent inserts into the same portfolio no longer race on its read model.
+ * As the rows bypass Hibernate, every batch invalidates the cached transaction queries itself.
+ */
+@Component
+public class TransactionGroupCommitter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionGroupCommitter.class);
+
+    private static final String INSERT_SQL = """
+            insert into transactions (portfolio_id, type, quantity, price, fee, timestamp, currency)
+            values (?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadModelService readModelService;
+    private final TradingActivityService tradingActivityService;
+    private final TransactionQueryCacheInvalidator queryCacheInvalidator;
+    private final DatasetVersions datasetVersions;
+    private final TransactionTemplate writeTransaction;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingWrite> queue;
+    private final DistributionSummary batchSizes;
+    private final Timer flushTimer;
+    private final Thread writer;
+    private volatile boolean running;
+
+    public TransactionGroupCommitter(JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     ReadModelService readModelService,
+                                     TradingActivityService tradingActivityService,
+                                     TransactionQueryCacheInvalidator queryCacheInvalidator,
+                                     DatasetVersions datasetVersions,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${transactions.group-commit.enabled:false}") boolean enabled,
+                                     @Value("${transactions.group-commit.max-batch-size:500}") int maxBatchSize,
+                                     @Value("${transactions.group-commit.max-delay:PT0.002S}") Duration maxDelay,
+                                     @Value("${transactions.group-commit.queue-capacity:10000}") int queueCapacity) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Group commit batch size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.readModelService = readModelService;
+        this.tradingActivityService = tradingActivityService;
+        this.queryCacheInvalidator = queryCacheInvalidator;
+        this.datasetVersions = datasetVersions;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSizes = DistributionSummary.builder("transactions.group.commit.batch.size").register(meterRegistry);
+        this.flushTimer = meterRegistry.timer("transactions.group.commit.flush");
+        meterRegistry.gauge("transactions.group.commit.queued", queue, BlockingQueue::size);
+
+        this.writer = new Thread(this::run, "transaction-group-commit");
+        this.writer.setDaemon(true);
+        if (enabled) {
+            running = true;
+            writer.start();
+            logger.info("Group commit of transactions enabled: up to {} rows or {} per commit.", maxBatchSize, maxDelay);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a transaction for the next group commit and waits until it is committed.
+     *
+     * @param transaction The transaction to insert; its ID is set once it is saved.
+     * @return The saved transaction.
+     * @throws IllegalStateException If group commit is disabled or shutting down, or the caller is interrupted.
+     * @throws RuntimeException      The failure of the insert or read model update of this transaction.
+     */
+    public Transaction write(Transaction transaction) {
+        if (!running) {
+            throw new IllegalStateException("Group commit is not running");
+        }
+        PendingWrite pending = new PendingWrite(transaction, new CompletableFuture<>());
+        try {
+            queue.put(pending);
+            return pending.result().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    /**
+     * Stops accepting writes, commits the rows still queued and stops the writer thread. Rows queued after the
+     * writer has stopped are failed instead of being left waiting.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingWrite> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(pending -> pending.result().completeExceptionally(new IllegalStateException("Group commit stopped")));
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // Shutting down; the loop commits what is left in the queue before it ends.
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Waits for the first row, then gathers rows until the batch is full or the maximum delay since the first row
+     * has passed. Rows already queued are drained without waiting.
+     */
+    private void collect(List<PendingWrite> batch) throws InterruptedException {
+        PendingWrite first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatchSize) {
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<Transaction> transactions = batch.stream().map(PendingWrite::transaction).toList();
+        try {
+            flushTimer.record(() -> writeTransaction.executeWithoutResult(status -> insert(transactions)));
+            batchSizes.record(batch.size());
+            batch.forEach(pending -> pending.result().complete(pending.transaction()));
+        } catch (RuntimeException e) {
+            transactions.forEach(transaction -> transaction.setId(null));
+            if (batch.size() == 1) {
+                batch.get(0).result().completeExceptionally(e);
+                return;
+            }
+            logger.warn("Group commit of {} transactions failed, retrying them one by one.", batch.size(), e);
+            for (PendingWrite pending : batch) {
+                flush(List.of(pending));
+            }
+        }
+    }
+
+    private void insert(List<Transaction> transactions) {
+        queryCacheInvalidator.invalidateOnCompletion();
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Transaction transaction = transactions.get(i);
+                        ps.setLong(1, transaction.getPortfolioId());
+                        ps.setString(2, transaction.getType().name());
+                        ps.setInt(3, transaction.getQuantity());
+                        ps.setBigDecimal(4, transaction.getPrice());
+                        ps.setBigDecimal(5, transaction.getFee());
+                        ps.setObject(6, OffsetDateTime.ofInstant(transaction.getTimestamp(), ZoneOffset.UTC));
+                        ps.setString(7, transaction.getCurrency());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return transactions.size();
+                    }
+                }, keys);
+
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        for (int i = 0; i < transactions.size(); i++) {
+            transactions.get(i).setId(((Number) keyList.get(i).values().iterator().next()).longValue());
+        }
+        readModelService.onTransactionsAdded(transactions);
+        tradingActivityService.onTransactionsAdded(transactions);
+        datasetVersions.markChanged(transactions.stream().map(Transaction::getPortfolioId).toList());
+    }
+
+    private record PendingWrite(Transaction transaction, CompletableFuture<Transaction> result) {
+    }
+}
@@ -0,0 +1,40 @@
+package com.danielpyld.lhv.service.transaction;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidates cached query results over the transactions table for writes that bypass Hibernate, such as the JDBC
+ * batches of {@link TransactionGroupCommitter}. Hibernate only knows a table changed when it wrote it, so such a
+ * writer marks the table as it would: pre-invalidated while its database transaction is open, so no query caches
+ * results that may miss the new rows, and invalidated once it has committed, so results cached earlier are stale.
+ * The entity cache is left alone, as inserts don't change cached rows.
+ */
+@Component
+public class TransactionQueryCacheInvalidator {
+
+    private static final String[] TRANSACTION_SPACES = {"transactions"};
+
+    private final EntityManager entityManager;
+
+    public TransactionQueryCacheInvalidator(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Invalidates cached transaction queries when the current database transaction completes. Must be called
+     * inside a transaction managed by the JPA transaction manager.
+     */
+    public void invalidateOnCompletion() {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        if (!session.getFactory().getSessionFactoryOptions().isQueryCacheEnabled()) {
+            return;
+        }
+        TimestampsCache timestamps = session.getFactory().getCache().getTimestampsCache();
+        timestamps.preInvalidate(TRANSACTION_SPACES, session);
+        session.getActionQueue().registerProcess(
+                (success, completed) -> timestamps.invalidate(TRANSACTION_SPACES, completed));
+    }
+}
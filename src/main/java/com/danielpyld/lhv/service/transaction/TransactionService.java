@@ -11,10 +11,14 @@ public interface TransactionService {
 
     List<Transaction> generateTransactions(int numTransactions);
 
+    List<Transaction> generateTransactions(Long portfolioId, int numTransactions);
+
     Optional<TransactionDTO> findTransactionById(Long transactionId);
 
     List<TransactionDTO> getAllTransactions();
 
+    List<TransactionDTO> getAllTransactions(Long portfolioId);
+
     TransactionDTO addTransaction(TransactionDTO transactionDTO);
 
     TransactionDTO updateTransaction(Long transactionId, TransactionDTO transactionDTO);
@@ -22,4 +26,6 @@ public interface TransactionService {
     void deleteTransaction(Long transactionId);
 
     List<TransactionDTO> getTransactionsInDateRange(LocalDateTime start, LocalDateTime end);
+
+    List<TransactionDTO> getTransactionsInDateRange(Long portfolioId, LocalDateTime start, LocalDateTime end);
 }
@@ -2,137 +2,128 @@ package com.danielpyld.lhv.service.transaction;
 
 import com.danielpyld.lhv.dto.TransactionDTO;
 import com.danielpyld.lhv.entity.Transaction;
-import com.danielpyld.lhv.entity.Type;
 import com.danielpyld.lhv.repository.TransactionRepository;
+import com.danielpyld.lhv.service.activity.TradingActivityService;
+import com.danielpyld.lhv.service.readmodel.ReadModelService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
-import java.util.stream.Collectors;
 
 @Service
 public class TransactionServiceImpl implements TransactionService {
 
     private final TransactionRepository transactionRepository;
+    private final ReadModelService readModelService;
+    private final TradingActivityService tradingActivityService;
+    private final TransactionGenerator transactionGenerator;
+    private final TransactionGroupCommitter groupCommitter;
+    private final DatasetVersions datasetVersions;
+    private final TransactionTemplate writeTransaction;
     private static final Logger logger = LoggerFactory.getLogger(TransactionServiceImpl.class);
 
-    public TransactionServiceImpl(TransactionRepository transactionRepository) {
+    public TransactionServiceImpl(TransactionRepository transactionRepository, ReadModelService readModelService,
+                                  TradingActivityService tradingActivityService,
+                                  TransactionGenerator transactionGenerator, TransactionGroupCommitter groupCommitter,
+                                  DatasetVersions datasetVersions, PlatformTransactionManager transactionManager) {
         this.transactionRepository = transactionRepository;
+        this.readModelService = readModelService;
+        this.tradingActivityService = tradingActivityService;
+        this.transactionGenerator = transactionGenerator;
+        this.groupCommitter = groupCommitter;
+        this.datasetVersions = datasetVersions;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
     }
 
     /**
-     * Generates a list of random transactions and saves them to the database.
+     * Generates a list of random transactions for the default portfolio and saves them to the database.
      *
      * @param numTransactions The number of transactions to generate.
      * @return The list of generated and saved transactions.
      */
     @Override
+    @Transactional
     public List<Transaction> generateTransactions(int numTransactions) {
-        List<Transaction> transactions = new ArrayList<>();
-        Random rand = new Random();
-
-        Instant startTime = Instant.now().minus(365 * 2, ChronoUnit.DAYS);
-        Instant endTime = Instant.now().minus(30, ChronoUnit.DAYS);
-        long totalMinutes = ChronoUnit.MINUTES.between(startTime, endTime);
-
-        int maxQuantity = 100;
-        BigDecimal meanPrice = new BigDecimal("100.00");
-        BigDecimal stddevPrice = new BigDecimal("20.00");
-
-        int totalHoldings = 0;
-        Instant currentTimestamp = startTime;
-
-        for (int i = 0; i < numTransactions; i++) {
-            Type type;
-
-            if (totalHoldings == 0) {
-                type = Type.BUY;
-            } else {
-                type = rand.nextBoolean() ? Type.BUY : Type.SELL;
-            }
-
-            int quantity;
-            if (type == Type.BUY) {
-                quantity = rand.nextInt(maxQuantity) + 1;
-                totalHoldings += quantity;
-            } else {
-                quantity = rand.nextInt(totalHoldings) + 1;
-                totalHoldings -= quantity;
-            }
-
-            BigDecimal price = generateNormalDistributedPrice(meanPrice, stddevPrice, rand);
-            BigDecimal fee = calculateCost(price.multiply(BigDecimal.valueOf(quantity)));
-
-            long remainingMinutes = totalMinutes - ChronoUnit.MINUTES.between(startTime, currentTimestamp);
-            long randomMinutes = rand.nextInt((int) remainingMinutes / (numTransactions - i));
-            currentTimestamp = currentTimestamp.plus(randomMinutes, ChronoUnit.MINUTES);
-
-            Transaction transaction = new Transaction(type, quantity, price, fee, currentTimestamp);
-            transactions.add(transaction);
-        }
-
-        logger.info("Generated {} transactions", transactions.size());
-        return transactionRepository.saveAll(transactions);
+        return generateTransactions(Transaction.DEFAULT_PORTFOLIO_ID, numTransactions);
     }
 
-    private BigDecimal calculateCost(BigDecimal orderCost) {
-        BigDecimal fee = orderCost.multiply(new BigDecimal("0.005"));
-        BigDecimal MIN_FEE = new BigDecimal("1.00");
-        BigDecimal MAX_FEE = new BigDecimal("10.00");
-        if (fee.compareTo(MIN_FEE) < 0) {
-            fee = MIN_FEE;
-        } else if (fee.compareTo(MAX_FEE) > 0) {
-            fee = MAX_FEE;
-        }
-        return fee.setScale(2, RoundingMode.HALF_UP);
-    }
+    /**
+     * Generates a list of random transactions for a portfolio and saves them to the database.
+     *
+     * @param portfolioId     The portfolio the transactions belong to.
+     * @param numTransactions The number of transactions to generate.
+     * @return The list of generated and saved transactions.
+     */
+    @Override
+    @Transactional
+    public List<Transaction> generateTransactions(Long portfolioId, int numTransactions) {
+        List<Transaction> transactions = transactionGenerator.generate(portfolioId, numTransactions, new Random(), Instant.now());
 
-    private BigDecimal generateNormalDistributedPrice(BigDecimal mean, BigDecimal stddev, Random rand) {
-        double gaussianValue = rand.nextGaussian();
-        BigDecimal price = mean.add(stddev.multiply(BigDecimal.valueOf(gaussianValue)));
-        if (price.compareTo(BigDecimal.ONE) < 0) {
-            price = BigDecimal.ONE;
-        }
-        return price.setScale(2, RoundingMode.HALF_UP);
+        logger.info("Generated {} transactions", transactions.size());
+        List<Transaction> savedTransactions = transactionRepository.saveAll(transactions);
+        readModelService.onTransactionsAdded(savedTransactions);
+        tradingActivityService.onTransactionsAdded(savedTransactions);
+        datasetVersions.markChanged(List.of(portfolioId));
+        return savedTransactions;
     }
 
     /**
-     * Finds a transaction by its ID.
+     * Finds a transaction by its ID. Reads in this service select DTOs directly, so no entity is hydrated, tracked
+     * for dirty checking or flushed.
+     * <p>
+     * The keyed and range reads go into the query cache, so they run in read-write transactions on the primary. A
+     * result read from a lagging replica would be cached after the write it missed had invalidated the region, and
+     * served until the next write to the table.
      *
      * @param transactionId The Long ID of the transaction to find.
      * @return An Optional containing the TransactionDTO if found, or empty if not found.
      */
     @Override
+    @Transactional
     public Optional<TransactionDTO> findTransactionById(Long transactionId) {
-        return transactionRepository.findById(transactionId)
-                .map(this::convertToDTO);
+        return transactionRepository.findDTOById(transactionId);
     }
 
     /**
-     * Retrieves all transactions.
+     * Retrieves all transactions. The full listing is not query-cached, so it is read on the replica.
      *
      * @return A list of TransactionDTO objects representing the portfolio transactions.
      */
     @Override
+    @Transactional(readOnly = true)
     public List<TransactionDTO> getAllTransactions() {
         logger.info("Retrieving all transactions.");
-        return transactionRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return transactionRepository.findAllDTOs();
     }
 
     /**
-     * Adds a new transaction to the portfolio.
+     * Retrieves all transactions of a portfolio in time order. Query-cached, so read on the primary.
+     *
+     * @param portfolioId The portfolio to list.
+     * @return A list of TransactionDTO objects representing the portfolio transactions.
+     */
+    @Override
+    @Transactional
+    public List<TransactionDTO> getAllTransactions(Long portfolioId) {
+        logger.info("Retrieving all transactions of portfolio {}.", portfolioId);
+        return transactionRepository.findDTOsByPortfolioId(portfolioId);
+    }
+
+    /**
+     * Adds a new transaction to the portfolio. With group commit enabled the row is committed together with the
+     * rows of concurrent callers; either way it is committed when this method returns. The database transaction
+     * is started here rather than declared, so a caller waiting for a group commit holds no connection.
      *
      * @param transactionDTO The TransactionDTO object representing the new transaction.
      * @return The TransactionDTO object representing the added transaction.
@@ -140,7 +131,18 @@ public class TransactionServiceImpl implements TransactionService {
     @Override
     public TransactionDTO addTransaction(TransactionDTO transactionDTO) {
         Transaction transaction = convertToEntity(transactionDTO);
-        Transaction savedTransaction = transactionRepository.save(transaction);
+        Transaction savedTransaction;
+        if (groupCommitter.isEnabled()) {
+            savedTransaction = groupCommitter.write(transaction);
+        } else {
+            savedTransaction = writeTransaction.execute(status -> {
+                Transaction saved = transactionRepository.save(transaction);
+                readModelService.onTransactionsAdded(List.of(saved));
+                tradingActivityService.onTransactionsAdded(List.of(saved));
+                datasetVersions.markChanged(Collections.singletonList(saved.getPortfolioId()));
+                return saved;
+            });
+        }
         logger.info("Added new transaction: {}", savedTransaction);
         return convertToDTO(savedTransaction);
     }
@@ -153,17 +155,38 @@ public class TransactionServiceImpl implements TransactionService {
      * @return The TransactionDTO object representing the updated transaction.
      */
     @Override
+    @Transactional
     public TransactionDTO updateTransaction(Long transactionId, TransactionDTO transactionDTO) {
         Transaction existingTransaction = transactionRepository.findById(transactionId)
                 .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        Long previousPortfolioId = existingTransaction.getPortfolioId();
+        Transaction previous = new Transaction(previousPortfolioId, existingTransaction.getType(),
+                existingTransaction.getQuantity(), existingTransaction.getPrice(), existingTransaction.getFee(),
+                existingTransaction.getTimestamp());
+        previous.setCurrency(existingTransaction.getCurrency());
 
+        if (transactionDTO.getPortfolioId() != null) {
+            existingTransaction.setPortfolioId(transactionDTO.getPortfolioId());
+        } else if (previousPortfolioId == null) {
+            existingTransaction.setPortfolioId(Transaction.DEFAULT_PORTFOLIO_ID);
+        }
         existingTransaction.setType(transactionDTO.getType());
         existingTransaction.setQuantity(transactionDTO.getQuantity());
         existingTransaction.setPrice(transactionDTO.getPrice());
         existingTransaction.setFee(transactionDTO.getFee());
+        existingTransaction.setCurrency(transactionDTO.getCurrency());
         existingTransaction.setTimestamp(transactionDTO.getTimestamp().atZone(ZoneId.systemDefault()).toInstant());
 
         Transaction updatedTransaction = transactionRepository.save(existingTransaction);
+        if (previousPortfolioId != null && !previousPortfolioId.equals(updatedTransaction.getPortfolioId())) {
+            readModelService.onTransactionChanged(updatedTransaction.getPortfolioId(), updatedTransaction.getTimestamp());
+            readModelService.onTransactionChanged(previousPortfolioId, previous.getTimestamp());
+        } else {
+            readModelService.onTransactionChanged(updatedTransaction.getPortfolioId(),
+                    Collections.min(Arrays.asList(previous.getTimestamp(), updatedTransaction.getTimestamp())));
+        }
+        tradingActivityService.onTransactionUpdated(previous, updatedTransaction);
+        datasetVersions.markChanged(Arrays.asList(updatedTransaction.getPortfolioId(), previousPortfolioId));
         logger.info("Updated transaction: {}", updatedTransaction);
         return convertToDTO(updatedTransaction);
     }
@@ -174,29 +197,49 @@ public class TransactionServiceImpl implements TransactionService {
      * @param transactionId The Long ID of the transaction to delete.
      */
     @Override
+    @Transactional
     public void deleteTransaction(Long transactionId) {
         Transaction transaction = transactionRepository.findById(transactionId)
                 .orElseThrow(() -> new RuntimeException("Transaction not found"));
 
         transactionRepository.delete(transaction);
+        if (transaction.getPortfolioId() != null) {
+            readModelService.onTransactionChanged(transaction.getPortfolioId(), transaction.getTimestamp());
+        }
+        tradingActivityService.onTransactionDeleted(transaction);
+        datasetVersions.markChanged(Collections.singletonList(transaction.getPortfolioId()));
         logger.info("Deleted transaction: {}", transaction);
     }
 
     /**
-     * Retrieves transactions within a specific date range.
+     * Retrieves transactions within a specific date range. Query-cached, so read on the primary.
      *
      * @param start The start date.
      * @param end   The end date.
      * @return A list of TransactionDTO objects representing transactions in the specified date range.
      */
     @Override
+    @Transactional
     public List<TransactionDTO> getTransactionsInDateRange(LocalDateTime start, LocalDateTime end) {
         logger.info("Retrieving transactions between {} and {}", start, end);
-        return transactionRepository.findAll().stream()
-                .filter(t -> t.getTimestamp().isAfter(start.atZone(ZoneId.systemDefault()).toInstant()) &&
-                        t.getTimestamp().isBefore(end.atZone(ZoneId.systemDefault()).toInstant()))
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return transactionRepository.findDTOsInRange(start.atZone(ZoneId.systemDefault()).toInstant(),
+                end.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * Retrieves transactions of a portfolio within a specific date range. Query-cached, so read on the primary.
+     *
+     * @param portfolioId The portfolio to search.
+     * @param start       The start date.
+     * @param end         The end date.
+     * @return A list of TransactionDTO objects representing transactions in the specified date range.
+     */
+    @Override
+    @Transactional
+    public List<TransactionDTO> getTransactionsInDateRange(Long portfolioId, LocalDateTime start, LocalDateTime end) {
+        logger.info("Retrieving transactions of portfolio {} between {} and {}", portfolioId, start, end);
+        return transactionRepository.findDTOsInRange(portfolioId, start.atZone(ZoneId.systemDefault()).toInstant(),
+                end.atZone(ZoneId.systemDefault()).toInstant());
     }
 
     /**
@@ -208,10 +251,12 @@ public class TransactionServiceImpl implements TransactionService {
     private TransactionDTO convertToDTO(Transaction transaction) {
         TransactionDTO dto = new TransactionDTO();
         dto.setId(transaction.getId());
+        dto.setPortfolioId(transaction.getPortfolioId());
         dto.setType(transaction.getType());
         dto.setQuantity(transaction.getQuantity());
         dto.setPrice(transaction.getPrice());
         dto.setFee(transaction.getFee());
+        dto.setCurrency(transaction.getCurrency());
         dto.setTimestamp(transaction.getTimestamp().atZone(ZoneId.systemDefault()).toLocalDateTime());
         return dto;
     }
@@ -224,10 +269,12 @@ public class TransactionServiceImpl implements TransactionService {
      */
     private Transaction convertToEntity(TransactionDTO dto) {
         Transaction transaction = new Transaction();
+        transaction.setPortfolioId(dto.getPortfolioId() != null ? dto.getPortfolioId() : Transaction.DEFAULT_PORTFOLIO_ID);
         transaction.setType(dto.getType());
         transaction.setQuantity(dto.getQuantity());
         transaction.setPrice(dto.getPrice());
         transaction.setFee(dto.getFee());
+        transaction.setCurrency(dto.getCurrency());
         transaction.setTimestamp(dto.getTimestamp().atZone(ZoneId.systemDefault()).toInstant());
         return transaction;
     }
@@ -0,0 +1,99 @@
+-- Schema as Hibernate generated it before migrations were introduced. Every statement is idempotent, so databases
+-- created by ddl-auto are baselined at version 0 and then brought to the same state as new ones.
+
+create table if not exists batch_checkpoints (
+    completed boolean not null,
+    run_date date,
+    last_portfolio_id bigint,
+    processed_portfolios bigint not null,
+    processed_transactions bigint not null,
+    updated_at timestamp(6) with time zone,
+    job_key varchar(255) not null,
+    primary key (job_key)
+);
+
+create table if not exists daily_realized_profits (
+    cumulative_realized_profit numeric(38,2),
+    realized_profit numeric(38,2),
+    sell_count integer not null,
+    trade_date date,
+    id bigint generated by default as identity,
+    portfolio_id bigint,
+    primary key (id),
+    constraint uk_daily_realized_profits_portfolio_date unique (portfolio_id, trade_date)
+);
+
+create table if not exists dividends (
+    amount_per_unit numeric(38,2),
+    currency varchar(3),
+    ex_dividend_date timestamp(6) with time zone,
+    id bigint generated by default as identity,
+    payment_date timestamp(6) with time zone,
+    primary key (id)
+);
+
+create table if not exists open_lots (
+    price numeric(38,2),
+    remaining_fee numeric(38,2),
+    remaining_quantity integer not null,
+    id bigint generated by default as identity,
+    opened_at timestamp(6) with time zone,
+    portfolio_id bigint,
+    transaction_id bigint,
+    primary key (id)
+);
+
+create table if not exists positions (
+    cost_basis numeric(38,2),
+    last_price numeric(38,2),
+    quantity integer not null,
+    realized_profit numeric(38,2),
+    last_transaction_at timestamp(6) with time zone,
+    portfolio_id bigint not null,
+    primary key (portfolio_id)
+);
+
+create table if not exists stock_splits (
+    new_shares integer not null,
+    old_shares integer not null,
+    effective_date timestamp(6) with time zone,
+    id bigint generated by default as identity,
+    portfolio_id bigint,
+    primary key (id)
+);
+
+create table if not exists transactions (
+    currency varchar(3),
+    fee numeric(38,2),
+    price numeric(38,2),
+    quantity integer not null,
+    id bigint generated by default as identity,
+    portfolio_id bigint,
+    "timestamp" timestamp(6) with time zone,
+    type varchar(255) check (type in ('BUY','SELL')),
+    primary key (id)
+);
+
+create table if not exists valuation_results (
+    dividend_profit numeric(38,2),
+    realized_stock_profit numeric(38,2),
+    time_weighted_return float(53),
+    total_profit numeric(38,2),
+    unrealized_gains numeric(38,2),
+    valuation_date date,
+    xirr float(53),
+    calculated_at timestamp(6) with time zone,
+    id bigint generated by default as identity,
+    portfolio_id bigint,
+    primary key (id),
+    constraint uk_valuation_results_portfolio_date unique (portfolio_id, valuation_date)
+);
+
+create index if not exists idx_open_lots_portfolio_opened_at
+    on open_lots (portfolio_id, opened_at, id);
+
+create index if not exists idx_stock_splits_portfolio_effective_date
+    on stock_splits (portfolio_id, effective_date);
+
+create index if not exists idx_transactions_portfolio_timestamp
+    on transactions (portfolio_id, "timestamp");
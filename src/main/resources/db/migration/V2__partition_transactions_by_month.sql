@@ -0,0 +1,109 @@
+-- Range-partitions transactions by month of "timestamp" (UTC), so range scans, checkpoint replays and vacuum only
+-- touch the months they need. Rows of a month without a partition go to transactions_default until
+-- ensure_transaction_partitions gives that month its own partition.
+
+do $$
+begin
+    if exists (select 1 from transactions where "timestamp" is null) then
+        raise exception 'Transactions without a timestamp cannot be partitioned; fix or delete them first';
+    end if;
+end $$;
+
+alter table transactions rename to transactions_heap;
+alter table transactions_heap rename constraint transactions_pkey to transactions_heap_pkey;
+alter index if exists idx_transactions_portfolio_timestamp rename to idx_transactions_heap_portfolio_timestamp;
+alter sequence if exists transactions_id_seq rename to transactions_heap_id_seq;
+
+create sequence transactions_id_seq;
+
+-- The partition key has to be part of the primary key; ids stay unique because they all come from one sequence.
+create table transactions (
+    currency varchar(3),
+    fee numeric(38,2),
+    price numeric(38,2),
+    quantity integer not null,
+    id bigint not null default nextval('transactions_id_seq'),
+    portfolio_id bigint,
+    "timestamp" timestamp(6) with time zone not null,
+    type varchar(255) check (type in ('BUY','SELL')),
+    primary key (id, "timestamp")
+) partition by range ("timestamp");
+
+alter sequence transactions_id_seq owned by transactions.id;
+
+create table transactions_default partition of transactions default;
+
+-- Declared on the parent, so every partition gets its own copy.
+create index idx_transactions_portfolio_timestamp on transactions (portfolio_id, "timestamp");
+
+create function transaction_partition_name(month_start date) returns text
+    language sql immutable
+as $$
+    select 'transactions_y' || to_char(month_start, 'YYYY') || 'm' || to_char(month_start, 'MM')
+$$;
+
+-- Creates the monthly partitions from the month of from_month through months_ahead months after the current one,
+-- and for every month that has rows in the default partition, moving those rows into it. Returns the number of
+-- partitions created. Safe to run repeatedly.
+create function ensure_transaction_partitions(from_month date, months_ahead integer) returns integer
+    language plpgsql
+as $$
+declare
+    current_month date := date_trunc('month', now() at time zone 'UTC')::date;
+    first_month date := date_trunc('month', from_month)::date;
+    last_month date := (current_month + make_interval(months => months_ahead))::date;
+    month_start date;
+    lower_bound timestamptz;
+    upper_bound timestamptz;
+    partition_name text;
+    created integer := 0;
+begin
+    select least(first_month, min(date_trunc('month', "timestamp" at time zone 'UTC'))::date),
+           greatest(last_month, max(date_trunc('month', "timestamp" at time zone 'UTC'))::date)
+    into first_month, last_month
+    from transactions_default;
+
+    month_start := first_month;
+    while month_start <= last_month loop
+        partition_name := transaction_partition_name(month_start);
+        if to_regclass(partition_name) is null then
+            lower_bound := month_start::timestamp at time zone 'UTC';
+            upper_bound := (month_start + interval '1 month')::timestamp at time zone 'UTC';
+            if exists (select 1 from transactions_default
+                       where "timestamp" >= lower_bound and "timestamp" < upper_bound) then
+                -- A partition can't be created over rows in the default partition: move them into a new table
+                -- and attach it. Blocks inserts into months without a partition until the transaction ends.
+                lock table transactions_default in exclusive mode;
+                execute format('create table %I (like transactions including defaults including constraints)',
+                               partition_name);
+                execute format('with moved as (delete from transactions_default'
+                                   || ' where "timestamp" >= $1 and "timestamp" < $2 returning *)'
+                                   || ' insert into %I select * from moved', partition_name)
+                    using lower_bound, upper_bound;
+                execute format('alter table transactions attach partition %I for values from (%L) to (%L)',
+                               partition_name, lower_bound, upper_bound);
+            else
+                execute format('create table %I partition of transactions for values from (%L) to (%L)',
+                               partition_name, lower_bound, upper_bound);
+            end if;
+            created := created + 1;
+        end if;
+        month_start := (month_start + interval '1 month')::date;
+    end loop;
+    return created;
+end
+$$;
+
+select ensure_transaction_partitions(
+        coalesce((select min("timestamp") at time zone 'UTC' from transactions_heap)::date, current_date), 3);
+
+insert into transactions (currency, fee, price, quantity, id, portfolio_id, "timestamp", type)
+select currency, fee, price, quantity, id, portfolio_id, "timestamp", type
+from transactions_heap;
+
+select setval('transactions_id_seq', coalesce((select max(id) from transactions), 0) + 1, false);
+
+drop table transactions_heap;
+
+-- Rows dated beyond the partitions created above were routed to the default partition; give them their months.
+select ensure_transaction_partitions(current_date, 3);
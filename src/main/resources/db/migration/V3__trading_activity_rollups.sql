@@ -0,0 +1,40 @@
+-- Daily, weekly and monthly rollups of trading activity per portfolio and currency, kept up to date by the
+-- application on every insert, update and delete of a transaction. Buckets start at UTC midnight, weeks on Monday.
+-- An empty currency stands for transactions without one, which are in the base currency.
+
+create table trading_activity (
+    bucket_start date not null,
+    buy_count integer not null,
+    sell_count integer not null,
+    buy_quantity bigint not null,
+    sell_quantity bigint not null,
+    buy_notional numeric(38,2) not null,
+    sell_notional numeric(38,2) not null,
+    fees numeric(38,2) not null,
+    currency varchar(3) not null,
+    granularity varchar(5) not null check (granularity in ('DAY','WEEK','MONTH')),
+    id bigint generated by default as identity,
+    portfolio_id bigint not null,
+    primary key (id),
+    constraint uk_trading_activity_bucket unique (portfolio_id, granularity, bucket_start, currency)
+);
+
+-- Transactions without a portfolio or type are not rolled up, the same as in the application.
+insert into trading_activity (portfolio_id, granularity, bucket_start, currency, buy_count, sell_count,
+                              buy_quantity, sell_quantity, buy_notional, sell_notional, fees)
+select t.portfolio_id,
+       g.granularity,
+       date_trunc(g.unit, t."timestamp" at time zone 'UTC')::date,
+       coalesce(t.currency, ''),
+       count(*) filter (where t.type = 'BUY'),
+       count(*) filter (where t.type = 'SELL'),
+       coalesce(sum(t.quantity) filter (where t.type = 'BUY'), 0),
+       coalesce(sum(t.quantity) filter (where t.type = 'SELL'), 0),
+       coalesce(sum(coalesce(t.price, 0) * t.quantity) filter (where t.type = 'BUY'), 0),
+       coalesce(sum(coalesce(t.price, 0) * t.quantity) filter (where t.type = 'SELL'), 0),
+       coalesce(sum(coalesce(t.fee, 0)), 0)
+from transactions t
+         cross join (values ('DAY', 'day'), ('WEEK', 'week'), ('MONTH', 'month')) as g (granularity, unit)
+where t.portfolio_id is not null
+  and t.type is not null
+group by 1, 2, 3, 4;
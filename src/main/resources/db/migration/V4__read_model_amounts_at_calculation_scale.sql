@@ -0,0 +1,12 @@
+-- The read model accumulates fee proportions and realized profit at the calculation scale (the scale property, 8),
+-- but the columns rounded every saved value to 2 decimals, so an incrementally maintained position drifted from a
+-- rebuilt one. Prices stay at 2 decimals, the same as the transactions they are copied from.
+-- Values written before this migration keep their rounding; POST /api/position/rebuild recomputes them.
+
+alter table open_lots alter column remaining_fee type numeric(38,8);
+
+alter table positions alter column cost_basis type numeric(38,8);
+alter table positions alter column realized_profit type numeric(38,8);
+
+alter table daily_realized_profits alter column realized_profit type numeric(38,8);
+alter table daily_realized_profits alter column cumulative_realized_profit type numeric(38,8);
@@ -0,0 +1,7 @@
+-- The read model converts prices into the base currency, rounded to the calculation scale (the scale property, 8),
+-- so the prices it copies from transactions no longer fit in 2 decimals.
+-- Values written before this migration are unconverted; POST /api/position/rebuild recomputes them.
+
+alter table open_lots alter column price type numeric(38,8);
+
+alter table positions alter column last_price type numeric(38,8);
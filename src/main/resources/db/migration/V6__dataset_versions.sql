@@ -0,0 +1,17 @@
+-- Version of each portfolio's transactions and splits, moved in the same database transaction as every write the
+-- application makes, so conditional GETs answered by any instance agree on whether the data changed. Writes of
+-- transactions without a portfolio are counted under portfolio 0.
+
+create table dataset_versions (
+    portfolio_id bigint not null,
+    version bigint not null,
+    updated_at timestamp(6) with time zone not null,
+    primary key (portfolio_id)
+);
+
+insert into dataset_versions (portfolio_id, version, updated_at)
+select coalesce(portfolio_id, 0), 1, now()
+from (select portfolio_id from transactions
+      union
+      select portfolio_id from stock_splits) as portfolios
+group by 1;
@@ -0,0 +1,107 @@
+package com.danielpyld.lhv.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DataSourceConfigTest {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource replica;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection replicaConnection;
+
+    private final DataSourceConfig config = new DataSourceConfig();
+    private DataSourceProperties properties;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(primaryConnection.getAutoCommit()).thenReturn(true);
+        when(replicaConnection.getAutoCommit()).thenReturn(true);
+
+        properties = new DataSourceProperties();
+        properties.setUrl("jdbc:postgresql://localhost:5433/portfolio_db");
+        properties.setUsername("postgres");
+        properties.setPassword("password");
+    }
+
+    @Test
+    void testReadOnlyConnectionsGoToReplica() throws Exception {
+        DataSource dataSource = config.dataSource(primary, replica);
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(true);
+            connection.createStatement();
+        }
+        verify(replicaConnection).createStatement();
+        verify(primaryConnection, never()).createStatement();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement();
+        }
+        verify(primaryConnection).createStatement();
+    }
+
+    @Test
+    void testReplicaDefaultsToPrimarySettings() {
+        try (HikariDataSource dataSource = config.replicaDataSource(properties, new MockEnvironment())) {
+            assertEquals("jdbc:postgresql://localhost:5433/portfolio_db", dataSource.getJdbcUrl());
+            assertEquals("postgres", dataSource.getUsername());
+            assertEquals("replica", dataSource.getPoolName());
+            assertTrue(dataSource.isReadOnly());
+        }
+    }
+
+    @Test
+    void testReplicaHasItsOwnConfiguration() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.datasource.replica.jdbc-url", "jdbc:postgresql://localhost:5434/portfolio_db")
+                .withProperty("spring.datasource.replica.username", "reader")
+                .withProperty("spring.datasource.replica.maximum-pool-size", "4");
+
+        try (HikariDataSource dataSource = config.replicaDataSource(properties, environment);
+             HikariDataSource primaryDataSource = config.primaryDataSource(properties)) {
+            assertEquals("jdbc:postgresql://localhost:5434/portfolio_db", dataSource.getJdbcUrl());
+            assertEquals("reader", dataSource.getUsername());
+            assertEquals(4, dataSource.getMaximumPoolSize());
+            assertEquals("jdbc:postgresql://localhost:5433/portfolio_db", primaryDataSource.getJdbcUrl());
+            assertNotEquals(4, primaryDataSource.getMaximumPoolSize());
+        }
+    }
+
+    @Test
+    void testReplicaInheritsPrimaryPoolSettings() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.datasource.hikari.connection-timeout", "5000")
+                .withProperty("spring.datasource.hikari.maximum-pool-size", "20")
+                .withProperty("spring.datasource.hikari.pool-name", "main")
+                .withProperty("spring.datasource.replica.maximum-pool-size", "6");
+
+        try (HikariDataSource dataSource = config.replicaDataSource(properties, environment)) {
+            assertEquals(5000, dataSource.getConnectionTimeout());
+            assertEquals(6, dataSource.getMaximumPoolSize());
+            assertEquals("replica", dataSource.getPoolName());
+            assertTrue(dataSource.isReadOnly());
+        }
+    }
+}
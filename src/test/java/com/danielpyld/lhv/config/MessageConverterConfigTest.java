@@ -0,0 +1,46 @@
+package com.danielpyld.lhv.config;
+
+import com.danielpyld.lhv.dto.TransactionDTO;
+import com.danielpyld.lhv.entity.Type;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageConverterConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(JacksonAutoConfiguration.class))
+            .withUserConfiguration(MessageConverterConfig.class);
+
+    @Test
+    void testWritesCborWithTheJsonDataModel() {
+        contextRunner.run(context -> {
+            MappingJackson2CborHttpMessageConverter converter = context.getBean(MappingJackson2CborHttpMessageConverter.class);
+            TransactionDTO transaction = new TransactionDTO(5L, 7L, Type.BUY, 10, new BigDecimal("100.25"), BigDecimal.ONE,
+                    Instant.parse("2024-01-02T10:00:00Z"), "EUR");
+            MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+            assertTrue(converter.canWrite(List.class, MediaType.APPLICATION_CBOR));
+            converter.write(List.of(transaction), MediaType.APPLICATION_CBOR, message);
+
+            JsonNode written = new CBORMapper().readTree(message.getBodyAsBytes()).get(0);
+            assertEquals(7, written.get("portfolioId").asLong());
+            assertEquals("BUY", written.get("type").asText());
+            assertEquals(new BigDecimal("100.25"), written.get("price").decimalValue());
+            assertEquals(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(transaction.getTimestamp()), written.get("timestamp").asText());
+        });
+    }
+}
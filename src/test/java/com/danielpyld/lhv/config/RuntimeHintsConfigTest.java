@@ -0,0 +1,41 @@
+package com.danielpyld.lhv.config;
+
+import com.danielpyld.lhv.entity.Dividend;
+import com.danielpyld.lhv.entity.Profit;
+import com.danielpyld.lhv.entity.RiskMetrics;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuntimeHintsConfigTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @BeforeEach
+    void setUp() {
+        new RuntimeHintsConfig.ApplicationRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void testRegistersJacksonBindingOfEntities() throws Exception {
+        for (Class<?> type : new Class<?>[]{Transaction.class, Dividend.class, Profit.class}) {
+            assertTrue(RuntimeHintsPredicates.reflection().onType(type).test(hints), type.getSimpleName());
+        }
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(Transaction.class.getMethod("setPrice", BigDecimal.class)).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(Profit.class.getMethod("getTotalProfit")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(Type.class).test(hints), "enum of Transaction.type");
+        assertTrue(RuntimeHintsPredicates.reflection().onType(RiskMetrics.class).test(hints), "nested in Profit");
+    }
+
+    @Test
+    void testRegistersHibernateCacheConfiguration() {
+        assertTrue(RuntimeHintsPredicates.resource().forResource("hibernate-cache.conf").test(hints));
+    }
+}
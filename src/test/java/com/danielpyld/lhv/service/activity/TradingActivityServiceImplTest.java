@@ -0,0 +1,165 @@
+package com.danielpyld.lhv.service.activity;
+
+import com.danielpyld.lhv.dto.TradingActivityDTO;
+import com.danielpyld.lhv.entity.TradingActivity;
+import com.danielpyld.lhv.entity.TradingActivity.Granularity;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import com.danielpyld.lhv.repository.TradingActivityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+class TradingActivityServiceImplTest {
+
+    private static final Long PORTFOLIO_ID = 7L;
+    // A Wednesday; its week starts on Monday 2024-03-11.
+    private static final Instant WEDNESDAY = Instant.parse("2024-03-13T23:30:00Z");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TradingActivityRepository tradingActivityRepository;
+
+    private TradingActivityServiceImpl tradingActivityService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        tradingActivityService = new TradingActivityServiceImpl(jdbcTemplate, tradingActivityRepository, true, 8);
+    }
+
+    @Test
+    void testAddedTransactionsAreSummedPerBucket() {
+        Transaction buy = transaction(Type.BUY, 10, "100.005", "1.50", WEDNESDAY, "USD");
+        Transaction sell = transaction(Type.SELL, 4, "110", "1", WEDNESDAY.plusSeconds(60), "USD");
+
+        tradingActivityService.onTransactionsAdded(List.of(buy, sell));
+
+        List<Object[]> upserts = captureUpserts(1).get(0);
+        assertEquals(3, upserts.size());
+        assertArrayEquals(new Object[]{PORTFOLIO_ID, "DAY", Date.valueOf("2024-03-13"), "USD", 1, 1, 10L, 4L,
+                new BigDecimal("1000.10"), new BigDecimal("440.00"), new BigDecimal("2.50")}, upserts.get(0));
+        assertEquals(Date.valueOf("2024-03-11"), upserts.get(1)[2]);
+        assertEquals("WEEK", upserts.get(1)[1]);
+        assertEquals(Date.valueOf("2024-03-01"), upserts.get(2)[2]);
+        assertEquals("MONTH", upserts.get(2)[1]);
+        verify(jdbcTemplate, never()).batchUpdate(contains("delete"), anyList());
+    }
+
+    @Test
+    void testDeletedTransactionIsSubtractedAndEmptyBucketsRemoved() {
+        Transaction buy = transaction(Type.BUY, 10, "100", "1", WEDNESDAY, null);
+
+        tradingActivityService.onTransactionDeleted(buy);
+
+        List<Object[]> upserts = captureUpserts(1).get(0);
+        assertArrayEquals(new Object[]{PORTFOLIO_ID, "DAY", Date.valueOf("2024-03-13"), "", -1, 0, -10L, 0L,
+                new BigDecimal("-1000.00"), BigDecimal.ZERO, new BigDecimal("-1.00")}, upserts.get(0));
+        ArgumentCaptor<List<Object[]>> deletes = batchCaptor();
+        verify(jdbcTemplate).batchUpdate(contains("delete"), deletes.capture());
+        assertEquals(3, deletes.getValue().size());
+    }
+
+    @Test
+    void testUpdateOnlyWritesTheDifference() {
+        Transaction before = transaction(Type.BUY, 10, "100", "1", WEDNESDAY, "EUR");
+        Transaction after = transaction(Type.BUY, 12, "100", "1", WEDNESDAY.plus(Duration.ofDays(1)), "EUR");
+
+        tradingActivityService.onTransactionUpdated(before, after);
+
+        List<Object[]> upserts = captureUpserts(1).get(0);
+        // The days differ, while week and month net out to two more units.
+        assertEquals(4, upserts.size());
+        assertEquals(-1, upserts.get(0)[4]);
+        assertEquals(1, upserts.get(1)[4]);
+        assertArrayEquals(new Object[]{PORTFOLIO_ID, "WEEK", Date.valueOf("2024-03-11"), "EUR", 0, 0, 2L, 0L,
+                new BigDecimal("200.00"), BigDecimal.ZERO, new BigDecimal("0.00")}, upserts.get(2));
+    }
+
+    @Test
+    void testUnchangedUpdateWritesNothing() {
+        Transaction before = transaction(Type.SELL, 5, "10", "1", WEDNESDAY, "EUR");
+        Transaction after = transaction(Type.SELL, 5, "10", "1", WEDNESDAY.plusSeconds(5), "EUR");
+
+        tradingActivityService.onTransactionUpdated(before, after);
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testDisabledRollupsWriteNothing() {
+        TradingActivityServiceImpl disabled = new TradingActivityServiceImpl(jdbcTemplate, tradingActivityRepository, false, 8);
+
+        disabled.onTransactionsAdded(List.of(transaction(Type.BUY, 1, "1", "0", WEDNESDAY, null)));
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testActivityStartsAtTheBucketOfFromAndHasVwaps() {
+        TradingActivity week = new TradingActivity();
+        week.setPortfolioId(PORTFOLIO_ID);
+        week.setGranularity(Granularity.WEEK);
+        week.setBucketStart(LocalDate.parse("2024-03-11"));
+        week.setCurrency("");
+        week.setBuyCount(2);
+        week.setBuyQuantity(3);
+        week.setBuyNotional(new BigDecimal("100.00"));
+        week.setSellNotional(BigDecimal.ZERO);
+        week.setFees(new BigDecimal("2.00"));
+        when(tradingActivityRepository.findByPortfolioIdAndGranularityAndBucketStartBetweenOrderByBucketStartAscCurrencyAsc(
+                PORTFOLIO_ID, Granularity.WEEK, LocalDate.parse("2024-03-11"), LocalDate.parse("2024-04-30")))
+                .thenReturn(List.of(week));
+
+        List<TradingActivityDTO> activity = tradingActivityService.getActivity(PORTFOLIO_ID, Granularity.WEEK,
+                LocalDate.parse("2024-03-13"), LocalDate.parse("2024-04-30"));
+
+        assertEquals(1, activity.size());
+        assertNull(activity.get(0).getCurrency());
+        assertEquals(2, activity.get(0).getTradeCount());
+        assertEquals(new BigDecimal("33.33333333"), activity.get(0).getBuyVwap());
+        assertNull(activity.get(0).getSellVwap());
+    }
+
+    @Test
+    void testBucketStarts() {
+        LocalDate sunday = LocalDate.parse("2024-03-17");
+        assertEquals(sunday, TradingActivityServiceImpl.bucketStart(Granularity.DAY, sunday));
+        assertEquals(LocalDate.parse("2024-03-11"), TradingActivityServiceImpl.bucketStart(Granularity.WEEK, sunday));
+        assertEquals(LocalDate.parse("2024-03-01"), TradingActivityServiceImpl.bucketStart(Granularity.MONTH, sunday));
+    }
+
+    private List<List<Object[]>> captureUpserts(int times) {
+        ArgumentCaptor<List<Object[]>> upserts = batchCaptor();
+        verify(jdbcTemplate, times(times)).batchUpdate(contains("on conflict"), upserts.capture());
+        return upserts.getAllValues();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<Object[]>> batchCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    private static Transaction transaction(Type type, int quantity, String price, String fee, Instant timestamp, String currency) {
+        Transaction transaction = new Transaction(PORTFOLIO_ID, type, quantity, new BigDecimal(price), new BigDecimal(fee), timestamp);
+        transaction.setCurrency(currency);
+        return transaction;
+    }
+}
@@ -0,0 +1,65 @@
+package com.danielpyld.lhv.service.analytics;
+
+import com.danielpyld.lhv.entity.RiskMetrics;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RiskStatisticsTest {
+
+    @Test
+    void testMatchesTwoPassStatistics() {
+        double[] returns = {0.10, -0.05, 0.02, -0.20, 0.15, 0.03};
+        RiskStatistics statistics = new RiskStatistics(0);
+        for (double r : returns) {
+            statistics.addReturn(r);
+        }
+
+        double mean = 0;
+        for (double r : returns) {
+            mean += r;
+        }
+        mean /= returns.length;
+        double squares = 0;
+        double downside = 0;
+        for (double r : returns) {
+            squares += (r - mean) * (r - mean);
+            downside += r < 0 ? r * r : 0;
+        }
+        double volatility = Math.sqrt(squares / (returns.length - 1));
+
+        RiskMetrics metrics = statistics.toMetrics();
+        assertEquals(6, metrics.getObservations());
+        assertEquals(mean, metrics.getMeanReturn(), 1e-12);
+        assertEquals(volatility, metrics.getVolatility(), 1e-12);
+        assertEquals(mean / volatility, metrics.getSharpeRatio(), 1e-12);
+        assertEquals(mean / Math.sqrt(downside / returns.length), metrics.getSortinoRatio(), 1e-12);
+        // Peak after +10%, trough after -5% and -20% (with +2% in between): 1.1 -> 1.1 * 0.95 * 1.02 * 0.8
+        assertEquals(1 - 0.95 * 1.02 * 0.8, metrics.getMaxDrawdown(), 1e-12);
+        assertNull(metrics.getRollingVolatility());
+    }
+
+    @Test
+    void testRollingWindowUsesOnlyLatestReturns() {
+        RiskStatistics statistics = new RiskStatistics(3);
+        for (double r : new double[]{-0.50, 0.40, 0.01, 0.02, 0.03}) {
+            statistics.addReturn(r);
+        }
+
+        RiskMetrics metrics = statistics.toMetrics();
+        assertEquals(3, metrics.getRollingWindow());
+        assertEquals(0.01, metrics.getRollingVolatility(), 1e-12);
+        assertEquals(2.0, metrics.getRollingSharpeRatio(), 1e-9);
+        assertNull(metrics.getRollingSortinoRatio());
+        assertEquals(0.0, metrics.getRollingMaxDrawdown(), 1e-12);
+        assertEquals(0.5, metrics.getMaxDrawdown(), 1e-12);
+    }
+
+    @Test
+    void testEmptySeriesHasNoMetrics() {
+        RiskMetrics metrics = new RiskStatistics(5).toMetrics();
+        assertEquals(0, metrics.getObservations());
+        assertNull(metrics.getVolatility());
+        assertNull(metrics.getMaxDrawdown());
+    }
+}
@@ -0,0 +1,182 @@
+package com.danielpyld.lhv.service.batch;
+
+import com.danielpyld.lhv.dto.BatchReportDTO;
+import com.danielpyld.lhv.entity.BatchCheckpoint;
+import com.danielpyld.lhv.entity.Profit;
+import com.danielpyld.lhv.entity.StockSplit;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import com.danielpyld.lhv.repository.BatchCheckpointRepository;
+import com.danielpyld.lhv.repository.TransactionRepository;
+import com.danielpyld.lhv.service.dividend.DividendService;
+import com.danielpyld.lhv.service.portfolio.PortfolioService;
+import com.danielpyld.lhv.service.fx.FxRateStore;
+import com.danielpyld.lhv.service.portfolio.ReturnsCalculator;
+import com.danielpyld.lhv.service.split.StockSplitService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ValuationBatchServiceImplTest {
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private BatchCheckpointRepository checkpointRepository;
+
+    @Mock
+    private PortfolioService portfolioService;
+
+    @Mock
+    private DividendService dividendService;
+
+    @Mock
+    private StockSplitService stockSplitService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ValuationBatchServiceImpl valuationBatchService;
+
+    private final LocalDate valuationDate = LocalDate.of(2024, 6, 30);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(dividendService.generateDividends(anyList(), anyLong())).thenReturn(List.of());
+        when(portfolioService.calculateProfit(anyList(), anyList(), anyList(), any(), any()))
+                .thenReturn(new Profit(BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO, BigDecimal.ZERO));
+        valuationBatchService = new ValuationBatchServiceImpl(transactionRepository, checkpointRepository, portfolioService,
+                dividendService, new ReturnsCalculator(FxRateStore.empty("EUR")), stockSplitService, jdbcTemplate, entityManager, ForkJoinPool.commonPool(), transactionManager,
+                new SimpleMeterRegistry(), 2);
+    }
+
+    @Test
+    void testValuationWritesChunksAndCompletesCheckpoint() {
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(transactionRepository.streamForValuation(eq(Long.MIN_VALUE), any())).thenReturn(Stream.of(
+                transaction(1L), transaction(1L), transaction(2L), transaction(3L)
+        ));
+
+        BatchReportDTO report = valuationBatchService.runEndOfDayValuation(valuationDate);
+
+        assertEquals(3, report.getPortfolios());
+        assertEquals(4, report.getTransactions());
+        assertTrue(report.isCompleted());
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+        verify(portfolioService, times(3)).calculateProfit(anyList(), anyList(), anyList(), any(),
+                eq(Instant.parse("2024-07-01T00:00:00Z")));
+
+        ArgumentCaptor<BatchCheckpoint> captor = ArgumentCaptor.forClass(BatchCheckpoint.class);
+        verify(checkpointRepository, atLeastOnce()).save(captor.capture());
+        BatchCheckpoint checkpoint = captor.getValue();
+        assertEquals(3L, checkpoint.getLastPortfolioId());
+        assertTrue(checkpoint.isCompleted());
+    }
+
+    @Test
+    void testFailedPortfolioIsSkippedAndCheckpointAdvances() {
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(transactionRepository.streamForValuation(eq(Long.MIN_VALUE), any())).thenReturn(Stream.of(
+                transaction(1L), transaction(2L), transaction(3L)
+        ));
+        when(portfolioService.calculateProfit(argThat(transactions -> transactions.get(0).getPortfolioId() == 2L),
+                anyList(), anyList(), any(), any())).thenThrow(new IllegalArgumentException("No FX rates for USD to EUR"));
+
+        BatchReportDTO report = valuationBatchService.runEndOfDayValuation(valuationDate);
+
+        assertEquals(3, report.getPortfolios());
+        assertEquals(1, report.getFailedPortfolios());
+        assertTrue(report.isCompleted());
+
+        ArgumentCaptor<BatchCheckpoint> captor = ArgumentCaptor.forClass(BatchCheckpoint.class);
+        verify(checkpointRepository, atLeastOnce()).save(captor.capture());
+        assertEquals(3L, captor.getValue().getLastPortfolioId());
+
+        ArgumentCaptor<List<?>> written = batchCaptor();
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), written.capture(), anyInt(), any());
+        assertEquals(1, written.getAllValues().get(0).size());
+        assertEquals(1, written.getAllValues().get(1).size());
+    }
+
+    @Test
+    void testValuationAppliesSplitsOfEachPortfolio() {
+        StockSplit split = new StockSplit(1L, 2, 1, Instant.parse("2024-06-15T00:00:00Z"));
+        when(stockSplitService.getSplitsBefore(Instant.parse("2024-07-01T00:00:00Z"))).thenReturn(Map.of(1L, List.of(split)));
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(transactionRepository.streamForValuation(eq(Long.MIN_VALUE), any())).thenReturn(Stream.of(
+                transaction(1L), transaction(2L)
+        ));
+
+        valuationBatchService.runEndOfDayValuation(valuationDate);
+
+        verify(portfolioService).calculateProfit(argThat(transactions -> transactions.get(0).getPortfolioId() == 1L),
+                anyList(), eq(List.of(split)), any(), any());
+        verify(portfolioService).calculateProfit(argThat(transactions -> transactions.get(0).getPortfolioId() == 2L),
+                anyList(), eq(List.of()), any(), any());
+    }
+
+    @Test
+    void testValuationResumesAfterCheckpoint() {
+        BatchCheckpoint checkpoint = new BatchCheckpoint(ValuationBatchServiceImpl.JOB_NAME + ":" + valuationDate, valuationDate);
+        checkpoint.setLastPortfolioId(2L);
+        checkpoint.setProcessedPortfolios(2);
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.of(checkpoint));
+        when(transactionRepository.streamForValuation(eq(2L), any())).thenReturn(Stream.of(transaction(3L)));
+
+        BatchReportDTO report = valuationBatchService.runEndOfDayValuation(valuationDate);
+
+        assertEquals(2L, report.getResumedAfterPortfolioId());
+        assertEquals(1, report.getPortfolios());
+        assertEquals(3, checkpoint.getProcessedPortfolios());
+    }
+
+    @Test
+    void testCompletedValuationIsNotRepeated() {
+        BatchCheckpoint checkpoint = new BatchCheckpoint(ValuationBatchServiceImpl.JOB_NAME + ":" + valuationDate, valuationDate);
+        checkpoint.setCompleted(true);
+        when(checkpointRepository.findById(anyString())).thenReturn(Optional.of(checkpoint));
+
+        BatchReportDTO report = valuationBatchService.runEndOfDayValuation(valuationDate);
+
+        assertTrue(report.isCompleted());
+        verify(transactionRepository, never()).streamForValuation(any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<?>> batchCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    private Transaction transaction(Long portfolioId) {
+        return new Transaction(portfolioId, Type.BUY, 10, BigDecimal.TEN, BigDecimal.ONE, Instant.parse("2024-06-01T10:00:00Z"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.danielpyld.lhv.service.fx;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FxRateStoreTest {
+
+    private static final long NANOS_PER_DAY = 86_400_000_000_000L;
+    private static final long JAN_1 = Instant.parse("2024-01-01T00:00:00Z").getEpochSecond() * 1_000_000_000L;
+
+    private FxRateStore fxRates;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fxRates = new FxRateStore("eur", new StringReader("""
+                # rates into EUR
+                currency,effectiveFrom,rate
+                USD,2024-01-03,0.93
+                USD,2024-01-01,0.91
+                usd,2024-01-02,0.92
+                USD,2024-01-02,0.925
+                SEK,2024-01-01T12:00:00Z,0.087
+                EUR,2024-01-01,2
+                """));
+    }
+
+    @Test
+    void testLooksUpLatestRateAtOrBeforeInstant() {
+        int usd = fxRates.series("USD");
+
+        assertEquals(new BigDecimal("0.91"), rate(fxRates.rateAt(usd, JAN_1)));
+        assertEquals(new BigDecimal("0.91"), rate(fxRates.rateAt(usd, JAN_1 + NANOS_PER_DAY - 1)));
+        assertEquals(new BigDecimal("0.925"), rate(fxRates.rateAt(usd, JAN_1 + NANOS_PER_DAY)));
+        assertEquals(new BigDecimal("0.93"), rate(fxRates.rateAt(usd, JAN_1 + 30 * NANOS_PER_DAY)));
+        assertThrows(IllegalArgumentException.class, () -> fxRates.rateAt(usd, JAN_1 - 1));
+    }
+
+    @Test
+    void testBaseCurrencyConvertsAtOne() {
+        assertEquals("EUR", fxRates.getBaseCurrency());
+        assertEquals(FxRateStore.BASE, fxRates.series(null));
+        assertEquals(FxRateStore.BASE, fxRates.series("eur"));
+        assertEquals(new BigDecimal("10"), fxRates.toBase(new BigDecimal("10"), "EUR", Instant.EPOCH));
+        assertEquals(0, new BigDecimal("9.25").compareTo(
+                fxRates.toBase(new BigDecimal("10"), "USD", Instant.parse("2024-01-02T10:00:00Z"))));
+        assertThrows(IllegalArgumentException.class, () -> fxRates.series("GBP"));
+    }
+
+    @Test
+    void testCursorMatchesBinarySearchInAnyOrder() {
+        int usd = fxRates.series("USD");
+        int sek = fxRates.series("SEK");
+        FxRateStore.Cursor cursor = fxRates.cursor();
+        long[] instants = {JAN_1 + NANOS_PER_DAY / 2, JAN_1 + NANOS_PER_DAY, JAN_1 + 3 * NANOS_PER_DAY, JAN_1,
+                JAN_1 + 2 * NANOS_PER_DAY + 1};
+
+        for (long instant : instants) {
+            assertEquals(fxRates.rateAt(usd, instant), cursor.rateAt(usd, instant));
+            assertEquals(fxRates.rateAt(sek, instant + NANOS_PER_DAY), cursor.rateAt(sek, instant + NANOS_PER_DAY));
+        }
+    }
+
+    @Test
+    void testRejectsMalformedLines() {
+        assertThrows(IllegalArgumentException.class, () -> new FxRateStore("EUR", new StringReader("USD,2024-01-01")));
+        assertThrows(IllegalArgumentException.class, () -> new FxRateStore("EUR", new StringReader("USD,2024-01-01,0")));
+    }
+
+    private static BigDecimal rate(long scaled) {
+        return BigDecimal.valueOf(scaled, FxRateStore.RATE_SCALE).stripTrailingZeros();
+    }
+}
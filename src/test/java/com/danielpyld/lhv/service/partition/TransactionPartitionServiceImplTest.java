@@ -0,0 +1,44 @@
+package com.danielpyld.lhv.service.partition;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransactionPartitionServiceImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TransactionPartitionServiceImpl partitionService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        partitionService = new TransactionPartitionServiceImpl(jdbcTemplate, meterRegistry, 3);
+    }
+
+    @Test
+    void testEnsuresPartitionsAheadAndCountsCreated() {
+        when(jdbcTemplate.queryForObject(contains("ensure_transaction_partitions"), eq(Integer.class), eq(3)))
+                .thenReturn(2, 0);
+
+        assertEquals(2, partitionService.ensurePartitions());
+        assertEquals(0, partitionService.ensurePartitions());
+        assertEquals(2.0, meterRegistry.counter("transactions.partitions.created").count());
+    }
+
+    @Test
+    void testRejectsNegativeMonthsAhead() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TransactionPartitionServiceImpl(jdbcTemplate, meterRegistry, -1));
+    }
+}
@@ -0,0 +1,105 @@
+package com.danielpyld.lhv.service.portfolio;
+
+import com.danielpyld.lhv.entity.Dividend;
+import com.danielpyld.lhv.entity.StockSplit;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import com.danielpyld.lhv.service.fx.FxRateStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventTimelineTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    void testMergesTransactionsAndDividendDatesInTimeOrder() {
+        List<Transaction> transactions = List.of(
+                new Transaction(Type.SELL, 5, new BigDecimal("12.5"), new BigDecimal("0.25"), T0.plusSeconds(30)),
+                new Transaction(Type.BUY, 10, new BigDecimal("10"), BigDecimal.ONE, T0),
+                new Transaction(Type.BUY, 1, new BigDecimal("11"), BigDecimal.ZERO, T0.plusSeconds(20))
+        );
+        List<Dividend> dividends = List.of(new Dividend(new BigDecimal("0.5"), T0.plusSeconds(20), T0.plusSeconds(40)));
+
+        EventTimeline timeline = EventTimeline.of(transactions, dividends, List.of(), 2, FxRateStore.empty("EUR"));
+
+        assertEquals(5, timeline.size);
+        assertArrayEquals(new byte[]{EventTimeline.BUY, EventTimeline.BUY, EventTimeline.EX_DIVIDEND, EventTimeline.SELL,
+                EventTimeline.DIVIDEND_PAYMENT}, timeline.kinds);
+        assertArrayEquals(new long[]{1000, 1100, 50, 1250, 50}, timeline.prices);
+        assertArrayEquals(new long[]{100, 0, 0, 25, 0}, timeline.fees);
+        assertArrayEquals(new int[]{10, 1, 0, 5, 0}, timeline.quantities);
+        assertEquals(Type.SELL, timeline.transaction(3).getType());
+        assertEquals(EventTimeline.toEpochNanos(T0.plusSeconds(30)), timeline.timestamps[3]);
+    }
+
+    @Test
+    void testConvertsAmountsAtTheRateInEffect() throws IOException {
+        FxRateStore fxRates = new FxRateStore("EUR", new StringReader("""
+                currency,effectiveFrom,rate
+                USD,2024-01-01T00:00:00Z,0.5
+                USD,2024-01-01T00:00:25Z,0.8
+                SEK,2024-01-01,0.1
+                """));
+        Transaction usdBuy = new Transaction(Type.BUY, 10, new BigDecimal("10"), BigDecimal.ONE, T0);
+        usdBuy.setCurrency("USD");
+        Transaction eurBuy = new Transaction(Type.BUY, 1, new BigDecimal("11"), BigDecimal.ONE, T0.plusSeconds(20));
+        Transaction usdSell = new Transaction(Type.SELL, 5, new BigDecimal("12.5"), new BigDecimal("0.25"), T0.plusSeconds(30));
+        usdSell.setCurrency("USD");
+        Dividend dividend = new Dividend(new BigDecimal("5"), T0.plusSeconds(20), T0.plusSeconds(40));
+        dividend.setCurrency("SEK");
+
+        EventTimeline timeline = EventTimeline.of(List.of(usdBuy, eurBuy, usdSell), List.of(dividend), List.of(), 2, fxRates);
+
+        assertArrayEquals(new long[]{500, 1100, 50, 1000, 50}, timeline.prices);
+        assertArrayEquals(new long[]{50, 100, 0, 20, 0}, timeline.fees);
+    }
+
+    @Test
+    void testRejectsCurrencyWithoutRates() {
+        Transaction buy = new Transaction(Type.BUY, 10, new BigDecimal("10"), BigDecimal.ONE, T0);
+        buy.setCurrency("USD");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> EventTimeline.of(List.of(buy), List.of(), List.of(), 2, FxRateStore.empty("EUR")));
+    }
+
+    @Test
+    void testSplitsComeFirstAndKeepCumulativeFactors() {
+        List<Transaction> transactions = List.of(
+                new Transaction(Type.BUY, 10, new BigDecimal("10"), BigDecimal.ZERO, T0),
+                new Transaction(Type.BUY, 3, new BigDecimal("7"), BigDecimal.ZERO, T0.plusSeconds(20)),
+                new Transaction(Type.SELL, 1, new BigDecimal("2"), BigDecimal.ZERO, T0.plusSeconds(30))
+        );
+        List<StockSplit> splits = List.of(
+                new StockSplit(1L, 1, 3, T0.plusSeconds(30)),
+                new StockSplit(1L, 3, 1, T0.plusSeconds(20))
+        );
+
+        EventTimeline timeline = EventTimeline.of(transactions, List.of(), splits, 2, FxRateStore.empty("EUR"));
+
+        assertArrayEquals(new byte[]{EventTimeline.BUY, EventTimeline.SPLIT, EventTimeline.BUY, EventTimeline.SPLIT,
+                EventTimeline.SELL}, timeline.kinds);
+        assertEquals(2, timeline.splitCount);
+        assertArrayEquals(new int[]{0, 0, 1, 1, 2}, new int[]{timeline.splitEpoch(0), timeline.splitEpoch(1),
+                timeline.splitEpoch(2), timeline.splitEpoch(3), timeline.splitEpoch(4)});
+        assertEquals(30, timeline.adjustQuantity(10, 0, 1));
+        assertEquals(10, timeline.adjustQuantity(10, 0, 2));
+        assertEquals(1, timeline.adjustQuantity(4, 1, 2));
+        assertEquals(333, timeline.adjustPrice(1000, 0, 1));
+        assertEquals(2100, timeline.adjustPrice(700, 1, 2));
+    }
+
+    @Test
+    void testScalingRoundsHalfUpAndRejectsOverflow() {
+        assertEquals(101, EventTimeline.toScaled(new BigDecimal("1.005"), 2));
+        assertThrows(ArithmeticException.class, () -> EventTimeline.toScaled(new BigDecimal("1e15"), 8));
+    }
+}
@@ -1,9 +1,18 @@
 package com.danielpyld.lhv.service.portfolio;
 
+import com.danielpyld.lhv.entity.Dividend;
+import com.danielpyld.lhv.entity.LotMatch;
+import com.danielpyld.lhv.entity.Profit;
+import com.danielpyld.lhv.entity.SellScenario;
+import com.danielpyld.lhv.entity.SellSimulation;
+import com.danielpyld.lhv.entity.StockSplit;
 import com.danielpyld.lhv.entity.Transaction;
-import com.danielpyld.lhv.entity.TransactionEvent;
 import com.danielpyld.lhv.entity.Type;
 import com.danielpyld.lhv.repository.TransactionRepository;
+import com.danielpyld.lhv.service.dividend.DividendService;
+import com.danielpyld.lhv.service.fx.FxRateStore;
+import com.danielpyld.lhv.service.split.StockSplitService;
+import com.danielpyld.lhv.service.transaction.TransactionGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -12,12 +21,22 @@ import org.mockito.MockitoAnnotations;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class PortfolioServiceImplTest {
 
@@ -27,52 +46,254 @@ public class PortfolioServiceImplTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Mock
+    private DividendService dividendService;
+
+    @Mock
+    private StockSplitService stockSplitService;
+
     private int SCALE = 8;
 
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
-        portfolioService = new PortfolioServiceImpl();
+        portfolioService = new PortfolioServiceImpl(transactionRepository, dividendService, ForkJoinPool.commonPool(),
+                new ReturnsCalculator(FxRateStore.empty("EUR")), FxRateStore.empty("EUR"), stockSplitService);
     }
 
     @Test
     public void testHandleTransactionEvent() {
-        Queue<Transaction> buys = new LinkedList<>();
-        TransactionEvent event = new TransactionEvent(new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, Instant.now()));
+        EventTimeline timeline = EventTimeline.of(List.of(
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, Instant.now())), List.of(), List.of(), SCALE, FxRateStore.empty("EUR"));
+        LotQueue lots = new LotQueue();
 
-        BigDecimal lastPrice = portfolioService.handleTransactionEvent(event, buys);
+        long lastPrice = portfolioService.handleTransactionEvent(timeline, 0, lots, new PortfolioServiceImpl.ProfitAccumulator());
 
-        assertEquals(BigDecimal.valueOf(100), lastPrice);
-        assertEquals(1, buys.size());
+        assertEquals(BigDecimal.valueOf(100).setScale(SCALE), timeline.toDecimal(lastPrice));
+        assertEquals(1, lots.size());
     }
 
     @Test
     public void testCalculateRealizedProfit() {
-        Queue<Transaction> buys = new LinkedList<>();
-        buys.offer(new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, Instant.now()));
-
+        Instant now = Instant.now();
         List<Transaction> transactions = Arrays.asList(
-                new Transaction(Type.SELL, 5, BigDecimal.valueOf(120), BigDecimal.ZERO, Instant.now())
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, now.minusSeconds(60)),
+                new Transaction(Type.SELL, 5, BigDecimal.valueOf(120), BigDecimal.ZERO, now)
         );
 
-        BigDecimal realizedProfit = portfolioService.calculateRealizedProfit(transactions, buys);
-
-        BigDecimal expectedProfit = BigDecimal.valueOf(100).setScale(SCALE);
+        Profit profit = portfolioService.calculateProfit(transactions, List.of());
 
-        assertEquals(expectedProfit, realizedProfit.setScale(SCALE));
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(profit.getRealizedStockProfit()));
     }
 
-
     @Test
     public void testFindUnrealizedGains() {
-        Queue<Transaction> buys = new LinkedList<>();
-        buys.offer(new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, Instant.now()));
+        EventTimeline timeline = EventTimeline.of(List.of(
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, Instant.now())), List.of(), List.of(), SCALE, FxRateStore.empty("EUR"));
+        LotQueue lots = new LotQueue();
+        lots.add(0, 10, 0);
 
-        BigDecimal unrealizedGains = portfolioService.findUnrealizedGains(10, buys, BigDecimal.valueOf(120));
+        long unrealizedGains = portfolioService.findUnrealizedGains(timeline, lots, EventTimeline.toScaled(BigDecimal.valueOf(120), SCALE),
+                new PortfolioServiceImpl.ProfitAccumulator());
 
         BigDecimal expectedUnrealizedGains = BigDecimal.valueOf(200).setScale(SCALE);
 
-        assertEquals(expectedUnrealizedGains, unrealizedGains.setScale(SCALE));
+        assertEquals(expectedUnrealizedGains, timeline.toDecimal(unrealizedGains));
+    }
+
+    @Test
+    public void testProportionalAmountRoundsHalfUp() {
+        assertEquals(3, PortfolioServiceImpl.proportionalAmount(5, 1, 2));
+        assertEquals(-3, PortfolioServiceImpl.proportionalAmount(-5, 1, 2));
+        assertEquals(2, PortfolioServiceImpl.proportionalAmount(7, 1, 3));
+    }
+
+    @Test
+    public void testCalculateProfitsPerPortfolio() {
+        Instant now = Instant.now();
+        when(transactionRepository.findByPortfolioIdOrderByTimestampAscIdAsc(1L)).thenReturn(List.of(
+                new Transaction(1L, Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, now.minusSeconds(60)),
+                new Transaction(1L, Type.SELL, 10, BigDecimal.valueOf(110), BigDecimal.ZERO, now)
+        ));
+        when(transactionRepository.findByPortfolioIdOrderByTimestampAscIdAsc(2L)).thenReturn(List.of(
+                new Transaction(2L, Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, now.minusSeconds(60)),
+                new Transaction(2L, Type.SELL, 10, BigDecimal.valueOf(90), BigDecimal.ZERO, now)
+        ));
+        when(dividendService.generateDividends(anyList(), anyLong())).thenReturn(List.of());
+
+        Map<Long, Profit> profits = portfolioService.calculateProfits(List.of(1L, 2L));
+
+        assertEquals(List.of(1L, 2L), List.copyOf(profits.keySet()));
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(profits.get(1L).getRealizedStockProfit()));
+        assertEquals(0, BigDecimal.valueOf(-100).compareTo(profits.get(2L).getRealizedStockProfit()));
+    }
+
+    @Test
+    public void testPortfolioProfitIsSeededAndValuedToEndOfDay() {
+        when(transactionRepository.findByPortfolioIdOrderByTimestampAscIdAsc(5L)).thenReturn(List.of(
+                new Transaction(5L, Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, Instant.parse("2024-01-02T10:00:00Z"))
+        ));
+        when(dividendService.generateDividends(anyList(), eq(5L))).thenReturn(List.of(
+                new Dividend(BigDecimal.ONE, Instant.parse("2024-06-01T00:00:00Z"), Instant.parse("2024-06-30T23:59:59Z")),
+                new Dividend(BigDecimal.TEN, Instant.parse("2024-06-01T00:00:00Z"), Instant.parse("2024-07-01T12:00:00Z"))
+        ));
+
+        Profit first = portfolioService.calculateProfit(5L, LocalDate.of(2024, 6, 30));
+        Profit second = portfolioService.calculateProfit(5L, LocalDate.of(2024, 6, 30));
+
+        assertEquals(0, BigDecimal.TEN.compareTo(first.getDividendProfit()));
+        assertEquals(0, first.getTotalProfit().compareTo(second.getTotalProfit()));
+        verify(dividendService, never()).generateDividends(anyList());
+    }
+
+    @Test
+    public void testCalculateProfitCollectsRiskMetricsInSameSweep() {
+        Instant now = Instant.now();
+        List<Transaction> transactions = List.of(
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, now.minusSeconds(180)),
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(110), BigDecimal.ZERO, now.minusSeconds(120)),
+                new Transaction(Type.SELL, 5, BigDecimal.valueOf(88), BigDecimal.ZERO, now.minusSeconds(60)),
+                new Transaction(Type.SELL, 15, BigDecimal.valueOf(99), BigDecimal.ZERO, now)
+        );
+
+        Profit profit = portfolioService.calculateProfit(transactions, List.of());
+
+        // Sub-period returns: +10%, -20%, +12.5%
+        assertEquals(3, profit.getRiskMetrics().getObservations());
+        assertEquals(0.2, profit.getRiskMetrics().getMaxDrawdown(), 1e-12);
+        assertEquals((0.1 - 0.2 + 0.125) / 3, profit.getRiskMetrics().getMeanReturn(), 1e-12);
+    }
+
+    @Test
+    public void testCalculateProfitReportsLotMatches() {
+        Instant now = Instant.now();
+        List<Transaction> transactions = List.of(
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(10), now.minusSeconds(120)),
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(120), BigDecimal.ZERO, now.minusSeconds(60)),
+                new Transaction(Type.SELL, 15, BigDecimal.valueOf(130), BigDecimal.valueOf(3), now)
+        );
+        List<LotMatch> matches = new ArrayList<>();
+
+        Profit profit = portfolioService.calculateProfit(transactions, List.of(), matches::add);
+
+        assertEquals(2, matches.size());
+        assertEquals(10, matches.get(0).getQuantity());
+        assertEquals(0, BigDecimal.valueOf(10).compareTo(matches.get(0).getBuyFee()));
+        assertEquals(0, BigDecimal.valueOf(2).compareTo(matches.get(0).getSellFee()));
+        assertEquals(5, matches.get(1).getQuantity());
+        BigDecimal matchedGain = matches.get(0).getRealizedGain().add(matches.get(1).getRealizedGain());
+        assertEquals(0, matchedGain.compareTo(profit.getRealizedStockProfit()));
     }
 
+    @Test
+    public void testCalculateProfitAppliesSplitsWhenLotsAreRead() {
+        Instant now = Instant.now();
+        List<Transaction> transactions = List.of(
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, now.minusSeconds(300)),
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(120), BigDecimal.ZERO, now.minusSeconds(240)),
+                new Transaction(Type.SELL, 15, BigDecimal.valueOf(60), BigDecimal.ZERO, now.minusSeconds(180)),
+                new Transaction(Type.SELL, 6, BigDecimal.valueOf(130), BigDecimal.ZERO, now.minusSeconds(60))
+        );
+        List<StockSplit> splits = List.of(
+                new StockSplit(1L, 2, 1, now.minusSeconds(200)),
+                new StockSplit(1L, 1, 2, now.minusSeconds(120)),
+                new StockSplit(1L, 2, 1, now.minusSeconds(30))
+        );
+        List<LotMatch> matches = new ArrayList<>();
+
+        Profit profit = portfolioService.calculateProfit(transactions, List.of(), splits, matches::add);
+
+        // 2:1 makes the first lot 20 shares at 50; the 1:2 consolidation leaves 2 of its last 5 shares at 100
+        assertEquals(List.of(15, 2, 4), matches.stream().map(LotMatch::getQuantity).toList());
+        assertEquals(0, BigDecimal.valueOf(50).compareTo(matches.get(0).getBuyPrice()));
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(matches.get(1).getBuyPrice()));
+        assertEquals(0, BigDecimal.valueOf(120).compareTo(matches.get(2).getBuyPrice()));
+        assertEquals(0, BigDecimal.valueOf(250).compareTo(profit.getRealizedStockProfit()));
+        // The last split turns the remaining 6 shares at 120 into 12 at 60, valued at the split last price of 65
+        assertEquals(0, BigDecimal.valueOf(60).compareTo(profit.getUnrealizedGains()));
+    }
+
+    @Test
+    public void testSimulateSellsAgainstCurrentLots() {
+        Instant now = Instant.now();
+        List<Transaction> transactions = List.of(
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(10), now.minusSeconds(300)),
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(120), BigDecimal.ZERO, now.minusSeconds(240)),
+                new Transaction(Type.SELL, 4, BigDecimal.valueOf(130), BigDecimal.ZERO, now.minusSeconds(180))
+        );
+
+        List<SellSimulation> simulations = portfolioService.simulateSells(transactions, List.of(), List.of(
+                new SellScenario(10, BigDecimal.valueOf(150), BigDecimal.valueOf(5)),
+                new SellScenario(30, BigDecimal.valueOf(90), null)));
+
+        // 6 left of the first lot at 100 with 6 of its fee, then 4 of the second lot at 120
+        SellSimulation partial = simulations.get(0);
+        assertEquals(10, partial.getQuantitySold());
+        assertEquals(0, BigDecimal.valueOf(1500 - 5 - 606 - 480).compareTo(partial.getRealizedProfit()));
+        assertEquals(0, BigDecimal.valueOf(1500 - 5 - 606 - 480 + 116).compareTo(partial.getTotalRealizedProfit()));
+        assertEquals(6, partial.getRemainingQuantity());
+        assertEquals(0, BigDecimal.valueOf(720).compareTo(partial.getRemainingCostBasis()));
+        // Each scenario starts from the same lots, and only what they hold is sold
+        SellSimulation oversold = simulations.get(1);
+        assertEquals(16, oversold.getQuantitySold());
+        assertEquals(0, BigDecimal.valueOf(1440 - 606 - 1200).compareTo(oversold.getRealizedProfit()));
+        assertEquals(0, oversold.getRemainingQuantity());
+        assertEquals(0, BigDecimal.ZERO.compareTo(oversold.getRemainingCostBasis()));
+    }
+
+    @Test
+    public void testSimulatedSellsMatchCalculationWithSellAppended() {
+        Instant now = Instant.now();
+        List<Transaction> transactions = new TransactionGenerator().generate(1L, 500, new Random(7), now.minusSeconds(60));
+        Instant first = transactions.get(0).getTimestamp();
+        List<StockSplit> splits = List.of(
+                new StockSplit(1L, 3, 1, first.plusSeconds((now.getEpochSecond() - first.getEpochSecond()) / 3)),
+                new StockSplit(1L, 1, 2, first.plusSeconds((now.getEpochSecond() - first.getEpochSecond()) * 2 / 3)));
+        BigDecimal realizedBefore = portfolioService.calculateProfit(transactions, List.of(), splits, LotMatchListener.NONE).getRealizedStockProfit();
+        List<SellScenario> scenarios = new ArrayList<>();
+        for (int quantity = 1; quantity <= 4001; quantity += 250) {
+            scenarios.add(new SellScenario(quantity, BigDecimal.valueOf(90 + quantity % 40), BigDecimal.valueOf(quantity % 7)));
+        }
+
+        List<SellSimulation> simulations = portfolioService.simulateSells(transactions, splits, scenarios);
+
+        for (int i = 0; i < scenarios.size(); i++) {
+            SellScenario scenario = scenarios.get(i);
+            List<Transaction> withSell = new ArrayList<>(transactions);
+            withSell.add(new Transaction(Type.SELL, scenario.getQuantity(), scenario.getPrice(), scenario.getFee(), now));
+            Profit expected = portfolioService.calculateProfit(withSell, List.of(), splits, LotMatchListener.NONE);
+
+            assertEquals(0, expected.getRealizedStockProfit().compareTo(simulations.get(i).getTotalRealizedProfit()));
+            assertEquals(0, expected.getRealizedStockProfit().subtract(realizedBefore).compareTo(simulations.get(i).getRealizedProfit()));
+            // Valued at the sell price, the remaining lots are worth their quantity times it, less their cost basis
+            BigDecimal remainingValue = scenario.getPrice().multiply(BigDecimal.valueOf(simulations.get(i).getRemainingQuantity()));
+            assertEquals(0, expected.getUnrealizedGains().compareTo(simulations.get(i).getRemainingQuantity() == 0
+                    ? BigDecimal.ZERO : remainingValue.subtract(simulations.get(i).getRemainingCostBasis())));
+        }
+    }
+
+    @Test
+    public void testLotSnapshotViewsDoNotAffectEachOther() {
+        Instant now = Instant.now();
+        LotSnapshot snapshot = portfolioService.snapshotLots(List.of(
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(10), now.minusSeconds(120)),
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(120), BigDecimal.ZERO, now.minusSeconds(60))), List.of());
+
+        LotSnapshot.View first = snapshot.view();
+        long firstProfit = first.sell(5, 110, 0);
+        first.sell(10, 110, 0);
+        LotSnapshot.View second = snapshot.view();
+
+        assertEquals(firstProfit, second.sell(5, 110, 0));
+        assertEquals(5, first.remainingQuantity());
+        assertEquals(15, second.remainingQuantity());
+        assertEquals(20, snapshot.totalQuantity());
+        assertEquals(2210, snapshot.costBasis());
+    }
+
+    @Test
+    public void testSimulateSellsRejectsScenarioWithoutQuantity() {
+        assertThrows(IllegalArgumentException.class, () -> portfolioService.simulateSells(List.of(), List.of(),
+                List.of(new SellScenario(0, BigDecimal.TEN, null))));
+    }
 }
@@ -0,0 +1,125 @@
+package com.danielpyld.lhv.service.portfolio;
+
+import com.danielpyld.lhv.entity.Dividend;
+import com.danielpyld.lhv.entity.Returns;
+import com.danielpyld.lhv.entity.StockSplit;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import com.danielpyld.lhv.service.fx.FxRateStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReturnsCalculatorTest {
+
+    private final ReturnsCalculator returnsCalculator = new ReturnsCalculator(FxRateStore.empty("EUR"));
+
+    @Test
+    void testXirrMatchesSpreadsheetReference() {
+        LocalDate start = LocalDate.of(2008, 1, 1);
+        LocalDate[] dates = {start, LocalDate.of(2008, 3, 1), LocalDate.of(2008, 10, 30),
+                LocalDate.of(2009, 2, 15), LocalDate.of(2009, 4, 1)};
+        double[] amounts = {-10000, 2750, 4250, 3250, 2750};
+        double[] years = new double[dates.length];
+        for (int i = 0; i < dates.length; i++) {
+            years[i] = ChronoUnit.DAYS.between(start, dates[i]) / 365.0;
+        }
+
+        assertEquals(0.373362535, ReturnsCalculator.xirr(amounts, years, amounts.length), 1e-6);
+    }
+
+    @Test
+    void testXirrWithoutSignChangeIsUndefined() {
+        assertTrue(Double.isNaN(ReturnsCalculator.xirr(new double[]{-100, -50}, new double[]{0, 1}, 2)));
+    }
+
+    @Test
+    void testSplitAdjustsHoldingsWithoutBeingAFlow() {
+        Instant start = LocalDate.of(2023, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant end = start.plus(365, ChronoUnit.DAYS);
+        List<Transaction> transactions = List.of(
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, start),
+                new Transaction(Type.SELL, 20, BigDecimal.valueOf(60), BigDecimal.ZERO, end)
+        );
+        List<StockSplit> splits = List.of(new StockSplit(1L, 2, 1, start.plus(100, ChronoUnit.DAYS)));
+
+        Returns returns = returnsCalculator.calculateReturns(transactions, List.of(), splits, end);
+
+        assertEquals(0.2, returns.getXirr(), 1e-9);
+        assertEquals(0.2, returns.getTimeWeightedReturn(), 1e-9);
+    }
+
+    @Test
+    void testFlowsAreConvertedIntoBaseCurrency() throws Exception {
+        FxRateStore fxRates = new FxRateStore("EUR", new StringReader("""
+                currency,effectiveFrom,rate
+                USD,2023-01-01,0.5
+                USD,2023-07-01,1.0
+                """));
+        Instant start = LocalDate.of(2023, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant end = start.plus(365, ChronoUnit.DAYS);
+        Transaction buy = new Transaction(Type.BUY, 10, BigDecimal.valueOf(200), BigDecimal.ZERO, start);
+        buy.setCurrency("USD");
+        Transaction sell = new Transaction(Type.SELL, 10, BigDecimal.valueOf(120), BigDecimal.ZERO, end);
+        sell.setCurrency("USD");
+
+        Returns returns = new ReturnsCalculator(fxRates).calculateReturns(List.of(buy, sell), List.of(), end);
+
+        assertEquals(0.2, returns.getXirr(), 1e-9);
+        assertEquals(0.2, returns.getTimeWeightedReturn(), 1e-9);
+    }
+
+    @Test
+    void testSingleRoundTripReturns() {
+        Instant start = LocalDate.of(2023, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant end = start.plus(365, ChronoUnit.DAYS);
+        List<Transaction> transactions = List.of(
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, start),
+                new Transaction(Type.SELL, 10, BigDecimal.valueOf(110), BigDecimal.ZERO, end)
+        );
+
+        Returns returns = returnsCalculator.calculateReturns(transactions, List.of(), end);
+
+        assertEquals(0.1, returns.getXirr(), 1e-9);
+        assertEquals(0.1, returns.getTimeWeightedReturn(), 1e-9);
+        assertEquals(0.1, returns.getAnnualizedTimeWeightedReturn(), 1e-9);
+    }
+
+    @Test
+    void testTimeWeightedReturnChainsSubPeriods() {
+        Instant start = LocalDate.of(2023, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        List<Transaction> transactions = List.of(
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, start),
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(120), BigDecimal.ZERO, start.plus(100, ChronoUnit.DAYS)),
+                new Transaction(Type.SELL, 20, BigDecimal.valueOf(108), BigDecimal.ZERO, start.plus(200, ChronoUnit.DAYS))
+        );
+
+        Returns returns = returnsCalculator.calculateReturns(transactions, List.of(), start.plus(200, ChronoUnit.DAYS));
+
+        assertEquals(1.2 * 0.9 - 1, returns.getTimeWeightedReturn(), 1e-9);
+        assertNotNull(returns.getXirr());
+    }
+
+    @Test
+    void testDividendIsCreditedToHoldingsAtExDate() {
+        Instant start = LocalDate.of(2023, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant exDate = start.plus(90, ChronoUnit.DAYS);
+        List<Transaction> transactions = List.of(
+                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ZERO, start)
+        );
+        List<Dividend> dividends = List.of(new Dividend(BigDecimal.valueOf(5), exDate, exDate.plus(10, ChronoUnit.DAYS)));
+
+        Returns returns = returnsCalculator.calculateReturns(transactions, dividends, start.plus(365, ChronoUnit.DAYS));
+
+        assertEquals(0.05, returns.getTimeWeightedReturn(), 1e-9);
+        assertTrue(returns.getXirr() > 0.05);
+    }
+}
@@ -0,0 +1,122 @@
+package com.danielpyld.lhv.service.portfolio;
+
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionFileCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private TransactionFileCache transactionFileCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        transactionFileCache = new TransactionFileCache(new SimpleMeterRegistry(), 1024 * 1024, true);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        transactionFileCache.close();
+    }
+
+    @Test
+    void testCompactTransactionsReadBackEqual() {
+        Transaction full = transaction(7L, Type.SELL, "123.456789", "USD");
+        full.setId(42L);
+        Transaction sparse = new Transaction(null, null, 0, null, null, null);
+        Transaction wide = transaction(1L, Type.BUY, "123456789012345678901234567890.5", null);
+
+        List<Transaction> copies = new CompactTransactions(List.of(full, sparse, wide)).toTransactions();
+
+        assertEquals(42L, copies.get(0).getId());
+        assertEquals(7L, copies.get(0).getPortfolioId());
+        assertEquals(Type.SELL, copies.get(0).getType());
+        assertEquals(new BigDecimal("123.456789"), copies.get(0).getPrice());
+        assertEquals(full.getTimestamp(), copies.get(0).getTimestamp());
+        assertEquals("USD", copies.get(0).getCurrency());
+        assertNull(copies.get(1).getId());
+        assertNull(copies.get(1).getPortfolioId());
+        assertNull(copies.get(1).getType());
+        assertNull(copies.get(1).getPrice());
+        assertNull(copies.get(1).getTimestamp());
+        assertNull(copies.get(1).getCurrency());
+        assertEquals(new BigDecimal("123456789012345678901234567890.5"), copies.get(2).getPrice());
+        assertNotSame(full, copies.get(0));
+    }
+
+    @Test
+    void testServesCachedCopiesUntilFileChanges() throws Exception {
+        File file = write("transactions.json", List.of(transaction(1L, Type.BUY, "100.00", "EUR")));
+
+        List<Transaction> first = transactionFileCache.transactions(file);
+        first.get(0).setQuantity(999);
+        List<Transaction> second = transactionFileCache.transactions(file);
+
+        assertTrue(transactionFileCache.isCached(file));
+        assertEquals(10, second.get(0).getQuantity());
+
+        write("transactions.json", List.of(transaction(1L, Type.BUY, "100.00", "EUR"), transaction(1L, Type.SELL, "110.00", "EUR")));
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        assertEquals(2, transactionFileCache.transactions(file).size());
+    }
+
+    @Test
+    void testWatcherRefreshesChangedFileInBackground() throws Exception {
+        File file = write("export.json", List.of(transaction(1L, Type.BUY, "100.00", "EUR")));
+        transactionFileCache.transactions(file);
+
+        write("export.json", List.of(transaction(1L, Type.BUY, "100.00", "EUR"), transaction(1L, Type.SELL, "110.00", "EUR")));
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!transactionFileCache.isCached(file) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(transactionFileCache.isCached(file));
+    }
+
+    @Test
+    void testWatcherDropsDeletedFile() throws Exception {
+        File file = write("export.json", List.of(transaction(1L, Type.BUY, "100.00", "EUR")));
+        transactionFileCache.transactions(file);
+
+        Files.delete(file.toPath());
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (transactionFileCache.cachedFiles() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, transactionFileCache.cachedFiles());
+    }
+
+    private File write(String name, List<Transaction> transactions) throws Exception {
+        File file = directory.resolve(name).toFile().getCanonicalFile();
+        objectMapper.writeValue(file, transactions);
+        return file;
+    }
+
+    private static Transaction transaction(Long portfolioId, Type type, String price, String currency) {
+        Transaction transaction = new Transaction(portfolioId, type, 10, new BigDecimal(price), BigDecimal.ONE,
+                Instant.parse("2024-03-01T12:34:56.789Z"));
+        transaction.setCurrency(currency);
+        return transaction;
+    }
+}
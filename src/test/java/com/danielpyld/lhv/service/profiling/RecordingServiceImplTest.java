@@ -0,0 +1,73 @@
+package com.danielpyld.lhv.service.profiling;
+
+import com.danielpyld.lhv.dto.RecordingDTO;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordingServiceImplTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRecordsCalculationEventsWithinBounds() throws Exception {
+        RecordingServiceImpl recordingService = new RecordingServiceImpl(directory.toString(), Duration.ofSeconds(1), 16, "default");
+
+        RecordingDTO recording = recordingService.startRecording(Duration.ofHours(1), Long.MAX_VALUE);
+
+        assertEquals(Duration.ofSeconds(1), recording.getDuration());
+        assertEquals(16L * 1024 * 1024, recording.getMaxSizeBytes());
+        assertThrows(IllegalStateException.class, () -> recordingService.startRecording(Duration.ofSeconds(1), 0));
+
+        ProfitCalculationEvent event = new ProfitCalculationEvent();
+        event.begin();
+        event.portfolioId = 42;
+        event.commit();
+
+        Optional<Path> file = Optional.empty();
+        for (int i = 0; i < 100 && file.isEmpty(); i++) {
+            Thread.sleep(100);
+            file = recordingService.getRecordingFile(recording.getId());
+        }
+        assertTrue(file.isPresent());
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file.get());
+        assertTrue(events.stream().anyMatch(recorded -> recorded.getEventType().getName().equals("com.danielpyld.lhv.ProfitCalculation")
+                && recorded.getLong("portfolioId") == 42));
+    }
+
+    @Test
+    public void testDeletesFilesOfForgottenRecordings() throws Exception {
+        RecordingServiceImpl recordingService = new RecordingServiceImpl(directory.toString(), Duration.ofMillis(100), 16, "default");
+
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            RecordingDTO recording = recordingService.startRecording(Duration.ofMillis(100), 0);
+            Optional<Path> file = Optional.empty();
+            for (int j = 0; j < 100 && file.isEmpty(); j++) {
+                Thread.sleep(50);
+                file = recordingService.getRecordingFile(recording.getId());
+            }
+            assertTrue(file.isPresent());
+            files.add(file.get());
+        }
+        // Starting the sixth recording forgot the first.
+        assertFalse(Files.exists(files.get(0)));
+        assertTrue(files.subList(1, 6).stream().allMatch(Files::exists));
+        try (Stream<Path> stored = Files.list(directory)) {
+            assertEquals(5, stored.count());
+        }
+    }
+}
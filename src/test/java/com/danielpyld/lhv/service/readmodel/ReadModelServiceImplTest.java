@@ -0,0 +1,327 @@
+package com.danielpyld.lhv.service.readmodel;
+
+import com.danielpyld.lhv.dto.PositionSummaryDTO;
+import com.danielpyld.lhv.entity.DailyRealizedProfit;
+import com.danielpyld.lhv.entity.Position;
+import com.danielpyld.lhv.entity.Profit;
+import com.danielpyld.lhv.entity.StockSplit;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import com.danielpyld.lhv.repository.DailyRealizedProfitRepository;
+import com.danielpyld.lhv.repository.OpenLotRepository;
+import com.danielpyld.lhv.repository.PositionRepository;
+import com.danielpyld.lhv.repository.StockSplitRepository;
+import com.danielpyld.lhv.repository.TransactionRepository;
+import com.danielpyld.lhv.service.dividend.DividendService;
+import com.danielpyld.lhv.service.fx.FxRateStore;
+import com.danielpyld.lhv.service.portfolio.LotMatchListener;
+import com.danielpyld.lhv.service.portfolio.PortfolioServiceImpl;
+import com.danielpyld.lhv.service.portfolio.ReturnsCalculator;
+import com.danielpyld.lhv.service.split.StockSplitService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReadModelServiceImplTest {
+
+    @Mock
+    private PositionRepository positionRepository;
+
+    @Mock
+    private OpenLotRepository openLotRepository;
+
+    @Mock
+    private DailyRealizedProfitRepository dailyRealizedProfitRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private StockSplitRepository stockSplitRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private static final Long PORTFOLIO_ID = 7L;
+
+    private ReadModelServiceImpl readModelService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        readModelService = new ReadModelServiceImpl(positionRepository, openLotRepository, dailyRealizedProfitRepository,
+                transactionRepository, stockSplitRepository, entityManager, FxRateStore.empty("EUR"), 8);
+        when(openLotRepository.findByPortfolioIdOrderByOpenedAtAscIdAsc(PORTFOLIO_ID)).thenReturn(new ArrayList<>());
+        when(dailyRealizedProfitRepository.findByPortfolioIdAndTradeDate(eq(PORTFOLIO_ID), any())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void testIncrementalBuyAndSellUpdatesPosition() {
+        Instant now = Instant.now();
+        when(positionRepository.findForUpdate(PORTFOLIO_ID)).thenReturn(Optional.of(new Position(PORTFOLIO_ID)));
+
+        readModelService.onTransactionsAdded(List.of(
+                transaction(1L, Type.BUY, 10, 100, 2, now.minus(2, ChronoUnit.DAYS)),
+                transaction(2L, Type.SELL, 5, 120, 1, now.minus(1, ChronoUnit.DAYS))
+        ));
+
+        ArgumentCaptor<Position> captor = ArgumentCaptor.forClass(Position.class);
+        verify(positionRepository).save(captor.capture());
+        Position position = captor.getValue();
+
+        assertEquals(5, position.getQuantity());
+        assertEquals(0, BigDecimal.valueOf(501).compareTo(position.getCostBasis()));
+        assertEquals(0, BigDecimal.valueOf(98).compareTo(position.getRealizedProfit()));
+        assertEquals(BigDecimal.valueOf(120), position.getLastPrice());
+        assertEquals(PORTFOLIO_ID, position.getPortfolioId());
+        verify(openLotRepository, never()).deleteByPortfolioIdInBatch(any());
+        InOrder inOrder = inOrder(positionRepository, openLotRepository);
+        inOrder.verify(positionRepository).insertIfAbsent(PORTFOLIO_ID);
+        inOrder.verify(positionRepository).findForUpdate(PORTFOLIO_ID);
+        inOrder.verify(openLotRepository).findByPortfolioIdOrderByOpenedAtAscIdAsc(PORTFOLIO_ID);
+    }
+
+    @Test
+    void testConcurrentInsertsIntoOnePortfolioApplyInTurn() throws Exception {
+        // Stands in for the database: committed state is copied in and out, and the row lock is held until the
+        // inserting thread "commits" by returning from the service call.
+        ReentrantLock rowLock = new ReentrantLock();
+        AtomicReference<Position> committed = new AtomicReference<>(new Position(PORTFOLIO_ID));
+        when(positionRepository.findForUpdate(PORTFOLIO_ID)).thenAnswer(invocation -> {
+            rowLock.lock();
+            return Optional.of(copy(committed.get()));
+        });
+        when(positionRepository.save(any(Position.class))).thenAnswer(invocation -> {
+            committed.set(copy(invocation.getArgument(0)));
+            return invocation.getArgument(0);
+        });
+        when(openLotRepository.findByPortfolioIdOrderByOpenedAtAscIdAsc(PORTFOLIO_ID)).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return new ArrayList<>();
+        });
+
+        Instant now = Instant.now();
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> inserts = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Transaction buy = transaction((long) i + 1, Type.BUY, 10, 100, 1, now);
+                inserts.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        readModelService.onTransactionsAdded(List.of(buy));
+                    } finally {
+                        while (rowLock.isHeldByCurrentThread()) {
+                            rowLock.unlock();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> insert : inserts) {
+                insert.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * 10, committed.get().getQuantity());
+        assertEquals(0, BigDecimal.valueOf(threads * 1001L).compareTo(committed.get().getCostBasis()));
+    }
+
+    @Test
+    void testForeignCurrencyTransactionsAreConvertedIntoBaseCurrency() throws Exception {
+        FxRateStore fxRates = new FxRateStore("EUR", new StringReader("""
+                currency,effectiveFrom,rate
+                USD,2024-01-01,0.5
+                """));
+        readModelService = new ReadModelServiceImpl(positionRepository, openLotRepository, dailyRealizedProfitRepository,
+                transactionRepository, stockSplitRepository, entityManager, fxRates, 8);
+        when(positionRepository.findForUpdate(PORTFOLIO_ID)).thenReturn(Optional.of(new Position(PORTFOLIO_ID)));
+        Instant now = Instant.now();
+        Transaction usdBuy = transaction(1L, Type.BUY, 10, 100, 2, now.minus(2, ChronoUnit.DAYS));
+        usdBuy.setCurrency("USD");
+
+        readModelService.onTransactionsAdded(List.of(
+                usdBuy,
+                transaction(2L, Type.SELL, 5, 60, 1, now.minus(1, ChronoUnit.DAYS))
+        ));
+
+        ArgumentCaptor<Position> captor = ArgumentCaptor.forClass(Position.class);
+        verify(positionRepository).save(captor.capture());
+        Position position = captor.getValue();
+
+        assertEquals(0, BigDecimal.valueOf(250.5).compareTo(position.getCostBasis()));
+        assertEquals(0, BigDecimal.valueOf(48.5).compareTo(position.getRealizedProfit()));
+        assertEquals(0, BigDecimal.valueOf(60).compareTo(position.getLastPrice()));
+    }
+
+    @Test
+    void testBackdatedInsertTriggersRebuild() {
+        Instant now = Instant.now();
+        Position position = new Position(PORTFOLIO_ID);
+        position.setLastTransactionAt(now);
+        when(positionRepository.findForUpdate(PORTFOLIO_ID)).thenReturn(Optional.of(position));
+        when(transactionRepository.streamByPortfolioIdOrderByTimestampAscIdAsc(PORTFOLIO_ID)).thenReturn(Stream.empty());
+
+        readModelService.onTransactionsAdded(List.of(transaction(1L, Type.BUY, 10, 100, 1, now.minus(1, ChronoUnit.DAYS))));
+
+        verify(openLotRepository, times(1)).deleteByPortfolioIdInBatch(PORTFOLIO_ID);
+        verify(dailyRealizedProfitRepository, times(1)).deleteByPortfolioIdInBatch(PORTFOLIO_ID);
+        verify(transactionRepository, times(1)).streamByPortfolioIdOrderByTimestampAscIdAsc(PORTFOLIO_ID);
+
+        ArgumentCaptor<Position> captor = ArgumentCaptor.forClass(Position.class);
+        verify(positionRepository).save(captor.capture());
+        assertEquals(0, captor.getValue().getQuantity());
+        assertNull(captor.getValue().getLastTransactionAt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testChangeRewritesDaysFromChangedDateOnly() {
+        Instant dayOne = Instant.parse("2024-03-01T10:00:00Z");
+        Instant dayThree = Instant.parse("2024-03-03T10:00:00Z");
+        when(positionRepository.findForUpdate(PORTFOLIO_ID)).thenReturn(Optional.of(new Position(PORTFOLIO_ID)));
+        when(transactionRepository.streamByPortfolioIdOrderByTimestampAscIdAsc(PORTFOLIO_ID)).thenReturn(Stream.of(
+                transaction(1L, Type.BUY, 10, 100, 0, dayOne),
+                transaction(2L, Type.SELL, 2, 110, 0, dayOne),
+                transaction(3L, Type.SELL, 3, 120, 0, dayThree)
+        ));
+
+        readModelService.onTransactionChanged(PORTFOLIO_ID, dayThree);
+
+        verify(dailyRealizedProfitRepository).deleteByPortfolioIdFromInBatch(PORTFOLIO_ID, LocalDate.of(2024, 3, 3));
+        verify(dailyRealizedProfitRepository, never()).deleteByPortfolioIdInBatch(any());
+        verify(openLotRepository).deleteByPortfolioIdInBatch(PORTFOLIO_ID);
+
+        ArgumentCaptor<Iterable<DailyRealizedProfit>> days = ArgumentCaptor.forClass(Iterable.class);
+        verify(dailyRealizedProfitRepository).saveAll(days.capture());
+        List<DailyRealizedProfit> saved = new ArrayList<>();
+        days.getValue().forEach(saved::add);
+        assertEquals(1, saved.size());
+        assertEquals(LocalDate.of(2024, 3, 3), saved.get(0).getTradeDate());
+        assertEquals(0, BigDecimal.valueOf(60).compareTo(saved.get(0).getRealizedProfit()));
+        assertEquals(0, BigDecimal.valueOf(80).compareTo(saved.get(0).getCumulativeRealizedProfit()));
+
+        ArgumentCaptor<Position> position = ArgumentCaptor.forClass(Position.class);
+        verify(positionRepository).save(position.capture());
+        assertEquals(5, position.getValue().getQuantity());
+    }
+
+    @Test
+    void testReplayAfterSplitsMatchesProfitCalculation() {
+        List<Transaction> transactions = List.of(
+                transaction(1L, Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(3), Instant.parse("2024-03-01T10:00:00Z")),
+                transaction(2L, Type.BUY, 7, new BigDecimal("110.01"), BigDecimal.ONE, Instant.parse("2024-03-02T10:00:00Z")),
+                transaction(3L, Type.SELL, 15, BigDecimal.valueOf(56), BigDecimal.valueOf(2), Instant.parse("2024-03-04T10:00:00Z")),
+                transaction(4L, Type.SELL, 2, BigDecimal.valueOf(170), BigDecimal.ONE, Instant.parse("2024-03-06T10:00:00Z")),
+                transaction(5L, Type.BUY, 3, BigDecimal.valueOf(160), BigDecimal.ONE, Instant.parse("2024-03-07T10:00:00Z"))
+        );
+        List<StockSplit> splits = List.of(
+                new StockSplit(PORTFOLIO_ID, 2, 1, Instant.parse("2024-03-03T00:00:00Z")),
+                new StockSplit(PORTFOLIO_ID, 1, 3, Instant.parse("2024-03-05T00:00:00Z")),
+                new StockSplit(PORTFOLIO_ID, 2, 1, Instant.parse("2024-03-08T00:00:00Z"))
+        );
+        when(positionRepository.findForUpdate(PORTFOLIO_ID)).thenReturn(Optional.of(new Position(PORTFOLIO_ID)));
+        when(transactionRepository.streamByPortfolioIdOrderByTimestampAscIdAsc(PORTFOLIO_ID)).thenReturn(transactions.stream());
+        when(stockSplitRepository.findByPortfolioIdOrderByEffectiveDateAscIdAsc(PORTFOLIO_ID)).thenReturn(splits);
+
+        readModelService.onTransactionChanged(PORTFOLIO_ID, Instant.parse("2024-03-03T00:00:00Z"));
+
+        ArgumentCaptor<Position> captor = ArgumentCaptor.forClass(Position.class);
+        verify(positionRepository).save(captor.capture());
+        when(positionRepository.findById(PORTFOLIO_ID)).thenReturn(Optional.of(captor.getValue()));
+        PositionSummaryDTO summary = readModelService.getPositionSummary(PORTFOLIO_ID);
+
+        PortfolioServiceImpl portfolioService = new PortfolioServiceImpl(transactionRepository, mock(DividendService.class),
+                ForkJoinPool.commonPool(), new ReturnsCalculator(FxRateStore.empty("EUR")), FxRateStore.empty("EUR"),
+                mock(StockSplitService.class));
+        ReflectionTestUtils.setField(portfolioService, "SCALE", 8);
+        Profit profit = portfolioService.calculateProfit(transactions, List.of(), splits, LotMatchListener.NONE);
+
+        assertEquals(12, summary.getQuantity());
+        assertEquals(0, profit.getRealizedStockProfit().compareTo(summary.getRealizedProfit()));
+        assertEquals(0, profit.getUnrealizedGains().compareTo(summary.getUnrealizedGains()));
+    }
+
+    @Test
+    void testInsertBeforeAppliedSplitTriggersRebuild() {
+        Instant now = Instant.now();
+        Position position = new Position(PORTFOLIO_ID);
+        position.setLastTransactionAt(now.minus(2, ChronoUnit.DAYS));
+        when(positionRepository.findForUpdate(PORTFOLIO_ID)).thenReturn(Optional.of(position));
+        when(stockSplitRepository.existsByPortfolioIdAndEffectiveDateAfter(eq(PORTFOLIO_ID), any())).thenReturn(true);
+        when(transactionRepository.streamByPortfolioIdOrderByTimestampAscIdAsc(PORTFOLIO_ID)).thenReturn(Stream.empty());
+
+        readModelService.onTransactionsAdded(List.of(transaction(1L, Type.BUY, 10, 100, 1, now.minus(1, ChronoUnit.DAYS))));
+
+        verify(openLotRepository).deleteByPortfolioIdInBatch(PORTFOLIO_ID);
+        verify(stockSplitRepository).findByPortfolioIdOrderByEffectiveDateAscIdAsc(PORTFOLIO_ID);
+    }
+
+    @Test
+    void testPositionSummaryUnrealizedGains() {
+        Position position = new Position(PORTFOLIO_ID);
+        position.setQuantity(10);
+        position.setCostBasis(BigDecimal.valueOf(1001));
+        position.setLastPrice(BigDecimal.valueOf(120));
+        when(positionRepository.findById(PORTFOLIO_ID)).thenReturn(Optional.of(position));
+
+        PositionSummaryDTO summary = readModelService.getPositionSummary(PORTFOLIO_ID);
+
+        assertEquals(BigDecimal.valueOf(1200).setScale(8), summary.getMarketValue());
+        assertEquals(BigDecimal.valueOf(199).setScale(8), summary.getUnrealizedGains());
+    }
+
+    private static Position copy(Position position) {
+        Position copy = new Position(position.getPortfolioId());
+        copy.setQuantity(position.getQuantity());
+        copy.setCostBasis(position.getCostBasis());
+        copy.setRealizedProfit(position.getRealizedProfit());
+        copy.setLastPrice(position.getLastPrice());
+        copy.setLastTransactionAt(position.getLastTransactionAt());
+        return copy;
+    }
+
+    private Transaction transaction(Long id, Type type, int quantity, int price, int fee, Instant timestamp) {
+        return transaction(id, type, quantity, BigDecimal.valueOf(price), BigDecimal.valueOf(fee), timestamp);
+    }
+
+    private Transaction transaction(Long id, Type type, int quantity, BigDecimal price, BigDecimal fee, Instant timestamp) {
+        Transaction transaction = new Transaction(PORTFOLIO_ID, type, quantity, price, fee, timestamp);
+        transaction.setId(id);
+        return transaction;
+    }
+}
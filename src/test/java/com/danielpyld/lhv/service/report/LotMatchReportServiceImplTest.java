@@ -0,0 +1,107 @@
+package com.danielpyld.lhv.service.report;
+
+import com.danielpyld.lhv.entity.LotMatch;
+import com.danielpyld.lhv.entity.Profit;
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import com.danielpyld.lhv.service.portfolio.LotMatchListener;
+import com.danielpyld.lhv.service.portfolio.PortfolioService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+public class LotMatchReportServiceImplTest {
+
+    @Mock
+    private PortfolioService portfolioService;
+
+    private LotMatchReportServiceImpl lotMatchReportService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        lotMatchReportService = new LotMatchReportServiceImpl(portfolioService);
+
+        Transaction buy = new Transaction(7L, Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.ONE, Instant.parse("2024-01-02T10:00:00Z"));
+        buy.setId(1L);
+        Transaction sell = new Transaction(7L, Type.SELL, 4, BigDecimal.valueOf(110), BigDecimal.ONE, Instant.parse("2024-02-02T10:00:00Z"));
+        sell.setId(2L);
+        when(portfolioService.calculateProfit(eq(7L), any(LotMatchListener.class))).thenAnswer(invocation -> {
+            LotMatchListener listener = invocation.getArgument(1);
+            listener.onMatch(new LotMatch(buy, sell, 4, buy.getPrice(), sell.getPrice(), new BigDecimal("0.4"), BigDecimal.ONE,
+                    new BigDecimal("400.4"), new BigDecimal("439")));
+            return new Profit();
+        });
+    }
+
+    @Test
+    public void testWritesCsv() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        lotMatchReportService.writeLotMatches(7L, LotMatchFormat.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(LotMatchReportServiceImpl.CSV_HEADER, lines[0]);
+        assertEquals("7,2,1,2024-01-02T10:00:00Z,2024-02-02T10:00:00Z,4,100,110,0.4,1,400.4,439,38.6", lines[1]);
+    }
+
+    @Test
+    public void testWritesNdjson() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        lotMatchReportService.writeLotMatches(7L, LotMatchFormat.NDJSON, out);
+
+        String report = out.toString(StandardCharsets.UTF_8);
+        assertTrue(report.startsWith("{\"portfolioId\":7,"));
+        assertTrue(report.contains("\"acquiredAt\":\"2024-01-02T10:00:00Z\""));
+        assertTrue(report.contains("\"realizedGain\":38.6"));
+        assertTrue(report.endsWith("}\n"));
+    }
+
+    @Test
+    public void testWritesCborSequence() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        lotMatchReportService.writeLotMatches(7L, LotMatchFormat.CBOR, out);
+
+        MappingIterator<JsonNode> matches = new CBORMapper().readerFor(JsonNode.class).readValues(out.toByteArray());
+        JsonNode match = matches.next();
+        assertEquals(7, match.get("portfolioId").asLong());
+        assertEquals("2024-01-02T10:00:00Z", match.get("acquiredAt").asText());
+        assertEquals(new BigDecimal("38.6"), match.get("realizedGain").decimalValue());
+        assertFalse(matches.hasNext());
+        assertTrue(out.size() < lotMatchReportLength(LotMatchFormat.NDJSON));
+    }
+
+    @Test
+    public void testPicksFormatFromAcceptHeader() {
+        assertEquals(Optional.of(LotMatchFormat.CBOR),
+                LotMatchFormat.fromAccepted(MediaType.parseMediaTypes("application/x-ndjson;q=0.5, application/cbor-seq")));
+        assertEquals(Optional.of(LotMatchFormat.NDJSON),
+                LotMatchFormat.fromAccepted(MediaType.parseMediaTypes("application/json, application/x-ndjson")));
+        assertEquals(Optional.empty(), LotMatchFormat.fromAccepted(MediaType.parseMediaTypes("*/*")));
+    }
+
+    private int lotMatchReportLength(LotMatchFormat format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        lotMatchReportService.writeLotMatches(7L, format, out);
+        return out.size();
+    }
+}
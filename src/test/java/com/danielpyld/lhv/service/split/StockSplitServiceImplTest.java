@@ -0,0 +1,77 @@
+package com.danielpyld.lhv.service.split;
+
+import com.danielpyld.lhv.entity.StockSplit;
+import com.danielpyld.lhv.repository.StockSplitRepository;
+import com.danielpyld.lhv.service.readmodel.ReadModelService;
+import com.danielpyld.lhv.service.transaction.DatasetVersions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class StockSplitServiceImplTest {
+
+    @Mock
+    private StockSplitRepository stockSplitRepository;
+
+    @Mock
+    private ReadModelService readModelService;
+
+    @Mock
+    private DatasetVersions datasetVersions;
+
+    @InjectMocks
+    private StockSplitServiceImpl stockSplitService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testAddSplit() {
+        when(stockSplitRepository.save(any(StockSplit.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Instant effectiveDate = Instant.parse("2024-06-10T00:00:00Z");
+
+        StockSplit split = stockSplitService.addSplit(3L, 1, 10, effectiveDate);
+
+        assertEquals(3L, split.getPortfolioId());
+        assertEquals(1, split.getNewShares());
+        assertEquals(10, split.getOldShares());
+        assertEquals(effectiveDate, split.getEffectiveDate());
+        verify(readModelService).onTransactionChanged(3L, effectiveDate);
+        verify(datasetVersions).markChanged(List.of(3L));
+    }
+
+    @Test
+    void testAddSplitRejectsInvalidRatio() {
+        assertThrows(IllegalArgumentException.class, () -> stockSplitService.addSplit(3L, 0, 1, Instant.now()));
+        assertThrows(IllegalArgumentException.class, () -> stockSplitService.addSplit(3L, 2, -1, Instant.now()));
+        verify(stockSplitRepository, never()).save(any());
+        verifyNoInteractions(readModelService);
+    }
+
+    @Test
+    void testGetSplitsBeforeGroupsByPortfolio() {
+        Instant before = Instant.parse("2024-07-01T00:00:00Z");
+        StockSplit first = new StockSplit(3L, 2, 1, Instant.parse("2024-01-10T00:00:00Z"));
+        StockSplit second = new StockSplit(3L, 1, 5, Instant.parse("2024-03-10T00:00:00Z"));
+        StockSplit other = new StockSplit(4L, 3, 1, Instant.parse("2024-02-10T00:00:00Z"));
+        when(stockSplitRepository.findByEffectiveDateBeforeOrderByPortfolioIdAscEffectiveDateAscIdAsc(before))
+                .thenReturn(List.of(first, second, other));
+
+        Map<Long, List<StockSplit>> splits = stockSplitService.getSplitsBefore(before);
+
+        assertEquals(List.of(first, second), splits.get(3L));
+        assertEquals(List.of(other), splits.get(4L));
+    }
+}
@@ -0,0 +1,74 @@
+package com.danielpyld.lhv.service.transaction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DatasetVersionsTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private DatasetVersions datasetVersions;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        datasetVersions = new DatasetVersions(jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMovesVersionsInPortfolioOrder() {
+        datasetVersions.markChanged(Arrays.asList(3L, null, 1L, 3L));
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("dataset_versions"), rows.capture());
+        assertEquals(List.of(DatasetVersions.UNASSIGNED, 1L, 3L), rows.getValue().stream().map(row -> row[0]).toList());
+    }
+
+    @Test
+    void testMovesVersionJustBeforeCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        datasetVersions.markChanged(List.of(1L));
+
+        verifyNoInteractions(jdbcTemplate);
+        TransactionSynchronizationUtils.triggerBeforeCommit(false);
+        verify(jdbcTemplate).batchUpdate(contains("dataset_versions"), anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUnwrittenPortfolioHasInitialVersion() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(2L))).thenReturn(List.of());
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(1L)))
+                .thenReturn(List.of(new DatasetVersions.Version(4, Instant.parse("2024-01-02T10:00:00Z"))));
+
+        assertEquals(0, datasetVersions.current(2L).number());
+        assertEquals(Instant.EPOCH, datasetVersions.current(2L).lastModified());
+        assertEquals("4", datasetVersions.current(1L).tag());
+    }
+}
@@ -0,0 +1,53 @@
+package com.danielpyld.lhv.service.transaction;
+
+import com.danielpyld.lhv.entity.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EphemeralTransactionServiceImplTest {
+
+    private final TransactionGenerator transactionGenerator = new TransactionGenerator();
+
+    @Test
+    void testSeededDatasetIsReproducibleAndCached() {
+        EphemeralTransactionServiceImpl service = new EphemeralTransactionServiceImpl(transactionGenerator,
+                new SimpleMeterRegistry(), 10_000, 10_000, Duration.ofMinutes(1));
+
+        List<Transaction> first = service.generateTransactions(7L, 500, 42L);
+        List<Transaction> second = service.generateTransactions(7L, 500, 42L);
+
+        assertEquals(500, first.size());
+        assertSame(first, second);
+        assertTrue(first.stream().allMatch(transaction -> transaction.getPortfolioId() == 7L && transaction.getId() == null));
+        assertThrows(UnsupportedOperationException.class, () -> first.remove(0));
+    }
+
+    @Test
+    void testSameSeedGivesSameTransactionsWithoutCache() {
+        EphemeralTransactionServiceImpl service = new EphemeralTransactionServiceImpl(transactionGenerator,
+                new SimpleMeterRegistry(), 10_000, 0, Duration.ofMinutes(1));
+
+        List<Transaction> first = service.generateTransactions(1L, 100, 7L);
+        List<Transaction> second = service.generateTransactions(1L, 100, 7L);
+
+        assertNotSame(first, second);
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getTimestamp(), second.get(i).getTimestamp());
+            assertEquals(first.get(i).getPrice(), second.get(i).getPrice());
+            assertEquals(first.get(i).getQuantity(), second.get(i).getQuantity());
+        }
+    }
+
+    @Test
+    void testRejectsSizeAboveMaximum() {
+        EphemeralTransactionServiceImpl service = new EphemeralTransactionServiceImpl(transactionGenerator,
+                new SimpleMeterRegistry(), 100, 1_000, Duration.ofMinutes(1));
+
+        assertThrows(IllegalArgumentException.class, () -> service.generateTransactions(1L, 101, 1L));
+    }
+}
@@ -0,0 +1,171 @@
+package com.danielpyld.lhv.service.transaction;
+
+import com.danielpyld.lhv.entity.Transaction;
+import com.danielpyld.lhv.entity.Type;
+import com.danielpyld.lhv.service.activity.TradingActivityService;
+import com.danielpyld.lhv.service.readmodel.ReadModelService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class TransactionGroupCommitterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ReadModelService readModelService;
+
+    @Mock
+    private TradingActivityService tradingActivityService;
+
+    @Mock
+    private TransactionQueryCacheInvalidator queryCacheInvalidator;
+
+    @Mock
+    private DatasetVersions datasetVersions;
+
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicInteger batches = new AtomicInteger();
+    private TransactionGroupCommitter groupCommitter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        // Inserts the batch, failing it when any row has a negative quantity like a check constraint would
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class)))
+                .thenAnswer(invocation -> {
+                    BatchPreparedStatementSetter setter = invocation.getArgument(1);
+                    KeyHolder keys = invocation.getArgument(2);
+                    PreparedStatement statement = mock(PreparedStatement.class);
+                    List<Integer> quantities = new ArrayList<>();
+                    doAnswer(set -> quantities.add(set.getArgument(1))).when(statement).setInt(eq(3), anyInt());
+                    for (int i = 0; i < setter.getBatchSize(); i++) {
+                        setter.setValues(statement, i);
+                    }
+                    if (quantities.stream().anyMatch(quantity -> quantity < 0)) {
+                        throw new DataIntegrityViolationException("quantity must not be negative");
+                    }
+                    batches.incrementAndGet();
+                    for (int i = 0; i < setter.getBatchSize(); i++) {
+                        keys.getKeyList().add(Map.of("id", nextId.getAndIncrement()));
+                    }
+                    return new int[setter.getBatchSize()];
+                });
+        groupCommitter = new TransactionGroupCommitter(jdbcTemplate, transactionManager, readModelService,
+                tradingActivityService, queryCacheInvalidator, datasetVersions, new SimpleMeterRegistry(), true, 100, Duration.ofMillis(50), 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        groupCommitter.close();
+    }
+
+    @Test
+    void testConcurrentWritesShareCommits() throws Exception {
+        int writers = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Transaction>> results = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                Transaction transaction = transaction(1 + i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return groupCommitter.write(transaction);
+                }));
+            }
+            start.countDown();
+
+            Set<Long> ids = new HashSet<>();
+            for (Future<Transaction> result : results) {
+                ids.add(result.get().getId());
+            }
+            assertEquals(writers, ids.size());
+            assertFalse(ids.contains(null));
+            assertTrue(batches.get() < writers, "expected rows to share commits, got " + batches.get() + " batches");
+            verify(readModelService, times(batches.get())).onTransactionsAdded(anyList());
+            verify(tradingActivityService, times(batches.get())).onTransactionsAdded(anyList());
+            verify(datasetVersions, times(batches.get())).markChanged(anyList());
+            verify(queryCacheInvalidator, times(batches.get())).invalidateOnCompletion();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFailingRowOnlyFailsItsCaller() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<Transaction> good = executor.submit(() -> {
+                start.await();
+                return groupCommitter.write(transaction(5));
+            });
+            Future<Transaction> bad = executor.submit(() -> {
+                start.await();
+                return groupCommitter.write(transaction(-5));
+            });
+            Future<Transaction> alsoGood = executor.submit(() -> {
+                start.await();
+                return groupCommitter.write(transaction(7));
+            });
+            start.countDown();
+
+            assertNotNull(good.get().getId());
+            assertNotNull(alsoGood.get().getId());
+            Exception failure = assertThrows(Exception.class, bad::get);
+            assertInstanceOf(DataIntegrityViolationException.class, failure.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRejectsWritesWhenDisabled() {
+        TransactionGroupCommitter disabled = new TransactionGroupCommitter(jdbcTemplate, transactionManager, readModelService,
+                tradingActivityService, queryCacheInvalidator, datasetVersions, new SimpleMeterRegistry(), false, 100, Duration.ofMillis(5), 10);
+
+        assertFalse(disabled.isEnabled());
+        assertThrows(IllegalStateException.class, () -> disabled.write(transaction(1)));
+    }
+
+    private static Transaction transaction(int quantity) {
+        return new Transaction(1L, Type.BUY, quantity, BigDecimal.TEN, BigDecimal.ZERO, Instant.parse("2024-01-02T10:00:00Z"));
+    }
+}
@@ -4,15 +4,22 @@ import com.danielpyld.lhv.dto.TransactionDTO;
 import com.danielpyld.lhv.entity.Transaction;
 import com.danielpyld.lhv.entity.Type;
 import com.danielpyld.lhv.repository.TransactionRepository;
+import com.danielpyld.lhv.service.activity.TradingActivityService;
+import com.danielpyld.lhv.service.readmodel.ReadModelService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.List;
@@ -21,6 +28,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class TransactionServiceImplTest {
@@ -28,12 +36,31 @@ class TransactionServiceImplTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Mock
+    private ReadModelService readModelService;
+
+    @Mock
+    private TradingActivityService tradingActivityService;
+
+    @Spy
+    private TransactionGenerator transactionGenerator = new TransactionGenerator();
+
+    @Mock
+    private TransactionGroupCommitter groupCommitter;
+
+    @Mock
+    private DatasetVersions datasetVersions;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private TransactionServiceImpl transactionService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
     }
 
     @Test
@@ -48,33 +75,36 @@ class TransactionServiceImplTest {
         assertNotNull(transactions);
         assertEquals(2, transactions.size());
         verify(transactionRepository, times(1)).saveAll(anyList());
+        verify(readModelService, times(1)).onTransactionsAdded(anyList());
+        verify(tradingActivityService, times(1)).onTransactionsAdded(anyList());
     }
 
     @Test
     void testFindTransactionById() {
-        Transaction transaction = new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(1), Instant.now());
-        transaction.setId(1L);
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(transaction));
+        when(transactionRepository.findDTOById(1L)).thenReturn(Optional.of(
+                new TransactionDTO(1L, 1L, Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(1), Instant.now(), null)));
 
         Optional<TransactionDTO> result = transactionService.findTransactionById(1L);
 
         assertTrue(result.isPresent());
         assertEquals(1L, result.get().getId());
-        verify(transactionRepository, times(1)).findById(1L);
+        verify(transactionRepository, times(1)).findDTOById(1L);
+        verify(transactionRepository, never()).findById(any());
     }
 
     @Test
     void testGetAllTransactions() {
-        when(transactionRepository.findAll()).thenReturn(Arrays.asList(
-                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(1), Instant.now()),
-                new Transaction(Type.SELL, 5, BigDecimal.valueOf(120), BigDecimal.valueOf(1), Instant.now())
+        when(transactionRepository.findAllDTOs()).thenReturn(Arrays.asList(
+                new TransactionDTO(1L, 1L, Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(1), Instant.now(), null),
+                new TransactionDTO(2L, 1L, Type.SELL, 5, BigDecimal.valueOf(120), BigDecimal.valueOf(1), Instant.now(), null)
         ));
 
         List<TransactionDTO> transactions = transactionService.getAllTransactions();
 
         assertNotNull(transactions);
         assertEquals(2, transactions.size());
-        verify(transactionRepository, times(1)).findAll();
+        verify(transactionRepository, times(1)).findAllDTOs();
+        verify(transactionRepository, never()).findAll();
     }
 
     @Test
@@ -94,6 +124,36 @@ class TransactionServiceImplTest {
         assertNotNull(result);
         assertEquals(Type.BUY, result.getType());
         verify(transactionRepository, times(1)).save(any(Transaction.class));
+        verify(readModelService, times(1)).onTransactionsAdded(List.of(transaction));
+        verify(tradingActivityService, times(1)).onTransactionsAdded(List.of(transaction));
+    }
+
+    @Test
+    void testAddTransactionThroughGroupCommit() {
+        TransactionDTO dto = new TransactionDTO();
+        dto.setPortfolioId(4L);
+        dto.setType(Type.SELL);
+        dto.setQuantity(3);
+        dto.setPrice(BigDecimal.valueOf(100));
+        dto.setFee(BigDecimal.ZERO);
+        dto.setTimestamp(LocalDateTime.now());
+        dto.setCurrency("USD");
+        when(groupCommitter.isEnabled()).thenReturn(true);
+        when(groupCommitter.write(any(Transaction.class))).thenAnswer(invocation -> {
+            Transaction transaction = invocation.getArgument(0);
+            transaction.setId(42L);
+            return transaction;
+        });
+
+        TransactionDTO result = transactionService.addTransaction(dto);
+
+        assertEquals(42L, result.getId());
+        assertEquals(4L, result.getPortfolioId());
+        assertEquals("USD", result.getCurrency());
+        verify(transactionRepository, never()).save(any(Transaction.class));
+        verify(transactionManager, never()).getTransaction(any());
+        // The group committer moves the version in its own transaction.
+        verify(datasetVersions, never()).markChanged(anyList());
     }
 
     @Test
@@ -105,7 +165,8 @@ class TransactionServiceImplTest {
         dto.setFee(BigDecimal.valueOf(1));
         dto.setTimestamp(LocalDateTime.now());
 
-        Transaction existingTransaction = new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(1), Instant.now());
+        Instant originalTimestamp = Instant.now().minusSeconds(3600);
+        Transaction existingTransaction = new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(1), originalTimestamp);
         existingTransaction.setId(1L);
 
         when(transactionRepository.findById(1L)).thenReturn(Optional.of(existingTransaction));
@@ -118,11 +179,16 @@ class TransactionServiceImplTest {
         assertEquals(5, result.getQuantity());
         verify(transactionRepository, times(1)).findById(1L);
         verify(transactionRepository, times(1)).save(existingTransaction);
+        verify(readModelService, times(1)).onTransactionChanged(Transaction.DEFAULT_PORTFOLIO_ID, originalTimestamp);
+        ArgumentCaptor<Transaction> before = ArgumentCaptor.forClass(Transaction.class);
+        verify(tradingActivityService).onTransactionUpdated(before.capture(), eq(existingTransaction));
+        assertEquals(Type.BUY, before.getValue().getType());
+        assertEquals(10, before.getValue().getQuantity());
     }
 
     @Test
     void testDeleteTransaction() {
-        Transaction transaction = new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(1), Instant.now());
+        Transaction transaction = new Transaction(Transaction.DEFAULT_PORTFOLIO_ID, Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(1), Instant.now());
         transaction.setId(1L);
 
         when(transactionRepository.findById(1L)).thenReturn(Optional.of(transaction));
@@ -132,23 +198,28 @@ class TransactionServiceImplTest {
 
         verify(transactionRepository, times(1)).findById(1L);
         verify(transactionRepository, times(1)).delete(transaction);
+        verify(readModelService, times(1)).onTransactionChanged(Transaction.DEFAULT_PORTFOLIO_ID, transaction.getTimestamp());
+        verify(tradingActivityService).onTransactionDeleted(transaction);
+        verify(datasetVersions).markChanged(List.of(Transaction.DEFAULT_PORTFOLIO_ID));
     }
 
     @Test
     void testGetTransactionsInDateRange() {
         Instant now = Instant.now();
-        when(transactionRepository.findAll()).thenReturn(Arrays.asList(
-                new Transaction(Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(1), now.minus(60, ChronoUnit.DAYS)),
-                new Transaction(Type.SELL, 5, BigDecimal.valueOf(110), BigDecimal.valueOf(1), now.minus(30, ChronoUnit.DAYS))
-        ));
-
         LocalDateTime start = LocalDateTime.now().minusDays(90);
         LocalDateTime end = LocalDateTime.now().minusDays(30);
+        Instant startInstant = start.atZone(ZoneId.systemDefault()).toInstant();
+        Instant endInstant = end.atZone(ZoneId.systemDefault()).toInstant();
+        when(transactionRepository.findDTOsInRange(startInstant, endInstant)).thenReturn(Arrays.asList(
+                new TransactionDTO(1L, 1L, Type.BUY, 10, BigDecimal.valueOf(100), BigDecimal.valueOf(1), now.minus(60, ChronoUnit.DAYS), null),
+                new TransactionDTO(2L, 1L, Type.SELL, 5, BigDecimal.valueOf(110), BigDecimal.valueOf(1), now.minus(45, ChronoUnit.DAYS), null)
+        ));
 
         List<TransactionDTO> transactions = transactionService.getTransactionsInDateRange(start, end);
 
         assertNotNull(transactions);
         assertEquals(2, transactions.size());
-        verify(transactionRepository, times(1)).findAll();
+        verify(transactionRepository, times(1)).findDTOsInRange(startInstant, endInstant);
+        verify(transactionRepository, never()).findAll();
     }
 }